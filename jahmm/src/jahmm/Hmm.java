@@ -69,7 +69,7 @@ public interface Hmm<TObs extends Observation, TInt extends Observation, THmm ex
      * when computing the probability of long sequences.
      *
      * @param oseq A non-empty observation sequence.
-     * @return The probability of this sequence.
+     * @return The natural logarithm of the probability of this sequence.
      */
     public abstract double lnProbability(List<? extends TInt> oseq);
 
@@ -136,7 +136,9 @@ public abstract class HmmBase<TObs extends Observation, TAMx, TBMx, TInt extends
     }
 
     /**
-     * Returns the probability of an observation sequence given this HMM.
+     * Returns the probability of an observation sequence given this HMM. The
+     * probability is computed by a scaled forward pass that only keeps two rows
+     * of alpha values in memory.
      *
      * @param oseq A non-empty observation sequence.
      * @return The probability of this sequence.
@@ -144,7 +146,7 @@ public abstract class HmmBase<TObs extends Observation, TAMx, TBMx, TInt extends
     @Override
     @SuppressWarnings("unchecked")
     public double probability(List<? extends TInt> oseq) {
-        return this.getForwardBackwardCalculator().computeProbability((THmm) this, oseq);
+        return this.getForwardBackwardScaledCalculator().computeProbability((THmm) this, oseq);
     }
 
     /**
@@ -153,12 +155,12 @@ public abstract class HmmBase<TObs extends Observation, TAMx, TBMx, TInt extends
      * when computing the probability of long sequences.
      *
      * @param oseq A non-empty observation sequence.
-     * @return The probability of this sequence.
+     * @return The natural logarithm of the probability of this sequence.
      */
     @Override
     @SuppressWarnings("unchecked")
     public double lnProbability(List<? extends TInt> oseq) {
-        return this.getForwardBackwardScaledCalculator().computeProbability((THmm) this, oseq);
+        return this.getForwardBackwardScaledCalculator().computeLnProbability((THmm) this, oseq);
     }
 
 }
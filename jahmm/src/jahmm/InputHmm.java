@@ -147,6 +147,20 @@ public interface InputHmm<TObs extends Observation, TIn,THmm extends InputHmm<TO
      */
     public abstract double[][] collapsedA();
 
+    /**
+     * Gets the transition tensor as a single contiguous array in input-major,
+     * column-transposed order: the probability of going from state
+     * <code>i</code> to state <code>j</code> given input <code>k</code> is
+     * stored at index <code>(k*nbStates()+j)*nbStates()+i</code>. For a fixed
+     * input and target state, the probabilities of all source states are thus
+     * adjacent, which is the order in which the forward recursion consumes
+     * them.
+     *
+     * @return The transposed transition tensor. The array is shared with the
+     * model and must not be modified.
+     */
+    public abstract double[] transposedA();
+
     /**
      * Gets the number of input symbols.
      *
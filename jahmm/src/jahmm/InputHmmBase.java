@@ -8,9 +8,11 @@ import static jahmm.HmmBase.generatePi;
 import jahmm.calculators.InputForwardBackwardCalculator;
 import jahmm.calculators.InputForwardBackwardCalculatorBase;
 import jahmm.calculators.InputForwardBackwardScaledCalculatorBase;
+import jahmm.calculators.InputViterbiCalculatorBase;
 import jahmm.observables.InputObservationTuple;
 import jahmm.observables.Observation;
 import jahmm.observables.Opdf;
+import jahmm.observables.OpdfBase;
 import jahmm.observables.OpdfFactory;
 import jahmm.toolbox.InputMarkovGeneratorBase;
 import java.text.NumberFormat;
@@ -19,6 +21,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -159,9 +162,10 @@ public class InputHmmBase<TObs extends Observation, TIn> extends HmmBase<TObs, d
         int m = original.length;
         int n = original[0x00].length;
         Object[][] b = new Object[m][n];
+        Map<Object, Object> shared = new IdentityHashMap<>();
         for (int i = 0x00; i < m; i++) {
             for (int j = 0x00; j < n; j++) {
-                b[i][j] = ((Opdf<TObs>) original[i][j]).clone();
+                b[i][j] = OpdfBase.clone((Opdf<TObs>) original[i][j], shared);
             }
         }
         return b;
@@ -169,6 +173,16 @@ public class InputHmmBase<TObs extends Observation, TIn> extends HmmBase<TObs, d
     }
 
     private final HashMap<TIn, Integer> indexRegister = new HashMap<>();
+    /**
+     * The cached transposed transition tensor (see {@link #transposedA}),
+     * <code>null</code> if it needs to be rebuilt.
+     */
+    private transient volatile double[] transposedACache;
+    /**
+     * The cached collapsed transition matrix (see {@link #collapsedA}),
+     * <code>null</code> if it needs to be rebuilt.
+     */
+    private transient volatile double[][] collapsedACache;
 
     /**
      * Creates a new IHMM. Each state has the same <i>pi</i> value and the
@@ -346,7 +360,7 @@ public class InputHmmBase<TObs extends Observation, TIn> extends HmmBase<TObs, d
     public void fold(int n) {
         int m = pi.length;
         double[] pia = new double[m], pib = this.pi, tmp;
-        double[][] colA = this.collapsedA();
+        double[][] colA = this.getCollapsedA();
         double val;
         for (int t = 0x00; t < n; t++) {
             tmp = pia;
@@ -371,14 +385,45 @@ public class InputHmmBase<TObs extends Observation, TIn> extends HmmBase<TObs, d
         return (Opdf<TObs>) this.b[stateNb][symbolNb];
     }
 
+    /**
+     * Returns an array containing the most likely state sequence matching a
+     * sequence of interactions given this IHMM (see
+     * {@link InputViterbiCalculatorBase InputViterbiCalculatorBase}).
+     *
+     * @param oseq A non-empty sequence of interactions.
+     * @return An array containing the most likely sequence of state numbers.
+     * This array can be modified.
+     */
     @Override
     public int[] mostLikelyStateSequence(List<? extends InputObservationTuple<TIn, TObs>> oseq) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+        return new InputViterbiCalculatorBase<>(this).stateSequence(oseq);
     }
 
+    /**
+     * Returns the probability of a sequence of interactions along a state
+     * sequence given this IHMM. The transition to the state at time step
+     * <code>t</code> is taken under the input of time step <code>t</code>.
+     *
+     * @param oseq A non-empty sequence of interactions.
+     * @param sseq An array containing a sequence of state numbers. The length
+     * of this array must be equal to the length of <code>oseq</code>
+     * @return The probability P[oseq,sseq|H], where H is this IHMM.
+     */
     @Override
     public double probability(List<? extends InputObservationTuple<TIn, TObs>> oseq, int[] sseq) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+        if (oseq.size() != sseq.length || oseq.isEmpty()) {
+            throw new IllegalArgumentException();
+        }
+        Iterator<? extends InputObservationTuple<TIn, TObs>> oseqIterator = oseq.iterator();
+        InputObservationTuple<TIn, TObs> ot = oseqIterator.next();
+        int k = this.getInputIndex(ot.getInput());
+        double probability = getPi(sseq[0x00]) * getOpdf(sseq[0x00], k).probability(ot.getObservation());
+        for (int t = 0x01; t < sseq.length; t++) {
+            ot = oseqIterator.next();
+            k = this.getInputIndex(ot.getInput());
+            probability *= getAixj(sseq[t - 0x01], k, sseq[t]) * getOpdf(sseq[t], k).probability(ot.getObservation());
+        }
+        return probability;
     }
 
     @Override
@@ -414,6 +459,7 @@ public class InputHmmBase<TObs extends Observation, TIn> extends HmmBase<TObs, d
                         }
                         this.a[i] = newa;
                     }
+                    this.invalidateA();
                 } else {
                     throw new UnsupportedOperationException("Cannot split a currently unknown input.");
                 }
@@ -456,6 +502,7 @@ public class InputHmmBase<TObs extends Observation, TIn> extends HmmBase<TObs, d
                     ArrayUtils.copySkipArray(newa, ai, subl);
                     a[i] = newa;
                 }
+                this.invalidateA();
             } else {
                 CollectionUtils.replaceKey(this.indexRegister, originalIns[0x00], newIn);
             }
@@ -497,6 +544,7 @@ public class InputHmmBase<TObs extends Observation, TIn> extends HmmBase<TObs, d
     @Override
     public void setAixj(int i, int x, int j, double aixj) {
         this.a[i][x][j] = aixj;
+        this.invalidateA();
     }
 
     @Override
@@ -522,37 +570,97 @@ public class InputHmmBase<TObs extends Observation, TIn> extends HmmBase<TObs, d
      */
     @Override
     public double[][] collapsedA() {
-        int N = this.nbStates();
-        int M = this.nbSymbols();
-        double[][] colA = new double[N][N];
+        double[][] colA = this.getCollapsedA();
+        int N = colA.length;
+        double[][] copy = new double[N][];
         for (int i = 0x00; i < N; i++) {
-            for (int k = 0x00; k < N; k++) {
-                double val = 0.0d;
-                for (int j = 0x00; j < M; j++) {
-                    val += this.a[i][j][k];
+            copy[i] = colA[i].clone();
+        }
+        return copy;
+    }
+
+    /**
+     * Gets the cached collapsed A-matrix, rebuilding it if the transitions
+     * were modified since it was last built.
+     *
+     * @return The collapsed A-matrix, shared with the cache.
+     */
+    private double[][] getCollapsedA() {
+        double[][] colA = this.collapsedACache;
+        if (colA == null) {
+            int N = this.nbStates();
+            int M = this.nbSymbols();
+            colA = new double[N][N];
+            for (int i = 0x00; i < N; i++) {
+                for (int k = 0x00; k < N; k++) {
+                    double val = 0.0d;
+                    for (int j = 0x00; j < M; j++) {
+                        val += this.a[i][j][k];
+                    }
+                    colA[i][k] = val;
                 }
-                colA[i][k] = val;
             }
+            this.collapsedACache = colA;
         }
         return colA;
     }
 
+    /**
+     * Gets the transition tensor as a single contiguous array in input-major,
+     * column-transposed order: <code>a[i][k][j]</code> is stored at index
+     * <code>(k*nbStates()+j)*nbStates()+i</code>. The array is cached and
+     * rebuilt after the transitions are modified through
+     * {@link #setAixj(int, int, int, double) setAixj},
+     * {@link #splitInput splitInput} or {@link #mergeInput mergeInput}.
+     *
+     * @return The transposed transition tensor. The array is shared with the
+     * model and must not be modified.
+     */
+    @Override
+    public double[] transposedA() {
+        double[] at = this.transposedACache;
+        if (at == null) {
+            int N = this.nbStates();
+            int M = this.nbSymbols();
+            at = new double[M * N * N];
+            for (int i = 0x00; i < N; i++) {
+                double[][] ai = this.a[i];
+                for (int k = 0x00; k < M; k++) {
+                    double[] aik = ai[k];
+                    int offset = k * N * N + i;
+                    for (int j = 0x00; j < N; j++) {
+                        at[offset + j * N] = aik[j];
+                    }
+                }
+            }
+            this.transposedACache = at;
+        }
+        return at;
+    }
+
+    /**
+     * Drops the cached views of the transition tensor.
+     */
+    private void invalidateA() {
+        this.transposedACache = null;
+        this.collapsedACache = null;
+    }
+
     @Override
     public void fold(TIn input) {
         int m = pi.length;
         double[] pib = new double[m], pia = this.pi;
         int k = this.getInputIndex(input);
         double val;
-        double[][] cola = new double[m][];
-        for (int j = 0x00; j < m; j++) {
-            cola[j] = this.a[j][k];
-        }
+        double[] at = this.transposedA();
+        int offset = k * m * m;
         for (int i = 0x00; i < m; i++) {
             val = 0.0d;
             for (int j = 0x00; j < m; j++) {
-                val += cola[j][i] * pia[j];
+                val += at[offset + j] * pia[j];
             }
             pib[i] = val;
+            offset += m;
         }
         System.arraycopy(pib, 0, this.pi, 0, m);
     }
@@ -561,28 +669,22 @@ public class InputHmmBase<TObs extends Observation, TIn> extends HmmBase<TObs, d
     public void fold(Iterable<? extends TIn> inputs) {
         int m = pi.length;
         boolean copy = false;
-        int oldk = -0x01;
-        double[][] cola = new double[m][];
+        double[] at = this.transposedA();
         double[] pia = new double[m], pib = this.pi, tmp;
         double val;
         for (TIn input : inputs) {
             copy = !copy;
-            int k = this.getInputIndex(input);
+            int offset = this.getInputIndex(input) * m * m;
             tmp = pia;
             pia = pib;
             pib = tmp;
-            if (oldk != k) {
-                for (int j = 0x00; j < m; j++) {
-                    cola[j] = this.a[j][k];
-                }
-                oldk = k;
-            }
             for (int i = 0x00; i < m; i++) {
                 val = 0.0d;
                 for (int j = 0x00; j < m; j++) {
-                    val += cola[j][i] * pia[j];
+                    val += at[offset + j] * pia[j];
                 }
                 pib[i] = val;
+                offset += m;
             }
         }
         if (copy) {
@@ -6,10 +6,12 @@ package jahmm;
 
 import jahmm.calculators.RegularForwardBackwardCalculator;
 import jahmm.calculators.RegularForwardBackwardCalculatorBase;
+import jahmm.calculators.RegularForwardBackwardCompiledCalculatorBase;
 import jahmm.calculators.RegularForwardBackwardScaledCalculatorBase;
-import jahmm.calculators.RegularViterbiCalculatorBase;
+import jahmm.calculators.RegularViterbiLogCalculatorBase;
 import jahmm.observables.Observation;
 import jahmm.observables.Opdf;
+import jahmm.observables.OpdfBase;
 import jahmm.observables.OpdfFactory;
 import jahmm.toolbox.MarkovGenerator;
 import jahmm.toolbox.RegularMarkovGeneratorBase;
@@ -46,6 +48,12 @@ public class RegularHmmBase<TObs extends Observation> extends HmmBase<TObs, doub
     private static final long serialVersionUID = 2L;
     private static final Logger LOG = Logger.getLogger(RegularHmmBase.class.getName());
 
+    /**
+     * The scaled forward backward calculator selected for this Hidden Markov
+     * Model, or <code>null</code> if the default one should be used.
+     */
+    private transient RegularForwardBackwardCalculator<TObs, RegularHmmBase<TObs>> scaledCalculator;
+
     protected static double[][] cloneA(double[][] a) {
         int n = a.length;
         double[][] clone = new double[n][];
@@ -193,7 +201,7 @@ public class RegularHmmBase<TObs extends Observation> extends HmmBase<TObs, doub
      */
     @Override
     public int[] mostLikelyStateSequence(List<? extends TObs> oseq) {
-        return (new RegularViterbiCalculatorBase(oseq, this)).stateSequence();
+        return new RegularViterbiLogCalculatorBase<>(this).stateSequence(oseq);
     }
 
     /**
@@ -255,7 +263,9 @@ public class RegularHmmBase<TObs extends Observation> extends HmmBase<TObs, doub
     }
 
     /**
-     * Creates a duplicate object of the HMM.
+     * Creates a duplicate object of the HMM. The observation probability
+     * functions are cloned as well, see
+     * {@link OpdfBase#cloneAll OpdfBase.cloneAll}.
      *
      * @return An IHHM that contains the same date as this object.
      * @throws CloneNotSupportedException An exception such that classes lower
@@ -263,7 +273,9 @@ public class RegularHmmBase<TObs extends Observation> extends HmmBase<TObs, doub
      */
     @Override
     public RegularHmmBase<TObs> clone() throws CloneNotSupportedException {
-        return new RegularHmmBase<>(this.pi, this.a, this.b);
+        RegularHmmBase<TObs> clone = new RegularHmmBase<>(this.pi, this.a, OpdfBase.cloneAll(this.b));
+        clone.scaledCalculator = this.scaledCalculator;
+        return clone;
     }
 
     @Override
@@ -308,9 +320,26 @@ public class RegularHmmBase<TObs extends Observation> extends HmmBase<TObs, doub
      */
     @Override
     public RegularForwardBackwardCalculator<TObs, RegularHmmBase<TObs>> getForwardBackwardScaledCalculator() {
+        if (this.scaledCalculator != null) {
+            return this.scaledCalculator;
+        }
         return RegularForwardBackwardScaledCalculatorBase.Instance;
     }
 
+    /**
+     * Selects the scaled forward backward calculator used by this Hidden Markov
+     * Model (e.g.
+     * {@link RegularForwardBackwardCompiledCalculatorBase#Instance RegularForwardBackwardCompiledCalculatorBase.Instance}).
+     * The selection is kept when the Hidden Markov Model is cloned.
+     *
+     * @param calculator The scaled calculator to use, or <code>null</code> to
+     * use the default
+     * {@link RegularForwardBackwardScaledCalculatorBase RegularForwardBackwardScaledCalculatorBase}.
+     */
+    public void setForwardBackwardScaledCalculator(RegularForwardBackwardCalculator<TObs, RegularHmmBase<TObs>> calculator) {
+        this.scaledCalculator = calculator;
+    }
+
     @Override
     public MarkovGenerator<TObs, TObs, RegularHmmBase<TObs>> getMarkovGenerator() {
         return new RegularMarkovGeneratorBase<>(this);
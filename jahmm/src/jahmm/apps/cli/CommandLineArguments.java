@@ -65,7 +65,8 @@ class CommandLineArguments {
 
             if (opdf.equals("integer")) {
                 args.add(Arguments.INTEGER_RANGE);
-            } else if (opdf.equals("multi_gaussian")) {
+            } else if (opdf.equals("multi_gaussian")
+                    || opdf.equals("diagonal_gaussian")) {
                 args.add(Arguments.VECTOR_DIMENSION);
             } else if (opdf.equals("gaussian"))
 				; else if (opdf.equals("gaussian_mixture")) {
@@ -128,7 +129,7 @@ class CommandLineArguments {
         IN_SEQ("-is", ""),
         OUT_SEQS("-os", "-"),
         OPDF("-opdf", "integer", "gaussian", "gaussian_mixture",
-                "multi_gaussian"),
+                "multi_gaussian", "diagonal_gaussian"),
         INTEGER_RANGE("-r", ""),
         NB_GAUSSIANS("-ng", ""),
         VECTOR_DIMENSION("-d", ""),
@@ -34,7 +34,7 @@ public class HelpActionHandler extends ActionHandler {
                 + "http://www.run.montefiore.ulg.ac.be/~francois/software/jahmm/cli/\n";
 
         s += "\nArguments:\n";
-        s += "-opdf [integer|gaussian|gaussian_mixture|multi_gaussian]\n"
+        s += "-opdf [integer|gaussian|gaussian_mixture|multi_gaussian|diagonal_gaussian]\n"
                 + "\tDetermines the observation distribution type associated with the\n"
                 + "\tstates of the HMM.\n";
 
@@ -47,7 +47,7 @@ public class HelpActionHandler extends ActionHandler {
                 + "mixture\n\tdistribution.  It  determines the number of gaussians.\n";
 
         s += "-d <dimension>\n\tThis option is mandatory when using "
-                + "multi-variate gaussian\n\tdistributions. It determines the "
+                + "multi-variate (or diagonal)\n\tgaussian distributions. It determines the "
                 + "dimension of the observation\n\tvectors.\n";
 
         s += "-n <nb_states>\n\tThe number of states of the HMM.\n";
@@ -16,6 +16,8 @@ import jahmm.io.ObservationSequencesReader;
 import jahmm.io.ObservationVectorReader;
 import jahmm.io.ObservationVectorWriter;
 import jahmm.io.ObservationWriter;
+import jahmm.io.OpdfDiagonalGaussianReader;
+import jahmm.io.OpdfDiagonalGaussianWriter;
 import jahmm.io.OpdfGaussianMixtureReader;
 import jahmm.io.OpdfGaussianMixtureWriter;
 import jahmm.io.OpdfGaussianReader;
@@ -30,6 +32,7 @@ import jahmm.observables.ObservationInteger;
 import jahmm.observables.ObservationReal;
 import jahmm.observables.ObservationVector;
 import jahmm.observables.Opdf;
+import jahmm.observables.OpdfDiagonalGaussianFactory;
 import jahmm.observables.OpdfFactory;
 import jahmm.observables.OpdfGaussianFactory;
 import jahmm.observables.OpdfGaussianMixtureFactory;
@@ -52,7 +55,8 @@ class Types {
             case "integer":
                 return new IntegerRelatedObjects();
             case "multi_gaussian":
-                return new VectorRelatedObjects();
+            case "diagonal_gaussian":
+                return new VectorRelatedObjects(opdf);
             case "gaussian":
             case "gaussian_mixture":
                 return new RealRelatedObjects(opdf);
@@ -169,9 +173,11 @@ class RealRelatedObjects implements RelatedObjs<ObservationReal> {
 
 class VectorRelatedObjects implements RelatedObjs<ObservationVector> {
 
+    final String opdf;
     final int dimension;
 
-    VectorRelatedObjects() throws WrongArgumentsException {
+    VectorRelatedObjects(String opdf) throws WrongArgumentsException {
+        this.opdf = opdf;
         dimension = Arguments.VECTOR_DIMENSION.getAsInt();
     }
 
@@ -187,17 +193,29 @@ class VectorRelatedObjects implements RelatedObjs<ObservationVector> {
 
     @Override
     public OpdfFactory<? extends Opdf<ObservationVector>> opdfFactory() {
-        return new OpdfMultiGaussianFactory(dimension);
+        if (opdf.equals("diagonal_gaussian")) {
+            return new OpdfDiagonalGaussianFactory(dimension);
+        } else { // Multivariate Gaussian
+            return new OpdfMultiGaussianFactory(dimension);
+        }
     }
 
     @Override
     public OpdfReader<? extends Opdf<ObservationVector>> opdfReader() {
-        return new OpdfMultiGaussianReader();
+        if (opdf.equals("diagonal_gaussian")) {
+            return new OpdfDiagonalGaussianReader();
+        } else { // Multivariate Gaussian
+            return new OpdfMultiGaussianReader();
+        }
     }
 
     @Override
     public OpdfWriter<? extends Opdf<ObservationVector>> opdfWriter() {
-        return new OpdfMultiGaussianWriter();
+        if (opdf.equals("diagonal_gaussian")) {
+            return new OpdfDiagonalGaussianWriter();
+        } else { // Multivariate Gaussian
+            return new OpdfMultiGaussianWriter();
+        }
     }
 
     @Override
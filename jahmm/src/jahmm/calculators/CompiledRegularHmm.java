@@ -0,0 +1,268 @@
+package jahmm.calculators;
+
+import jahmm.RegularHmm;
+import jahmm.observables.Observation;
+import jahmm.observables.Opdf;
+import jahmm.observables.OpdfBase;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A frozen, primitive-array copy of a {@link RegularHmm RegularHmm}. The
+ * transition matrix is stored as a flat row-major array together with its
+ * transpose, such that both the forward and the backward recursion stream
+ * through contiguous memory without calling back into the Hidden Markov Model.
+ * If at most {@link SparseTransitionMatrix#MAX_DENSITY a quarter} of the
+ * transitions are non-zero, the transition matrix is stored as a
+ * {@link SparseTransitionMatrix SparseTransitionMatrix} instead, and the
+ * recursions only visit the non-zero transitions. Otherwise the recursions
+ * are run by the selected {@link DenseKernels DenseKernels}.
+ * <p>
+ * A compiled model is a snapshot: modifications made to the original Hidden
+ * Markov Model after compilation are not reflected.
+ *
+ * @author kommusoft
+ * @param <TObs> The type of observations of the Hidden Markov Model.
+ */
+public final class CompiledRegularHmm<TObs extends Observation> {
+
+    private final int nbStates;
+    private final double[] pi;
+    /**
+     * The transition matrix in row-major order: <code>a[i*n+j]</code> is the
+     * probability of going from state <code>i</code> to state <code>j</code>.
+     */
+    private final double[] a;
+    /**
+     * The transposed transition matrix: <code>at[j*n+i]</code> is the
+     * probability of going from state <code>i</code> to state <code>j</code>.
+     */
+    private final double[] at;
+    /**
+     * The sparse transition matrix, <code>null</code> if the transitions are
+     * stored densely in <code>a</code> and <code>at</code>.
+     */
+    private final SparseTransitionMatrix sparse;
+    private final DenseKernels kernels = DenseKernels.getInstance();
+    private final Opdf<TObs>[] opdfs;
+
+    /**
+     * Compiles the given Hidden Markov Model.
+     *
+     * @param hmm The Hidden Markov Model to compile.
+     */
+    public CompiledRegularHmm(RegularHmm<TObs, ?> hmm) {
+        this(hmm, SparseTransitionMatrix.compileIfSparse(hmm));
+    }
+
+    /**
+     * Compiles the given Hidden Markov Model with a given sparse transition
+     * matrix, for instance a {@link SparseTransitionMatrix band} of a
+     * left-to-right model.
+     *
+     * @param hmm The Hidden Markov Model to compile.
+     * @param sparse A sparse copy of the transition matrix of
+     * <code>hmm</code>, or <code>null</code> to store the transitions densely.
+     * @throws IllegalArgumentException If the sparse matrix has another number
+     * of states than the model.
+     */
+    public CompiledRegularHmm(RegularHmm<TObs, ?> hmm, SparseTransitionMatrix sparse) {
+        int n = hmm.nbStates();
+        if (sparse != null && sparse.nbStates() != n) {
+            throw new IllegalArgumentException("The sparse matrix has another number of states");
+        }
+        this.nbStates = n;
+        this.pi = hmm.getPis();
+        this.sparse = sparse;
+        this.opdfs = OpdfBase.newArray(Opdf.class, n);
+        if (this.sparse != null) {
+            this.a = null;
+            this.at = null;
+        } else {
+            this.a = new double[n * n];
+            this.at = new double[n * n];
+            for (int i = 0x00; i < n; i++) {
+                for (int j = 0x00; j < n; j++) {
+                    double aij = hmm.getAij(i, j);
+                    this.a[i * n + j] = aij;
+                    this.at[j * n + i] = aij;
+                }
+            }
+        }
+        for (int i = 0x00; i < n; i++) {
+            this.opdfs[i] = hmm.getOpdf(i);
+        }
+    }
+
+    /**
+     * Checks whether the transition matrix is stored sparsely.
+     *
+     * @return <code>true</code> if the recursions only visit the non-zero
+     * transitions, <code>false</code> otherwise.
+     */
+    public boolean isSparse() {
+        return this.sparse != null;
+    }
+
+    /**
+     * Returns the number of states of the compiled model.
+     *
+     * @return The number of states of the compiled model.
+     */
+    public int nbStates() {
+        return this.nbStates;
+    }
+
+    /**
+     * Returns the <i>pi</i> value associated with a given state.
+     *
+     * @param i A state number such that <code>0 &le; i &lt; nbStates()</code>.
+     * @return The <i>pi</i> value associated to <code>i</code>.
+     */
+    public double getPi(int i) {
+        return this.pi[i];
+    }
+
+    /**
+     * Returns the probability associated with the transition going from state
+     * <i>i</i> to state <i>j</i>.
+     *
+     * @param i The first state number.
+     * @param j The second state number.
+     * @return The probability associated to the transition going from
+     * <code>i</code> to state <code>j</code>.
+     */
+    public double getAij(int i, int j) {
+        if (this.sparse != null) {
+            return this.sparse.getAij(i, j);
+        }
+        return this.a[i * this.nbStates + j];
+    }
+
+    /**
+     * Returns the opdf associated with a given state.
+     *
+     * @param i A state number such that <code>0 &le; i &lt; nbStates()</code>.
+     * @return The opdf associated to state <code>i</code>.
+     */
+    public Opdf<TObs> getOpdf(int i) {
+        return this.opdfs[i];
+    }
+
+    /**
+     * Evaluates the emission probability of the given observation in every
+     * state.
+     *
+     * @param o The given observation.
+     * @param emission The array to store the results in: after the call,
+     * <code>emission[i]</code> is the probability of <code>o</code> in state
+     * <code>i</code>.
+     */
+    public void emission(TObs o, double[] emission) {
+        Opdf<TObs>[] b = this.opdfs;
+        for (int i = 0x00; i < this.nbStates; i++) {
+            emission[i] = b[i].probability(o);
+        }
+    }
+
+    /**
+     * Evaluates the emission probabilities of a whole sequence. The opdf of
+     * every state is evaluated once per observation; if the sequence is a
+     * list, every opdf evaluates the whole sequence in a single
+     * {@link Opdf#probabilities batch}.
+     *
+     * @param oseq The given sequence of observations.
+     * @return The emission matrix: <code>emissions[t][i]</code> is the
+     * probability of the <code>t</code>-th observation in state <code>i</code>.
+     */
+    public double[][] emissions(Collection<? extends TObs> oseq) {
+        double[][] emissions = new double[oseq.size()][this.nbStates];
+        if (oseq instanceof List) {
+            List<? extends TObs> list = (List<? extends TObs>) oseq;
+            double[] column = new double[emissions.length];
+            for (int i = 0x00; i < this.nbStates; i++) {
+                this.opdfs[i].probabilities(list, column);
+                for (int t = 0x00; t < column.length; t++) {
+                    emissions[t][i] = column[t];
+                }
+            }
+            return emissions;
+        }
+        int t = 0x00;
+        for (TObs o : oseq) {
+            emission(o, emissions[t]);
+            t++;
+        }
+        return emissions;
+    }
+
+    /**
+     * Computes the first alpha row given the emission probabilities of the
+     * first observation.
+     *
+     * @param emission The emission probabilities of the first observation.
+     * @param alpha The array to store the alpha values in.
+     */
+    public void start(double[] emission, double[] alpha) {
+        double[] p = this.pi;
+        for (int i = 0x00; i < this.nbStates; i++) {
+            alpha[i] = p[i] * emission[i];
+        }
+    }
+
+    /**
+     * Performs one step of the forward recursion:
+     * <code>next[j] = emission[j] * sum_i prev[i] * a[i][j]</code>.
+     *
+     * @param prev The alpha values of the previous time step.
+     * @param emission The emission probabilities of the current observation.
+     * @param next The array to store the alpha values of the current time step
+     * in. This array must differ from <code>prev</code>.
+     */
+    public void forward(double[] prev, double[] emission, double[] next) {
+        if (this.sparse != null) {
+            this.sparse.forward(prev, emission, next);
+            return;
+        }
+        this.kernels.forward(this.at, this.nbStates, prev, emission, next);
+    }
+
+    /**
+     * Performs one step of the backward recursion:
+     * <code>prev[i] = sum_j a[i][j] * emission[j] * next[j]</code>.
+     *
+     * @param next The beta values of the next time step.
+     * @param emission The emission probabilities of the observation of the
+     * next time step.
+     * @param weighted The array to store <code>emission[j] * next[j]</code>
+     * in.
+     * @param prev The array to store the beta values of the current time step
+     * in. This array must differ from <code>next</code>.
+     */
+    public void backward(double[] next, double[] emission, double[] weighted, double[] prev) {
+        if (this.sparse != null) {
+            this.sparse.backward(next, emission, weighted, prev);
+            return;
+        }
+        this.kernels.backward(this.a, this.nbStates, next, emission, weighted, prev);
+    }
+
+    /**
+     * Adds the xi values of one time step to the â-numerators:
+     * <code>aijNum[i][j] += factor * alpha[i] * a[i][j] * weighted[j]</code>.
+     *
+     * @param alpha The alpha values of the time step.
+     * @param weighted The emissions multiplied with the beta values of the next
+     * time step, as computed by {@link #backward backward}.
+     * @param factor The normalization factor of the xi values.
+     * @param aijNum The numerators of the â-values to update.
+     */
+    public void accumulateXi(double[] alpha, double[] weighted, double factor, double[][] aijNum) {
+        if (this.sparse != null) {
+            this.sparse.accumulateXi(alpha, weighted, factor, aijNum);
+            return;
+        }
+        this.kernels.accumulateXi(this.a, this.nbStates, alpha, weighted, factor, aijNum);
+    }
+
+}
@@ -0,0 +1,112 @@
+package jahmm.calculators;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The array kernels of the compiled regular Hidden Markov Model engine for
+ * dense transition matrices: the forward step, the backward step, the xi outer
+ * product and the Viterbi max-plus step. All kernels work on flat row-major
+ * arrays such that the inner loops stream through contiguous memory.
+ * <p>
+ * The kernel set is selected once, when this class is loaded: if the system
+ * property <code>jahmm.kernels</code> contains the name of a subclass with a
+ * public constructor without parameters, that class is used (for instance an
+ * implementation based on a vector API compiled for a more recent platform);
+ * if the class cannot be loaded, or the property is not set, the
+ * {@link UnrolledDenseKernels UnrolledDenseKernels} are used. The
+ * {@link ScalarDenseKernels ScalarDenseKernels} serve as reference
+ * implementation.
+ *
+ * @author kommusoft
+ */
+public abstract class DenseKernels {
+
+    /**
+     * The name of the system property that selects the kernel set.
+     */
+    public static final String PROPERTY = "jahmm.kernels";
+    private static final Logger LOG = Logger.getLogger(DenseKernels.class.getName());
+    private static final DenseKernels SELECTED = select();
+
+    /**
+     * Gets the selected kernel set.
+     *
+     * @return The kernel set used by the compiled engine.
+     */
+    public static DenseKernels getInstance() {
+        return SELECTED;
+    }
+
+    private static DenseKernels select() {
+        String name = System.getProperty(PROPERTY);
+        if (name != null && !name.isEmpty()) {
+            try {
+                return Class.forName(name).asSubclass(DenseKernels.class).newInstance();
+            } catch (ClassNotFoundException | ClassCastException | InstantiationException | IllegalAccessException | LinkageError ex) {
+                LOG.log(Level.WARNING, "Cannot load the kernels " + name + ", falling back to the unrolled kernels", ex);
+            }
+        }
+        return UnrolledDenseKernels.Instance;
+    }
+
+    /**
+     * Performs one step of the forward recursion:
+     * <code>next[j] = emission[j] * sum_i prev[i] * at[j*n+i]</code>.
+     *
+     * @param at The transposed transition matrix: <code>at[j*n+i]</code> is
+     * the probability of going from state <code>i</code> to state
+     * <code>j</code>.
+     * @param n The number of states.
+     * @param prev The alpha values of the previous time step.
+     * @param emission The emission probabilities of the current observation.
+     * @param next The array to store the alpha values of the current time step
+     * in. This array must differ from <code>prev</code>.
+     */
+    public abstract void forward(double[] at, int n, double[] prev, double[] emission, double[] next);
+
+    /**
+     * Performs one step of the backward recursion:
+     * <code>prev[i] = sum_j a[i*n+j] * emission[j] * next[j]</code>.
+     *
+     * @param a The transition matrix in row-major order.
+     * @param n The number of states.
+     * @param next The beta values of the next time step.
+     * @param emission The emission probabilities of the observation of the
+     * next time step.
+     * @param weighted The array to store <code>emission[j] * next[j]</code>
+     * in.
+     * @param prev The array to store the beta values of the current time step
+     * in. This array must differ from <code>next</code>.
+     */
+    public abstract void backward(double[] a, int n, double[] next, double[] emission, double[] weighted, double[] prev);
+
+    /**
+     * Adds the xi values of one time step to the â-numerators:
+     * <code>aijNum[i][j] += factor * alpha[i] * a[i*n+j] * weighted[j]</code>.
+     *
+     * @param a The transition matrix in row-major order.
+     * @param n The number of states.
+     * @param alpha The alpha values of the time step.
+     * @param weighted The emissions multiplied with the beta values of the next
+     * time step.
+     * @param factor The normalization factor of the xi values.
+     * @param aijNum The numerators of the â-values to update.
+     */
+    public abstract void accumulateXi(double[] a, int n, double[] alpha, double[] weighted, double factor, double[][] aijNum);
+
+    /**
+     * Performs the maximization of one step of the Viterbi recursion in
+     * log-space: <code>next[j] = max_i prev[i] + lnAt[j*n+i]</code>. Ties are
+     * resolved in favor of the smallest predecessor.
+     *
+     * @param lnAt The logarithms of the transposed transition matrix.
+     * @param n The number of states.
+     * @param prev The partial log-probabilities of the previous time step.
+     * @param next The array to store the maximized log-probabilities in
+     * (without the emission). This array must differ from <code>prev</code>.
+     * @param psy The array to store the best predecessors in.
+     */
+    public abstract void maxPlus(double[] lnAt, int n, double[] prev, double[] next, int[] psy);
+
+}
@@ -34,4 +34,40 @@ public interface ForwardBackwardCalculator<TAlpha, TBeta, TObs extends Observati
 
     public abstract double computeProbability(THmm hmm, TInt... oseq);
 
+    /**
+     * Computes the natural logarithm of the probability of occurrence of an
+     * observation sequence given a Hidden Markov Model. Calculators that use
+     * scaling compute the logarithm directly from the scaling factors, such
+     * that long sequences do not underflow.
+     *
+     * @param hmm The given Hidden Markov Model.
+     * @param oseq A non-empty sequence of interactions.
+     * @return The natural logarithm of the probability of the given sequence.
+     */
+    public abstract double computeLnProbability(THmm hmm, List<? extends TInt> oseq);
+
+    /**
+     * Computes the natural logarithm of the probability of occurrence of an
+     * observation sequence given a Hidden Markov Model.
+     *
+     * @param hmm The given Hidden Markov Model.
+     * @param oseq A non-empty sequence of interactions.
+     * @return The natural logarithm of the probability of the given sequence.
+     */
+    @SuppressWarnings("unchecked")
+    public abstract double computeLnProbability(THmm hmm, TInt... oseq);
+
+    /**
+     * Computes the emission matrix of the given sequence: the probability of
+     * every observation in every state. The matrix can be shared by the
+     * computation of the alpha, beta and xi values such that the observation
+     * probability functions are evaluated only once per sequence.
+     *
+     * @param hmm The given Hidden Markov Model.
+     * @param oseq The given sequence of interactions.
+     * @return The emission matrix: <code>emissions[t][i]</code> is the
+     * probability of the <code>t</code>-th observation in state <code>i</code>.
+     */
+    public abstract double[][] computeEmissions(THmm hmm, Collection<? extends TInt> oseq);
+
 }
@@ -88,6 +88,28 @@ public abstract class ForwardBackwardCalculatorRaw<TAlpha, TBeta, TObs extends O
         return this.computeProbability(hmm, new ListArray<>(oseq));
     }
 
+    /**
+     * Computes the natural logarithm of the probability of occurrence of an
+     * observation sequence given a Hidden Markov Model. By default this is the
+     * logarithm of {@link #computeProbability(jahmm.Hmm, java.util.List) computeProbability};
+     * calculators that use scaling override this method to avoid the
+     * underflow.
+     *
+     * @param hmm A Hidden Markov Model.
+     * @param oseq A non-empty observation sequence.
+     * @return The natural logarithm of the probability of the given sequence.
+     */
+    @Override
+    public double computeLnProbability(THmm hmm, List<? extends TInt> oseq) {
+        return Math.log(this.computeProbability(hmm, oseq));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public double computeLnProbability(THmm hmm, TInt... oseq) {
+        return this.computeLnProbability(hmm, new ListArray<>(oseq));
+    }
+
     protected abstract double computeProbability(List<? extends TInt> oseq, THmm hmm, Collection<ComputationType> flags, TAlpha alpha, TBeta beta);
 
     @Override
@@ -0,0 +1,75 @@
+package jahmm.calculators;
+
+import jutlis.tuples.Tuple3Base;
+
+/**
+ * The result of a forward-backward computation: the alpha and beta arrays and
+ * the probability of the sequence. Besides these three items, the result also
+ * holds the emission matrix and the scaling factors that were computed along
+ * the way, such that consumers (e.g. the xi estimation of a Baum-Welch learner)
+ * do not need to evaluate the observation probability functions again.
+ *
+ * @author kommusoft
+ */
+public class ForwardBackwardResult extends Tuple3Base<double[][], double[][], Double> {
+
+    private final double[][] emissions;
+    private final double[] ctFactors;
+
+    /**
+     * Creates a new forward-backward result.
+     *
+     * @param alpha The alpha array.
+     * @param beta The beta array.
+     * @param probability The probability of the sequence.
+     * @param emissions The emission matrix: <code>emissions[t][i]</code> is the
+     * probability of the <code>t</code>-th observation in state
+     * <code>i</code>.
+     * @param ctFactors The scaling factors, <code>null</code> if the alpha and
+     * beta arrays are not scaled.
+     */
+    public ForwardBackwardResult(double[][] alpha, double[][] beta, double probability, double[][] emissions, double[] ctFactors) {
+        super(alpha, beta, probability);
+        this.emissions = emissions;
+        this.ctFactors = ctFactors;
+    }
+
+    /**
+     * Gets the emission matrix: <code>emissions[t][i]</code> is the probability
+     * of the <code>t</code>-th observation in state <code>i</code>.
+     *
+     * @return The emission matrix.
+     */
+    public double[][] getEmissions() {
+        return this.emissions;
+    }
+
+    /**
+     * Gets the scaling factors used to compute the alpha and beta arrays.
+     *
+     * @return The scaling factors, <code>null</code> if the alpha and beta
+     * arrays are not scaled.
+     */
+    public double[] getCtFactors() {
+        return this.ctFactors;
+    }
+
+    /**
+     * Gets the natural logarithm of the probability of the sequence. If the
+     * alpha and beta arrays are scaled, the logarithm is computed from the
+     * scaling factors and does not underflow for long sequences.
+     *
+     * @return The natural logarithm of the probability of the sequence.
+     */
+    public double getLnProbability() {
+        if (this.ctFactors == null) {
+            return Math.log(this.getItem3());
+        }
+        double lnProbability = 0.0d;
+        for (double ct : this.ctFactors) {
+            lnProbability += Math.log(ct);
+        }
+        return lnProbability;
+    }
+
+}
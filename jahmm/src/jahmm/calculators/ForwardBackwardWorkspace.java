@@ -0,0 +1,252 @@
+package jahmm.calculators;
+
+/**
+ * The working memory of the calculators: alpha, beta and emission matrices,
+ * scaling factors, the back-pointers and state sequence of the Viterbi
+ * algorithm and a few rows for rolling recursions. A workspace is reused
+ * across calls and only grows when a longer sequence or a model with a
+ * different number of states is processed, such that processing a stream of
+ * sequences of similar length does not allocate in the steady state.
+ * <p>
+ * The matrices of the forward-backward algorithm and those of the Viterbi
+ * algorithm are grown separately, by {@link #ensure ensure} and
+ * {@link #ensureViterbi ensureViterbi}, such that a workspace only used for
+ * decoding does not hold alpha, beta and emission matrices.
+ * <p>
+ * The arrays are never shrunk: the rows and elements beyond the length of the
+ * last processed sequence are left untouched. The results of a call remain
+ * valid until the workspace is used by the next call. A workspace is not
+ * thread-safe; {@link #get get} returns a workspace per thread.
+ *
+ * @author kommusoft
+ */
+public final class ForwardBackwardWorkspace {
+
+    private static final ThreadLocal<ForwardBackwardWorkspace> LOCAL = new ThreadLocal<ForwardBackwardWorkspace>() {
+        @Override
+        protected ForwardBackwardWorkspace initialValue() {
+            return new ForwardBackwardWorkspace();
+        }
+    };
+
+    /**
+     * Gets the workspace of the current thread.
+     *
+     * @return The workspace of the current thread.
+     */
+    public static ForwardBackwardWorkspace get() {
+        return LOCAL.get();
+    }
+
+    private int nbStates = -1;
+    private int capacity;
+    private int viterbiCapacity;
+    private int length;
+    private double[][] alpha = new double[0x00][];
+    private double[][] beta = new double[0x00][];
+    private double[][] emissions = new double[0x00][];
+    private double[] ctFactors = new double[0x00];
+    private int[][] psy = new int[0x00][];
+    private int[] stateSequence = new int[0x00];
+    private double[] weighted = new double[0x00];
+    private double[] previous = new double[0x00];
+    private double[] current = new double[0x00];
+    private double[] scratch = new double[0x00];
+    private int[] active = new int[0x00];
+    private boolean[] mask = new boolean[0x00];
+
+    /**
+     * Creates a new, empty workspace. The workspace grows on demand.
+     */
+    public ForwardBackwardWorkspace() {
+    }
+
+    /**
+     * Makes sure the workspace can hold the alpha, beta and emission matrices
+     * and the scaling factors of a sequence of the given length for a model
+     * with the given number of states. If the number of states changes, all
+     * arrays are reallocated; if the sequence is longer than the capacity, the
+     * capacity is (at least) doubled.
+     *
+     * @param length The length of the sequence.
+     * @param nbStates The number of states of the model.
+     */
+    public void ensure(int length, int nbStates) {
+        this.ensureStates(nbStates);
+        if (length > this.capacity) {
+            int c = Math.max(length, this.capacity << 0x01);
+            this.alpha = new double[c][nbStates];
+            this.beta = new double[c][nbStates];
+            this.emissions = new double[c][nbStates];
+            this.ctFactors = new double[c];
+            this.capacity = c;
+        }
+        this.length = length;
+    }
+
+    /**
+     * Makes sure the workspace can hold the back-pointers and the state
+     * sequence of the Viterbi algorithm for a sequence of the given length and
+     * a model with the given number of states. The matrices of the
+     * forward-backward algorithm are not allocated.
+     *
+     * @param length The length of the sequence.
+     * @param nbStates The number of states of the model.
+     */
+    public void ensureViterbi(int length, int nbStates) {
+        this.ensureStates(nbStates);
+        if (length > this.viterbiCapacity) {
+            int c = Math.max(length, this.viterbiCapacity << 0x01);
+            this.psy = new int[c][nbStates];
+            this.stateSequence = new int[c];
+            this.viterbiCapacity = c;
+        }
+        this.length = length;
+    }
+
+    private void ensureStates(int nbStates) {
+        if (nbStates != this.nbStates) {
+            this.nbStates = nbStates;
+            this.capacity = 0x00;
+            this.viterbiCapacity = 0x00;
+            this.alpha = new double[0x00][];
+            this.beta = new double[0x00][];
+            this.emissions = new double[0x00][];
+            this.ctFactors = new double[0x00];
+            this.psy = new int[0x00][];
+            this.stateSequence = new int[0x00];
+            this.weighted = new double[nbStates];
+            this.previous = new double[nbStates];
+            this.current = new double[nbStates];
+            this.scratch = new double[nbStates];
+            this.active = new int[nbStates];
+            this.mask = new boolean[nbStates];
+        }
+    }
+
+    /**
+     * Gets the length of the last sequence the workspace was prepared for.
+     *
+     * @return The length of the last sequence.
+     */
+    public int getLength() {
+        return this.length;
+    }
+
+    /**
+     * Gets the alpha matrix. Only the first {@link #getLength getLength} rows
+     * are valid.
+     *
+     * @return The alpha matrix.
+     */
+    public double[][] getAlpha() {
+        return this.alpha;
+    }
+
+    /**
+     * Gets the beta matrix. Only the first {@link #getLength getLength} rows
+     * are valid.
+     *
+     * @return The beta matrix.
+     */
+    public double[][] getBeta() {
+        return this.beta;
+    }
+
+    /**
+     * Gets the emission matrix. Only the first {@link #getLength getLength}
+     * rows are valid.
+     *
+     * @return The emission matrix.
+     */
+    public double[][] getEmissions() {
+        return this.emissions;
+    }
+
+    /**
+     * Gets the scaling factors. Only the first {@link #getLength getLength}
+     * values are valid.
+     *
+     * @return The scaling factors.
+     */
+    public double[] getCtFactors() {
+        return this.ctFactors;
+    }
+
+    /**
+     * Gets the back-pointers of the Viterbi algorithm. Only the first
+     * {@link #getLength getLength} rows are valid, after a call to
+     * {@link #ensureViterbi ensureViterbi}.
+     *
+     * @return The back-pointers.
+     */
+    public int[][] getPsy() {
+        return this.psy;
+    }
+
+    /**
+     * Gets the state sequence computed by the Viterbi algorithm. Only the
+     * first {@link #getLength getLength} values are valid, after a call to
+     * {@link #ensureViterbi ensureViterbi}.
+     *
+     * @return The state sequence.
+     */
+    public int[] getStateSequence() {
+        return this.stateSequence;
+    }
+
+    /**
+     * Gets a scratch row of length <code>nbStates</code>.
+     *
+     * @return A scratch row.
+     */
+    public double[] getWeighted() {
+        return this.weighted;
+    }
+
+    /**
+     * Gets the first rolling row of length <code>nbStates</code>.
+     *
+     * @return The first rolling row.
+     */
+    public double[] getPrevious() {
+        return this.previous;
+    }
+
+    /**
+     * Gets the second rolling row of length <code>nbStates</code>.
+     *
+     * @return The second rolling row.
+     */
+    public double[] getCurrent() {
+        return this.current;
+    }
+
+    /**
+     * Gets a second scratch row of length <code>nbStates</code>.
+     *
+     * @return A scratch row.
+     */
+    public double[] getScratch() {
+        return this.scratch;
+    }
+
+    /**
+     * Gets a row of state indices of length <code>nbStates</code>.
+     *
+     * @return A row of state indices.
+     */
+    public int[] getActive() {
+        return this.active;
+    }
+
+    /**
+     * Gets a row of flags of length <code>nbStates</code>.
+     *
+     * @return A row of flags.
+     */
+    public boolean[] getMask() {
+        return this.mask;
+    }
+
+}
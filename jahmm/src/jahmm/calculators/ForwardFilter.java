@@ -0,0 +1,96 @@
+package jahmm.calculators;
+
+import jahmm.observables.Observation;
+
+/**
+ * An incremental forward filter: observations are pushed one at a time and
+ * the filter keeps the distribution over the states given all observations
+ * pushed so far, together with the cumulative log-likelihood of these
+ * observations. Every push costs at most <code>N*N</code> operations and the
+ * memory usage is linear in the number of states, independent of the number
+ * of pushed observations.
+ *
+ * @author kommusoft
+ * @param <TInt> The type of interactions pushed to the filter.
+ */
+public interface ForwardFilter<TInt extends Observation> {
+
+    /**
+     * Pushes the next interaction and updates the filtered distribution and
+     * the log-likelihood.
+     *
+     * @param interaction The next interaction.
+     * @return The natural logarithm of the probability of all interactions
+     * pushed so far.
+     * @throws IllegalArgumentException If the interaction has a zero
+     * probability given the previous interactions. The state of the filter is
+     * left unchanged.
+     */
+    public abstract double push(TInt interaction);
+
+    /**
+     * Gets the natural logarithm of the probability of all interactions pushed
+     * so far.
+     *
+     * @return The cumulative log-likelihood, zero if no interactions were
+     * pushed.
+     */
+    public abstract double getLnProbability();
+
+    /**
+     * Gets the number of interactions pushed so far.
+     *
+     * @return The number of interactions pushed so far.
+     */
+    public abstract long getLength();
+
+    /**
+     * Gets the probability of being in the given state given all interactions
+     * pushed so far.
+     *
+     * @param i A state number such that <code>0 &le; i &lt; nbStates()</code>.
+     * @return The filtered probability of state <code>i</code>.
+     * @throws IllegalStateException If no interactions were pushed.
+     */
+    public abstract double getProbability(int i);
+
+    /**
+     * Gets the distribution over the states given all interactions pushed so
+     * far.
+     *
+     * @return A copy of the filtered distribution.
+     * @throws IllegalStateException If no interactions were pushed.
+     */
+    public abstract double[] getDistribution();
+
+    /**
+     * Returns the number of states of the filtered model.
+     *
+     * @return The number of states.
+     */
+    public abstract int nbStates();
+
+    /**
+     * Forgets all pushed interactions such that the next interaction is the
+     * first one of a new sequence.
+     */
+    public abstract void reset();
+
+    /**
+     * Takes a snapshot of the state of the filter.
+     *
+     * @return An immutable snapshot of the state of the filter.
+     */
+    public abstract ForwardFilterState snapshot();
+
+    /**
+     * Restores a state of the filter previously taken by
+     * {@link #snapshot snapshot}.
+     *
+     * @param state The state to restore.
+     * @throws IllegalArgumentException If the state was taken from a filter
+     * with a different number of states.
+     */
+    public abstract void restore(ForwardFilterState state);
+
+}
@@ -0,0 +1,125 @@
+package jahmm.calculators;
+
+import jahmm.observables.Observation;
+import jutils.probability.ProbabilityUtils;
+
+/**
+ * The common part of the forward filters: the filter keeps two rows of scaled
+ * alpha values and swaps them after every successful push. The rows are
+ * scaled with {@link ProbabilityUtils#scale ProbabilityUtils.scale} such that
+ * they sum up to one and thus form the filtered distribution; the logarithms
+ * of the scaling factors add up to the log-likelihood, exactly as in the
+ * scaled forward-backward calculators.
+ *
+ * @author kommusoft
+ * @param <TInt> The type of interactions pushed to the filter.
+ */
+public abstract class ForwardFilterBase<TInt extends Observation> implements ForwardFilter<TInt> {
+
+    private double[] alpha;
+    private double[] next;
+    private double lnProbability;
+    private long length;
+
+    /**
+     * Creates a new filter for a model with the given number of states.
+     *
+     * @param nbStates The number of states of the filtered model.
+     */
+    protected ForwardFilterBase(int nbStates) {
+        this.alpha = new double[nbStates];
+        this.next = new double[nbStates];
+    }
+
+    /**
+     * Computes the unscaled alpha values of the first interaction.
+     *
+     * @param interaction The first interaction.
+     * @param alpha The array to store the alpha values in.
+     */
+    protected abstract void start(TInt interaction, double[] alpha);
+
+    /**
+     * Computes the unscaled alpha values of the next interaction.
+     *
+     * @param interaction The next interaction.
+     * @param prev The filtered distribution before the interaction.
+     * @param next The array to store the alpha values in. This array differs
+     * from <code>prev</code>.
+     */
+    protected abstract void step(TInt interaction, double[] prev, double[] next);
+
+    @Override
+    public double push(TInt interaction) {
+        double[] row = this.next;
+        if (this.length == 0x00) {
+            this.start(interaction, row);
+        } else {
+            this.step(interaction, this.alpha, row);
+        }
+        double ct = ProbabilityUtils.scale(row);
+        if (!(ct > 0.0d)) {
+            throw new IllegalArgumentException("The interaction has a zero probability given the previous interactions.");
+        }
+        this.next = this.alpha;
+        this.alpha = row;
+        this.lnProbability += Math.log(ct);
+        this.length++;
+        return this.lnProbability;
+    }
+
+    @Override
+    public double getLnProbability() {
+        return this.lnProbability;
+    }
+
+    @Override
+    public long getLength() {
+        return this.length;
+    }
+
+    @Override
+    public double getProbability(int i) {
+        this.checkStarted();
+        return this.alpha[i];
+    }
+
+    @Override
+    public double[] getDistribution() {
+        this.checkStarted();
+        return this.alpha.clone();
+    }
+
+    @Override
+    public int nbStates() {
+        return this.alpha.length;
+    }
+
+    @Override
+    public void reset() {
+        this.lnProbability = 0.0d;
+        this.length = 0x00;
+    }
+
+    @Override
+    public ForwardFilterState snapshot() {
+        return new ForwardFilterState(this.alpha, this.lnProbability, this.length);
+    }
+
+    @Override
+    public void restore(ForwardFilterState state) {
+        if (state.nbStates() != this.alpha.length) {
+            throw new IllegalArgumentException("The state has a different number of states.");
+        }
+        state.copyDistribution(this.alpha);
+        this.lnProbability = state.getLnProbability();
+        this.length = state.getLength();
+    }
+
+    private void checkStarted() {
+        if (this.length == 0x00) {
+            throw new IllegalStateException("No interactions were pushed to the filter.");
+        }
+    }
+
+}
@@ -0,0 +1,69 @@
+package jahmm.calculators;
+
+import java.io.Serializable;
+
+/**
+ * An immutable snapshot of the state of a {@link ForwardFilter ForwardFilter}:
+ * the filtered distribution, the cumulative log-likelihood and the number of
+ * pushed interactions.
+ *
+ * @author kommusoft
+ */
+public final class ForwardFilterState implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final double[] distribution;
+    private final double lnProbability;
+    private final long length;
+
+    ForwardFilterState(double[] distribution, double lnProbability, long length) {
+        this.distribution = distribution.clone();
+        this.lnProbability = lnProbability;
+        this.length = length;
+    }
+
+    /**
+     * Gets the filtered distribution at the time of the snapshot.
+     *
+     * @return A copy of the filtered distribution.
+     */
+    public double[] getDistribution() {
+        return this.distribution.clone();
+    }
+
+    /**
+     * Gets the cumulative log-likelihood at the time of the snapshot.
+     *
+     * @return The cumulative log-likelihood.
+     */
+    public double getLnProbability() {
+        return this.lnProbability;
+    }
+
+    /**
+     * Gets the number of pushed interactions at the time of the snapshot.
+     *
+     * @return The number of pushed interactions.
+     */
+    public long getLength() {
+        return this.length;
+    }
+
+    /**
+     * Returns the number of states of the filtered model.
+     *
+     * @return The number of states.
+     */
+    int nbStates() {
+        return this.distribution.length;
+    }
+
+    /**
+     * Copies the distribution into the given array.
+     */
+    void copyDistribution(double[] target) {
+        System.arraycopy(this.distribution, 0x00, target, 0x00, this.distribution.length);
+    }
+
+}
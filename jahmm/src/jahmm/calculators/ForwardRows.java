@@ -0,0 +1,82 @@
+package jahmm.calculators;
+
+/**
+ * The working rows of a likelihood-only forward pass. Only the alpha values of
+ * the previous and the current time step are kept, thus the memory usage is
+ * linear in the number of states and independent of the length of the
+ * sequence.
+ * <p>
+ * The rows are cached per thread and reused as long as the number of states
+ * does not change, such that repeated calls do not allocate.
+ *
+ * @author kommusoft
+ */
+final class ForwardRows {
+
+    private static final ThreadLocal<ForwardRows> LOCAL = new ThreadLocal<>();
+
+    /**
+     * Gets the forward rows of the current thread for a model with the given
+     * number of states.
+     *
+     * @param nbStates The number of states of the model.
+     * @return The forward rows of the current thread. The length of every row
+     * is equal to <code>nbStates</code>.
+     */
+    static ForwardRows get(int nbStates) {
+        ForwardRows rows = LOCAL.get();
+        if (rows == null || rows.previous.length != nbStates) {
+            rows = new ForwardRows(nbStates);
+            LOCAL.set(rows);
+        }
+        return rows;
+    }
+
+    private double[] previous;
+    private double[] current;
+    private final double[] emission;
+
+    private ForwardRows(int nbStates) {
+        this.previous = new double[nbStates];
+        this.current = new double[nbStates];
+        this.emission = new double[nbStates];
+    }
+
+    /**
+     * Gets the alpha values of the previous time step.
+     *
+     * @return The alpha values of the previous time step.
+     */
+    double[] getPrevious() {
+        return this.previous;
+    }
+
+    /**
+     * Gets the row to store the alpha values of the current time step in.
+     *
+     * @return The row of the current time step.
+     */
+    double[] getCurrent() {
+        return this.current;
+    }
+
+    /**
+     * Gets the row to store the emission probabilities of the current
+     * observation in.
+     *
+     * @return The emission row.
+     */
+    double[] getEmission() {
+        return this.emission;
+    }
+
+    /**
+     * Advances one time step: the current row becomes the previous row.
+     */
+    void swap() {
+        double[] tmp = this.previous;
+        this.previous = this.current;
+        this.current = tmp;
+    }
+
+}
@@ -26,6 +26,67 @@ public class InputForwardBackwardCalculatorBase<TObs extends Observation, TInt,
     protected InputForwardBackwardCalculatorBase() {
     }
 
+    /**
+     * Computes the emission matrix of the given sequence. The opdf used for an
+     * observation depends on the state and on the input that accompanies the
+     * observation.
+     *
+     * @param hmm The given Hidden Markov Model.
+     * @param oseq The given sequence of interactions.
+     * @return The emission matrix: <code>emissions[t][i]</code> is the
+     * probability of the <code>t</code>-th observation in state <code>i</code>.
+     */
+    @Override
+    public double[][] computeEmissions(THmm hmm, Collection<? extends InputObservationTuple<TInt, TObs>> oseq) {
+        return computeEmissions(hmm, oseq, computeInputIndices(hmm, oseq));
+    }
+
+    /**
+     * Computes the emission matrix of the given sequence with the inputs
+     * already resolved to their indices.
+     *
+     * @param hmm The given Hidden Markov Model.
+     * @param oseq The given sequence of interactions.
+     * @param inputs The indices of the inputs of the sequence, see
+     * {@link #computeInputIndices computeInputIndices}.
+     * @return The emission matrix: <code>emissions[t][i]</code> is the
+     * probability of the <code>t</code>-th observation in state <code>i</code>.
+     */
+    public double[][] computeEmissions(THmm hmm, Collection<? extends InputObservationTuple<TInt, TObs>> oseq, int[] inputs) {
+        int s = hmm.nbStates();
+        double[][] emissions = new double[oseq.size()][s];
+        int t = 0x00;
+        for (InputObservationTuple<TInt, TObs> observation : oseq) {
+            double[] row = emissions[t];
+            int k = inputs[t];
+            TObs obs = observation.getObservation();
+            for (int i = 0x00; i < s; i++) {
+                row[i] = hmm.getOpdf(i, k).probability(obs);
+            }
+            t++;
+        }
+        return emissions;
+    }
+
+    /**
+     * Resolves the inputs of the given sequence to their indices in the given
+     * Hidden Markov Model. Every input is looked up exactly once, such that the
+     * recursions can address the transition tensor and the opdfs by index.
+     *
+     * @param hmm The given Hidden Markov Model.
+     * @param oseq The given sequence of interactions.
+     * @return An array where the <code>t</code>-th element is the index of the
+     * input of the <code>t</code>-th interaction.
+     */
+    public int[] computeInputIndices(THmm hmm, Collection<? extends InputObservationTuple<TInt, TObs>> oseq) {
+        int[] inputs = new int[oseq.size()];
+        int t = 0x00;
+        for (InputObservationTuple<TInt, TObs> observation : oseq) {
+            inputs[t++] = hmm.getInputIndex(observation.getInput());
+        }
+        return inputs;
+    }
+
     @Override
     public double[][] computeAlpha(THmm hmm, Collection<? extends InputObservationTuple<TInt, TObs>> oseq) {//TODO: mod?
         int T = oseq.size();
@@ -33,24 +94,27 @@ public class InputForwardBackwardCalculatorBase<TObs extends Observation, TInt,
         double[][] alpha = new double[T][s];
         T--;
 
+        int[] inputs = computeInputIndices(hmm, oseq);
         Iterator<? extends InputObservationTuple<TInt, TObs>> seqIterator = oseq.iterator();
         InputObservationTuple<TInt, TObs> observation;
         if (seqIterator.hasNext()) {
             observation = seqIterator.next();
+            int k = inputs[0x00];
 
             for (int i = 0; i < hmm.nbStates(); i++) {
-                alpha[0][i] = hmm.getPi(i) * hmm.getOpdf(i, observation.getInput()).probability(observation.getObservation());
+                alpha[0][i] = hmm.getPi(i) * hmm.getOpdf(i, k).probability(observation.getObservation());
             }
 
             for (int t = 0; t < T; t++) {
                 observation = seqIterator.next();
+                k = inputs[t + 0x01];
 
                 for (int j = 0; j < s; j++) {
                     double sum = 0.;
                     for (int i = 0; i < s; i++) {
-                        sum += alpha[t][i] * hmm.getAixj(i, observation.getItem1(), j);
+                        sum += alpha[t][i] * hmm.getAixj(i, k, j);
                     }
-                    alpha[t + 0x01][j] = sum * hmm.getOpdf(j, observation.getInput()).probability(observation.getObservation());
+                    alpha[t + 0x01][j] = sum * hmm.getOpdf(j, k).probability(observation.getObservation());
                 }
             }
         }
@@ -69,12 +133,18 @@ public class InputForwardBackwardCalculatorBase<TObs extends Observation, TInt,
             beta[t][i] = 1.0d;
         }
 
+        int[] inputs = computeInputIndices(hmm, oseq);
+        double[] bt = new double[s];
         for (; t > 0;) {
+            observation = oseq.get(t);
+            int k = inputs[t];
+            for (int j = 0; j < s; j++) {
+                bt[j] = hmm.getOpdf(j, k).probability(observation.getObservation());
+            }
             for (int i = 0; i < s; i++) {
-                observation = oseq.get(t);
                 double sum = 0.0d;
                 for (int j = 0; j < s; j++) {
-                    sum += beta[t][j] * hmm.getAixj(i, observation.getItem1(), j) * hmm.getOpdf(j, observation.getInput()).probability(observation.getObservation());
+                    sum += beta[t][j] * hmm.getAixj(i, k, j) * bt[j];
                 }
                 beta[t - 0x01][i] = sum;
             }
@@ -96,8 +166,9 @@ public class InputForwardBackwardCalculatorBase<TObs extends Observation, TInt,
         } else {
             tmp = beta[0x00];
             InputObservationTuple<TInt, TObs> observation = oseq.get(0x00);
+            int k = hmm.getInputIndex(observation.getInput());
             for (int i = 0; i < n; i++) {
-                probability += hmm.getPi(i) * hmm.getOpdf(i, observation.getInput()).probability(observation.getObservation()) * tmp[i];
+                probability += hmm.getPi(i) * hmm.getOpdf(i, k).probability(observation.getObservation()) * tmp[i];
             }
         }
         return probability;
@@ -9,7 +9,6 @@ import java.util.List;
 import java.util.logging.Logger;
 import jutils.probability.ProbabilityUtils;
 import jutlis.tuples.Tuple3;
-import jutlis.tuples.Tuple3Base;
 
 public final class InputForwardBackwardScaledCalculatorBase<TObs extends Observation, TInt, THmm extends InputHmm<TObs,TInt,THmm>> extends InputForwardBackwardCalculatorBase<TObs, TInt,THmm> {
 
@@ -20,7 +19,7 @@ public final class InputForwardBackwardScaledCalculatorBase<TObs extends Observa
     private InputForwardBackwardScaledCalculatorBase() {
     }
 
-    private double computeProbability(double[] ctFactors) {
+    private double computeLnProbability(double[] ctFactors) {
         double lnProbability = 0.;
         int T = ctFactors.length;
 
@@ -28,19 +27,77 @@ public final class InputForwardBackwardScaledCalculatorBase<TObs extends Observa
             lnProbability += Math.log(ctFactors[t]);
         }
 
-        return Math.exp(lnProbability);
+        return lnProbability;
+    }
+
+    private double computeProbability(double[] ctFactors) {
+        return Math.exp(computeLnProbability(ctFactors));
+    }
+
+    private double computeLnProbabilityRolling(THmm hmm, Collection<? extends InputObservationTuple<TInt, TObs>> oseq) {
+        int s = hmm.nbStates();
+        ForwardRows rows = ForwardRows.get(s);
+        Iterator<? extends InputObservationTuple<TInt, TObs>> seqIterator = oseq.iterator();
+        InputObservationTuple<TInt, TObs> observation = seqIterator.next();
+        int k = hmm.getInputIndex(observation.getInput());
+        double[] previous = rows.getPrevious();
+        for (int i = 0x00; i < s; i++) {
+            previous[i] = hmm.getPi(i) * hmm.getOpdf(i, k).probability(observation.getObservation());
+        }
+        double lnProbability = Math.log(ProbabilityUtils.scale(previous));
+        double[] at = hmm.transposedA();
+        while (seqIterator.hasNext()) {
+            observation = seqIterator.next();
+            k = hmm.getInputIndex(observation.getInput());
+            double[] current = rows.getCurrent();
+            int offset = k * s * s;
+            for (int i = 0x00; i < s; i++) {
+                double sum = 0.0d;
+                for (int j = 0x00; j < s; j++) {
+                    sum += previous[j] * at[offset + j];
+                }
+                current[i] = sum * hmm.getOpdf(i, k).probability(observation.getObservation());
+                offset += s;
+            }
+            lnProbability += Math.log(ProbabilityUtils.scale(current));
+            rows.swap();
+            previous = current;
+        }
+        return lnProbability;
+    }
+
+    /**
+     * Computes the natural logarithm of the probability of occurrence of an
+     * observation sequence given a Hidden Markov Model. The logarithm is
+     * obtained directly from the scaling factors of the alpha values, thus the
+     * result does not underflow for long sequences. Only two rows of alpha
+     * values are kept in memory.
+     *
+     * @param hmm A Hidden Markov Model;
+     * @param oseq A non-empty observations sequence.
+     * @return The natural logarithm of the probability of the given sequence
+     * of observations.
+     */
+    @Override
+    public double computeLnProbability(THmm hmm, List<? extends InputObservationTuple<TInt, TObs>> oseq) {
+        if (oseq.isEmpty()) {
+            throw new IllegalArgumentException();
+        }
+        return computeLnProbabilityRolling(hmm, oseq);
     }
 
     /**
      * Computes the probability of occurrence of an observation sequence given a
      * Hidden Markov Model. The algorithms implemented use scaling to avoid
-     * underflows.
+     * underflows. The probability is computed by a forward pass that only
+     * keeps two rows of alpha values, thus the memory usage does not depend on
+     * the length of the sequence.
      *
      * @param hmm A Hidden Markov Model;
      * @param oseq An observations sequence.
      * @param flags How the computation should be done. See the
-     * {@link ForwardBackwardCalculator.ComputationType}. The alpha array is
-     * always computed.
+     * {@link ForwardBackwardCalculator.ComputationType}. The beta values do not
+     * alter the probability and are thus never computed.
      * @return The probability of the given sequence of observations.
      */
     @Override
@@ -48,19 +105,7 @@ public final class InputForwardBackwardScaledCalculatorBase<TObs extends Observa
         if (oseq.isEmpty()) {
             throw new IllegalArgumentException();
         }
-
-        int t = oseq.size();
-
-        double[] ctFactors = new double[t];
-        double[][] alpha = null, beta = null;
-
-        alpha = computeAlpha(hmm, oseq, ctFactors);
-
-        if (flags.contains(ComputationType.BETA)) {
-            beta = computeBeta(hmm, oseq, ctFactors);
-        }
-
-        return computeProbability(ctFactors);
+        return Math.exp(computeLnProbabilityRolling(hmm, oseq));
     }
 
     /* Computes the content of the scaled alpha array */
@@ -73,29 +118,47 @@ public final class InputForwardBackwardScaledCalculatorBase<TObs extends Observa
      * @return
      */
     public double[][] computeAlpha(THmm hmm, Collection<? extends InputObservationTuple<TInt, TObs>> oseq, double... ctFactors) {
+        int[] inputs = computeInputIndices(hmm, oseq);
+        return computeAlpha(hmm, inputs, computeEmissions(hmm, oseq, inputs), ctFactors);
+    }
+
+    /**
+     * Computes the content of the scaled alpha array based on a precomputed
+     * emission matrix. The inputs that drive the transitions are given by
+     * their indices, thus no input needs to be looked up.
+     *
+     * @param hmm The given Hidden Markov Model.
+     * @param inputs The indices of the inputs of the sequence, see
+     * {@link #computeInputIndices computeInputIndices}.
+     * @param emissions The emission matrix of the sequence, see
+     * {@link #computeEmissions(jahmm.InputHmm, java.util.Collection, int[]) computeEmissions}.
+     * @param ctFactors The array to store the scaling factors in.
+     * @return The scaled alpha array.
+     */
+    public double[][] computeAlpha(THmm hmm, int[] inputs, double[][] emissions, double... ctFactors) {
         int T = ctFactors.length;
         int s = hmm.nbStates();
-        Iterator<? extends InputObservationTuple<TInt, TObs>> seqIterator = oseq.iterator();
         double[][] alpha = new double[T][s];
-        if (seqIterator.hasNext()) {
-
-            InputObservationTuple<TInt, TObs> observation = seqIterator.next();
-
+        if (T > 0x00) {
             for (int i = 0x00; i < s; i++) {
-                alpha[0x00][i] = hmm.getPi(i) * hmm.getOpdf(i, observation.getInput()).probability(observation.getObservation());
+                alpha[0x00][i] = hmm.getPi(i) * emissions[0x00][i];
             }
 
             ctFactors[0x00] = ProbabilityUtils.scale(alpha[0x00]);
+            double[] at = hmm.transposedA();
 
             for (int t = 1; t < T; t++) {
-                observation = seqIterator.next();
+                int offset = inputs[t] * s * s;
+                double[] bt = emissions[t];
+                double[] prev = alpha[t - 1];
 
                 for (int i = 0; i < s; i++) {
                     double sum = 0.0d;
                     for (int j = 0; j < s; j++) {
-                        sum += alpha[t - 1][j] * hmm.getAixj(j, observation.getItem1(), i);
+                        sum += prev[j] * at[offset + j];
                     }
-                    alpha[t][i] = sum * hmm.getOpdf(i, observation.getInput()).probability(observation.getObservation());
+                    alpha[t][i] = sum * bt[i];
+                    offset += s;
                 }
                 ctFactors[t] = ProbabilityUtils.scale(alpha[t]);
             }
@@ -106,6 +169,24 @@ public final class InputForwardBackwardScaledCalculatorBase<TObs extends Observa
     /* Computes the content of the scaled beta array.  The scaling factors are
      those computed for alpha. */
     public double[][] computeBeta(THmm hmm, List<? extends InputObservationTuple<TInt, TObs>> oseq, double... ctFactors) {
+        int[] inputs = computeInputIndices(hmm, oseq);
+        return computeBeta(hmm, inputs, computeEmissions(hmm, oseq, inputs), ctFactors);
+    }
+
+    /**
+     * Computes the content of the scaled beta array based on a precomputed
+     * emission matrix. The scaling factors are those computed for alpha. The
+     * inputs that drive the transitions are given by their indices.
+     *
+     * @param hmm The given Hidden Markov Model.
+     * @param inputs The indices of the inputs of the sequence, see
+     * {@link #computeInputIndices computeInputIndices}.
+     * @param emissions The emission matrix of the sequence, see
+     * {@link #computeEmissions(jahmm.InputHmm, java.util.Collection, int[]) computeEmissions}.
+     * @param ctFactors The scaling factors computed together with alpha.
+     * @return The scaled beta array.
+     */
+    public double[][] computeBeta(THmm hmm, int[] inputs, double[][] emissions, double... ctFactors) {
         int T = ctFactors.length;
         int s = hmm.nbStates();
         double[][] beta = new double[T][s];
@@ -113,15 +194,24 @@ public final class InputForwardBackwardScaledCalculatorBase<TObs extends Observa
             beta[T - 1][i] = 1.0d / ctFactors[T - 1];
         }
 
+        double[] at = hmm.transposedA();
         for (int t = T - 2; t >= 0; t--) {
-            InputObservationTuple<TInt, TObs> observation = oseq.get(t + 1);
-            for (int i = 0; i < s; i++) {
-                double sum = 0.;
-                for (int j = 0; j < s; j++) {
-                    sum += beta[t + 1][j] * hmm.getAixj(i, observation.getItem1(), j) * hmm.getOpdf(j, observation.getInput()).probability(observation.getObservation());
+            int offset = inputs[t + 1] * s * s;
+            double[] bt = emissions[t + 1];
+            double[] next = beta[t + 1];
+            double[] bc = beta[t];
+            /* the transposed tensor is traversed row by row: every target
+             state j adds its weighted contribution to all source states i */
+            for (int j = 0; j < s; j++) {
+                double w = next[j] * bt[j];
+                for (int i = 0; i < s; i++) {
+                    bc[i] += w * at[offset + i];
                 }
-                beta[t][i] = sum;
-                beta[t][i] /= ctFactors[t];
+                offset += s;
+            }
+            double cinv = 1.0d / ctFactors[t];
+            for (int i = 0; i < s; i++) {
+                bc[i] *= cinv;
             }
         }
         return beta;
@@ -134,10 +224,12 @@ public final class InputForwardBackwardScaledCalculatorBase<TObs extends Observa
         }
         int t = oseq.size();
         double[] ctFactors = new double[t];
-        double[][] alpha = computeAlpha(hmm, oseq, ctFactors);
-        double[][] beta = computeBeta(hmm, oseq, ctFactors);
+        int[] inputs = computeInputIndices(hmm, oseq);
+        double[][] emissions = computeEmissions(hmm, oseq, inputs);
+        double[][] alpha = computeAlpha(hmm, inputs, emissions, ctFactors);
+        double[][] beta = computeBeta(hmm, inputs, emissions, ctFactors);
         double probability = computeProbability(ctFactors);
-        return new Tuple3Base<>(alpha, beta, probability);
+        return new ForwardBackwardResult(alpha, beta, probability, emissions, ctFactors);
     }
 
 }
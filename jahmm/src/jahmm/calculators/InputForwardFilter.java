@@ -0,0 +1,99 @@
+package jahmm.calculators;
+
+import jahmm.InputHmm;
+import jahmm.observables.InputObservationTuple;
+import jahmm.observables.Observation;
+import jahmm.observables.Opdf;
+import jahmm.observables.OpdfBase;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * A forward filter for input Hidden Markov Models. Both the transition into
+ * the state of a time step and the emission of that time step depend on the
+ * input of that time step.
+ * <p>
+ * The transitions, the initial distribution and the observation probability
+ * functions are copied when the filter is created (the functions are
+ * {@link OpdfBase#clone(Opdf, Map) cloned} together, such that shared parts
+ * remain shared among the copies); the model is only consulted
+ * afterwards to map inputs on their index. Inputs registered after the filter
+ * was created are thus not supported.
+ *
+ * @author kommusoft
+ * @param <TObs> The type of observations of the Hidden Markov Model.
+ * @param <TIn> The type of inputs of the Hidden Markov Model.
+ */
+public final class InputForwardFilter<TObs extends Observation, TIn> extends ForwardFilterBase<InputObservationTuple<TIn, TObs>> {
+
+    private final InputHmm<TObs, TIn, ?> hmm;
+    private final int nbStates;
+    private final double[] pi;
+    private final double[] at;
+    private final Opdf<TObs>[] opdfs;
+
+    /**
+     * Creates a new filter for the given input Hidden Markov Model.
+     *
+     * @param hmm The input Hidden Markov Model to filter with.
+     */
+    public InputForwardFilter(InputHmm<TObs, TIn, ?> hmm) {
+        super(hmm.nbStates());
+        int n = hmm.nbStates(), m = hmm.nbSymbols();
+        this.hmm = hmm;
+        this.nbStates = n;
+        this.pi = new double[n];
+        for (int i = 0x00; i < n; i++) {
+            this.pi[i] = hmm.getPi(i);
+        }
+        this.at = hmm.transposedA().clone();
+        this.opdfs = OpdfBase.newArray(Opdf.class, m * n);
+        Map<Object, Object> shared = new IdentityHashMap<>();
+        try {
+            for (int k = 0x00, kj = 0x00; k < m; k++) {
+                for (int j = 0x00; j < n; j++, kj++) {
+                    this.opdfs[kj] = OpdfBase.clone(hmm.getOpdf(j, k), shared);
+                }
+            }
+        } catch (CloneNotSupportedException e) {
+            throw new InternalError();
+        }
+    }
+
+    /**
+     * Pushes the next input and observation.
+     *
+     * @param input The input of the next time step.
+     * @param observation The observation of the next time step.
+     * @return The natural logarithm of the probability of all interactions
+     * pushed so far.
+     */
+    public double push(TIn input, TObs observation) {
+        return this.push(new InputObservationTuple<>(input, observation));
+    }
+
+    @Override
+    protected void start(InputObservationTuple<TIn, TObs> interaction, double[] alpha) {
+        int n = this.nbStates;
+        int offset = this.hmm.getInputIndex(interaction.getInput()) * n;
+        TObs o = interaction.getObservation();
+        for (int i = 0x00; i < n; i++) {
+            alpha[i] = this.pi[i] * this.opdfs[offset + i].probability(o);
+        }
+    }
+
+    @Override
+    protected void step(InputObservationTuple<TIn, TObs> interaction, double[] prev, double[] next) {
+        int n = this.nbStates;
+        int k = this.hmm.getInputIndex(interaction.getInput());
+        TObs o = interaction.getObservation();
+        for (int j = 0x00, kj = k * n, row = kj * n; j < n; j++, kj++) {
+            double sum = 0.0d;
+            for (int i = 0x00; i < n; i++, row++) {
+                sum += prev[i] * this.at[row];
+            }
+            next[j] = sum * this.opdfs[kj].probability(o);
+        }
+    }
+
+}
@@ -0,0 +1,247 @@
+package jahmm.calculators;
+
+import jahmm.InputHmm;
+import jahmm.observables.InputObservationTuple;
+import jahmm.observables.Observation;
+import jahmm.observables.Opdf;
+import jahmm.observables.OpdfBase;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import jutlis.tuples.Tuple2;
+import jutlis.tuples.Tuple2Base;
+
+/**
+ * A log-space Viterbi decoder for Input Hidden Markov Models. The transition
+ * from time step <code>t-1</code> to <code>t</code> is taken from the
+ * <code>a[i][k][j]</code> tensor with <code>k</code> the input that accompanies
+ * the observation at time step <code>t</code>, and the observation at time
+ * step <code>t</code> is emitted by the opdf of state <code>j</code> and input
+ * <code>k</code>; this is the same convention as the one of the
+ * {@link InputForwardBackwardCalculatorBase InputForwardBackwardCalculatorBase}.
+ * <p>
+ * The logarithms of the initial and transition probabilities are computed once
+ * when the decoder is created, and the inputs of a sequence are resolved to
+ * their indices once per sequence. When only the score of the most likely
+ * state sequence is needed, {@link #lnProbability lnProbability} only keeps
+ * two rows of delta values.
+ * <p>
+ * The decoder is a snapshot: modifications made to the Hidden Markov Model
+ * after the creation of the decoder (including splitting or merging inputs)
+ * are not reflected; inputs registered afterwards are rejected.
+ *
+ * @author kommusoft
+ * @param <TObs> The type of observations of the Hidden Markov Model.
+ * @param <TIn> The type of inputs of the Hidden Markov Model.
+ */
+public final class InputViterbiCalculatorBase<TObs extends Observation, TIn> {
+
+    /**
+     * The index of every input registered when the decoder was created.
+     */
+    private final Map<TIn, Integer> inputIndices;
+    private final int nbStates;
+    private final double[] lnPi;
+    /**
+     * The logarithms of the transposed transition tensor:
+     * <code>lnAt[(k*n+j)*n+i]</code> is the logarithm of the probability of
+     * going from state <code>i</code> to state <code>j</code> under input
+     * <code>k</code>.
+     */
+    private final double[] lnAt;
+    /**
+     * The opdfs: <code>opdfs[k*n+j]</code> is the opdf of state
+     * <code>j</code> under input <code>k</code>.
+     */
+    private final Opdf<TObs>[] opdfs;
+
+    /**
+     * Creates a decoder for the given Input Hidden Markov Model.
+     *
+     * @param hmm The Input Hidden Markov Model to decode with.
+     */
+    public InputViterbiCalculatorBase(InputHmm<TObs, TIn, ?> hmm) {
+        int n = hmm.nbStates();
+        int m = hmm.nbSymbols();
+        this.inputIndices = new HashMap<>();
+        for (TIn input : hmm.getRegisteredInputs()) {
+            this.inputIndices.put(input, hmm.getInputIndex(input));
+        }
+        this.nbStates = n;
+        this.lnPi = new double[n];
+        this.lnAt = new double[m * n * n];
+        this.opdfs = OpdfBase.newArray(Opdf.class, m * n);
+        for (int i = 0x00; i < n; i++) {
+            this.lnPi[i] = Math.log(hmm.getPi(i));
+            for (int k = 0x00; k < m; k++) {
+                for (int j = 0x00; j < n; j++) {
+                    this.lnAt[(k * n + j) * n + i] = Math.log(hmm.getAixj(i, k, j));
+                }
+                this.opdfs[k * n + i] = hmm.getOpdf(i, k);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of states of the decoded model.
+     *
+     * @return The number of states of the decoded model.
+     */
+    public int nbStates() {
+        return this.nbStates;
+    }
+
+    /**
+     * Computes the most likely state sequence matching a sequence of
+     * interactions.
+     *
+     * @param oseq A non-empty sequence of interactions.
+     * @return A tuple containing the most likely state sequence and the
+     * natural logarithm of the probability of the observations along that
+     * state sequence.
+     */
+    public Tuple2<int[], Double> computeStateSequence(List<? extends InputObservationTuple<TIn, TObs>> oseq) {
+        int T = checkLength(oseq);
+        int n = this.nbStates;
+        int[] inputs = this.inputIndices(oseq);
+        int[][] psy = new int[T][n];
+        double[] previous = new double[n];
+        double[] current = new double[n];
+        int t = 0x00;
+        for (InputObservationTuple<TIn, TObs> ot : oseq) {
+            if (t == 0x00) {
+                this.start(ot.getObservation(), inputs[t], previous);
+            } else {
+                this.step(ot.getObservation(), inputs[t], previous, current, psy[t]);
+                double[] tmp = previous;
+                previous = current;
+                current = tmp;
+            }
+            t++;
+        }
+        double lnProbability = Double.NEGATIVE_INFINITY;
+        int[] stateSequence = new int[T];
+        for (int i = 0x00; i < n; i++) {
+            if (previous[i] > lnProbability) {
+                lnProbability = previous[i];
+                stateSequence[T - 1] = i;
+            }
+        }
+        for (t = T - 2; t >= 0x00; t--) {
+            stateSequence[t] = psy[t + 1][stateSequence[t + 1]];
+        }
+        return new Tuple2Base<>(stateSequence, lnProbability);
+    }
+
+    /**
+     * Computes the most likely state sequence matching a sequence of
+     * interactions.
+     *
+     * @param oseq A non-empty sequence of interactions.
+     * @return An array containing the most likely sequence of state numbers.
+     */
+    public int[] stateSequence(List<? extends InputObservationTuple<TIn, TObs>> oseq) {
+        return this.computeStateSequence(oseq).getItem1();
+    }
+
+    /**
+     * Computes the natural logarithm of the probability of the observations
+     * along the most likely state sequence, without storing the back-pointers.
+     * The memory usage is linear in the number of states and independent of
+     * the length of the sequence.
+     *
+     * @param oseq A non-empty sequence of interactions.
+     * @return The natural logarithm of the probability of the observations
+     * along the most likely state sequence.
+     */
+    public double lnProbability(List<? extends InputObservationTuple<TIn, TObs>> oseq) {
+        checkLength(oseq);
+        int n = this.nbStates;
+        double[] previous = new double[n];
+        double[] current = new double[n];
+        boolean first = true;
+        for (InputObservationTuple<TIn, TObs> ot : oseq) {
+            int k = this.inputIndex(ot.getInput());
+            if (first) {
+                this.start(ot.getObservation(), k, previous);
+                first = false;
+            } else {
+                this.step(ot.getObservation(), k, previous, current, null);
+                double[] tmp = previous;
+                previous = current;
+                current = tmp;
+            }
+        }
+        double lnProbability = Double.NEGATIVE_INFINITY;
+        for (int i = 0x00; i < n; i++) {
+            lnProbability = Math.max(lnProbability, previous[i]);
+        }
+        return lnProbability;
+    }
+
+    private static int checkLength(List<?> oseq) {
+        if (oseq.isEmpty()) {
+            throw new IllegalArgumentException("Invalid empty sequence");
+        }
+        return oseq.size();
+    }
+
+    /**
+     * Resolves the inputs of the given sequence to their indices.
+     */
+    private int[] inputIndices(List<? extends InputObservationTuple<TIn, TObs>> oseq) {
+        int[] inputs = new int[oseq.size()];
+        int t = 0x00;
+        for (InputObservationTuple<TIn, TObs> ot : oseq) {
+            inputs[t++] = this.inputIndex(ot.getInput());
+        }
+        return inputs;
+    }
+
+    private int inputIndex(TIn input) {
+        Integer k = this.inputIndices.get(input);
+        if (k == null) {
+            throw new IllegalArgumentException("Unknown input");
+        }
+        return k;
+    }
+
+    /**
+     * Computes the delta values of the first time step.
+     */
+    private void start(TObs o, int k, double[] delta) {
+        int n = this.nbStates;
+        int offset = k * n;
+        for (int j = 0x00; j < n; j++) {
+            delta[j] = this.lnPi[j] + this.opdfs[offset + j].lnProbability(o);
+        }
+    }
+
+    /**
+     * Computes the delta values (and, if <code>psy</code> is not
+     * <code>null</code>, the back-pointers) of a time step given the delta
+     * values of the previous time step.
+     */
+    private void step(TObs o, int k, double[] previous, double[] current, int[] psy) {
+        int n = this.nbStates;
+        double[] lat = this.lnAt;
+        int koffset = k * n;
+        for (int j = 0x00; j < n; j++) {
+            int offset = (koffset + j) * n;
+            double max = Double.NEGATIVE_INFINITY;
+            int argmax = 0x00;
+            for (int i = 0x00; i < n; i++) {
+                double value = previous[i] + lat[offset + i];
+                if (value > max) {
+                    max = value;
+                    argmax = i;
+                }
+            }
+            current[j] = max + this.opdfs[koffset + j].lnProbability(o);
+            if (psy != null) {
+                psy[j] = argmax;
+            }
+        }
+    }
+
+}
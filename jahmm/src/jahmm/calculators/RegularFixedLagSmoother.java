@@ -0,0 +1,194 @@
+package jahmm.calculators;
+
+import jahmm.RegularHmm;
+import jahmm.observables.Observation;
+import jutils.probability.ProbabilityUtils;
+
+/**
+ * A fixed-lag smoother for regular Hidden Markov Models: observations are
+ * pushed one at a time and, once more than <code>L</code> observations are
+ * pushed, every push produces the smoothed distribution
+ * <code>P(q_{t-L} | o_0..o_t)</code> of the state <code>L</code> time steps
+ * ago given all observations pushed so far.
+ * <p>
+ * The smoother keeps the scaled alpha values and the emission probabilities
+ * of the last <code>L+1</code> time steps in a ring buffer and runs the
+ * scaled backward recursion over that window on every push, thus a push
+ * costs <code>O(L*N*N)</code> and the memory usage is
+ * <code>O(L*N)</code>, independent of the number of pushed observations. The
+ * recursions are run on a {@link CompiledRegularHmm CompiledRegularHmm}, the
+ * smoother is thus a snapshot of the Hidden Markov Model.
+ *
+ * @author kommusoft
+ * @param <TObs> The type of observations of the Hidden Markov Model.
+ */
+public final class RegularFixedLagSmoother<TObs extends Observation> {
+
+    private final CompiledRegularHmm<TObs> chmm;
+    private final int nbStates;
+    private final int lag;
+    private final double[][] alphas;
+    private final double[][] emissions;
+    private double[] next;
+    private double[] beta;
+    private double[] previous;
+    private final double[] weighted;
+    private double lnProbability;
+    private long length;
+
+    /**
+     * Creates a new smoother for the given Hidden Markov Model.
+     *
+     * @param hmm The Hidden Markov Model to smooth with.
+     * @param lag The (positive) number of time steps the smoothed
+     * distributions lag behind the last observation.
+     */
+    public RegularFixedLagSmoother(RegularHmm<TObs, ?> hmm, int lag) {
+        this(new CompiledRegularHmm<>(hmm), lag);
+    }
+
+    /**
+     * Creates a new smoother for the given compiled Hidden Markov Model.
+     *
+     * @param chmm The compiled Hidden Markov Model to smooth with.
+     * @param lag The (positive) number of time steps the smoothed
+     * distributions lag behind the last observation.
+     */
+    public RegularFixedLagSmoother(CompiledRegularHmm<TObs> chmm, int lag) {
+        if (lag < 0x00) {
+            throw new IllegalArgumentException("Positive number expected");
+        }
+        int n = chmm.nbStates();
+        this.chmm = chmm;
+        this.nbStates = n;
+        this.lag = lag;
+        this.alphas = new double[lag + 0x01][n];
+        this.emissions = new double[lag + 0x01][n];
+        this.next = new double[n];
+        this.beta = new double[n];
+        this.previous = new double[n];
+        this.weighted = new double[n];
+    }
+
+    /**
+     * Gets the number of time steps the smoothed distributions lag behind the
+     * last observation.
+     *
+     * @return The lag.
+     */
+    public int getLag() {
+        return this.lag;
+    }
+
+    /**
+     * Gets the number of observations pushed so far.
+     *
+     * @return The number of pushed observations.
+     */
+    public long getLength() {
+        return this.length;
+    }
+
+    /**
+     * Gets the natural logarithm of the probability of all observations pushed
+     * so far.
+     *
+     * @return The cumulative log-likelihood.
+     */
+    public double getLnProbability() {
+        return this.lnProbability;
+    }
+
+    /**
+     * Returns the number of states of the smoothed model.
+     *
+     * @return The number of states.
+     */
+    public int nbStates() {
+        return this.nbStates;
+    }
+
+    /**
+     * Pushes the next observation and computes the smoothed distribution of
+     * the state <code>L</code> time steps before that observation.
+     *
+     * @param o The next observation.
+     * @param posterior The array to store the smoothed distribution in.
+     * @return <code>true</code> if the smoothed distribution is computed,
+     * <code>false</code> if at most <code>L</code> observations are pushed,
+     * in which case <code>posterior</code> is left untouched.
+     * @throws IllegalArgumentException If the observation has a zero
+     * probability given the previous observations. The state of the smoother
+     * is left unchanged.
+     */
+    public boolean push(TObs o, double[] posterior) {
+        int slot = (int) (this.length % this.alphas.length);
+        double[] emission = this.emissions[slot];
+        double[] alpha = this.next;
+        this.chmm.emission(o, emission);
+        if (this.length == 0x00) {
+            this.chmm.start(emission, alpha);
+        } else {
+            this.chmm.forward(this.alphas[(int) ((this.length - 0x01) % this.alphas.length)], emission, alpha);
+        }
+        double ct = ProbabilityUtils.scale(alpha);
+        if (!(ct > 0.0d)) {
+            throw new IllegalArgumentException("The observation has a zero probability given the previous observations.");
+        }
+        this.next = this.alphas[slot];
+        this.alphas[slot] = alpha;
+        this.lnProbability += Math.log(ct);
+        this.length++;
+        if (this.length <= this.lag) {
+            return false;
+        }
+        this.smooth(this.lag, posterior);
+        return true;
+    }
+
+    /**
+     * Computes the smoothed distribution of the state <code>delay</code> time
+     * steps before the last observation given all pushed observations. This
+     * method can be used to obtain the distributions of the last
+     * <code>L</code> time steps at the end of a stream.
+     *
+     * @param delay The number of time steps before the last observation, at
+     * most <code>L</code> and less than the number of pushed observations.
+     * @param posterior The array to store the smoothed distribution in.
+     */
+    public void smooth(int delay, double[] posterior) {
+        if (delay < 0x00 || delay > this.lag || delay >= this.length) {
+            throw new IllegalArgumentException("Invalid delay");
+        }
+        int n = this.nbStates;
+        int size = this.alphas.length;
+        double[] b = this.beta;
+        for (int i = 0x00; i < n; i++) {
+            b[i] = 1.0d;
+        }
+        long t = this.length - 0x01;
+        for (int d = 0x00; d < delay; d++, t--) {
+            double[] p = this.previous;
+            this.chmm.backward(b, this.emissions[(int) (t % size)], this.weighted, p);
+            ProbabilityUtils.scale(p);
+            this.previous = b;
+            b = p;
+        }
+        this.beta = b;
+        double[] alpha = this.alphas[(int) (t % size)];
+        for (int i = 0x00; i < n; i++) {
+            posterior[i] = alpha[i] * b[i];
+        }
+        ProbabilityUtils.scale(posterior);
+    }
+
+    /**
+     * Forgets all pushed observations such that the next observation is the
+     * first one of a new sequence.
+     */
+    public void reset() {
+        this.lnProbability = 0.0d;
+        this.length = 0x00;
+    }
+
+}
@@ -6,6 +6,7 @@ package jahmm.calculators;
 
 import jahmm.RegularHmm;
 import jahmm.observables.Observation;
+import jahmm.observables.Opdf;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
@@ -53,6 +54,40 @@ public class RegularForwardBackwardCalculatorBase<TObs extends Observation, THmm
         return probability;
     }
 
+    /**
+     * Computes the emission matrix of the given sequence.
+     *
+     * @param hmm The given Hidden Markov Model.
+     * @param oseq The given sequence of observations.
+     * @return The emission matrix: <code>emissions[t][i]</code> is the
+     * probability of the <code>t</code>-th observation in state <code>i</code>.
+     */
+    @Override
+    public double[][] computeEmissions(THmm hmm, Collection<? extends TObs> oseq) {
+        int s = hmm.nbStates();
+        double[][] emissions = new double[oseq.size()][s];
+        if (oseq instanceof List) {
+            List<? extends TObs> list = (List<? extends TObs>) oseq;
+            double[] column = new double[emissions.length];
+            for (int i = 0x00; i < s; i++) {
+                hmm.getOpdf(i).probabilities(list, column);
+                for (int t = 0x00; t < column.length; t++) {
+                    emissions[t][i] = column[t];
+                }
+            }
+            return emissions;
+        }
+        for (int i = 0x00; i < s; i++) {
+            Opdf<TObs> opdf = hmm.getOpdf(i);
+            int t = 0x00;
+            for (TObs observation : oseq) {
+                emissions[t][i] = opdf.probability(observation);
+                t++;
+            }
+        }
+        return emissions;
+    }
+
     /**
      * Computes the content of the alpha array
      *
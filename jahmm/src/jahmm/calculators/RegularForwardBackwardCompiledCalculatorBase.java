@@ -0,0 +1,360 @@
+package jahmm.calculators;
+
+import jahmm.RegularHmm;
+import jahmm.observables.Observation;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.logging.Logger;
+import jutils.probability.ProbabilityUtils;
+import jutlis.tuples.Tuple3;
+
+/**
+ * A scaled forward-backward calculator that first compiles the Hidden Markov
+ * Model into a {@link CompiledRegularHmm CompiledRegularHmm} and then runs the
+ * recursions as plain array kernels. The inner loops thus no longer call
+ * {@link RegularHmm#getAij(int, int) getAij} or look up the opdf of a state.
+ * <p>
+ * The results are the same as the ones of the
+ * {@link RegularForwardBackwardScaledCalculatorBase RegularForwardBackwardScaledCalculatorBase}:
+ * the scaled alpha and beta arrays are computed by the methods that accept
+ * scaling factors, and the probabilities are computed using scaling.
+ *
+ * @author kommusoft
+ * @param <TObs> The type of observations of the Hidden Markov Model.
+ * @param <THmm> The type of the Hidden Markov Model.
+ */
+public class RegularForwardBackwardCompiledCalculatorBase<TObs extends Observation, THmm extends RegularHmm<TObs, THmm>> extends RegularForwardBackwardCalculatorBase<TObs, THmm> {
+
+    @SuppressWarnings("rawtypes")
+    public static final RegularForwardBackwardCompiledCalculatorBase Instance = new RegularForwardBackwardCompiledCalculatorBase();
+    private static final Logger LOG = Logger.getLogger(RegularForwardBackwardCompiledCalculatorBase.class.getName());
+
+    protected RegularForwardBackwardCompiledCalculatorBase() {
+    }
+
+    private double computeLnProbability(double[] ctFactors) {
+        double lnProbability = 0.;
+        int T = ctFactors.length;
+
+        for (int t = 0; t < T; t++) {
+            lnProbability += Math.log(ctFactors[t]);
+        }
+
+        return lnProbability;
+    }
+
+    private double computeProbability(double[] ctFactors) {
+        return Math.exp(computeLnProbability(ctFactors));
+    }
+
+    private double computeLnProbabilityRolling(THmm hmm, Collection<? extends TObs> oseq) {
+        return computeLnProbability(new CompiledRegularHmm<>(hmm), oseq);
+    }
+
+    /**
+     * Computes the natural logarithm of the probability of occurrence of an
+     * observation sequence given a compiled Hidden Markov Model. Only two rows
+     * of alpha values are kept in memory; the rows are cached per thread, thus
+     * scoring a stream of sequences with the same compiled model does not
+     * allocate arrays.
+     *
+     * @param chmm The compiled Hidden Markov Model.
+     * @param oseq A non-empty observations sequence.
+     * @return The natural logarithm of the probability of the given sequence
+     * of observations.
+     */
+    public double computeLnProbability(CompiledRegularHmm<TObs> chmm, Collection<? extends TObs> oseq) {
+        if (oseq.isEmpty()) {
+            throw new IllegalArgumentException();
+        }
+        ForwardRows rows = ForwardRows.get(chmm.nbStates());
+        double[] emission = rows.getEmission();
+        Iterator<? extends TObs> seqIterator = oseq.iterator();
+        chmm.emission(seqIterator.next(), emission);
+        chmm.start(emission, rows.getPrevious());
+        double lnProbability = Math.log(ProbabilityUtils.scale(rows.getPrevious()));
+        while (seqIterator.hasNext()) {
+            chmm.emission(seqIterator.next(), emission);
+            chmm.forward(rows.getPrevious(), emission, rows.getCurrent());
+            lnProbability += Math.log(ProbabilityUtils.scale(rows.getCurrent()));
+            rows.swap();
+        }
+        return lnProbability;
+    }
+
+    /**
+     * Computes the natural logarithm of the probability of occurrence of an
+     * observation sequence given a Hidden Markov Model. The logarithm is
+     * obtained directly from the scaling factors of the alpha values, thus the
+     * result does not underflow for long sequences. Only two rows of alpha
+     * values are kept in memory.
+     *
+     * @param hmm A Hidden Markov Model;
+     * @param oseq A non-empty observations sequence.
+     * @return The natural logarithm of the probability of the given sequence
+     * of observations.
+     */
+    @Override
+    public double computeLnProbability(THmm hmm, List<? extends TObs> oseq) {
+        if (oseq.isEmpty()) {
+            throw new IllegalArgumentException();
+        }
+        return computeLnProbabilityRolling(hmm, oseq);
+    }
+
+    /**
+     * Computes the probability of occurrence of an observation sequence given a
+     * Hidden Markov Model. The algorithms implemented use scaling to avoid
+     * underflows. The probability is computed by a forward pass that only
+     * keeps two rows of alpha values, thus the memory usage does not depend on
+     * the length of the sequence.
+     *
+     * @param hmm A Hidden Markov Model;
+     * @param oseq An observations sequence.
+     * @param flags How the computation should be done. See the
+     * {@link ComputationType ComputationType}. The beta values do not alter
+     * the probability and are thus never computed.
+     * @return The probability of the given sequence of observations.
+     */
+    @Override
+    public double computeProbability(THmm hmm, Collection<ComputationType> flags, List<? extends TObs> oseq) {
+        if (oseq.isEmpty()) {
+            throw new IllegalArgumentException();
+        }
+        return Math.exp(computeLnProbabilityRolling(hmm, oseq));
+    }
+
+    /**
+     * Computes the emission matrix of the given sequence.
+     *
+     * @param hmm The given Hidden Markov Model.
+     * @param oseq The given sequence of observations.
+     * @return The emission matrix: <code>emissions[t][i]</code> is the
+     * probability of the <code>t</code>-th observation in state <code>i</code>.
+     */
+    @Override
+    public double[][] computeEmissions(THmm hmm, Collection<? extends TObs> oseq) {
+        return new CompiledRegularHmm<>(hmm).emissions(oseq);
+    }
+
+    /**
+     * Computes the content of the (unscaled) alpha array.
+     *
+     * @param hmm The given Hidden Markov Model.
+     * @param oseq The given sequence of observations.
+     * @return alpha[t][i] = P(O(1), O(2),..., O(t+1), i(t+1) = i+1 | hmm).
+     */
+    @Override
+    public double[][] computeAlpha(THmm hmm, Collection<? extends TObs> oseq) {
+        return computeAlpha(new CompiledRegularHmm<>(hmm), oseq, (double[]) null);
+    }
+
+    /**
+     * Computes the content of the (unscaled) beta array.
+     *
+     * @param hmm The given Hidden Markov Model.
+     * @param oseq The given sequence of observations.
+     * @return The beta array.
+     */
+    @Override
+    public double[][] computeBeta(THmm hmm, List<? extends TObs> oseq) {
+        return computeBeta(new CompiledRegularHmm<>(hmm), oseq, (double[]) null);
+    }
+
+    /**
+     * Computes the content of the scaled alpha array.
+     *
+     * @param hmm The given Hidden Markov Model.
+     * @param oseq The given sequence of observations.
+     * @param ctFactors The array to store the scaling factors in. The length of
+     * the array must be equal to the length of the sequence.
+     * @return The scaled alpha array.
+     */
+    public double[][] computeAlpha(THmm hmm, Collection<? extends TObs> oseq, double... ctFactors) {
+        return computeAlpha(new CompiledRegularHmm<>(hmm), oseq, ctFactors);
+    }
+
+    /**
+     * Computes the content of the scaled beta array. The scaling factors are
+     * those computed for alpha.
+     *
+     * @param hmm The given Hidden Markov Model.
+     * @param oseq The given sequence of observations.
+     * @param ctFactors The scaling factors computed together with alpha.
+     * @return The scaled beta array.
+     */
+    public double[][] computeBeta(THmm hmm, List<? extends TObs> oseq, double... ctFactors) {
+        return computeBeta(new CompiledRegularHmm<>(hmm), oseq, ctFactors);
+    }
+
+    /**
+     * Computes the content of the alpha array based on a compiled Hidden
+     * Markov Model.
+     *
+     * @param chmm The compiled Hidden Markov Model.
+     * @param oseq The given sequence of observations.
+     * @param ctFactors The array to store the scaling factors in, or
+     * <code>null</code> if no scaling should be performed.
+     * @return The (scaled) alpha array.
+     */
+    public double[][] computeAlpha(CompiledRegularHmm<TObs> chmm, Collection<? extends TObs> oseq, double... ctFactors) {
+        return computeAlpha(chmm, chmm.emissions(oseq), ctFactors);
+    }
+
+    /**
+     * Computes the content of the beta array based on a compiled Hidden Markov
+     * Model.
+     *
+     * @param chmm The compiled Hidden Markov Model.
+     * @param oseq The given sequence of observations.
+     * @param ctFactors The scaling factors computed together with alpha, or
+     * <code>null</code> if no scaling should be performed.
+     * @return The (scaled) beta array.
+     */
+    public double[][] computeBeta(CompiledRegularHmm<TObs> chmm, List<? extends TObs> oseq, double... ctFactors) {
+        if (oseq.isEmpty()) {
+            throw new IllegalArgumentException("Invalid empty sequence");
+        }
+        return computeBeta(chmm, chmm.emissions(oseq), ctFactors);
+    }
+
+    /**
+     * Computes the content of the alpha array based on a compiled Hidden
+     * Markov Model and a precomputed emission matrix.
+     *
+     * @param chmm The compiled Hidden Markov Model.
+     * @param emissions The emission matrix of the sequence.
+     * @param ctFactors The array to store the scaling factors in, or
+     * <code>null</code> if no scaling should be performed.
+     * @return The (scaled) alpha array.
+     */
+    public double[][] computeAlpha(CompiledRegularHmm<TObs> chmm, double[][] emissions, double... ctFactors) {
+        double[][] alpha = new double[emissions.length][chmm.nbStates()];
+        fillAlpha(chmm, emissions, emissions.length, alpha, ctFactors);
+        return alpha;
+    }
+
+    private static void fillAlpha(CompiledRegularHmm<?> chmm, double[][] emissions, int T, double[][] alpha, double[] ctFactors) {
+        if (T > 0x00) {
+            chmm.start(emissions[0x00], alpha[0x00]);
+            if (ctFactors != null) {
+                ctFactors[0x00] = ProbabilityUtils.scale(alpha[0x00]);
+            }
+            for (int t = 1; t < T; t++) {
+                chmm.forward(alpha[t - 1], emissions[t], alpha[t]);
+                if (ctFactors != null) {
+                    ctFactors[t] = ProbabilityUtils.scale(alpha[t]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes the content of the beta array based on a compiled Hidden Markov
+     * Model and a precomputed emission matrix.
+     *
+     * @param chmm The compiled Hidden Markov Model.
+     * @param emissions The emission matrix of the sequence.
+     * @param ctFactors The scaling factors computed together with alpha, or
+     * <code>null</code> if no scaling should be performed.
+     * @return The (scaled) beta array.
+     */
+    public double[][] computeBeta(CompiledRegularHmm<TObs> chmm, double[][] emissions, double... ctFactors) {
+        double[][] beta = new double[emissions.length][chmm.nbStates()];
+        fillBeta(chmm, emissions, emissions.length, beta, new double[chmm.nbStates()], ctFactors);
+        return beta;
+    }
+
+    private static void fillBeta(CompiledRegularHmm<?> chmm, double[][] emissions, int T, double[][] beta, double[] weighted, double[] ctFactors) {
+        if (T == 0x00) {
+            throw new IllegalArgumentException("Invalid empty sequence");
+        }
+        int s = chmm.nbStates();
+        double[] last = beta[T - 1];
+        for (int i = 0; i < s; i++) {
+            last[i] = 1.0d;
+        }
+        if (ctFactors != null) {
+            scale(last, ctFactors[T - 1]);
+        }
+        for (int t = T - 2; t >= 0; t--) {
+            chmm.backward(beta[t + 1], emissions[t + 1], weighted, beta[t]);
+            if (ctFactors != null) {
+                scale(beta[t], ctFactors[t]);
+            }
+        }
+    }
+
+    private static void scale(double[] values, double factor) {
+        for (int i = 0x00; i < values.length; i++) {
+            values[i] /= factor;
+        }
+    }
+
+    @Override
+    public Tuple3<double[][], double[][], Double> computeAll(THmm hmm, List<? extends TObs> oseq) {
+        if (oseq.isEmpty()) {
+            throw new IllegalArgumentException();
+        }
+        return computeAll(new CompiledRegularHmm<>(hmm), oseq);
+    }
+
+    /**
+     * Computes the scaled alpha and beta values, the emissions and the scaling
+     * factors of an observation sequence given a compiled Hidden Markov Model.
+     * A learner that processes many sequences with the same model thus only
+     * compiles the model once.
+     *
+     * @param chmm The compiled Hidden Markov Model.
+     * @param oseq A non-empty observations sequence.
+     * @return A {@link ForwardBackwardResult ForwardBackwardResult} with the
+     * scaled alpha and beta values and the probability of the sequence.
+     */
+    public Tuple3<double[][], double[][], Double> computeAll(CompiledRegularHmm<TObs> chmm, List<? extends TObs> oseq) {
+        if (oseq.isEmpty()) {
+            throw new IllegalArgumentException();
+        }
+        double[] ctFactors = new double[oseq.size()];
+        double[][] emissions = chmm.emissions(oseq);
+        double[][] alpha = computeAlpha(chmm, emissions, ctFactors);
+        double[][] beta = computeBeta(chmm, emissions, ctFactors);
+        double probability = computeProbability(ctFactors);
+        return new ForwardBackwardResult(alpha, beta, probability, emissions, ctFactors);
+    }
+
+    /**
+     * Computes the scaled alpha and beta values, the emissions and the scaling
+     * factors of an observation sequence given a compiled Hidden Markov Model
+     * and stores them in the given workspace instead of allocating new arrays.
+     * The results remain valid until the workspace is reused.
+     *
+     * @param chmm The compiled Hidden Markov Model.
+     * @param oseq A non-empty observations sequence.
+     * @param workspace The workspace to store the results in; it is grown if
+     * necessary.
+     * @return The natural logarithm of the probability of the given sequence
+     * of observations.
+     */
+    public double computeAll(CompiledRegularHmm<TObs> chmm, Collection<? extends TObs> oseq, ForwardBackwardWorkspace workspace) {
+        if (oseq.isEmpty()) {
+            throw new IllegalArgumentException();
+        }
+        int T = oseq.size();
+        workspace.ensure(T, chmm.nbStates());
+        double[][] emissions = workspace.getEmissions();
+        double[] ctFactors = workspace.getCtFactors();
+        int t = 0x00;
+        for (TObs o : oseq) {
+            chmm.emission(o, emissions[t++]);
+        }
+        fillAlpha(chmm, emissions, T, workspace.getAlpha(), ctFactors);
+        fillBeta(chmm, emissions, T, workspace.getBeta(), workspace.getWeighted(), ctFactors);
+        double lnProbability = 0.0d;
+        for (t = 0x00; t < T; t++) {
+            lnProbability += Math.log(ctFactors[t]);
+        }
+        return lnProbability;
+    }
+
+}
@@ -6,13 +6,22 @@ package jahmm.calculators;
 
 import jahmm.RegularHmm;
 import jahmm.observables.Observation;
+import jahmm.observables.Opdf;
+import jahmm.observables.OpdfBase;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 import jutils.probability.ProbabilityUtils;
+import jutlis.tuples.Tuple2;
+import jutlis.tuples.Tuple2Base;
 import jutlis.tuples.Tuple3;
-import jutlis.tuples.Tuple3Base;
 
 /**
  * This class can be used to compute the probability of a given observations
@@ -24,6 +33,12 @@ import jutlis.tuples.Tuple3Base;
  * elements. The <code>alpha</code> array must always be computed because the
  * scaling factors are computed together with it.
  * <p>
+ * The alpha and beta recursions run on a {@link CompiledRegularHmm
+ * CompiledRegularHmm}, thus a model with a sparse transition matrix only
+ * visits its non-zero transitions. The {@link #computeAlphaBlocks block-wise}
+ * computation multiplies dense transfer matrices and does not exploit
+ * sparsity.
+ * <p>
  * For more information on the scaling procedure, read <i>Rabiner</i> and
  * <i>Juang</i>'s <i>Fundamentals of speech recognition</i> (Prentice Hall,
  * 1993).
@@ -38,7 +53,7 @@ public final class RegularForwardBackwardScaledCalculatorBase<TObs extends Obser
     protected RegularForwardBackwardScaledCalculatorBase() {
     }
 
-    private double computeProbability(double[] ctFactors) {
+    private double computeLnProbability(double[] ctFactors) {
         double lnProbability = 0.;
         int T = ctFactors.length;
 
@@ -46,19 +61,226 @@ public final class RegularForwardBackwardScaledCalculatorBase<TObs extends Obser
             lnProbability += Math.log(ctFactors[t]);
         }
 
-        return Math.exp(lnProbability);
+        return lnProbability;
+    }
+
+    private double computeProbability(double[] ctFactors) {
+        return Math.exp(computeLnProbability(ctFactors));
+    }
+
+    private double computeLnProbabilityRolling(THmm hmm, Collection<? extends TObs> oseq) {
+        CompiledRegularHmm<TObs> chmm = new CompiledRegularHmm<>(hmm);
+        ForwardRows rows = ForwardRows.get(chmm.nbStates());
+        double[] emission = rows.getEmission();
+        Iterator<? extends TObs> seqIterator = oseq.iterator();
+        chmm.emission(seqIterator.next(), emission);
+        chmm.start(emission, rows.getPrevious());
+        double lnProbability = Math.log(ProbabilityUtils.scale(rows.getPrevious()));
+        while (seqIterator.hasNext()) {
+            chmm.emission(seqIterator.next(), emission);
+            chmm.forward(rows.getPrevious(), emission, rows.getCurrent());
+            lnProbability += Math.log(ProbabilityUtils.scale(rows.getCurrent()));
+            rows.swap();
+        }
+        return lnProbability;
+    }
+
+    /**
+     * Computes the normalized transfer matrix of a block of observations: the
+     * product over the block of <code>A * diag(b(o_t))</code>. After every
+     * step the matrix is divided by the sum of its elements and the logarithm
+     * of that sum is accumulated, such that the product does not underflow.
+     *
+     * @param a The transition matrix in row-major order.
+     * @param opdfs The opdfs of the states.
+     * @param block The observations of the block.
+     * @param transfer The array to store the normalized transfer matrix in
+     * (row-major order).
+     * @return The natural logarithm of the scale of the transfer matrix.
+     */
+    private double computeTransfer(double[] a, Opdf<TObs>[] opdfs, List<? extends TObs> block, double[] transfer) {
+        int s = opdfs.length;
+        double[] m = transfer;
+        double[] tmp = new double[s * s];
+        double[] emission = new double[s];
+        Arrays.fill(m, 0.0d);
+        for (int i = 0x00; i < s; i++) {
+            m[i * s + i] = 1.0d;
+        }
+        double lnScale = 0.0d;
+        for (TObs observation : block) {
+            for (int j = 0x00; j < s; j++) {
+                emission[j] = opdfs[j].probability(observation);
+            }
+            Arrays.fill(tmp, 0.0d);
+            double total = 0.0d;
+            for (int r = 0x00; r < s; r++) {
+                int ro = r * s;
+                for (int i = 0x00; i < s; i++) {
+                    double mri = m[ro + i];
+                    if (mri != 0.0d) {
+                        int io = i * s;
+                        for (int j = 0x00; j < s; j++) {
+                            tmp[ro + j] += mri * a[io + j];
+                        }
+                    }
+                }
+                for (int j = 0x00; j < s; j++) {
+                    tmp[ro + j] *= emission[j];
+                    total += tmp[ro + j];
+                }
+            }
+            lnScale += Math.log(total);
+            double inv = 1.0d / total;
+            for (int k = 0x00; k < tmp.length; k++) {
+                m[k] = tmp[k] * inv;
+            }
+        }
+        return lnScale;
+    }
+
+    /**
+     * Computes the forward pass of a single (long) sequence in parallel. The
+     * sequence (after the first observation) is split in blocks of
+     * <code>blockLength</code> observations. The normalized transfer matrices
+     * of the blocks are computed concurrently by the given pool and are then
+     * combined in order with the alpha values of the block boundaries.
+     * <p>
+     * Computing a transfer matrix costs <code>N</code> times more than
+     * advancing a single alpha row, thus this mode only pays off for models
+     * with few states and when enough cores are available.
+     *
+     * @param hmm A Hidden Markov Model.
+     * @param oseq A non-empty observations sequence.
+     * @param pool The pool that computes the transfer matrices.
+     * @param blockLength The (strictly positive) number of observations per
+     * block.
+     * @return A tuple containing the scaled alpha values (summing up to one)
+     * at the last time step of every block, starting with the first time step,
+     * and the natural logarithm of the probability of the sequence.
+     */
+    public Tuple2<double[][], Double> computeAlphaBlocks(THmm hmm, List<? extends TObs> oseq, ForkJoinPool pool, int blockLength) {
+        if (oseq.isEmpty()) {
+            throw new IllegalArgumentException();
+        }
+        if (blockLength <= 0x00) {
+            throw new IllegalArgumentException("Strictly positive block length expected");
+        }
+        final int s = hmm.nbStates();
+        int T = oseq.size();
+        final double[] a = new double[s * s];
+        final Opdf<TObs>[] opdfs = OpdfBase.newArray(Opdf.class, s);
+        for (int i = 0x00; i < s; i++) {
+            for (int j = 0x00; j < s; j++) {
+                a[i * s + j] = hmm.getAij(i, j);
+            }
+            opdfs[i] = hmm.getOpdf(i);
+        }
+        int nbBlocks = (T - 0x01 + blockLength - 0x01) / blockLength;
+        final double[][] transfers = new double[nbBlocks][s * s];
+        final double[] lnScales = new double[nbBlocks];
+        ArrayList<Callable<Void>> tasks = new ArrayList<>(nbBlocks);
+        for (int b = 0x00; b < nbBlocks; b++) {
+            final int block = b;
+            final List<? extends TObs> part = oseq.subList(0x01 + b * blockLength, Math.min(T, 0x01 + (b + 0x01) * blockLength));
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    lnScales[block] = computeTransfer(a, opdfs, part, transfers[block]);
+                    return null;
+                }
+            });
+        }
+        try {
+            for (Future<Void> future : pool.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while computing the transfer matrices", ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+        double[][] alphas = new double[nbBlocks + 0x01][s];
+        double[] alpha = alphas[0x00];
+        TObs first = oseq.get(0x00);
+        for (int i = 0x00; i < s; i++) {
+            alpha[i] = hmm.getPi(i) * opdfs[i].probability(first);
+        }
+        double lnProbability = Math.log(ProbabilityUtils.scale(alpha));
+        for (int b = 0x00; b < nbBlocks; b++) {
+            double[] m = transfers[b];
+            double[] next = alphas[b + 0x01];
+            for (int i = 0x00; i < s; i++) {
+                double ai = alpha[i];
+                int io = i * s;
+                for (int j = 0x00; j < s; j++) {
+                    next[j] += ai * m[io + j];
+                }
+            }
+            lnProbability += lnScales[b] + Math.log(ProbabilityUtils.scale(next));
+            alpha = next;
+        }
+        return new Tuple2Base<>(alphas, lnProbability);
+    }
+
+    /**
+     * Computes the natural logarithm of the probability of occurrence of a
+     * single (long) observation sequence in parallel, see
+     * {@link #computeAlphaBlocks computeAlphaBlocks}. The sequence is split in
+     * four blocks per worker of the pool.
+     *
+     * @param hmm A Hidden Markov Model.
+     * @param oseq A non-empty observations sequence.
+     * @param pool The pool that computes the transfer matrices.
+     * @return The natural logarithm of the probability of the given sequence
+     * of observations.
+     */
+    public double computeLnProbability(THmm hmm, List<? extends TObs> oseq, ForkJoinPool pool) {
+        int nbBlocks = 0x04 * pool.getParallelism();
+        int blockLength = Math.max(0x01, (oseq.size() + nbBlocks - 0x01) / nbBlocks);
+        return computeAlphaBlocks(hmm, oseq, pool, blockLength).getItem2();
+    }
+
+    /**
+     * Computes the natural logarithm of the probability of occurrence of an
+     * observation sequence given a Hidden Markov Model. The logarithm is
+     * obtained directly from the scaling factors of the alpha values, thus the
+     * result does not underflow for long sequences. Only two rows of alpha
+     * values are kept in memory.
+     *
+     * @param hmm A Hidden Markov Model;
+     * @param oseq A non-empty observations sequence.
+     * @return The natural logarithm of the probability of the given sequence
+     * of observations.
+     */
+    @Override
+    public double computeLnProbability(THmm hmm, List<? extends TObs> oseq) {
+        if (oseq.isEmpty()) {
+            throw new IllegalArgumentException();
+        }
+        return computeLnProbabilityRolling(hmm, oseq);
     }
 
     /**
      * Computes the probability of occurrence of an observation sequence given a
      * Hidden Markov Model. The algorithms implemented use scaling to avoid
-     * underflows.
+     * underflows. The probability is computed by a forward pass that only
+     * keeps two rows of alpha values, thus the memory usage does not depend on
+     * the length of the sequence.
      *
      * @param hmm A Hidden Markov Model;
      * @param oseq An observations sequence.
      * @param flags How the computation should be done. See the
-     * {@link ForwardBackwardCalculator.ComputationType}. The alpha array is
-     * always computed.
+     * {@link ForwardBackwardCalculator.ComputationType}. The beta values do not
+     * alter the probability and are thus never computed.
      * @return The probability of the given sequence of observations.
      */
     @Override
@@ -66,19 +288,7 @@ public final class RegularForwardBackwardScaledCalculatorBase<TObs extends Obser
         if (oseq.isEmpty()) {
             throw new IllegalArgumentException();
         }
-
-        int t = oseq.size();
-
-        double[] ctFactors = new double[t];
-        double[][] alpha = null, beta = null;
-
-        alpha = computeAlpha(hmm, oseq, ctFactors);
-
-        if (flags.contains(ComputationType.BETA)) {
-            beta = computeBeta(hmm, oseq, ctFactors);
-        }
-
-        return computeProbability(ctFactors);
+        return Math.exp(computeLnProbabilityRolling(hmm, oseq));
     }
 
     /**
@@ -90,30 +300,31 @@ public final class RegularForwardBackwardScaledCalculatorBase<TObs extends Obser
      * @return
      */
     public double[][] computeAlpha(THmm hmm, Collection<? extends TObs> oseq, double... ctFactors) {
-        int T = ctFactors.length;
-        int s = hmm.nbStates();
-        Iterator<? extends TObs> seqIterator = oseq.iterator();
-        double[][] alpha = new double[T][s];
-        if (seqIterator.hasNext()) {
-
-            TObs observation = seqIterator.next();
+        return computeAlpha(hmm, computeEmissions(hmm, oseq), ctFactors);
+    }
 
-            for (int i = 0x00; i < s; i++) {
-                alpha[0x00][i] = hmm.getPi(i) * hmm.getOpdf(i).probability(observation);
-            }
+    /**
+     * Computes the content of the scaled alpha array based on a precomputed
+     * emission matrix.
+     *
+     * @param hmm The given Hidden Markov Model.
+     * @param emissions The emission matrix of the sequence, see
+     * {@link #computeEmissions(jahmm.RegularHmm, java.util.Collection) computeEmissions}.
+     * @param ctFactors The array to store the scaling factors in.
+     * @return The scaled alpha array.
+     */
+    public double[][] computeAlpha(THmm hmm, double[][] emissions, double... ctFactors) {
+        return computeAlpha(new CompiledRegularHmm<>(hmm), emissions, ctFactors);
+    }
 
+    private double[][] computeAlpha(CompiledRegularHmm<TObs> chmm, double[][] emissions, double[] ctFactors) {
+        int T = ctFactors.length;
+        double[][] alpha = new double[T][chmm.nbStates()];
+        if (T > 0x00) {
+            chmm.start(emissions[0x00], alpha[0x00]);
             ctFactors[0x00] = ProbabilityUtils.scale(alpha[0x00]);
-
             for (int t = 1; t < T; t++) {
-                observation = seqIterator.next();
-
-                for (int i = 0; i < s; i++) {
-                    double sum = 0.0d;
-                    for (int j = 0; j < s; j++) {
-                        sum += alpha[t - 1][j] * hmm.getAij(j, i);
-                    }
-                    alpha[t][i] = sum * hmm.getOpdf(i).probability(observation);
-                }
+                chmm.forward(alpha[t - 1], emissions[t], alpha[t]);
                 ctFactors[t] = ProbabilityUtils.scale(alpha[t]);
             }
         }
@@ -123,21 +334,34 @@ public final class RegularForwardBackwardScaledCalculatorBase<TObs extends Obser
     /* Computes the content of the scaled beta array.  The scaling factors are
      those computed for alpha. */
     public double[][] computeBeta(THmm hmm, List<? extends TObs> oseq, double... ctFactors) {
+        return computeBeta(hmm, computeEmissions(hmm, oseq), ctFactors);
+    }
+
+    /**
+     * Computes the content of the scaled beta array based on a precomputed
+     * emission matrix. The scaling factors are those computed for alpha.
+     *
+     * @param hmm The given Hidden Markov Model.
+     * @param emissions The emission matrix of the sequence, see
+     * {@link #computeEmissions(jahmm.RegularHmm, java.util.Collection) computeEmissions}.
+     * @param ctFactors The scaling factors computed together with alpha.
+     * @return The scaled beta array.
+     */
+    public double[][] computeBeta(THmm hmm, double[][] emissions, double... ctFactors) {
+        return computeBeta(new CompiledRegularHmm<>(hmm), emissions, ctFactors);
+    }
+
+    private double[][] computeBeta(CompiledRegularHmm<TObs> chmm, double[][] emissions, double[] ctFactors) {
         int T = ctFactors.length;
-        int s = hmm.nbStates();
+        int s = chmm.nbStates();
         double[][] beta = new double[T][s];
         for (int i = 0; i < s; i++) {
             beta[T - 1][i] = 1.0d / ctFactors[T - 1];
         }
-
+        double[] weighted = new double[s];
         for (int t = T - 2; t >= 0; t--) {
-            TObs observation = oseq.get(t + 1);
+            chmm.backward(beta[t + 1], emissions[t + 1], weighted, beta[t]);
             for (int i = 0; i < s; i++) {
-                double sum = 0.;
-                for (int j = 0; j < s; j++) {
-                    sum += beta[t + 1][j] * hmm.getAij(i, j) * hmm.getOpdf(j).probability(observation);
-                }
-                beta[t][i] = sum;
                 beta[t][i] /= ctFactors[t];
             }
         }
@@ -149,11 +373,12 @@ public final class RegularForwardBackwardScaledCalculatorBase<TObs extends Obser
         if (oseq.isEmpty()) {
             throw new IllegalArgumentException();
         }
-        int t = oseq.size();
-        double[] ctFactors = new double[t];
-        double[][] alpha = computeAlpha(hmm, oseq, ctFactors);
-        double[][] beta = computeBeta(hmm, oseq, ctFactors);
+        CompiledRegularHmm<TObs> chmm = new CompiledRegularHmm<>(hmm);
+        double[] ctFactors = new double[oseq.size()];
+        double[][] emissions = chmm.emissions(oseq);
+        double[][] alpha = computeAlpha(chmm, emissions, ctFactors);
+        double[][] beta = computeBeta(chmm, emissions, ctFactors);
         double probability = computeProbability(ctFactors);
-        return new Tuple3Base<>(alpha, beta, probability);
+        return new ForwardBackwardResult(alpha, beta, probability, emissions, ctFactors);
     }
 }
@@ -0,0 +1,54 @@
+package jahmm.calculators;
+
+import jahmm.RegularHmm;
+import jahmm.observables.Observation;
+
+/**
+ * A forward filter for regular Hidden Markov Models. The filter runs on a
+ * {@link CompiledRegularHmm CompiledRegularHmm} and thus uses the sparse
+ * transitions or the dense kernels of the compiled engine.
+ * <p>
+ * The filter works on a snapshot of the model: modifications made to the
+ * Hidden Markov Model after the filter was created are not reflected.
+ *
+ * @author kommusoft
+ * @param <TObs> The type of observations of the Hidden Markov Model.
+ */
+public final class RegularForwardFilter<TObs extends Observation> extends ForwardFilterBase<TObs> {
+
+    private final CompiledRegularHmm<TObs> chmm;
+    private final double[] emission;
+
+    /**
+     * Creates a new filter for the given Hidden Markov Model.
+     *
+     * @param hmm The Hidden Markov Model to filter with.
+     */
+    public RegularForwardFilter(RegularHmm<TObs, ?> hmm) {
+        this(new CompiledRegularHmm<>(hmm));
+    }
+
+    /**
+     * Creates a new filter for the given compiled Hidden Markov Model.
+     *
+     * @param chmm The compiled Hidden Markov Model to filter with.
+     */
+    public RegularForwardFilter(CompiledRegularHmm<TObs> chmm) {
+        super(chmm.nbStates());
+        this.chmm = chmm;
+        this.emission = new double[chmm.nbStates()];
+    }
+
+    @Override
+    protected void start(TObs interaction, double[] alpha) {
+        this.chmm.emission(interaction, this.emission);
+        this.chmm.start(this.emission, alpha);
+    }
+
+    @Override
+    protected void step(TObs interaction, double[] prev, double[] next) {
+        this.chmm.emission(interaction, this.emission);
+        this.chmm.forward(prev, this.emission, next);
+    }
+
+}
@@ -0,0 +1,330 @@
+package jahmm.calculators;
+
+import jahmm.RegularHmm;
+import jahmm.observables.Observation;
+
+/**
+ * A streaming Viterbi decoder: observations are pushed one at a time and the
+ * states of the most likely state sequence are emitted as soon as they are
+ * decided. A state is decided when the paths ending in every state that is
+ * still reachable at the current time step pass through it (traceback
+ * convergence): no later observation can change the decision.
+ * <p>
+ * The decoder only keeps the back-pointers of the time steps that are not yet
+ * decided. Convergence usually happens within a few time steps, but it is not
+ * guaranteed; a maximum lag bounds the number of undecided time steps: if
+ * more time steps are undecided, the oldest ones are decided along the best
+ * path ending in the current time step, and the paths that do not pass
+ * through the decided states are dropped. With a maximum lag, both the
+ * latency and the memory usage are bounded; the decoded sequence is then an
+ * approximation of the most likely state sequence. The partial
+ * log-probabilities are normalized at every step, such that streams of any
+ * length can be decoded.
+ * <p>
+ * The recursion (including the beam) is performed by a
+ * {@link RegularViterbiLogCalculatorBase RegularViterbiLogCalculatorBase}, and
+ * is thus a snapshot of the Hidden Markov Model as well.
+ *
+ * @author kommusoft
+ * @param <TObs> The type of observations of the Hidden Markov Model.
+ */
+public final class RegularOnlineViterbiCalculatorBase<TObs extends Observation> {
+
+    private static final int[] EMPTY = new int[0x00];
+
+    private final RegularViterbiLogCalculatorBase<TObs> decoder;
+    private final int nbStates;
+    private final int maximumLag;
+    private double[] delta;
+    private double[] next;
+    private final int[] active;
+    private final double[] scratch;
+    private final boolean[] mask;
+    private final boolean[] seen;
+    private final int[] states;
+    private final int[] parents;
+    /**
+     * The back-pointers of the undecided time steps: the row of time step
+     * <code>t</code> is stored at index <code>t &amp; (psy.length-1)</code>.
+     */
+    private int[][] psy;
+    private double lnOffset;
+    private long length;
+    private long decided;
+
+    /**
+     * Creates a streaming decoder for the given Hidden Markov Model without a
+     * maximum lag.
+     *
+     * @param hmm The Hidden Markov Model to decode with.
+     */
+    public RegularOnlineViterbiCalculatorBase(RegularHmm<TObs, ?> hmm) {
+        this(new RegularViterbiLogCalculatorBase<>(hmm), 0x00);
+    }
+
+    /**
+     * Creates a streaming decoder for the given Hidden Markov Model.
+     *
+     * @param hmm The Hidden Markov Model to decode with.
+     * @param maximumLag The maximum number of undecided time steps, zero for
+     * no maximum.
+     */
+    public RegularOnlineViterbiCalculatorBase(RegularHmm<TObs, ?> hmm, int maximumLag) {
+        this(new RegularViterbiLogCalculatorBase<>(hmm), maximumLag);
+    }
+
+    /**
+     * Creates a streaming decoder on top of the given decoder, such that the
+     * beam of that decoder is used.
+     *
+     * @param decoder The decoder that performs the recursion.
+     * @param maximumLag The maximum number of undecided time steps, zero for
+     * no maximum.
+     */
+    public RegularOnlineViterbiCalculatorBase(RegularViterbiLogCalculatorBase<TObs> decoder, int maximumLag) {
+        if (maximumLag < 0x00) {
+            throw new IllegalArgumentException("Positive number expected");
+        }
+        int n = decoder.nbStates();
+        this.decoder = decoder;
+        this.nbStates = n;
+        this.maximumLag = maximumLag;
+        this.delta = new double[n];
+        this.next = new double[n];
+        this.active = new int[n];
+        this.scratch = new double[n];
+        this.mask = new boolean[n];
+        this.seen = new boolean[n];
+        this.states = new int[n];
+        this.parents = new int[n];
+        int capacity = 0x10;
+        while (capacity <= maximumLag) {
+            capacity <<= 0x01;
+        }
+        this.psy = new int[capacity][n];
+    }
+
+    /**
+     * Gets the maximum number of undecided time steps.
+     *
+     * @return The maximum lag, zero if there is no maximum.
+     */
+    public int getMaximumLag() {
+        return this.maximumLag;
+    }
+
+    /**
+     * Gets the number of observations pushed so far.
+     *
+     * @return The number of pushed observations.
+     */
+    public long getLength() {
+        return this.length;
+    }
+
+    /**
+     * Gets the number of time steps of which the state is decided.
+     *
+     * @return The number of decided states.
+     */
+    public long getDecided() {
+        return this.decided;
+    }
+
+    /**
+     * Gets the natural logarithm of the probability of the pushed observations
+     * along the best state sequence ending in the current time step.
+     *
+     * @return The log-probability of the best partial path.
+     */
+    public double getLnProbability() {
+        double max = Double.NEGATIVE_INFINITY;
+        for (double d : this.delta) {
+            max = Math.max(max, d);
+        }
+        return this.lnOffset + max;
+    }
+
+    /**
+     * Pushes the next observation.
+     *
+     * @param o The next observation.
+     * @return The states that are decided by this observation, in order of
+     * time; the first one is the state of time step
+     * {@link #getDecided getDecided()} before the call.
+     * @throws IllegalArgumentException If the observation cannot be generated
+     * by any path. The state of the decoder is left unchanged.
+     */
+    public int[] push(TObs o) {
+        int n = this.nbStates;
+        double[] current = this.next;
+        if (this.length == 0x00) {
+            this.decoder.start(o, current);
+        } else {
+            this.ensureCapacity();
+            this.decoder.step(o, this.delta, current, this.row(this.length), this.active, this.scratch, this.mask);
+        }
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0x00; i < n; i++) {
+            max = Math.max(max, current[i]);
+        }
+        if (max == Double.NEGATIVE_INFINITY) {
+            throw new IllegalArgumentException("The observation cannot be generated by any path.");
+        }
+        for (int i = 0x00; i < n; i++) {
+            current[i] -= max;
+        }
+        this.lnOffset += max;
+        this.next = this.delta;
+        this.delta = current;
+        this.length++;
+        long last = this.converge();
+        if (last < this.decided && this.maximumLag > 0x00 && this.length - this.decided > this.maximumLag) {
+            last = this.length - this.maximumLag - 0x01;
+            this.force(last);
+        }
+        if (last < this.decided) {
+            return EMPTY;
+        }
+        return this.traceback(last, this.states[0x00]);
+    }
+
+    /**
+     * Decides all remaining time steps along the best state sequence and
+     * resets the decoder, such that the next observation starts a new
+     * sequence.
+     *
+     * @return The states of the time steps that were not decided yet.
+     */
+    public int[] flush() {
+        int[] result = EMPTY;
+        if (this.length > 0x00) {
+            result = this.traceback(this.length - 0x01, this.best());
+        }
+        this.reset();
+        return result;
+    }
+
+    /**
+     * Forgets all pushed observations, including the undecided ones.
+     */
+    public void reset() {
+        this.length = 0x00;
+        this.decided = 0x00;
+        this.lnOffset = 0.0d;
+    }
+
+    private int best() {
+        int argmax = 0x00;
+        for (int i = 0x01; i < this.nbStates; i++) {
+            if (this.delta[i] > this.delta[argmax]) {
+                argmax = i;
+            }
+        }
+        return argmax;
+    }
+
+    private int[] row(long t) {
+        return this.psy[(int) t & (this.psy.length - 0x01)];
+    }
+
+    private void ensureCapacity() {
+        int capacity = this.psy.length;
+        if (this.length - this.decided >= capacity) {
+            int[][] rows = new int[capacity << 0x01][];
+            for (long t = this.decided; t < this.length; t++) {
+                rows[(int) t & (rows.length - 0x01)] = this.row(t);
+            }
+            for (int i = 0x00; i < rows.length; i++) {
+                if (rows[i] == null) {
+                    rows[i] = new int[this.nbStates];
+                }
+            }
+            this.psy = rows;
+        }
+    }
+
+    /**
+     * Traces the paths ending in all reachable states back until they merge.
+     *
+     * @return The last time step on which all paths agree, its state is stored
+     * in <code>states[0]</code>; a time step before the first undecided time
+     * step if the paths do not merge.
+     */
+    private long converge() {
+        int n = this.nbStates;
+        int[] set = this.states;
+        int size = 0x00;
+        for (int i = 0x00; i < n; i++) {
+            if (this.delta[i] > Double.NEGATIVE_INFINITY) {
+                set[size++] = i;
+            }
+        }
+        long t = this.length - 0x01;
+        boolean[] seen = this.seen;
+        while (size > 0x01 && t > this.decided) {
+            int[] pt = this.row(t);
+            int[] parent = this.parents;
+            int merged = 0x00;
+            for (int k = 0x00; k < size; k++) {
+                int p = pt[set[k]];
+                if (!seen[p]) {
+                    seen[p] = true;
+                    parent[merged++] = p;
+                }
+            }
+            for (int k = 0x00; k < merged; k++) {
+                seen[parent[k]] = false;
+                set[k] = parent[k];
+            }
+            size = merged;
+            t--;
+        }
+        return size == 0x01 ? t : this.decided - 0x01;
+    }
+
+    /**
+     * Decides the time steps up to <code>last</code> along the best path and
+     * drops the paths that do not pass through the state of that path at time
+     * step <code>last</code>.
+     */
+    private void force(long last) {
+        int n = this.nbStates;
+        int[] ancestors = this.parents;
+        for (int i = 0x00; i < n; i++) {
+            ancestors[i] = i;
+        }
+        for (long t = this.length - 0x01; t > last; t--) {
+            int[] pt = this.row(t);
+            for (int i = 0x00; i < n; i++) {
+                ancestors[i] = pt[ancestors[i]];
+            }
+        }
+        int state = ancestors[this.best()];
+        for (int i = 0x00; i < n; i++) {
+            if (ancestors[i] != state) {
+                this.delta[i] = Double.NEGATIVE_INFINITY;
+            }
+        }
+        this.states[0x00] = state;
+    }
+
+    /**
+     * Traces back from the given state at the given time step to the first
+     * undecided time step and marks these time steps as decided.
+     */
+    private int[] traceback(long last, int state) {
+        int[] result = new int[(int) (last - this.decided + 0x01)];
+        int s = state;
+        for (int k = result.length - 0x01;; k--) {
+            result[k] = s;
+            if (k == 0x00) {
+                break;
+            }
+            s = this.row(this.decided + k)[s];
+        }
+        this.decided = last + 0x01;
+        return result;
+    }
+
+}
@@ -6,67 +6,106 @@ package jahmm.calculators;
 
 import jahmm.RegularHmmBase;
 import jahmm.observables.Observation;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 
 /**
  * This class can be used to compute the most probable state sequence matching a
  * given observation sequence (given an HMM).
+ * <p>
+ * If the transition matrix of the model is
+ * {@link SparseTransitionMatrix#compileIfSparse sparse}, every step only
+ * visits the non-zero transitions; otherwise all <code>N*N</code> transitions
+ * are visited.
  */
 public final class RegularViterbiCalculatorBase {
     /*
      * The psy and delta values, as described in Rabiner and Juand classical
-     * papers.
+     * papers. Only the delta values of the previous and the current time step
+     * are kept.
      */
 
-    private final double[][] delta;
+    private double[] delta;
+    private double[] previousDelta;
     private final int[][] psy;
-    private final int[] stateSequence;
+    private int[] stateSequence;
+    private final int length;
     private double lnProbability;
 
     /**
      * Computes the most likely state sequence matching an observation sequence
-     * given an HMM.
+     * given an HMM. The intermediate results are stored in the
+     * {@link ForwardBackwardWorkspace#get workspace} of the current thread;
+     * only the state sequence is copied out of it.
      *
      * @param <O>
      * @param hmm A Hidden Markov Model;
      * @param oseq An observations sequence.
      */
     public <O extends Observation> RegularViterbiCalculatorBase(List<? extends O> oseq, RegularHmmBase<O> hmm) {
+        this(oseq, hmm, ForwardBackwardWorkspace.get());
+        stateSequence = Arrays.copyOf(stateSequence, length);
+    }
+
+    /**
+     * Computes the most likely state sequence matching an observation sequence
+     * given an HMM. The back-pointers, the rows of delta values and the state
+     * sequence are stored in the given workspace, such that decoding a stream
+     * of sequences of similar length does not allocate arrays. The results of
+     * the calculator remain valid until the workspace is reused.
+     *
+     * @param <O>
+     * @param hmm A Hidden Markov Model;
+     * @param oseq An observations sequence.
+     * @param workspace The workspace to store the intermediate results in; it
+     * is grown if necessary.
+     */
+    public <O extends Observation> RegularViterbiCalculatorBase(List<? extends O> oseq, RegularHmmBase<O> hmm, ForwardBackwardWorkspace workspace) {
         if (oseq.isEmpty()) {
             throw new IllegalArgumentException("Invalid empty sequence");
         }
-        delta = new double[oseq.size()][hmm.nbStates()];
-        psy = new int[oseq.size()][hmm.nbStates()];
-        stateSequence = new int[oseq.size()];
+        length = oseq.size();
+        workspace.ensureViterbi(length, hmm.nbStates());
+        delta = workspace.getCurrent();
+        previousDelta = workspace.getPrevious();
+        psy = workspace.getPsy();
+        stateSequence = workspace.getStateSequence();
+        SparseTransitionMatrix sparse = SparseTransitionMatrix.compileIfSparse(hmm);
+        Iterator<? extends O> oseqIterator = oseq.iterator();
+        O first = oseqIterator.next();
         for (int i = 0; i < hmm.nbStates(); i++) {
-            delta[0][i] = -Math.log(hmm.getPi(i)) - Math.log(hmm.getOpdf(i).probability(oseq.get(0)));
+            delta[i] = -Math.log(hmm.getPi(i)) - hmm.getOpdf(i).lnProbability(first);
             psy[0][i] = 0;
         }
-        Iterator<? extends O> oseqIterator = oseq.iterator();
-        if (oseqIterator.hasNext()) {
-            oseqIterator.next();
-        }
         int t = 1;
         while (oseqIterator.hasNext()) {
             O observation = oseqIterator.next();
-            for (int i = 0; i < hmm.nbStates(); i++) {
-                computeStep(hmm, observation, t, i);
+            double[] tmp = previousDelta;
+            previousDelta = delta;
+            delta = tmp;
+            if (sparse != null) {
+                computeSparseStep(sparse, hmm, observation, t);
+            } else {
+                for (int i = 0; i < hmm.nbStates(); i++) {
+                    computeStep(hmm, observation, t, i);
+                }
             }
             t++;
         }
         lnProbability = Double.MAX_VALUE;
+        stateSequence[length - 1] = 0;
         for (int i = 0; i < hmm.nbStates(); i++) {
-            double thisProbability = delta[oseq.size() - 1][i];
+            double thisProbability = delta[i];
 
             if (lnProbability > thisProbability) {
                 lnProbability = thisProbability;
-                stateSequence[oseq.size() - 1] = i;
+                stateSequence[length - 1] = i;
             }
         }
         lnProbability = -lnProbability;
 
-        for (int t2 = oseq.size() - 2; t2 >= 0; t2--) {
+        for (int t2 = length - 2; t2 >= 0; t2--) {
             stateSequence[t2] = psy[t2 + 1][stateSequence[t2 + 1]];
         }
     }
@@ -80,7 +119,7 @@ public final class RegularViterbiCalculatorBase {
         int min_psy = 0;
 
         for (int i = 0; i < hmm.nbStates(); i++) {
-            double thisDelta = delta[t - 1][i] - Math.log(hmm.getAij(i, j));
+            double thisDelta = previousDelta[i] - Math.log(hmm.getAij(i, j));
 
             if (minDelta > thisDelta) {
                 minDelta = thisDelta;
@@ -88,10 +127,27 @@ public final class RegularViterbiCalculatorBase {
             }
         }
 
-        delta[t][j] = minDelta - Math.log(hmm.getOpdf(j).probability(o));
+        delta[j] = minDelta - hmm.getOpdf(j).lnProbability(o);
         psy[t][j] = min_psy;
     }
 
+    /*
+     * Computes delta and psy[t] (t > 0) by visiting the non-zero transitions
+     * only. The delta values are negative logarithms while the sparse matrix
+     * maximizes log-probabilities, thus the previous delta values (which are
+     * overwritten by the next step) are negated in place.
+     */
+    private <O extends Observation> void
+            computeSparseStep(SparseTransitionMatrix sparse, RegularHmmBase<O> hmm, O o, int t) {
+        for (int i = 0; i < hmm.nbStates(); i++) {
+            previousDelta[i] = -previousDelta[i];
+        }
+        sparse.maxForward(previousDelta, null, delta, psy[t], 0);
+        for (int j = 0; j < hmm.nbStates(); j++) {
+            delta[j] = -delta[j] - hmm.getOpdf(j).lnProbability(o);
+        }
+    }
+
     /**
      * Returns the natural logarithm of the probability of the given observation
      * sequence on the most likely state sequence of the given HMM.
@@ -112,6 +168,6 @@ public final class RegularViterbiCalculatorBase {
      * the i-th state of the state sequence.
      */
     public int[] stateSequence() {
-        return stateSequence.clone();
+        return Arrays.copyOf(stateSequence, length);
     }
 }
@@ -0,0 +1,353 @@
+package jahmm.calculators;
+
+import jahmm.RegularHmm;
+import jahmm.observables.Observation;
+import jahmm.observables.Opdf;
+import jahmm.observables.OpdfBase;
+import java.util.Arrays;
+import java.util.List;
+import jutlis.tuples.Tuple2;
+import jutlis.tuples.Tuple2Base;
+
+/**
+ * A Viterbi decoder that works entirely in log-space. The logarithms of the
+ * initial and transition probabilities are computed once when the decoder is
+ * created, such that decoding a sequence of length <code>T</code> only
+ * evaluates <code>T*N</code> logarithms (one per emission) instead of
+ * <code>T*N*N</code>. A decoder can be reused for any number of sequences.
+ * <p>
+ * Optionally, the search can be restricted with a beam: at every time step
+ * only the states of which the partial log-probability is within a given
+ * distance of the best state (and/or only the best <code>K</code> states) are
+ * used as predecessors for the next time step. Without beam, the decoder finds
+ * the same state sequence as the
+ * {@link RegularViterbiCalculatorBase RegularViterbiCalculatorBase}; with a
+ * beam, the result is an approximation.
+ * <p>
+ * If the transition matrix is sparse, the decoder keeps a
+ * {@link SparseTransitionMatrix SparseTransitionMatrix} instead of the dense
+ * logarithms, such that a step only visits the non-zero transitions. Dense
+ * steps without pruning are run by the selected
+ * {@link DenseKernels DenseKernels}.
+ * <p>
+ * Like the {@link CompiledRegularHmm CompiledRegularHmm}, the decoder is a
+ * snapshot: modifications made to the Hidden Markov Model after the creation of
+ * the decoder are not reflected.
+ *
+ * @author kommusoft
+ * @param <TObs> The type of observations of the Hidden Markov Model.
+ */
+public final class RegularViterbiLogCalculatorBase<TObs extends Observation> {
+
+    private final int nbStates;
+    private final double[] lnPi;
+    /**
+     * The logarithms of the transposed transition matrix:
+     * <code>lnAt[j*n+i]</code> is the logarithm of the probability of going
+     * from state <code>i</code> to state <code>j</code>.
+     */
+    private final double[] lnAt;
+    /**
+     * The sparse transition matrix, <code>null</code> if the logarithms of
+     * the transitions are stored densely in <code>lnAt</code>.
+     */
+    private final SparseTransitionMatrix sparse;
+    private final DenseKernels kernels = DenseKernels.getInstance();
+    private final Opdf<TObs>[] opdfs;
+    private double beamThreshold = Double.POSITIVE_INFINITY;
+    private int beamWidth;
+
+    /**
+     * Creates a decoder for the given Hidden Markov Model.
+     *
+     * @param hmm The Hidden Markov Model to decode with.
+     */
+    public RegularViterbiLogCalculatorBase(RegularHmm<TObs, ?> hmm) {
+        this(hmm, SparseTransitionMatrix.compileIfSparse(hmm));
+    }
+
+    /**
+     * Creates a decoder for the given Hidden Markov Model with a given sparse
+     * transition matrix, for instance a {@link SparseTransitionMatrix band} of
+     * a left-to-right model.
+     *
+     * @param hmm The Hidden Markov Model to decode with.
+     * @param sparse A sparse copy of the transition matrix of
+     * <code>hmm</code>, or <code>null</code> to store the logarithms of the
+     * transitions densely.
+     * @throws IllegalArgumentException If the sparse matrix has another number
+     * of states than the model.
+     */
+    public RegularViterbiLogCalculatorBase(RegularHmm<TObs, ?> hmm, SparseTransitionMatrix sparse) {
+        int n = hmm.nbStates();
+        if (sparse != null && sparse.nbStates() != n) {
+            throw new IllegalArgumentException("The sparse matrix has another number of states");
+        }
+        this.nbStates = n;
+        this.beamWidth = n;
+        this.lnPi = new double[n];
+        this.sparse = sparse;
+        this.lnAt = this.sparse == null ? new double[n * n] : null;
+        this.opdfs = OpdfBase.newArray(Opdf.class, n);
+        for (int i = 0x00; i < n; i++) {
+            this.lnPi[i] = Math.log(hmm.getPi(i));
+            if (this.lnAt != null) {
+                for (int j = 0x00; j < n; j++) {
+                    this.lnAt[j * n + i] = Math.log(hmm.getAij(i, j));
+                }
+            }
+            this.opdfs[i] = hmm.getOpdf(i);
+        }
+    }
+
+    /**
+     * Gets the beam threshold.
+     *
+     * @return The maximum difference between the log-probability of the best
+     * state and a state that is kept, <code>+Infinity</code> if no states are
+     * pruned on their log-probability.
+     */
+    public double getBeamThreshold() {
+        return this.beamThreshold;
+    }
+
+    /**
+     * Sets the beam threshold: at every time step, the states of which the
+     * partial log-probability is more than <code>beamThreshold</code> below
+     * the partial log-probability of the best state are not used as
+     * predecessors for the next time step.
+     *
+     * @param beamThreshold The (positive) threshold, <code>+Infinity</code> to
+     * disable pruning on the log-probability.
+     */
+    public void setBeamThreshold(double beamThreshold) {
+        if (!(beamThreshold >= 0.0d)) {
+            throw new IllegalArgumentException("Positive number expected");
+        }
+        this.beamThreshold = beamThreshold;
+    }
+
+    /**
+     * Gets the beam width.
+     *
+     * @return The maximum number of states kept at every time step.
+     */
+    public int getBeamWidth() {
+        return this.beamWidth;
+    }
+
+    /**
+     * Sets the beam width: at every time step, only the
+     * <code>beamWidth</code> states with the highest partial log-probability
+     * are used as predecessors for the next time step.
+     *
+     * @param beamWidth The (strictly positive) number of states to keep; a
+     * value larger than or equal to the number of states disables pruning on
+     * the rank.
+     */
+    public void setBeamWidth(int beamWidth) {
+        if (beamWidth <= 0) {
+            throw new IllegalArgumentException("Strictly positive number expected");
+        }
+        this.beamWidth = Math.min(beamWidth, this.nbStates);
+    }
+
+    /**
+     * Returns the number of states of the decoded model.
+     *
+     * @return The number of states of the decoded model.
+     */
+    public int nbStates() {
+        return this.nbStates;
+    }
+
+    /**
+     * Computes the most likely state sequence matching an observation
+     * sequence. The back-pointers are stored in the
+     * {@link ForwardBackwardWorkspace#get workspace} of the current thread;
+     * only the state sequence is copied out of it.
+     *
+     * @param oseq A non-empty observation sequence.
+     * @return A tuple containing the most likely state sequence and the
+     * natural logarithm of the probability of the observation sequence along
+     * that state sequence.
+     */
+    public Tuple2<int[], Double> computeStateSequence(List<? extends TObs> oseq) {
+        ForwardBackwardWorkspace workspace = ForwardBackwardWorkspace.get();
+        double lnProbability = this.computeStateSequence(oseq, workspace);
+        return new Tuple2Base<>(Arrays.copyOf(workspace.getStateSequence(), oseq.size()), lnProbability);
+    }
+
+    /**
+     * Computes the most likely state sequence matching an observation sequence
+     * and stores it in the given workspace, such that decoding a stream of
+     * sequences of similar length does not allocate arrays.
+     *
+     * @param oseq A non-empty observation sequence.
+     * @param workspace The workspace to store the back-pointers and the state
+     * sequence in; it is grown if necessary. After the call, the first
+     * <code>oseq.size()</code> elements of
+     * {@link ForwardBackwardWorkspace#getStateSequence getStateSequence}
+     * contain the most likely state sequence.
+     * @return The natural logarithm of the probability of the observation
+     * sequence along the most likely state sequence.
+     */
+    public double computeStateSequence(List<? extends TObs> oseq, ForwardBackwardWorkspace workspace) {
+        if (oseq.isEmpty()) {
+            throw new IllegalArgumentException("Invalid empty sequence");
+        }
+        int T = oseq.size();
+        int n = this.nbStates;
+        workspace.ensureViterbi(T, n);
+        int[][] psy = workspace.getPsy();
+        double[] previous = workspace.getPrevious();
+        double[] current = workspace.getCurrent();
+        double[] scratch = workspace.getScratch();
+        int[] active = workspace.getActive();
+        boolean[] mask = workspace.getMask();
+        int t = 0x00;
+        for (TObs o : oseq) {
+            if (t == 0x00) {
+                this.start(o, current);
+            } else {
+                this.step(o, previous, current, psy[t], active, scratch, mask);
+            }
+            double[] tmp = previous;
+            previous = current;
+            current = tmp;
+            t++;
+        }
+        double lnProbability = Double.NEGATIVE_INFINITY;
+        int[] stateSequence = workspace.getStateSequence();
+        stateSequence[T - 1] = 0x00;
+        for (int i = 0x00; i < n; i++) {
+            if (previous[i] > lnProbability) {
+                lnProbability = previous[i];
+                stateSequence[T - 1] = i;
+            }
+        }
+        for (int t2 = T - 2; t2 >= 0x00; t2--) {
+            stateSequence[t2] = psy[t2 + 1][stateSequence[t2 + 1]];
+        }
+        return lnProbability;
+    }
+
+    /**
+     * Computes the partial log-probabilities of the first time step.
+     *
+     * @param o The first observation.
+     * @param current The array to store the partial log-probabilities in.
+     */
+    void start(TObs o, double[] current) {
+        Opdf<TObs>[] b = this.opdfs;
+        for (int j = 0x00; j < this.nbStates; j++) {
+            current[j] = this.lnPi[j] + b[j].lnProbability(o);
+        }
+    }
+
+    /**
+     * Performs one step of the Viterbi recursion, taking the beam into
+     * account.
+     *
+     * @param o The observation of the current time step.
+     * @param previous The partial log-probabilities of the previous time step.
+     * @param current The array to store the partial log-probabilities of the
+     * current time step in.
+     * @param pt The array to store the best predecessors in.
+     * @param active A scratch row of state indices.
+     * @param scratch A scratch row.
+     * @param mask A scratch row of flags, only used if the transitions are
+     * sparse.
+     */
+    void step(TObs o, double[] previous, double[] current, int[] pt, int[] active, double[] scratch, boolean[] mask) {
+        int n = this.nbStates;
+        double[] lat = this.lnAt;
+        Opdf<TObs>[] b = this.opdfs;
+        int nbActive = prune(previous, active, scratch);
+        if (this.sparse != null) {
+            boolean[] m = null;
+            if (nbActive < n) {
+                m = mask;
+                Arrays.fill(m, false);
+                for (int k = 0x00; k < nbActive; k++) {
+                    m[active[k]] = true;
+                }
+            }
+            this.sparse.maxForward(previous, m, current, pt, active[0x00]);
+            for (int j = 0x00; j < n; j++) {
+                current[j] += b[j].lnProbability(o);
+            }
+        } else if (nbActive == n) {
+            this.kernels.maxPlus(lat, n, previous, current, pt);
+            for (int j = 0x00; j < n; j++) {
+                current[j] += b[j].lnProbability(o);
+            }
+        } else {
+            for (int j = 0x00; j < n; j++) {
+                int offset = j * n;
+                double max = Double.NEGATIVE_INFINITY;
+                int argmax = active[0x00];
+                for (int k = 0x00; k < nbActive; k++) {
+                    int i = active[k];
+                    double value = previous[i] + lat[offset + i];
+                    if (value > max) {
+                        max = value;
+                        argmax = i;
+                    }
+                }
+                current[j] = max + b[j].lnProbability(o);
+                pt[j] = argmax;
+            }
+        }
+    }
+
+    /**
+     * Computes the most likely state sequence matching an observation
+     * sequence.
+     *
+     * @param oseq A non-empty observation sequence.
+     * @return An array containing the most likely sequence of state numbers.
+     */
+    public int[] stateSequence(List<? extends TObs> oseq) {
+        return this.computeStateSequence(oseq).getItem1();
+    }
+
+    /**
+     * Determines the states that are used as predecessors for the next time
+     * step.
+     *
+     * @param delta The partial log-probabilities of the current time step.
+     * @param active The array to store the indices of the kept states in.
+     * @param scratch A scratch array of the same length as
+     * <code>delta</code>.
+     * @return The number of kept states, stored at the start of
+     * <code>active</code>.
+     */
+    private int prune(double[] delta, int[] active, double[] scratch) {
+        int n = this.nbStates;
+        double best = Double.NEGATIVE_INFINITY;
+        for (int i = 0x00; i < n; i++) {
+            best = Math.max(best, delta[i]);
+        }
+        double bound = best - this.beamThreshold;
+        if (this.beamWidth < n) {
+            System.arraycopy(delta, 0x00, scratch, 0x00, n);
+            Arrays.sort(scratch);
+            bound = Math.max(bound, scratch[n - this.beamWidth]);
+        }
+        int nbActive = 0x00;
+        if (bound == Double.NEGATIVE_INFINITY) {
+            for (int i = 0x00; i < n; i++) {
+                active[i] = i;
+            }
+            return n;
+        }
+        for (int i = 0x00; i < n; i++) {
+            if (delta[i] >= bound && nbActive < this.beamWidth) {
+                active[nbActive++] = i;
+            }
+        }
+        return nbActive;
+    }
+
+}
@@ -0,0 +1,72 @@
+package jahmm.calculators;
+
+/**
+ * The reference implementation of the {@link DenseKernels DenseKernels}: every
+ * kernel is a plain loop with a single accumulator.
+ *
+ * @author kommusoft
+ */
+public final class ScalarDenseKernels extends DenseKernels {
+
+    public static final ScalarDenseKernels Instance = new ScalarDenseKernels();
+
+    /**
+     * Creates the scalar kernels; use {@link #Instance Instance} instead.
+     */
+    public ScalarDenseKernels() {
+    }
+
+    @Override
+    public void forward(double[] at, int n, double[] prev, double[] emission, double[] next) {
+        for (int j = 0x00, row = 0x00; j < n; j++, row += n) {
+            double sum = 0.0d;
+            for (int i = 0x00; i < n; i++) {
+                sum += prev[i] * at[row + i];
+            }
+            next[j] = sum * emission[j];
+        }
+    }
+
+    @Override
+    public void backward(double[] a, int n, double[] next, double[] emission, double[] weighted, double[] prev) {
+        for (int j = 0x00; j < n; j++) {
+            weighted[j] = emission[j] * next[j];
+        }
+        for (int i = 0x00, row = 0x00; i < n; i++, row += n) {
+            double sum = 0.0d;
+            for (int j = 0x00; j < n; j++) {
+                sum += a[row + j] * weighted[j];
+            }
+            prev[i] = sum;
+        }
+    }
+
+    @Override
+    public void accumulateXi(double[] a, int n, double[] alpha, double[] weighted, double factor, double[][] aijNum) {
+        for (int i = 0x00, row = 0x00; i < n; i++, row += n) {
+            double ai = alpha[i] * factor;
+            double[] num = aijNum[i];
+            for (int j = 0x00; j < n; j++) {
+                num[j] += ai * a[row + j] * weighted[j];
+            }
+        }
+    }
+
+    @Override
+    public void maxPlus(double[] lnAt, int n, double[] prev, double[] next, int[] psy) {
+        for (int j = 0x00, row = 0x00; j < n; j++, row += n) {
+            double max = Double.NEGATIVE_INFINITY;
+            int argmax = 0x00;
+            for (int i = 0x00; i < n; i++) {
+                double value = prev[i] + lnAt[row + i];
+                if (value > max) {
+                    max = value;
+                    argmax = i;
+                }
+            }
+            next[j] = max;
+            psy[j] = argmax;
+        }
+    }
+
+}
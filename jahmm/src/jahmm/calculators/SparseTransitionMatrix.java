@@ -0,0 +1,391 @@
+package jahmm.calculators;
+
+import jahmm.RegularHmm;
+
+/**
+ * A frozen, sparse copy of the transition matrix of a
+ * {@link RegularHmm RegularHmm}. Only the structurally non-zero transitions
+ * are stored, both row by row (compressed sparse rows, used by the backward
+ * recursion, the accumulation of the xi values and the sampling of a next
+ * state) and column by column (compressed sparse columns, used by the forward
+ * and the Viterbi recursion). Every kernel thus costs time proportional to the
+ * number of non-zero transitions instead of <code>N*N</code>.
+ * <p>
+ * The structure is either derived from the non-zero transitions, or given as a
+ * band for left-to-right topologies: in the latter case every transition
+ * <code>i -&gt; j</code> with <code>i-lower &le; j &le; i+upper</code> is
+ * stored, even if its probability is currently zero. A band is not detected
+ * by {@link #compileIfSparse compileIfSparse}; it is passed explicitly to a
+ * {@link CompiledRegularHmm CompiledRegularHmm} or a
+ * {@link RegularViterbiLogCalculatorBase RegularViterbiLogCalculatorBase}.
+ * <p>
+ * The sparse kernels are used by the {@link CompiledRegularHmm
+ * CompiledRegularHmm}, thus by the scaled and the compiled forward-backward
+ * calculators, the scaled, fused and checkpointed Baum-Welch learners, the
+ * Viterbi calculators, the forward filter, the fixed-lag smoother and the
+ * Markov generator. The unscaled
+ * {@link RegularForwardBackwardCalculatorBase forward-backward calculator}
+ * and Baum-Welch learner always visit all <code>N*N</code> transitions.
+ * <p>
+ * The matrix is a snapshot: modifications made to the Hidden Markov Model
+ * after the creation of the matrix are not reflected.
+ *
+ * @author kommusoft
+ */
+public final class SparseTransitionMatrix {
+
+    /**
+     * The maximum fraction of non-zero transitions for which
+     * {@link #compileIfSparse compileIfSparse} compiles a sparse matrix.
+     */
+    public static final double MAX_DENSITY = 0.25d;
+
+    /**
+     * Compiles the transition matrix of the given Hidden Markov Model if at
+     * most {@link #MAX_DENSITY MAX_DENSITY} of its transitions are non-zero.
+     *
+     * @param hmm The Hidden Markov Model to compile.
+     * @return A sparse copy of the transition matrix, or <code>null</code> if
+     * the matrix is too dense to benefit from a sparse representation.
+     */
+    public static SparseTransitionMatrix compileIfSparse(RegularHmm<?, ?> hmm) {
+        int n = hmm.nbStates();
+        long nnz = countNonZeros(hmm, (long) (MAX_DENSITY * n * n));
+        if (nnz < 0x00) {
+            return null;
+        }
+        return new SparseTransitionMatrix(hmm, (int) nnz);
+    }
+
+    /**
+     * Counts the non-zero transitions, or returns <code>-1</code> as soon as
+     * there are more than <code>max</code> of them, such that dense matrices
+     * are rejected without scanning them entirely.
+     */
+    private static long countNonZeros(RegularHmm<?, ?> hmm, long max) {
+        int n = hmm.nbStates();
+        long nnz = 0x00;
+        for (int i = 0x00; i < n; i++) {
+            for (int j = 0x00; j < n; j++) {
+                if (hmm.getAij(i, j) != 0.0d && ++nnz > max) {
+                    return -0x01;
+                }
+            }
+        }
+        return nnz;
+    }
+
+    private final int nbStates;
+    /**
+     * The offsets of the rows: the transitions leaving state <code>i</code>
+     * are stored at <code>rowStart[i]</code> (inclusive) up to
+     * <code>rowStart[i+1]</code> (exclusive) of <code>cols</code> and
+     * <code>values</code>, sorted on the target state.
+     */
+    private final int[] rowStart;
+    private final int[] cols;
+    private final double[] values;
+    /**
+     * The offsets of the columns: the transitions entering state
+     * <code>j</code> are stored at <code>colStart[j]</code> (inclusive) up to
+     * <code>colStart[j+1]</code> (exclusive) of <code>rows</code>,
+     * <code>colValues</code> and <code>lnColValues</code>, sorted on the source
+     * state.
+     */
+    private final int[] colStart;
+    private final int[] rows;
+    private final double[] colValues;
+    private final double[] lnColValues;
+
+    /**
+     * Compiles the non-zero transitions of the given Hidden Markov Model.
+     *
+     * @param hmm The Hidden Markov Model to compile.
+     */
+    public SparseTransitionMatrix(RegularHmm<?, ?> hmm) {
+        this(hmm, (int) countNonZeros(hmm, Long.MAX_VALUE));
+    }
+
+    private SparseTransitionMatrix(RegularHmm<?, ?> hmm, int nnz) {
+        int n = hmm.nbStates();
+        this.nbStates = n;
+        this.rowStart = new int[n + 0x01];
+        this.cols = new int[nnz];
+        this.values = new double[nnz];
+        int k = 0x00;
+        for (int i = 0x00; i < n; i++) {
+            this.rowStart[i] = k;
+            for (int j = 0x00; j < n; j++) {
+                double aij = hmm.getAij(i, j);
+                if (aij != 0.0d) {
+                    this.cols[k] = j;
+                    this.values[k++] = aij;
+                }
+            }
+        }
+        this.rowStart[n] = k;
+        this.colStart = new int[n + 0x01];
+        this.rows = new int[nnz];
+        this.colValues = new double[nnz];
+        this.lnColValues = new double[nnz];
+        this.transpose();
+    }
+
+    /**
+     * Compiles the transitions of the given Hidden Markov Model within a band
+     * around the diagonal.
+     *
+     * @param hmm The Hidden Markov Model to compile.
+     * @param lower The (positive) number of states a transition can go back.
+     * @param upper The (positive) number of states a transition can go
+     * forward; a left-to-right model that can skip one state has
+     * <code>lower = 0</code> and <code>upper = 2</code>.
+     * @throws IllegalArgumentException If a transition outside the band has a
+     * non-zero probability.
+     */
+    public SparseTransitionMatrix(RegularHmm<?, ?> hmm, int lower, int upper) {
+        if (lower < 0x00 || upper < 0x00) {
+            throw new IllegalArgumentException("Positive bandwidths expected");
+        }
+        int n = hmm.nbStates();
+        int nnz = 0x00;
+        for (int i = 0x00; i < n; i++) {
+            nnz += Math.min(n - 1, i + upper) - Math.max(0x00, i - lower) + 0x01;
+        }
+        this.nbStates = n;
+        this.rowStart = new int[n + 0x01];
+        this.cols = new int[nnz];
+        this.values = new double[nnz];
+        int k = 0x00;
+        for (int i = 0x00; i < n; i++) {
+            this.rowStart[i] = k;
+            int from = Math.max(0x00, i - lower);
+            int to = Math.min(n - 1, i + upper);
+            for (int j = 0x00; j < n; j++) {
+                double aij = hmm.getAij(i, j);
+                if (j >= from && j <= to) {
+                    this.cols[k] = j;
+                    this.values[k++] = aij;
+                } else if (aij != 0.0d) {
+                    throw new IllegalArgumentException("Transition from " + i + " to " + j + " lies outside the band");
+                }
+            }
+        }
+        this.rowStart[n] = k;
+        this.colStart = new int[n + 0x01];
+        this.rows = new int[nnz];
+        this.colValues = new double[nnz];
+        this.lnColValues = new double[nnz];
+        this.transpose();
+    }
+
+    /**
+     * Fills the compressed sparse columns based on the compressed sparse rows.
+     */
+    private void transpose() {
+        int n = this.nbStates;
+        int[] cs = this.colStart;
+        for (int k = 0x00; k < this.cols.length; k++) {
+            cs[this.cols[k] + 0x01]++;
+        }
+        for (int j = 0x00; j < n; j++) {
+            cs[j + 0x01] += cs[j];
+        }
+        int[] next = new int[n];
+        System.arraycopy(cs, 0x00, next, 0x00, n);
+        for (int i = 0x00; i < n; i++) {
+            for (int k = this.rowStart[i]; k < this.rowStart[i + 0x01]; k++) {
+                int p = next[this.cols[k]]++;
+                this.rows[p] = i;
+                this.colValues[p] = this.values[k];
+                this.lnColValues[p] = Math.log(this.values[k]);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of states of the compiled model.
+     *
+     * @return The number of states of the compiled model.
+     */
+    public int nbStates() {
+        return this.nbStates;
+    }
+
+    /**
+     * Returns the number of stored transitions.
+     *
+     * @return The number of stored transitions.
+     */
+    public int nbNonZeros() {
+        return this.values.length;
+    }
+
+    /**
+     * Returns the probability associated with the transition going from state
+     * <i>i</i> to state <i>j</i>.
+     *
+     * @param i The first state number.
+     * @param j The second state number.
+     * @return The probability associated to the transition going from
+     * <code>i</code> to state <code>j</code>, zero if the transition is not
+     * stored.
+     */
+    public double getAij(int i, int j) {
+        int lo = this.rowStart[i];
+        int hi = this.rowStart[i + 0x01] - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 0x01;
+            int c = this.cols[mid];
+            if (c < j) {
+                lo = mid + 1;
+            } else if (c > j) {
+                hi = mid - 1;
+            } else {
+                return this.values[mid];
+            }
+        }
+        return 0.0d;
+    }
+
+    /**
+     * Performs one step of the forward recursion:
+     * <code>next[j] = emission[j] * sum_i prev[i] * a[i][j]</code>.
+     *
+     * @param prev The alpha values of the previous time step.
+     * @param emission The emission probabilities of the current observation.
+     * @param next The array to store the alpha values of the current time step
+     * in. This array must differ from <code>prev</code>.
+     */
+    public void forward(double[] prev, double[] emission, double[] next) {
+        int n = this.nbStates;
+        int[] cs = this.colStart;
+        int[] r = this.rows;
+        double[] v = this.colValues;
+        for (int j = 0x00; j < n; j++) {
+            double sum = 0.0d;
+            for (int k = cs[j]; k < cs[j + 0x01]; k++) {
+                sum += prev[r[k]] * v[k];
+            }
+            next[j] = sum * emission[j];
+        }
+    }
+
+    /**
+     * Performs one step of the backward recursion:
+     * <code>prev[i] = sum_j a[i][j] * emission[j] * next[j]</code>.
+     *
+     * @param next The beta values of the next time step.
+     * @param emission The emission probabilities of the observation of the
+     * next time step.
+     * @param weighted A scratch array of length <code>nbStates()</code>.
+     * @param prev The array to store the beta values of the current time step
+     * in. This array must differ from <code>next</code>.
+     */
+    public void backward(double[] next, double[] emission, double[] weighted, double[] prev) {
+        int n = this.nbStates;
+        int[] rs = this.rowStart;
+        int[] c = this.cols;
+        double[] v = this.values;
+        for (int j = 0x00; j < n; j++) {
+            weighted[j] = emission[j] * next[j];
+        }
+        for (int i = 0x00; i < n; i++) {
+            double sum = 0.0d;
+            for (int k = rs[i]; k < rs[i + 0x01]; k++) {
+                sum += v[k] * weighted[c[k]];
+            }
+            prev[i] = sum;
+        }
+    }
+
+    /**
+     * Performs the maximization of one step of the Viterbi recursion in
+     * log-space: <code>next[j] = max_i prev[i] + ln(a[i][j])</code> over the
+     * active states <code>i</code>.
+     *
+     * @param prev The partial log-probabilities of the previous time step.
+     * @param active Whether a state of the previous time step can be used as
+     * predecessor, <code>null</code> if all states can be used.
+     * @param next The array to store the maximized log-probabilities in
+     * (without the emission). This array must differ from <code>prev</code>.
+     * @param psy The array to store the best predecessors in.
+     * @param fallback The predecessor stored if a state has no active
+     * predecessor.
+     */
+    public void maxForward(double[] prev, boolean[] active, double[] next, int[] psy, int fallback) {
+        int n = this.nbStates;
+        int[] cs = this.colStart;
+        int[] r = this.rows;
+        double[] lv = this.lnColValues;
+        for (int j = 0x00; j < n; j++) {
+            double max = Double.NEGATIVE_INFINITY;
+            int argmax = fallback;
+            for (int k = cs[j]; k < cs[j + 0x01]; k++) {
+                int i = r[k];
+                if (active == null || active[i]) {
+                    double value = prev[i] + lv[k];
+                    if (value > max) {
+                        max = value;
+                        argmax = i;
+                    }
+                }
+            }
+            next[j] = max;
+            psy[j] = argmax;
+        }
+    }
+
+    /**
+     * Adds the xi values of one time step to the â-numerators:
+     * <code>aijNum[i][j] += factor * alpha[i] * a[i][j] * weighted[j]</code>
+     * for every stored transition.
+     *
+     * @param alpha The alpha values of the time step.
+     * @param weighted The emissions multiplied with the beta values of the next
+     * time step.
+     * @param factor The normalization factor of the xi values.
+     * @param aijNum The numerators of the â-values to update.
+     */
+    public void accumulateXi(double[] alpha, double[] weighted, double factor, double[][] aijNum) {
+        int n = this.nbStates;
+        int[] rs = this.rowStart;
+        int[] c = this.cols;
+        double[] v = this.values;
+        for (int i = 0x00; i < n; i++) {
+            double ai = alpha[i] * factor;
+            if (ai != 0.0d) {
+                double[] num = aijNum[i];
+                for (int k = rs[i]; k < rs[i + 0x01]; k++) {
+                    int j = c[k];
+                    num[j] += ai * v[k] * weighted[j];
+                }
+            }
+        }
+    }
+
+    /**
+     * Samples the next state given the current state.
+     *
+     * @param i The current state.
+     * @param rand A uniformly distributed random number in
+     * <code>[0,1)</code>.
+     * @return The sampled next state. If rounding errors make the
+     * probabilities of the transitions leaving <code>i</code> sum up to less
+     * than <code>rand</code>, the last stored target state is returned.
+     */
+    public int nextState(int i, double rand) {
+        int end = this.rowStart[i + 0x01];
+        int k = this.rowStart[i];
+        if (k == end) {
+            return this.nbStates - 1;
+        }
+        for (; k < end - 1; k++) {
+            if ((rand -= this.values[k]) < 0) {
+                return this.cols[k];
+            }
+        }
+        return this.cols[end - 1];
+    }
+
+}
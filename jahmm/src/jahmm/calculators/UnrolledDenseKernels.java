@@ -0,0 +1,134 @@
+package jahmm.calculators;
+
+/**
+ * An implementation of the {@link DenseKernels DenseKernels} of which the
+ * reductions are unrolled over four independent accumulators. The
+ * accumulators break the dependency chain of a single running sum, such that
+ * the processor can overlap the multiplications and additions of consecutive
+ * elements, and the just-in-time compiler can map the lanes onto vector
+ * registers. The element-wise loops are kept as plain loops since they are
+ * vectorized as they are.
+ * <p>
+ * The sums are computed in a different order than the
+ * {@link ScalarDenseKernels ScalarDenseKernels}, thus the results differ up to
+ * rounding errors. The max-plus kernel resolves ties in the same way and
+ * thus returns exactly the same results.
+ *
+ * @author kommusoft
+ */
+public final class UnrolledDenseKernels extends DenseKernels {
+
+    public static final UnrolledDenseKernels Instance = new UnrolledDenseKernels();
+
+    /**
+     * Computes <code>sum_k x[k] * y[offset+k]</code> for <code>k</code> in
+     * <code>[0,n)</code> using four accumulators.
+     */
+    private static double dot(double[] x, double[] y, int offset, int n) {
+        double s0 = 0.0d, s1 = 0.0d, s2 = 0.0d, s3 = 0.0d;
+        int k = 0x00;
+        for (int bound = n - 0x03; k < bound; k += 0x04) {
+            int o = offset + k;
+            s0 += x[k] * y[o];
+            s1 += x[k + 0x01] * y[o + 0x01];
+            s2 += x[k + 0x02] * y[o + 0x02];
+            s3 += x[k + 0x03] * y[o + 0x03];
+        }
+        for (; k < n; k++) {
+            s0 += x[k] * y[offset + k];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * Creates the unrolled kernels; use {@link #Instance Instance} instead.
+     */
+    public UnrolledDenseKernels() {
+    }
+
+    @Override
+    public void forward(double[] at, int n, double[] prev, double[] emission, double[] next) {
+        for (int j = 0x00, row = 0x00; j < n; j++, row += n) {
+            next[j] = dot(prev, at, row, n) * emission[j];
+        }
+    }
+
+    @Override
+    public void backward(double[] a, int n, double[] next, double[] emission, double[] weighted, double[] prev) {
+        for (int j = 0x00; j < n; j++) {
+            weighted[j] = emission[j] * next[j];
+        }
+        for (int i = 0x00, row = 0x00; i < n; i++, row += n) {
+            prev[i] = dot(weighted, a, row, n);
+        }
+    }
+
+    @Override
+    public void accumulateXi(double[] a, int n, double[] alpha, double[] weighted, double factor, double[][] aijNum) {
+        for (int i = 0x00, row = 0x00; i < n; i++, row += n) {
+            double ai = alpha[i] * factor;
+            if (ai != 0.0d) {
+                double[] num = aijNum[i];
+                for (int j = 0x00; j < n; j++) {
+                    num[j] += ai * a[row + j] * weighted[j];
+                }
+            }
+        }
+    }
+
+    @Override
+    public void maxPlus(double[] lnAt, int n, double[] prev, double[] next, int[] psy) {
+        for (int j = 0x00, row = 0x00; j < n; j++, row += n) {
+            double m0 = Double.NEGATIVE_INFINITY, m1 = m0, m2 = m0, m3 = m0;
+            int a0 = 0x00, a1 = 0x00, a2 = 0x00, a3 = 0x00;
+            int i = 0x00;
+            for (int bound = n - 0x03; i < bound; i += 0x04) {
+                int o = row + i;
+                double v0 = prev[i] + lnAt[o];
+                double v1 = prev[i + 0x01] + lnAt[o + 0x01];
+                double v2 = prev[i + 0x02] + lnAt[o + 0x02];
+                double v3 = prev[i + 0x03] + lnAt[o + 0x03];
+                if (v0 > m0) {
+                    m0 = v0;
+                    a0 = i;
+                }
+                if (v1 > m1) {
+                    m1 = v1;
+                    a1 = i + 0x01;
+                }
+                if (v2 > m2) {
+                    m2 = v2;
+                    a2 = i + 0x02;
+                }
+                if (v3 > m3) {
+                    m3 = v3;
+                    a3 = i + 0x03;
+                }
+            }
+            for (; i < n; i++) {
+                double v = prev[i] + lnAt[row + i];
+                if (v > m0) {
+                    m0 = v;
+                    a0 = i;
+                }
+            }
+            double max = m0;
+            int argmax = a0;
+            if (m1 > max || (m1 == max && m1 != Double.NEGATIVE_INFINITY && a1 < argmax)) {
+                max = m1;
+                argmax = a1;
+            }
+            if (m2 > max || (m2 == max && m2 != Double.NEGATIVE_INFINITY && a2 < argmax)) {
+                max = m2;
+                argmax = a2;
+            }
+            if (m3 > max || (m3 == max && m3 != Double.NEGATIVE_INFINITY && a3 < argmax)) {
+                max = m3;
+                argmax = a3;
+            }
+            next[j] = max;
+            psy[j] = argmax;
+        }
+    }
+
+}
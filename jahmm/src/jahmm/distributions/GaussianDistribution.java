@@ -67,6 +67,17 @@ public class GaussianDistribution implements RandomDistribution {
                 * Math.exp(expArg);
     }
 
+    /**
+     * Returns the natural logarithm of the probability density of a value.
+     *
+     * @param n A value.
+     * @return The natural logarithm of the density of <code>n</code>.
+     */
+    public double lnProbability(double n) {
+        double d = n - mean;
+        return -0.5d * (Math.log(2.0d * Math.PI * variance) + d * d / variance);
+    }
+
     @Override
     public GaussianDistribution clone() throws CloneNotSupportedException {
         return new GaussianDistribution(this.mean, this.variance);
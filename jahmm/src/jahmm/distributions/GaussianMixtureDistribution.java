@@ -146,6 +146,32 @@ public class GaussianMixtureDistribution
         return sum;
     }
 
+    /**
+     * Returns the natural logarithm of the probability density of a value. The
+     * logarithms of the weighted component densities are combined with the
+     * log-sum-exp trick, such that values far from all means do not underflow.
+     *
+     * @param n A value.
+     * @return The natural logarithm of the density of <code>n</code>.
+     */
+    public double lnProbability(double n) {
+        int k = distributions.length;
+        double max = Double.NEGATIVE_INFINITY;
+        double[] terms = new double[k];
+        for (int i = 0; i < k; i++) {
+            terms[i] = Math.log(proportions[i]) + distributions[i].lnProbability(n);
+            max = Math.max(max, terms[i]);
+        }
+        if (max == Double.NEGATIVE_INFINITY) {
+            return max;
+        }
+        double sum = 0.;
+        for (int i = 0; i < k; i++) {
+            sum += Math.exp(terms[i] - max);
+        }
+        return max + Math.log(sum);
+    }
+
     @Override
     public GaussianMixtureDistribution clone() throws CloneNotSupportedException {
         GaussianDistribution[] gdo = this.distributions;
@@ -8,6 +8,11 @@ import java.util.Random;
 
 /**
  * This class implements a multi-variate Gaussian distribution.
+ * <p>
+ * The Cholesky factor of the covariance matrix and the logarithm of the
+ * normalization constant are computed once and cached until the covariance
+ * matrix is modified, such that evaluating the density only costs a forward
+ * substitution.
  */
 public class MultiGaussianDistribution implements MultiRandomDistribution {
 
@@ -18,9 +23,21 @@ public class MultiGaussianDistribution implements MultiRandomDistribution {
     private final int dimension;
     private final double[] mean;
     private final double[][] covariance;
-    private double[][] covarianceL = null; // covariance' Cholesky decomposition
-    private double[][] covarianceInv = null;
-    private double covarianceDet;
+    /**
+     * A buffer per thread for the whitened difference vector of
+     * {@link #lnProbability lnProbability}.
+     */
+    private static final ThreadLocal<double[]> BUFFER = new ThreadLocal<double[]>() {
+        @Override
+        protected double[] initialValue() {
+            return new double[0x10];
+        }
+    };
+    /**
+     * The precision form of the covariance matrix, computed when it is first
+     * needed and discarded when the covariance changes.
+     */
+    private transient volatile Precision precision;
 
     /**
      * Creates a new pseudo-random, multivariate gaussian distribution.
@@ -81,21 +98,13 @@ public class MultiGaussianDistribution implements MultiRandomDistribution {
         return SimpleMatrix.matrix(this.covariance);
     }
 
-    private double[][] covarianceL() {
-        if (this.covarianceL == null) {
-            this.covarianceL = SimpleMatrix.decomposeCholesky(this.covariance);
-            this.covarianceDet = SimpleMatrix.determinantCholesky(this.covarianceL);
-        }
-
-        return covarianceL;
-    }
-
-    private double[][] covarianceInv() {
-        if (this.covarianceInv == null) {
-            this.covarianceInv = SimpleMatrix.inverseCholesky(covarianceL());
+    private Precision precision() {
+        Precision p = this.precision;
+        if (p == null) {
+            p = new Precision(this.covariance);
+            this.precision = p;
         }
-
-        return this.covarianceInv;
+        return p;
     }
 
     /**
@@ -104,8 +113,7 @@ public class MultiGaussianDistribution implements MultiRandomDistribution {
      * @return The covariance matrix determinant.
      */
     public double covarianceDet() {
-        this.covarianceL();
-        return this.covarianceDet;
+        return this.precision().determinant;
     }
 
     /**
@@ -122,17 +130,47 @@ public class MultiGaussianDistribution implements MultiRandomDistribution {
             d[i] = this.randomGenerator.nextGaussian();
         }
 
-        return SimpleMatrix.plus(SimpleMatrix.times(this.covarianceL(), d), this.mean);
+        return SimpleMatrix.plus(SimpleMatrix.times(this.precision().l, d), this.mean);
     }
 
     @Override
     public double probability(double[] v) {
+        return Math.exp(this.lnProbability(v));
+    }
+
+    /**
+     * Returns the natural logarithm of the probability density of a vector.
+     * The Mahalanobis term is computed by forward substitution with the cached
+     * Cholesky factor of the covariance matrix into a buffer per thread, thus
+     * without allocating arrays.
+     *
+     * @param v A vector of the dimension of this distribution.
+     * @return The natural logarithm of the density of <code>v</code>.
+     */
+    public double lnProbability(double[] v) {
         if (v.length != this.dimension) {
             throw new IllegalArgumentException("Argument array size is not compatible with this distribution");
         }
-        double[][] vmm = SimpleMatrix.matrix(SimpleMatrix.minus(v, mean));
-        double expArg = -0.5d * SimpleMatrix.times(SimpleMatrix.transpose(vmm), SimpleMatrix.times(this.covarianceInv(), vmm))[0][0];
-        return Math.exp(expArg) / (Math.pow(2.0d * Math.PI, 0.5d * dimension) * Math.pow(covarianceDet(), 0.5d));
+        Precision p = this.precision();
+        double[][] l = p.l;
+        int d = this.dimension;
+        double[] z = BUFFER.get();
+        if (z.length < d) {
+            z = new double[Math.max(d, z.length << 0x01)];
+            BUFFER.set(z);
+        }
+        double quadratic = 0.0d;
+        for (int i = 0; i < d; i++) {
+            double[] li = l[i];
+            double s = v[i] - this.mean[i];
+            for (int k = 0; k < i; k++) {
+                s -= li[k] * z[k];
+            }
+            s /= li[i];
+            z[i] = s;
+            quadratic += s * s;
+        }
+        return p.lnNormalizer - 0.5d * quadratic;
     }
 
     public void setMean(double[] mean) {
@@ -145,6 +183,7 @@ public class MultiGaussianDistribution implements MultiRandomDistribution {
 
     public void setCovariance(int i, int j, double covariance) {
         this.covariance[i][j] = covariance;
+        this.precision = null;
     }
 
     public double mean(int i) {
@@ -159,10 +198,33 @@ public class MultiGaussianDistribution implements MultiRandomDistribution {
         for (int i = 0x00; i < covariance.length; i++) {
             System.arraycopy(covariance[i], 0, this.covariance[i], 0, covariance[i].length);
         }
+        this.precision = null;
     }
 
     @Override
     public MultiGaussianDistribution clone() throws CloneNotSupportedException {
         return new MultiGaussianDistribution(this.mean, this.covariance);
     }
+
+    /**
+     * The Cholesky factor of a covariance matrix together with its determinant
+     * and the logarithm of the normalization constant of the density.
+     */
+    private static final class Precision {
+
+        private final double[][] l;
+        private final double determinant;
+        private final double lnNormalizer;
+
+        private Precision(double[][] covariance) {
+            this.l = SimpleMatrix.decomposeCholesky(covariance);
+            this.determinant = SimpleMatrix.determinantCholesky(this.l);
+            double lnDiagonal = 0.0d;
+            for (int i = 0; i < this.l.length; i++) {
+                lnDiagonal += Math.log(this.l[i][i]);
+            }
+            this.lnNormalizer = -0.5d * this.l.length * Math.log(2.0d * Math.PI) - lnDiagonal;
+        }
+
+    }
 }
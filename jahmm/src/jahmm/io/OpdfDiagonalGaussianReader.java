@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2004-2009, Jean-Marc François. All Rights Reserved.
+ * Licensed under the New BSD license.  See the LICENSE file.
+ */
+package jahmm.io;
+
+import jahmm.observables.OpdfDiagonalGaussian;
+import java.io.IOException;
+import java.io.StreamTokenizer;
+
+/**
+ * This class implements a {@link OpdfDiagonalGaussian} reader. The syntax of
+ * the distribution description is the following.
+ * <p>
+ * The description always begins with the keyword
+ * <tt>DiagonalGaussianOPDF</tt>. The next (resp. last) symbol is an opening
+ * (resp. closing) bracket. Between the backets are two series of numbers
+ * between brackets and separated by a space.
+ * <p>
+ * The first describes the distribution's mean vector, the second the
+ * variances of the elements of the vectors (the diagonal of the covariance
+ * matrix); each number is the corresponding vector element, from top to
+ * bottom.
+ * <p>
+ * For example, reading<br>
+ * <tt>DiagonalGaussianOPDF [ [ 5. 5. ] [ 1.2 4. ] ]</tt>
+ * returns a distribution equivalent to<br>
+ * <code>new OpdfDiagonalGaussian(new double[] { 5., 5. },
+ *       new double[] { 1.2, 4. })</code>.
+ */
+public class OpdfDiagonalGaussianReader
+        extends OpdfReader<OpdfDiagonalGaussian> {
+
+    @Override
+    String keyword() {
+        return "DiagonalGaussianOPDF";
+    }
+
+    @Override
+    public OpdfDiagonalGaussian read(StreamTokenizer st)
+            throws IOException, FileFormatException {
+        HmmReader.readWords(st, keyword(), "[");
+
+        double[] means = OpdfReader.read(st, -1);
+        double[] variances = OpdfReader.read(st, means.length);
+
+        HmmReader.readWords(st, "]");
+
+        return new OpdfDiagonalGaussian(means, variances);
+    }
+}
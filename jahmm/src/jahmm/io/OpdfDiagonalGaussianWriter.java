@@ -0,0 +1,27 @@
+/*
+ * Copyright (c) 2004-2009, Jean-Marc François. All Rights Reserved.
+ * Licensed under the New BSD license.  See the LICENSE file.
+ */
+package jahmm.io;
+
+import jahmm.observables.OpdfDiagonalGaussian;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * This class implements a {@link OpdfDiagonalGaussian} writer. It is
+ * compatible with the {@link OpdfDiagonalGaussianReader} class.
+ */
+public class OpdfDiagonalGaussianWriter
+        extends OpdfWriter<OpdfDiagonalGaussian> {
+
+    @Override
+    public void write(Writer writer, OpdfDiagonalGaussian opdf)
+            throws IOException {
+        writer.write("DiagonalGaussianOPDF [ ");
+        write(writer, opdf.mean());
+        writer.write(" ");
+        write(writer, opdf.variance());
+        writer.write(" ]");
+    }
+}
@@ -31,7 +31,8 @@ public class OpdfGenericReader
             new OpdfIntegerReader(),
             new OpdfGaussianReader(),
             new OpdfGaussianMixtureReader(),
-            new OpdfMultiGaussianReader()}) {
+            new OpdfMultiGaussianReader(),
+            new OpdfDiagonalGaussianReader()}) {
             if (r.keyword().equals(st.sval)) {
                 st.pushBack();
                 return r.read(st);
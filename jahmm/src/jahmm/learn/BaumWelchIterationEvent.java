@@ -0,0 +1,149 @@
+package jahmm.learn;
+
+import java.io.Serializable;
+
+/**
+ * The statistics of a single iteration of the Baum-Welch algorithm, as
+ * reported to a {@link BaumWelchListener BaumWelchListener}.
+ * <p>
+ * The log-likelihood is a by-product of the expectation step and is therefore
+ * the log-likelihood of the sequences given the model the iteration started
+ * from, not the model it produced.
+ *
+ * @author kommusoft
+ */
+public final class BaumWelchIterationEvent implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int iteration;
+    private final double lnLikelihood;
+    private final double relativeImprovement;
+    private final long elapsedNanos;
+    private final long totalNanos;
+    private final int nbSequences;
+    private final double piDelta;
+    private final double aDelta;
+
+    /**
+     * Creates a new iteration event.
+     *
+     * @param iteration The (zero-based) index of the iteration.
+     * @param lnLikelihood The log-likelihood of the sequences given the model
+     * the iteration started from.
+     * @param relativeImprovement The improvement of the log-likelihood relative
+     * to the previous iteration, <code>NaN</code> for the first iteration.
+     * @param elapsedNanos The duration of the iteration in nanoseconds.
+     * @param totalNanos The time spent since the learning started in
+     * nanoseconds.
+     * @param nbSequences The number of sequences processed in the iteration.
+     * @param piDelta The largest absolute change of an initial state
+     * probability.
+     * @param aDelta The largest absolute change of a transition probability.
+     */
+    public BaumWelchIterationEvent(int iteration, double lnLikelihood, double relativeImprovement, long elapsedNanos, long totalNanos, int nbSequences, double piDelta, double aDelta) {
+        this.iteration = iteration;
+        this.lnLikelihood = lnLikelihood;
+        this.relativeImprovement = relativeImprovement;
+        this.elapsedNanos = elapsedNanos;
+        this.totalNanos = totalNanos;
+        this.nbSequences = nbSequences;
+        this.piDelta = piDelta;
+        this.aDelta = aDelta;
+    }
+
+    /**
+     * Gets the (zero-based) index of the iteration.
+     *
+     * @return The index of the iteration.
+     */
+    public int getIteration() {
+        return this.iteration;
+    }
+
+    /**
+     * Gets the log-likelihood of the sequences given the model the iteration
+     * started from.
+     *
+     * @return The natural logarithm of the probability of the sequences.
+     */
+    public double getLnLikelihood() {
+        return this.lnLikelihood;
+    }
+
+    /**
+     * Gets the improvement of the log-likelihood relative to the previous
+     * iteration: <code>(ll - llPrev) / |llPrev|</code>, or the absolute
+     * improvement <code>ll - llPrev</code> if <code>llPrev</code> is zero or
+     * infinite.
+     *
+     * @return The relative improvement, <code>NaN</code> for the first
+     * iteration.
+     */
+    public double getRelativeImprovement() {
+        return this.relativeImprovement;
+    }
+
+    /**
+     * Gets the duration of the iteration.
+     *
+     * @return The duration of the iteration in nanoseconds.
+     */
+    public long getElapsedNanos() {
+        return this.elapsedNanos;
+    }
+
+    /**
+     * Gets the time spent since the learning started, including this
+     * iteration.
+     *
+     * @return The total time in nanoseconds.
+     */
+    public long getTotalNanos() {
+        return this.totalNanos;
+    }
+
+    /**
+     * Gets the number of sequences processed in the iteration.
+     *
+     * @return The number of sequences.
+     */
+    public int getNbSequences() {
+        return this.nbSequences;
+    }
+
+    /**
+     * Gets the throughput of the iteration.
+     *
+     * @return The number of sequences processed per second.
+     */
+    public double getSequencesPerSecond() {
+        return this.nbSequences * 1e9d / Math.max(this.elapsedNanos, 1L);
+    }
+
+    /**
+     * Gets the largest absolute change of an initial state probability made by
+     * the iteration.
+     *
+     * @return The largest change of the pi-values.
+     */
+    public double getPiDelta() {
+        return this.piDelta;
+    }
+
+    /**
+     * Gets the largest absolute change of a transition probability made by the
+     * iteration.
+     *
+     * @return The largest change of the a-values.
+     */
+    public double getADelta() {
+        return this.aDelta;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Iteration %d --- ln(P): %s improvement: %s time: %d ms (%.1f sequences/s) delta pi: %s delta a: %s", this.iteration, this.lnLikelihood, this.relativeImprovement, this.elapsedNanos / 1_000_000L, this.getSequencesPerSecond(), this.piDelta, this.aDelta);
+    }
+
+}
@@ -2,9 +2,22 @@ package jahmm.learn;
 
 import jahmm.Hmm;
 import jahmm.calculators.ForwardBackwardCalculator;
+import jahmm.calculators.ForwardBackwardResult;
 import jahmm.observables.Observation;
+import jahmm.observables.OpdfAccumulator;
+import jahmm.observables.OpdfBase;
 import java.lang.reflect.Array;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import jutlis.tuples.Tuple2;
+import jutlis.tuples.Tuple2Base;
 import jutlis.tuples.Tuple3;
 
 /**
@@ -25,10 +38,159 @@ public abstract class BaumWelchLearnerBase<TObs extends Observation, TInt extend
      * Number of iterations performed by the {@link #learn} method.
      */
     protected int nbIterations = 9;
+    /**
+     * The executor used to process the sequences in parallel, <code>null</code>
+     * if the sequences are processed sequentially.
+     */
+    private ExecutorService executor;
+    /**
+     * The number of chunks the sequences are split in when processed in
+     * parallel.
+     */
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    /**
+     * The relative log-likelihood improvement below which the learning stops,
+     * zero if the learning does not stop on convergence.
+     */
+    private double convergenceThreshold = 0.0d;
+    /**
+     * The wall-clock time (in nanoseconds) after which the learning stops,
+     * zero if the time is not limited.
+     */
+    private long timeBudget = 0x00;
+    /**
+     * The listeners notified after every iteration.
+     */
+    private final List<BaumWelchListener> listeners = new CopyOnWriteArrayList<>();
 
     protected BaumWelchLearnerBase() {
     }
 
+    /**
+     * Gets the relative log-likelihood improvement below which the
+     * {@link #learn} method stops.
+     *
+     * @return The convergence threshold, zero if the learning does not stop on
+     * convergence.
+     */
+    public double getConvergenceThreshold() {
+        return this.convergenceThreshold;
+    }
+
+    /**
+     * Sets the relative log-likelihood improvement below which the
+     * {@link #learn} method stops. The learning stops as soon as
+     * <code>(ll - llPrev) / |llPrev|</code> drops below the threshold, where
+     * <code>ll</code> and <code>llPrev</code> are the log-likelihoods of the
+     * sequences computed by two subsequent iterations. If <code>llPrev</code>
+     * is zero or infinite, the absolute improvement <code>ll - llPrev</code>
+     * is used instead. The number of iterations remains an upper bound.
+     *
+     * @param convergenceThreshold The (positive) threshold, zero to perform
+     * all iterations.
+     */
+    public void setConvergenceThreshold(double convergenceThreshold) {
+        if (!(convergenceThreshold >= 0.0d)) {
+            throw new IllegalArgumentException("Positive number expected");
+        }
+        this.convergenceThreshold = convergenceThreshold;
+    }
+
+    /**
+     * Gets the wall-clock time after which the {@link #learn} method stops.
+     *
+     * @param unit The unit of the returned time.
+     * @return The time budget, zero if the time is not limited.
+     */
+    public long getTimeBudget(TimeUnit unit) {
+        return unit.convert(this.timeBudget, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Sets the wall-clock time after which the {@link #learn} method stops.
+     * The budget is checked after every iteration, thus the iteration running
+     * when the budget expires is completed.
+     *
+     * @param time The (positive) time budget, zero if the time is not limited.
+     * @param unit The unit of the given time.
+     */
+    public void setTimeBudget(long time, TimeUnit unit) {
+        if (time < 0) {
+            throw new IllegalArgumentException("Positive number expected");
+        }
+        this.timeBudget = unit.toNanos(time);
+    }
+
+    /**
+     * Adds a listener that is notified after every iteration of the
+     * {@link #learn} method.
+     *
+     * @param listener The listener to add.
+     */
+    public void addListener(BaumWelchListener listener) {
+        this.listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener added with {@link #addListener addListener}.
+     *
+     * @param listener The listener to remove.
+     */
+    public void removeListener(BaumWelchListener listener) {
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * Gets the executor used to process the sequences in parallel.
+     *
+     * @return The executor used to process the sequences in parallel,
+     * <code>null</code> if the sequences are processed sequentially.
+     */
+    public ExecutorService getExecutor() {
+        return this.executor;
+    }
+
+    /**
+     * Sets the executor used to process the sequences in parallel. The
+     * sequences of an iteration are split in {@link #getParallelism} chunks
+     * that are each processed by a separate task. Every task keeps its own
+     * expected transition counts; the counts are merged in a fixed order such
+     * that the result does not depend on the scheduling of the tasks.
+     *
+     * @param executor The executor to use, for instance a
+     * {@link java.util.concurrent.ForkJoinPool ForkJoinPool}, or
+     * <code>null</code> to process the sequences sequentially.
+     */
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+        if (executor instanceof ForkJoinPool) {
+            this.parallelism = ((ForkJoinPool) executor).getParallelism();
+        }
+    }
+
+    /**
+     * Gets the number of chunks the sequences are split in when processed in
+     * parallel.
+     *
+     * @return The number of chunks.
+     */
+    public int getParallelism() {
+        return this.parallelism;
+    }
+
+    /**
+     * Sets the number of chunks the sequences are split in when processed in
+     * parallel.
+     *
+     * @param parallelism The (strictly positive) number of chunks.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Strictly positive number expected");
+        }
+        this.parallelism = parallelism;
+    }
+
     /**
      * Returns the number of iterations performed by the {@link #learn} method.
      *
@@ -74,13 +236,37 @@ public abstract class BaumWelchLearnerBase<TObs extends Observation, TInt extend
     }
 
     /**
-     * Does a fixed number of iterations (see {@link #getNbIterations}) of the
-     * Baum-Welch algorithm.
+     * Gets the emission matrix of the given sequence. If the forward-backward
+     * result already carries the emission matrix (see
+     * {@link ForwardBackwardResult ForwardBackwardResult}), that matrix is
+     * reused, otherwise the emissions are computed by the calculator.
+     *
+     * @param hmm The given Hidden Markov Model.
+     * @param obsSeq The given list of interactions.
+     * @param abp The alpha- and beta-values and the probability of the list of
+     * interactions.
+     * @return The emission matrix: <code>emissions[t][i]</code> is the
+     * probability of the <code>t</code>-th observation in state <code>i</code>.
+     */
+    protected double[][] getEmissions(THmm hmm, List<? extends TInt> obsSeq, Tuple3<TAlpha, TBeta, Double> abp) {
+        if (abp instanceof ForwardBackwardResult) {
+            return ((ForwardBackwardResult) abp).getEmissions();
+        }
+        return this.getCalculator().computeEmissions(hmm, obsSeq);
+    }
+
+    /**
+     * Does at most the given number of iterations of the Baum-Welch algorithm.
+     * The learning stops earlier if the relative improvement of the
+     * log-likelihood drops below the {@link #getConvergenceThreshold
+     * convergence threshold} or if the {@link #getTimeBudget time budget} is
+     * exceeded. After every iteration, the listeners are notified.
      *
      * @param initialHmm An initial estimation of the expected HMM. This
      * estimate is critical as the Baum-Welch algorithm only find local minima
      * of its likelihood function.
-     * @param nbIterations The number of iterations in the learning process.
+     * @param nbIterations The maximum number of iterations in the learning
+     * process.
      * @param sequences The observation sequences on which the learning is
      * based. Each sequence must have a length higher or equal to 2.
      * @return The HMM that best matches the set of observation sequences given
@@ -89,15 +275,91 @@ public abstract class BaumWelchLearnerBase<TObs extends Observation, TInt extend
     @Override
     public THmm learn(THmm initialHmm, int nbIterations, List<? extends List<? extends TInt>> sequences) {
         THmm hmm = initialHmm;
+        long start = System.nanoTime();
+        double previous = Double.NaN;
         for (int i = 0; i < nbIterations; i++) {
-            hmm = iterate(hmm, sequences);
+            long iterationStart = System.nanoTime();
+            Tuple2<THmm, Double> result = iterateLnLikelihood(hmm, sequences);
+            THmm nhmm = result.getItem1();
+            double lnLikelihood = result.getItem2();
+            long now = System.nanoTime();
+            double improvement = relativeImprovement(previous, lnLikelihood);
+            if (!this.listeners.isEmpty()) {
+                BaumWelchIterationEvent event = new BaumWelchIterationEvent(i, lnLikelihood, improvement, now - iterationStart, now - start, sequences.size(), piDelta(hmm, nhmm), aDelta(hmm, nhmm));
+                for (BaumWelchListener listener : this.listeners) {
+                    listener.iterationCompleted(event);
+                }
+            }
+            hmm = nhmm;
+            previous = lnLikelihood;
+            if (this.convergenceThreshold > 0.0d && improvement < this.convergenceThreshold) {
+                break;
+            }
+            if (this.timeBudget > 0x00 && now - start >= this.timeBudget) {
+                break;
+            }
         }
         return hmm;
     }
 
     /**
-     * Does a fixed number of iterations (see {@link #getNbIterations}) of the
-     * Baum-Welch algorithm.
+     * Computes the improvement of the log-likelihood relative to the previous
+     * iteration. If the previous log-likelihood is zero or infinite, the
+     * relative improvement is undefined and the absolute improvement is
+     * returned, such that the result is only <code>NaN</code> for the first
+     * iteration and the convergence test is never silently disabled.
+     *
+     * @param previous The log-likelihood of the previous iteration,
+     * <code>NaN</code> for the first iteration.
+     * @param lnLikelihood The log-likelihood of the current iteration.
+     * @return The improvement of the log-likelihood.
+     */
+    private static double relativeImprovement(double previous, double lnLikelihood) {
+        if (Double.isNaN(previous)) {
+            return Double.NaN;
+        }
+        if (lnLikelihood == previous) {
+            return 0.0d;
+        }
+        if (previous == 0.0d || Double.isInfinite(previous)) {
+            return lnLikelihood - previous;
+        }
+        return (lnLikelihood - previous) / Math.abs(previous);
+    }
+
+    /**
+     * Computes the largest absolute difference between the initial state
+     * probabilities of two Hidden Markov Models with the same number of
+     * states.
+     */
+    private static double piDelta(Hmm<?, ?, ?> hmm, Hmm<?, ?, ?> nhmm) {
+        double delta = 0.0d;
+        int N = hmm.nbStates();
+        for (int i = 0; i < N; i++) {
+            delta = Math.max(delta, Math.abs(nhmm.getPi(i) - hmm.getPi(i)));
+        }
+        return delta;
+    }
+
+    /**
+     * Computes the largest absolute difference between the transition
+     * probabilities of two Hidden Markov Models with the same number of
+     * states.
+     */
+    private static double aDelta(Hmm<?, ?, ?> hmm, Hmm<?, ?, ?> nhmm) {
+        double delta = 0.0d;
+        int N = hmm.nbStates();
+        for (int i = 0; i < N; i++) {
+            for (int j = 0; j < N; j++) {
+                delta = Math.max(delta, Math.abs(nhmm.getAij(i, j) - hmm.getAij(i, j)));
+            }
+        }
+        return delta;
+    }
+
+    /**
+     * Does at most {@link #getNbIterations} iterations of the Baum-Welch
+     * algorithm, see {@link #learn(jahmm.Hmm, int, java.util.List) learn}.
      *
      * @param initialHmm An initial estimation of the expected HMM. This
      * estimate is critical as the Baum-Welch algorithm only find local minima
@@ -180,64 +442,238 @@ public abstract class BaumWelchLearnerBase<TObs extends Observation, TInt extend
      * based. Each sequence must have a length higher or equal to 2.
      * @return A new, updated HMM.
      *
-     * gamma and xi arrays are those defined by Rabiner and Juang allGamma[n] =
-     * gamma array associated to observation sequence n.
+     * gamma and xi arrays are those defined by Rabiner and Juang. The gamma
+     * array of a sequence is only kept until it is streamed into the pi-numerators
+     * and the opdf accumulators.
      *
      * a[i][j] = aijNum[i][j] / aijDen[i] aijDen[i] = expected number of
      * transitions from state i aijNum[i][j] = expected number of transitions
      * from state i to j
      */
     @Override
-    @SuppressWarnings("unchecked")
     public THmm iterate(THmm hmm, List<? extends List<? extends TInt>> sequences) {
+        return this.iterateLnLikelihood(hmm, sequences).getItem1();
+    }
+
+    /**
+     * Performs one iteration of the Baum-Welch algorithm and reports the
+     * log-likelihood of the sequences given the previously estimated HMM. The
+     * log-likelihood is a by-product of the expectation step.
+     *
+     * @param hmm A previously estimated HMM.
+     * @param sequences The observation sequences on which the learning is
+     * based. Each sequence must have a length higher or equal to 2.
+     * @return A tuple containing the new, updated HMM and the natural logarithm
+     * of the probability of the sequences given <code>hmm</code>.
+     */
+    @SuppressWarnings("unchecked")
+    protected Tuple2<THmm, Double> iterateLnLikelihood(THmm hmm, List<? extends List<? extends TInt>> sequences) {
         THmm nhmm;
         try {
             nhmm = (THmm) hmm.clone();
         } catch (CloneNotSupportedException e) {
             throw new InternalError();
         }
-        TGamma[] allGamma = null;
 
         TADen[] aijNum = this.createANumerator(hmm);
         TADen aijDen = this.createADenominator(hmm);
+        double[] piNum = new double[hmm.nbStates()];
+        OpdfAccumulator<TObs>[] accumulators = this.createOpdfAccumulators(nhmm);
 
-        int g = 0;
-        for (List<? extends TInt> obsSeq : sequences) {
-
-            Tuple3<TAlpha, TBeta, Double> abp = getAlphaBetaProbability(hmm, obsSeq);
-
-            TXi xi = estimateXi(obsSeq, abp, hmm);
-            TGamma gamma = estimateGamma(obsSeq, abp, hmm, xi);
-            if (allGamma == null) {
-                allGamma = (TGamma[]) Array.newInstance(gamma.getClass(), sequences.size());
+        int n = sequences.size();
+        int nbChunks = Math.min(this.parallelism, n);
+        double lnLikelihood = 0.0d;
+        if (this.executor == null || nbChunks <= 1) {
+            for (List<? extends TInt> obsSeq : sequences) {
+                lnLikelihood += expect(hmm, obsSeq, aijNum, aijDen, piNum, accumulators);
             }
-            allGamma[g] = gamma;
-            g++;
-
-            updateAbarXiGamma(hmm, obsSeq, xi, gamma, aijNum, aijDen);
-
-            setAValues(nhmm, aijNum, aijDen);
+        } else {
+            lnLikelihood = iterateParallel(hmm, nhmm, sequences, nbChunks, aijNum, aijDen, piNum, accumulators);
         }
 
+        setAValues(nhmm, aijNum, aijDen);
+
         /* pi computation */
-        setPiValues(nhmm, allGamma);
+        for (int i = 0; i < piNum.length; i++) {
+            nhmm.setPi(i, piNum[i] / n);
+        }
 
         /* pdfs computation */
-        setPdfValues(nhmm, sequences, allGamma);
+        OpdfBase.finishAll(accumulators);
+
+        return new Tuple2Base<>(nhmm, lnLikelihood);
+    }
 
-        return nhmm;
+    /**
+     * Performs the complete expectation step for a single sequence: adds the
+     * expected transition counts to the â-numerators and â-denominators, the
+     * probabilities of the initial states to the pi-numerators and the
+     * weighted observations to the opdf accumulators. By default, the gamma
+     * values are computed by {@link #accumulate accumulate} and passed to
+     * {@link #accumulatePi accumulatePi} and
+     * {@link #accumulateOpdfs accumulateOpdfs}; subclasses can override this
+     * method to never hold the gamma values of the entire sequence in memory.
+     *
+     * @param hmm The current estimate of the Hidden Markov Model.
+     * @param obsSeq The sequence of interactions.
+     * @param aijNum The numerators of the â-values to update.
+     * @param aijDen The denominators of the â-values to update.
+     * @param piNum The numerators of the pi-values to update.
+     * @param accumulators The opdf accumulators to update.
+     * @return The natural logarithm of the probability of the sequence.
+     */
+    protected double expect(THmm hmm, List<? extends TInt> obsSeq, TADen[] aijNum, TADen aijDen, double[] piNum, OpdfAccumulator<TObs>[] accumulators) {
+        Tuple2<TGamma, Double> gl = accumulate(hmm, obsSeq, aijNum, aijDen);
+        TGamma gamma = gl.getItem1();
+        accumulatePi(gamma, piNum);
+        accumulateOpdfs(hmm, obsSeq, gamma, accumulators);
+        return gl.getItem2();
+    }
+
+    /**
+     * Performs the expectation step for a single sequence: computes the alpha,
+     * beta, xi and gamma values of the sequence and adds the expected
+     * transition counts to the given â-numerators and â-denominators.
+     * Subclasses can override this method to compute the expected counts
+     * without materializing the xi values.
+     *
+     * @param hmm The current estimate of the Hidden Markov Model.
+     * @param obsSeq The sequence of interactions.
+     * @param aijNum The numerators of the â-values to update.
+     * @param aijDen The denominators of the â-values to update.
+     * @return A tuple containing the gamma values of the sequence and the
+     * natural logarithm of the probability of the sequence.
+     */
+    protected Tuple2<TGamma, Double> accumulate(THmm hmm, List<? extends TInt> obsSeq, TADen[] aijNum, TADen aijDen) {
+        Tuple3<TAlpha, TBeta, Double> abp = getAlphaBetaProbability(hmm, obsSeq);
+        TXi xi = estimateXi(obsSeq, abp, hmm);
+        TGamma gamma = estimateGamma(obsSeq, abp, hmm, xi);
+        updateAbarXiGamma(hmm, obsSeq, xi, gamma, aijNum, aijDen);
+        return new Tuple2Base<>(gamma, getLnProbability(abp));
+    }
+
+    /**
+     * Gets the natural logarithm of the probability of a sequence from the
+     * result of the forward-backward calculator. Scaled results are converted
+     * using their scaling factors, such that long sequences do not underflow.
+     *
+     * @param abp The alpha- and beta-values and the probability of the list of
+     * interactions.
+     * @return The natural logarithm of the probability of the sequence.
+     */
+    protected double getLnProbability(Tuple3<TAlpha, TBeta, Double> abp) {
+        if (abp instanceof ForwardBackwardResult) {
+            return ((ForwardBackwardResult) abp).getLnProbability();
+        }
+        return Math.log(abp.getItem3());
+    }
+
+    /**
+     * Performs the expectation step of all sequences in parallel. The sequences
+     * are split in <code>nbChunks</code> contiguous chunks. Every chunk is
+     * processed by a task with its own â-numerators, â-denominators,
+     * pi-numerators and opdf accumulators. The partial results are merged in
+     * the order of the chunks, such that the outcome only depends on the
+     * parallelism and not on the scheduling of the tasks.
+     *
+     * @param hmm The current estimate of the Hidden Markov Model.
+     * @param nhmm The new Hidden Markov Model of which the opdfs are fitted.
+     * @param sequences The observation sequences.
+     * @param nbChunks The number of chunks.
+     * @param aijNum The numerators of the â-values to update.
+     * @param aijDen The denominators of the â-values to update.
+     * @param piNum The numerators of the pi-values to update.
+     * @param accumulators The opdf accumulators to update.
+     * @return The natural logarithm of the probability of the sequences.
+     */
+    @SuppressWarnings("unchecked")
+    private double iterateParallel(final THmm hmm, THmm nhmm, List<? extends List<? extends TInt>> sequences, int nbChunks, TADen[] aijNum, TADen aijDen, double[] piNum, OpdfAccumulator<TObs>[] accumulators) {
+        int n = sequences.size();
+        final TADen[][] partNums = (TADen[][]) Array.newInstance(aijNum.getClass(), nbChunks);
+        final TADen[] partDens = (TADen[]) Array.newInstance(aijDen.getClass(), nbChunks);
+        final double[][] partPis = new double[nbChunks][piNum.length];
+        final double[] partLns = new double[nbChunks];
+        final OpdfAccumulator<TObs>[][] partAccumulators = (OpdfAccumulator<TObs>[][]) Array.newInstance(accumulators.getClass(), nbChunks);
+        ArrayList<Callable<Void>> tasks = new ArrayList<>(nbChunks);
+        for (int c = 0x00; c < nbChunks; c++) {
+            final int chunk = c;
+            final List<? extends List<? extends TInt>> part = sequences.subList((int) ((long) n * c / nbChunks), (int) ((long) n * (c + 1) / nbChunks));
+            partNums[c] = this.createANumerator(hmm);
+            partDens[c] = this.createADenominator(hmm);
+            partAccumulators[c] = this.createOpdfAccumulators(nhmm);
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (List<? extends TInt> obsSeq : part) {
+                        partLns[chunk] += expect(hmm, obsSeq, partNums[chunk], partDens[chunk], partPis[chunk], partAccumulators[chunk]);
+                    }
+                    return null;
+                }
+            });
+        }
+        try {
+            for (Future<Void> future : this.executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while estimating the sequences", ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+        double lnLikelihood = 0.0d;
+        for (int c = 0x00; c < nbChunks; c++) {
+            lnLikelihood += partLns[c];
+            mergeA(aijNum, aijDen, partNums[c], partDens[c]);
+            for (int i = 0x00; i < piNum.length; i++) {
+                piNum[i] += partPis[c][i];
+            }
+            for (int k = 0x00; k < accumulators.length; k++) {
+                accumulators[k].merge(partAccumulators[c][k]);
+            }
+        }
+        return lnLikelihood;
     }
 
     /**
-     * Sets the pdf values based on the given sequence of interactions and the
-     * given gamma values.
+     * Adds partial â-numerators and â-denominators, computed on a part of the
+     * sequences, to the total â-numerators and â-denominators.
      *
-     * @param nhmm The given Hidden Markov Model to modify.
-     * @param sequences The given sequence of interactions.
-     * @param allGamma The list of all gamma values calculated based on all the
-     * lists of interactions.
+     * @param aijNum The total numerators of the â-values to update.
+     * @param aijDen The total denominators of the â-values to update.
+     * @param partNum The partial numerators of the â-values.
+     * @param partDen The partial denominators of the â-values.
+     */
+    protected abstract void mergeA(TADen[] aijNum, TADen aijDen, TADen[] partNum, TADen partDen);
+
+    /**
+     * Creates the accumulators that collect the weighted observations of the
+     * opdfs of the given Hidden Markov Model. Every accumulator is bound to an
+     * opdf of the model and refits it when it is finished.
+     *
+     * @param nhmm The Hidden Markov Model of which the opdfs will be fitted.
+     * @return An array of accumulators, one for every opdf of the model.
+     */
+    protected abstract OpdfAccumulator<TObs>[] createOpdfAccumulators(THmm nhmm);
+
+    /**
+     * Adds the observations of the given sequence, weighted by the gamma
+     * values, to the opdf accumulators.
+     *
+     * @param hmm The current estimate of the Hidden Markov Model.
+     * @param obsSeq The sequence of interactions.
+     * @param gamma The gamma values of the sequence.
+     * @param accumulators The accumulators created by
+     * {@link #createOpdfAccumulators createOpdfAccumulators}.
      */
-    protected abstract void setPdfValues(THmm nhmm, List<? extends List<? extends TInt>> sequences, TGamma[] allGamma);
+    protected abstract void accumulateOpdfs(THmm hmm, List<? extends TInt> obsSeq, TGamma gamma, OpdfAccumulator<TObs>[] accumulators);
 
     /**
      * Sets the a-values of the Hidden Markov Model based on the values of the
@@ -250,11 +686,13 @@ public abstract class BaumWelchLearnerBase<TObs extends Observation, TInt extend
     protected abstract void setAValues(THmm hmm, TADen[] aijNum, TADen aijDen);
 
     /**
-     * Sets the pi-values of the Hidden Markov Model based on the gamma values.
+     * Adds the probabilities of the initial states of the given sequence to the
+     * pi-numerators. The pi-values are the pi-numerators divided by the number
+     * of sequences.
      *
-     * @param nhmm The Hidden Markov Model to modify.
-     * @param allGamma The set of values
+     * @param gamma The gamma values of a sequence.
+     * @param piNum The numerators of the pi-values to update.
      */
-    protected abstract void setPiValues(THmm nhmm, TGamma[] allGamma);
+    protected abstract void accumulatePi(TGamma gamma, double[] piNum);
 
 }
@@ -36,21 +36,17 @@ public abstract class BaumWelchLearnerGammaBase<TObs extends Observation, TInt e
     }
 
     /**
-     * Sets the pi-values of the Hidden Markov Model based on the gamma values.
+     * Adds the probabilities of the initial states of the given sequence to the
+     * pi-numerators.
      *
-     * @param nhmm The Hidden Markov Model to modify.
-     * @param allGamma The set of values
+     * @param gamma The gamma values of a sequence.
+     * @param piNum The numerators of the pi-values to update.
      */
     @Override
-    protected void setPiValues(THmm nhmm, double[][][] allGamma) {
-        int nO = allGamma.length;
-        int nI = allGamma[0x00][0x00].length;
-        for (int i = 0; i < nI; i++) {
-            double total = 0.0d;
-            for (int o = 0; o < nO; o++) {
-                total += allGamma[o][0][i];
-            }
-            nhmm.setPi(i, total / nO);
+    protected void accumulatePi(double[][] gamma, double[] piNum) {
+        double[] gamma0 = gamma[0];
+        for (int i = 0; i < piNum.length; i++) {
+            piNum[i] += gamma0[i];
         }
     }
 
@@ -0,0 +1,18 @@
+package jahmm.learn;
+
+/**
+ * A listener that is notified after every iteration of a Baum-Welch learner.
+ *
+ * @author kommusoft
+ */
+public interface BaumWelchListener {
+
+    /**
+     * Called after an iteration of the Baum-Welch algorithm has been
+     * completed.
+     *
+     * @param event The statistics of the completed iteration.
+     */
+    public abstract void iterationCompleted(BaumWelchIterationEvent event);
+
+}
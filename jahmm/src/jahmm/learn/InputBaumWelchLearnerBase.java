@@ -5,13 +5,10 @@ import jahmm.calculators.ForwardBackwardCalculator;
 import jahmm.calculators.InputForwardBackwardCalculatorBase;
 import jahmm.observables.InputObservationTuple;
 import jahmm.observables.Observation;
-import jahmm.observables.Opdf;
-import java.util.ArrayList;
-import java.util.Iterator;
+import jahmm.observables.OpdfAccumulator;
+import jahmm.observables.OpdfBase;
 import java.util.List;
-import java.util.Objects;
 import java.util.logging.Logger;
-import jutlis.tuples.Tuple2Base;
 import jutlis.tuples.Tuple3;
 
 /**
@@ -40,19 +37,38 @@ public class InputBaumWelchLearnerBase<TObservation extends Observation, TInput,
         double[][] b = abp.getItem2();
         double pinv = 1.0d / abp.getItem3();
         double[][][] xi = new double[sequence.size() - 1][hmm.nbStates()][hmm.nbStates()];
-        Iterator<? extends InputObservationTuple<TInput, TObservation>> seqIterator = sequence.iterator();
-        seqIterator.next();
+        double[][] emissions = getEmissions(hmm, sequence, abp);
+        int[] inputs = getInputIndices(hmm, sequence);
         for (int t = 0; t < sequence.size() - 1; t++) {
-            InputObservationTuple<TInput, TObservation> interaction = seqIterator.next();
+            int k = inputs[t + 1];
+            double[] bt = emissions[t + 1];
             for (int i = 0; i < hmm.nbStates(); i++) {
                 for (int j = 0; j < hmm.nbStates(); j++) {
-                    xi[t][i][j] = a[t][i] * hmm.getAixj(i, interaction.getInput(), j) * hmm.getOpdf(j, interaction.getInput()).probability(interaction.getObservation()) * b[t + 1][j] * pinv;
+                    xi[t][i][j] = a[t][i] * hmm.getAixj(i, k, j) * bt[j] * b[t + 1][j] * pinv;
                 }
             }
         }
         return xi;
     }
 
+    /**
+     * Resolves the inputs of the given sequence to their indices, such that
+     * every input is looked up once per sequence.
+     *
+     * @param hmm The given Hidden Markov Model.
+     * @param sequence The given sequence of interactions.
+     * @return An array where the <code>t</code>-th element is the index of the
+     * input of the <code>t</code>-th interaction.
+     */
+    protected int[] getInputIndices(THmm hmm, List<? extends InputObservationTuple<TInput, TObservation>> sequence) {
+        int[] inputs = new int[sequence.size()];
+        int t = 0;
+        for (InputObservationTuple<TInput, TObservation> interaction : sequence) {
+            inputs[t++] = hmm.getInputIndex(interaction.getInput());
+        }
+        return inputs;
+    }
+
     @Override
     protected double[][] createADenominator(THmm hmm) {
         return new double[hmm.nbStates()][hmm.nbSymbols()];
@@ -67,10 +83,10 @@ public class InputBaumWelchLearnerBase<TObservation extends Observation, TInput,
     protected void updateAbarXiGamma(THmm hmm, List<? extends InputObservationTuple<TInput, TObservation>> obsSeq, double[][][] xi, double[][] gamma, double[][][] aijNum, double[][] aijDen) {
         int I = aijDen.length;
         int T = xi.length;
+        int[] inputs = getInputIndices(hmm, obsSeq);
         for (int i = 0; i < I; i++) {
-            Iterator<? extends InputObservationTuple<TInput, TObservation>> iterator = obsSeq.iterator();
-            for (int t = 0; t < T && iterator.hasNext(); t++) {
-                int k = hmm.getInputIndex(iterator.next().getInput());
+            for (int t = 0; t < T; t++) {
+                int k = inputs[t];
                 aijDen[i][k] += gamma[t][i];
 
                 for (int j = 0; j < I; j++) {
@@ -80,6 +96,20 @@ public class InputBaumWelchLearnerBase<TObservation extends Observation, TInput,
         }
     }
 
+    @Override
+    protected void mergeA(double[][][] aijNum, double[][] aijDen, double[][][] partNum, double[][] partDen) {
+        int I = aijDen.length;
+        for (int i = 0; i < I; i++) {
+            int K = aijDen[i].length;
+            for (int k = 0; k < K; k++) {
+                aijDen[i][k] += partDen[i][k];
+                for (int j = 0; j < I; j++) {
+                    aijNum[i][k][j] += partNum[i][k][j];
+                }
+            }
+        }
+    }
+
     @Override
     protected void setAValues(THmm hmm, double[][][] aijNum, double[][] aijDen) {
         int N = hmm.nbStates();
@@ -95,53 +125,50 @@ public class InputBaumWelchLearnerBase<TObservation extends Observation, TInput,
         }
     }
 
+    /**
+     * Creates the accumulators that collect the weighted observations of the
+     * opdfs of the given Hidden Markov Model, one per state and input.
+     *
+     * @param nhmm The Hidden Markov Model of which the opdfs will be fitted.
+     * @return An array of accumulators: the accumulator of state
+     * <code>i</code> and input <code>k</code> is stored at index
+     * <code>i*nbSymbols()+k</code>.
+     */
     @Override
-    protected void setPdfValues(THmm nhmm, List<? extends List<? extends InputObservationTuple<TInput, TObservation>>> sequences, double[][][] allGamma) {
+    protected OpdfAccumulator<TObservation>[] createOpdfAccumulators(THmm nhmm) {
         int N = nhmm.nbStates();
         int M = nhmm.nbSymbols();
-        ArrayList<TObservation> filtered = new ArrayList<>();
-        ArrayList<Long> indices = new ArrayList<>();
-        double tmp;
-        for (TInput input : nhmm.getRegisteredInputs()) {
-            int k = nhmm.getInputIndex(input);
-            int io = 0x00;
-            for (List<? extends InputObservationTuple<TInput, TObservation>> observations : sequences) {
-                int ito = 0x00;
-                for (InputObservationTuple<TInput, TObservation> ob : observations) {
-                    if (Objects.equals(input, ob.getInput())) {
-                        filtered.add(ob.getObservation());
-                        indices.add(((long) io << 0x20) | ito);
-                    }
-                    ito++;
-                }
-                io++;
+        OpdfAccumulator<TObservation>[] accumulators = OpdfBase.newArray(OpdfAccumulator.class, N * M);
+        for (int i = 0; i < N; i++) {
+            for (int k = 0; k < M; k++) {
+                accumulators[i * M + k] = nhmm.getOpdf(i, k).createAccumulator();
             }
-            int nf = filtered.size();
-            if (nf > 0x00) {
-                double[] weights = new double[nf];
-                for (int i = 0; i < N; i++) {
-                    double sum = 0.;
-                    int j = 0;
-                    for (Long idxo : indices) {
-                        long index = idxo;
-                        int o = (int) (index >> 0x20);
-                        int t = (int) (index & 0xffffffff);
-                        tmp = allGamma[o][t][i];
-                        weights[j] = tmp;
-                        sum += tmp;
-                        j++;
-                    }
-
-                    for (j--; j >= 0; j--) {
-                        weights[j] /= sum;
-                    }
+        }
+        return accumulators;
+    }
 
-                    Opdf<TObservation> opdf = nhmm.getOpdf(i, k);
-                    opdf.fit(filtered, weights);
-                }
-                filtered.clear();
-                indices.clear();
+    /**
+     * Adds every observation of the given sequence to the accumulators of the
+     * input that accompanies the observation, weighted by the probability of
+     * being in the state.
+     *
+     * @param hmm The current estimate of the Hidden Markov Model.
+     * @param obsSeq The sequence of interactions.
+     * @param gamma The gamma values of the sequence.
+     * @param accumulators The accumulators, one per state and input.
+     */
+    @Override
+    protected void accumulateOpdfs(THmm hmm, List<? extends InputObservationTuple<TInput, TObservation>> obsSeq, double[][] gamma, OpdfAccumulator<TObservation>[] accumulators) {
+        int N = hmm.nbStates();
+        int M = hmm.nbSymbols();
+        int t = 0;
+        for (InputObservationTuple<TInput, TObservation> ob : obsSeq) {
+            int k = hmm.getInputIndex(ob.getInput());
+            double[] gt = gamma[t];
+            for (int i = 0; i < N; i++) {
+                accumulators[i * M + k].accumulate(ob.getObservation(), gt[i]);
             }
+            t++;
         }
     }
 
@@ -5,7 +5,6 @@ import jahmm.calculators.ForwardBackwardCalculator;
 import jahmm.calculators.InputForwardBackwardScaledCalculatorBase;
 import jahmm.observables.InputObservationTuple;
 import jahmm.observables.Observation;
-import java.util.Iterator;
 import java.util.List;
 import java.util.logging.Logger;
 import jutlis.tuples.Tuple3;
@@ -61,13 +60,14 @@ public class InputBaumWelchScaledLearnerBase<TObservation extends Observation, T
         double[][] a = abp.getItem1();
         double[][] b = abp.getItem2();
         double xi[][][] = new double[sequence.size() - 1][hmm.nbStates()][hmm.nbStates()];
-        Iterator<? extends InputObservationTuple<TInteraction, TObservation>> seqIterator = sequence.iterator();
-        seqIterator.next();
+        double[][] emissions = getEmissions(hmm, sequence, abp);
+        int[] inputs = getInputIndices(hmm, sequence);
         for (int t = 0; t < sequence.size() - 1; t++) {
-            InputObservationTuple<TInteraction, TObservation> interaction = seqIterator.next();
+            int k = inputs[t + 1];
+            double[] bt = emissions[t + 1];
             for (int i = 0; i < hmm.nbStates(); i++) {
                 for (int j = 0; j < hmm.nbStates(); j++) {
-                    xi[t][i][j] = a[t][i] * hmm.getAixj(i, interaction.getInput(), j) * hmm.getOpdf(j, interaction.getInput()).probability(interaction.getObservation()) * b[t + 1][j];
+                    xi[t][i][j] = a[t][i] * hmm.getAixj(i, k, j) * bt[j] * b[t + 1][j];
                 }
             }
         }
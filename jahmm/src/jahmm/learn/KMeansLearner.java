@@ -6,10 +6,12 @@ package jahmm.learn;
 
 import jahmm.RegularHmmBase;
 import jahmm.calculators.KMeansCalculator;
-import jahmm.calculators.RegularViterbiCalculatorBase;
+import jahmm.calculators.RegularViterbiLogCalculatorBase;
 import jahmm.observables.CentroidFactory;
 import jahmm.observables.Observation;
 import jahmm.observables.Opdf;
+import jahmm.observables.OpdfAccumulator;
+import jahmm.observables.OpdfBase;
 import jahmm.observables.OpdfFactory;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -175,25 +177,34 @@ public class KMeansLearner<O extends Observation & CentroidFactory<? super O>> {
         }
     }
 
+    /* The opdfs are fitted through accumulators finished together, such that
+     * parameters shared by several states are fitted on all the clusters. */
     private void learnOpdf(RegularHmmBase<O> hmm) {
+        List<OpdfAccumulator<O>> accumulators = new ArrayList<>();
         for (int i = 0; i < hmm.nbStates(); i++) {
             Collection<O> clusterObservations = clusters.cluster(i);
 
             if (clusterObservations.isEmpty()) {
                 hmm.setOpdf(i, opdfFactory.generate());
             } else {
-                hmm.getOpdf(i).fit(clusterObservations);
+                OpdfAccumulator<O> accumulator = hmm.getOpdf(i).createAccumulator();
+                double weight = 1. / clusterObservations.size();
+                for (O o : clusterObservations) {
+                    accumulator.accumulate(o, weight);
+                }
+                accumulators.add(accumulator);
             }
         }
+        OpdfBase.finishAll(accumulators.toArray(new OpdfAccumulator<?>[accumulators.size()]));
     }
 
     /* Return true if no modification */
     private boolean optimizeCluster(RegularHmmBase<O> hmm) {
         boolean modif = false;
+        RegularViterbiLogCalculatorBase<O> vc = new RegularViterbiLogCalculatorBase<>(hmm);
 
         for (List<? extends O> obsSeq : obsSeqs) {
-            RegularViterbiCalculatorBase vc = new RegularViterbiCalculatorBase(obsSeq, hmm);
-            int states[] = vc.stateSequence();
+            int states[] = vc.stateSequence(obsSeq);
 
             for (int i = 0; i < states.length; i++) {
                 O o = obsSeq.get(i);
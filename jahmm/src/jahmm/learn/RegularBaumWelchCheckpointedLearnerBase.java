@@ -0,0 +1,195 @@
+package jahmm.learn;
+
+import jahmm.RegularHmm;
+import jahmm.calculators.CompiledRegularHmm;
+import jahmm.calculators.ForwardBackwardWorkspace;
+import jahmm.observables.Observation;
+import jahmm.observables.OpdfAccumulator;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.logging.Logger;
+import jutils.probability.ProbabilityUtils;
+
+/**
+ * An implementation of the scaled Baum-Welch learning algorithm of which the
+ * memory usage grows with the square root of the length of the sequences. The
+ * forward pass only keeps the scaled alpha values of every
+ * <code>K</code>-th time step (the checkpoints). The backward pass processes
+ * the segments between the checkpoints from the last to the first: the alpha
+ * values and emissions of a segment are recomputed from its checkpoint, after
+ * which the beta values of the segment are computed and the gamma and xi
+ * values of every time step are immediately added to the â-numerators,
+ * â-denominators, pi-numerators and opdf accumulators. Neither the alpha, beta
+ * and gamma values of the entire sequence nor the xi values are ever stored.
+ * <p>
+ * By default, <code>K</code> is the square root of the length of the sequence,
+ * such that the working memory is proportional to <code>sqrt(T)*N</code> at
+ * the cost of computing the forward pass twice. The buffers of a segment are
+ * taken from the {@link ForwardBackwardWorkspace workspace} of the current
+ * thread and are thus reused across sequences and iterations. The expected
+ * counts are exact: the learned model is the same as the one learned by the
+ * {@link RegularBaumWelchScaledLearnerBase RegularBaumWelchScaledLearnerBase}
+ * up to rounding errors. The recursions are run by a
+ * {@link CompiledRegularHmm CompiledRegularHmm} that is compiled once per
+ * iteration, thus only the non-zero transitions are visited if the transition
+ * matrix is sparse.
+ *
+ * @author kommusoft
+ * @param <TObs> The type of observations regarding the Hidden Markov Model.
+ * @param <THmm> The type of the Hidden Markov Model.
+ */
+public class RegularBaumWelchCheckpointedLearnerBase<TObs extends Observation, THmm extends RegularHmm<TObs, THmm>> extends RegularBaumWelchScaledLearnerBase<TObs, THmm> {
+
+    private static final Logger LOG = Logger.getLogger(RegularBaumWelchCheckpointedLearnerBase.class.getName());
+
+    private int checkpointInterval;
+
+    /**
+     * Initializes a checkpointed Baum-Welch algorithm implementation that
+     * places a checkpoint every square root of the length of the sequence.
+     */
+    public RegularBaumWelchCheckpointedLearnerBase() {
+    }
+
+    /**
+     * Gets the number of time steps between two checkpoints.
+     *
+     * @return The number of time steps between two checkpoints, zero if the
+     * square root of the length of every sequence is used.
+     */
+    public int getCheckpointInterval() {
+        return this.checkpointInterval;
+    }
+
+    /**
+     * Sets the number of time steps between two checkpoints. Larger intervals
+     * keep fewer checkpoints but need larger buffers to recompute a segment.
+     *
+     * @param checkpointInterval The (positive) number of time steps between
+     * two checkpoints, zero to use the square root of the length of every
+     * sequence.
+     */
+    public void setCheckpointInterval(int checkpointInterval) {
+        if (checkpointInterval < 0) {
+            throw new IllegalArgumentException("Positive number expected");
+        }
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    /**
+     * Performs the complete expectation step for a single sequence using
+     * checkpoints. The gamma and xi values are normalized per time step, thus
+     * the scaling of the beta values does not matter.
+     *
+     * @param hmm The current estimate of the Hidden Markov Model.
+     * @param obsSeq The sequence of observations.
+     * @param aijNum The numerators of the â-values to update.
+     * @param aijDen The denominators of the â-values to update.
+     * @param piNum The numerators of the pi-values to update.
+     * @param accumulators The opdf accumulators to update.
+     * @return The natural logarithm of the probability of the sequence.
+     */
+    @Override
+    protected double expect(THmm hmm, List<? extends TObs> obsSeq, double[][] aijNum, double[] aijDen, double[] piNum, OpdfAccumulator<TObs>[] accumulators) {
+        int T = obsSeq.size();
+        if (T <= 1) {
+            throw new IllegalArgumentException("Observation sequence too short");
+        }
+        int N = hmm.nbStates();
+        int K = this.checkpointInterval;
+        if (K <= 0) {
+            K = (int) Math.ceil(Math.sqrt(T));
+        }
+        CompiledRegularHmm<TObs> chmm = compile(hmm);
+
+        /* forward pass, keeping the checkpoints */
+        double[][] checkpoints = new double[(T + K - 1) / K][];
+        double[] alpha = new double[N];
+        double[] next = new double[N];
+        double[] emission = new double[N];
+        double lnProbability = 0.0d;
+        Iterator<? extends TObs> it = obsSeq.iterator();
+        chmm.emission(it.next(), emission);
+        chmm.start(emission, alpha);
+        lnProbability += Math.log(ProbabilityUtils.scale(alpha));
+        checkpoints[0] = alpha.clone();
+        for (int t = 1; it.hasNext(); t++) {
+            chmm.emission(it.next(), emission);
+            chmm.forward(alpha, emission, next);
+            lnProbability += Math.log(ProbabilityUtils.scale(next));
+            double[] tmp = alpha;
+            alpha = next;
+            next = tmp;
+            if (t % K == 0) {
+                checkpoints[t / K] = alpha.clone();
+            }
+        }
+
+        /* backward pass, segment by segment */
+        ArrayList<TObs> observations = new ArrayList<>(K);
+        ForwardBackwardWorkspace workspace = ForwardBackwardWorkspace.get();
+        workspace.ensure(K, N);
+        double[][] alphas = workspace.getAlpha();
+        double[][] emissions = workspace.getEmissions();
+        double[] beta = new double[N];
+        double[] betaNext = new double[N];
+        double[] eNext = new double[N];
+        double[] gamma = new double[N];
+        double[] weighted = new double[N];
+        for (int s = checkpoints.length - 1; s >= 0; s--) {
+            int start = s * K;
+            int end = Math.min(T, start + K);
+            observations.clear();
+            observations.addAll(obsSeq.subList(start, end));
+            System.arraycopy(checkpoints[s], 0, alphas[0], 0, N);
+            for (int u = 0; u < end - start; u++) {
+                chmm.emission(observations.get(u), emissions[u]);
+                if (u > 0) {
+                    chmm.forward(alphas[u - 1], emissions[u], alphas[u]);
+                    ProbabilityUtils.scale(alphas[u]);
+                }
+            }
+            checkpoints[s] = null;
+            for (int u = end - start - 1; u >= 0; u--) {
+                int t = start + u;
+                double[] at = alphas[u];
+                if (t == T - 1) {
+                    System.arraycopy(at, 0, gamma, 0, N);
+                    for (int i = 0; i < N; i++) {
+                        beta[i] = 1.0d;
+                    }
+                } else {
+                    chmm.backward(betaNext, eNext, weighted, beta);
+                    double z = 0.0d;
+                    for (int i = 0; i < N; i++) {
+                        gamma[i] = at[i] * beta[i];
+                        z += gamma[i];
+                    }
+                    double zinv = 1.0d / z;
+                    for (int i = 0; i < N; i++) {
+                        gamma[i] *= zinv;
+                        aijDen[i] += gamma[i];
+                    }
+                    chmm.accumulateXi(at, weighted, zinv, aijNum);
+                    ProbabilityUtils.scale(beta);
+                }
+                TObs ot = observations.get(u);
+                for (int i = 0; i < N; i++) {
+                    accumulators[i].accumulate(ot, gamma[i]);
+                }
+                if (t == 0) {
+                    for (int i = 0; i < N; i++) {
+                        piNum[i] += gamma[i];
+                    }
+                }
+                double[] tmp = betaNext;
+                betaNext = beta;
+                beta = tmp;
+                System.arraycopy(emissions[u], 0, eNext, 0, N);
+            }
+        }
+        return lnProbability;
+    }
+
+}
@@ -0,0 +1,121 @@
+package jahmm.learn;
+
+import jahmm.RegularHmm;
+import jahmm.calculators.CompiledRegularHmm;
+import jahmm.calculators.ForwardBackwardResult;
+import jahmm.calculators.ForwardBackwardWorkspace;
+import jahmm.observables.Observation;
+import java.util.List;
+import java.util.logging.Logger;
+import jutlis.tuples.Tuple2;
+import jutlis.tuples.Tuple2Base;
+import jutlis.tuples.Tuple3;
+
+/**
+ * An implementation of the scaled Baum-Welch learning algorithm that fuses the
+ * estimation of the xi values with the accumulation of the expected transition
+ * counts. The xi values of a sequence are never stored: for every time step
+ * they are computed from the alpha, beta and emission values and immediately
+ * added to the â-numerators. The gamma values are derived directly from the
+ * alpha and beta values. The working memory of the expectation step is thus
+ * quadratic in the number of states instead of proportional to
+ * <code>T*N*N</code>. The xi values are accumulated by a
+ * {@link CompiledRegularHmm CompiledRegularHmm} that is compiled once per
+ * iteration, thus only the non-zero transitions are visited if the transition
+ * matrix is sparse.
+ * <p>
+ * The learned model is the same as the one learned by the
+ * {@link RegularBaumWelchScaledLearnerBase RegularBaumWelchScaledLearnerBase}
+ * up to rounding errors.
+ *
+ * @author kommusoft
+ * @param <TObs> The type of observations regarding the Hidden Markov Model.
+ * @param <THmm> The type of the Hidden Markov Model.
+ */
+public class RegularBaumWelchFusedLearnerBase<TObs extends Observation, THmm extends RegularHmm<TObs, THmm>> extends RegularBaumWelchScaledLearnerBase<TObs, THmm> {
+
+    private static final Logger LOG = Logger.getLogger(RegularBaumWelchFusedLearnerBase.class.getName());
+
+    /**
+     * Initializes a fused Baum-Welch algorithm implementation.
+     */
+    public RegularBaumWelchFusedLearnerBase() {
+    }
+
+    /**
+     * Performs the expectation step for a single sequence without
+     * materializing the xi values. For every time step <code>t</code>, the
+     * values <code>alpha[t][i] * a[i][j] * b[t+1][j] * beta[t+1][j]</code> are
+     * normalized such that they sum up to one and added to
+     * <code>aijNum[i][j]</code>. With scaled alpha and beta values (a
+     * {@link ForwardBackwardResult ForwardBackwardResult}), the values already
+     * sum up to one: the scaled alpha values of a time step sum up to one and
+     * the scaled beta values of the next time step are divided by all the
+     * remaining scaling factors. Otherwise the normalizer is computed
+     * explicitly. The transitions are visited on the model
+     * {@link #compile compiled} once per iteration.
+     *
+     * @param hmm The current estimate of the Hidden Markov Model.
+     * @param obsSeq The sequence of observations.
+     * @param aijNum The numerators of the â-values to update.
+     * @param aijDen The denominators of the â-values to update.
+     * @return A tuple containing the gamma values of the sequence and the
+     * natural logarithm of the probability of the sequence.
+     */
+    @Override
+    protected Tuple2<double[][], Double> accumulate(THmm hmm, List<? extends TObs> obsSeq, double[][] aijNum, double[] aijDen) {
+        int T = obsSeq.size();
+        if (T <= 1) {
+            throw new IllegalArgumentException("Observation sequence too short");
+        }
+        int N = hmm.nbStates();
+        Tuple3<double[][], double[][], Double> abp = getAlphaBetaProbability(hmm, obsSeq);
+        double[][] alpha = abp.getItem1();
+        double[][] beta = abp.getItem2();
+        double[][] emissions = getEmissions(hmm, obsSeq, abp);
+        boolean scaled = abp instanceof ForwardBackwardResult;
+        CompiledRegularHmm<TObs> chmm = compile(hmm);
+        double[][] gamma = new double[T][N];
+        ForwardBackwardWorkspace workspace = ForwardBackwardWorkspace.get();
+        workspace.ensure(T, N);
+        double[] weighted = workspace.getWeighted();
+        double[] scratch = workspace.getScratch();
+        for (int t = 0; t < T; t++) {
+            double[] at = alpha[t];
+            double[] bt = beta[t];
+            double[] gt = gamma[t];
+            double z = 0.0d;
+            for (int i = 0; i < N; i++) {
+                gt[i] = at[i] * bt[i];
+                z += gt[i];
+            }
+            double zinv = 1.0d / z;
+            for (int i = 0; i < N; i++) {
+                gt[i] *= zinv;
+            }
+            if (t < T - 1) {
+                double[] et = emissions[t + 1];
+                double[] bn = beta[t + 1];
+                double xinv = 1.0d;
+                if (scaled) {
+                    for (int j = 0; j < N; j++) {
+                        weighted[j] = et[j] * bn[j];
+                    }
+                } else {
+                    chmm.backward(bn, et, weighted, scratch);
+                    double zxi = 0.0d;
+                    for (int i = 0; i < N; i++) {
+                        zxi += at[i] * scratch[i];
+                    }
+                    xinv = 1.0d / zxi;
+                }
+                chmm.accumulateXi(at, weighted, xinv, aijNum);
+                for (int i = 0; i < N; i++) {
+                    aijDen[i] += gt[i];
+                }
+            }
+        }
+        return new Tuple2Base<>(gamma, getLnProbability(abp));
+    }
+
+}
@@ -8,8 +8,8 @@ import jahmm.RegularHmm;
 import jahmm.calculators.ForwardBackwardCalculator;
 import jahmm.calculators.RegularForwardBackwardCalculatorBase;
 import jahmm.observables.Observation;
-import jahmm.observables.Opdf;
-import java.util.Iterator;
+import jahmm.observables.OpdfAccumulator;
+import jahmm.observables.OpdfBase;
 import java.util.List;
 import java.util.logging.Logger;
 import jutlis.tuples.Tuple3;
@@ -53,13 +53,12 @@ public class RegularBaumWelchLearnerBase<TObs extends Observation, THmm extends
         double[][] b = abp.getItem2();
         double pinv = 1.0d / abp.getItem3();
         double[][][] xi = new double[sequence.size() - 1][hmm.nbStates()][hmm.nbStates()];
-        Iterator<? extends TObs> seqIterator = sequence.iterator();
-        seqIterator.next();
+        double[][] emissions = getEmissions(hmm, sequence, abp);
         for (int t = 0; t < sequence.size() - 1; t++) {
-            TObs o = seqIterator.next();
+            double[] bt = emissions[t + 1];
             for (int i = 0; i < hmm.nbStates(); i++) {
                 for (int j = 0; j < hmm.nbStates(); j++) {
-                    xi[t][i][j] = a[t][i] * hmm.getAij(i, j) * hmm.getOpdf(j).probability(o) * b[t + 1][j] * pinv;
+                    xi[t][i][j] = a[t][i] * hmm.getAij(i, j) * bt[j] * b[t + 1][j] * pinv;
                 }
             }
         }
@@ -124,6 +123,26 @@ public class RegularBaumWelchLearnerBase<TObs extends Observation, THmm extends
         }
     }
 
+    /**
+     * Adds partial â-numerators and â-denominators, computed on a part of the
+     * sequences, to the total â-numerators and â-denominators.
+     *
+     * @param aijNum The total numerators of the â-values to update.
+     * @param aijDen The total denominators of the â-values to update.
+     * @param partNum The partial numerators of the â-values.
+     * @param partDen The partial denominators of the â-values.
+     */
+    @Override
+    protected void mergeA(double[][] aijNum, double[] aijDen, double[][] partNum, double[] partDen) {
+        int I = aijDen.length;
+        for (int i = 0; i < I; i++) {
+            aijDen[i] += partDen[i];
+            for (int j = 0; j < I; j++) {
+                aijNum[i][j] += partNum[i][j];
+            }
+        }
+    }
+
     /**
      * Sets the a-values of the Hidden Markov Model based on the values of the
      * â-values.
@@ -145,40 +164,41 @@ public class RegularBaumWelchLearnerBase<TObs extends Observation, THmm extends
     }
 
     /**
-     * Sets the pdf values based on the given sequence of interactions and the
-     * given gamma values.
+     * Creates the accumulators that collect the weighted observations of the
+     * opdfs of the given Hidden Markov Model, one per state.
      *
-     * @param nhmm The given Hidden Markov Model to modify.
-     * @param sequences The given sequence of interactions.
-     * @param allGamma The list of all gamma values calculated based on all the
-     * lists of interactions.
+     * @param nhmm The Hidden Markov Model of which the opdfs will be fitted.
+     * @return An array of accumulators, one for every state of the model.
      */
     @Override
-    protected void setPdfValues(THmm nhmm, List<? extends List<? extends TObs>> sequences, double[][][] allGamma) {
+    protected OpdfAccumulator<TObs>[] createOpdfAccumulators(THmm nhmm) {
         int I = nhmm.nbStates();
-        List<TObs> observations = KMeansLearner.flat(sequences);
-        double[] weights = new double[observations.size()];
-        double temp;
+        OpdfAccumulator<TObs>[] accumulators = OpdfBase.newArray(OpdfAccumulator.class, I);
         for (int i = 0; i < I; i++) {
-            double sum = 0.;
-            int j = 0;
-
-            int o = 0;
-            for (List<? extends TObs> obsSeq : sequences) {
-                for (int t = 0; t < obsSeq.size(); t++, j++) {
-                    temp = allGamma[o][t][i];
-                    weights[j] = temp;
-                    sum += temp;
-                }
-                o++;
-            }
+            accumulators[i] = nhmm.getOpdf(i).createAccumulator();
+        }
+        return accumulators;
+    }
 
-            for (j--; j >= 0; j--) {
-                weights[j] /= sum;
+    /**
+     * Adds every observation of the given sequence to the accumulator of every
+     * state, weighted by the probability of being in that state.
+     *
+     * @param hmm The current estimate of the Hidden Markov Model.
+     * @param obsSeq The sequence of observations.
+     * @param gamma The gamma values of the sequence.
+     * @param accumulators The accumulators, one per state.
+     */
+    @Override
+    protected void accumulateOpdfs(THmm hmm, List<? extends TObs> obsSeq, double[][] gamma, OpdfAccumulator<TObs>[] accumulators) {
+        int I = accumulators.length;
+        int t = 0;
+        for (TObs o : obsSeq) {
+            double[] gt = gamma[t];
+            for (int i = 0; i < I; i++) {
+                accumulators[i].accumulate(o, gt[i]);
             }
-
-            Opdf<TObs> opdf = nhmm.getOpdf(i);
-            opdf.fit(observations, weights);
+            t++;
         }
     }
 
@@ -5,18 +5,30 @@
 package jahmm.learn;
 
 import jahmm.RegularHmm;
+import jahmm.calculators.CompiledRegularHmm;
 import jahmm.calculators.ForwardBackwardCalculator;
+import jahmm.calculators.ForwardBackwardResult;
+import jahmm.calculators.ForwardBackwardWorkspace;
+import jahmm.calculators.RegularForwardBackwardCalculator;
+import jahmm.calculators.RegularForwardBackwardCompiledCalculatorBase;
 import jahmm.calculators.RegularForwardBackwardScaledCalculatorBase;
 import jahmm.observables.Observation;
-import java.util.Iterator;
+import java.util.Arrays;
 import java.util.List;
 import java.util.logging.Logger;
+import jutlis.tuples.Tuple2;
+import jutlis.tuples.Tuple2Base;
 import jutlis.tuples.Tuple3;
 
 /**
  * An implementation of the Baum-Welch learning algorithm. It uses a scaling
  * mechanism so as to avoid underflows.
  * <p>
+ * The Hidden Markov Model is compiled into a
+ * {@link CompiledRegularHmm CompiledRegularHmm} once per iteration. The
+ * forward-backward recursions and the xi values are computed on the compiled
+ * model, thus only the non-zero transitions of a sparse model are visited.
+ * <p>
  * For more information on the scaling procedure, read <i>Rabiner</i> and
  * <i>Juang</i>'s <i>Fundamentals of speech recognition</i> (Prentice Hall,
  * 1993).
@@ -25,6 +37,12 @@ public class RegularBaumWelchScaledLearnerBase<TObs extends Observation,THmm ext
 
     private static final Logger LOG = Logger.getLogger(RegularBaumWelchScaledLearnerBase.class.getName());
 
+    /**
+     * The Hidden Markov Model of the current iteration together with its
+     * compiled version, <code>null</code> outside an iteration.
+     */
+    private volatile Tuple2<THmm, CompiledRegularHmm<TObs>> compiled;
+
     /**
      * Initializes a Baum-Welch algorithm implementation.
      */
@@ -42,6 +60,74 @@ public class RegularBaumWelchScaledLearnerBase<TObs extends Observation,THmm ext
         return RegularForwardBackwardScaledCalculatorBase.Instance;
     }
 
+    /**
+     * Performs one iteration of the Baum-Welch algorithm. The given Hidden
+     * Markov Model is compiled once and the compiled model is shared by the
+     * expectation steps of all sequences.
+     *
+     * @param hmm A previously estimated HMM.
+     * @param sequences The observation sequences on which the learning is
+     * based. Each sequence must have a length higher or equal to 2.
+     * @return A tuple containing the new, updated HMM and the natural logarithm
+     * of the probability of the sequences given <code>hmm</code>.
+     */
+    @Override
+    protected Tuple2<THmm, Double> iterateLnLikelihood(THmm hmm, List<? extends List<? extends TObs>> sequences) {
+        this.compiled = new Tuple2Base<>(hmm, new CompiledRegularHmm<>(hmm));
+        try {
+            return super.iterateLnLikelihood(hmm, sequences);
+        } finally {
+            this.compiled = null;
+        }
+    }
+
+    /**
+     * Gets the compiled version of the given Hidden Markov Model. Within an
+     * iteration, the model compiled at the start of the iteration is returned;
+     * otherwise the model is compiled again.
+     *
+     * @param hmm The given Hidden Markov Model.
+     * @return The compiled Hidden Markov Model.
+     */
+    protected CompiledRegularHmm<TObs> compile(THmm hmm) {
+        Tuple2<THmm, CompiledRegularHmm<TObs>> current = this.compiled;
+        if (current != null && current.getItem1() == hmm) {
+            return current.getItem2();
+        }
+        return new CompiledRegularHmm<>(hmm);
+    }
+
+    /**
+     * Calculates the scaled alpha and beta values of the given Hidden Markov
+     * Model and a list of observations. If the Hidden Markov Model uses the
+     * default scaled or the compiled calculator, the values are computed on the
+     * {@link #compile compiled} model of the iteration and stored in the
+     * {@link ForwardBackwardWorkspace workspace} of the current thread: the
+     * returned alpha, beta and emission arrays are only valid until the next
+     * sequence is processed by the same thread, and only their first
+     * <code>T</code> rows are meaningful. Otherwise the scaled
+     * calculator selected by the Hidden Markov Model itself is used, such that
+     * a model with a custom calculator is trained with that calculator as well.
+     *
+     * @param hmm The given Hidden Markov Model.
+     * @param obsSeq The given list of observations.
+     * @return A tuple containing the scaled alpha- and beta-values and the
+     * probability of the list of observations.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    protected Tuple3<double[][], double[][], Double> getAlphaBetaProbability(THmm hmm, List<? extends TObs> obsSeq) {
+        RegularForwardBackwardCalculator<TObs, THmm> calculator = hmm.getForwardBackwardScaledCalculator();
+        if (calculator instanceof RegularForwardBackwardScaledCalculatorBase || calculator instanceof RegularForwardBackwardCompiledCalculatorBase) {
+            RegularForwardBackwardCompiledCalculatorBase<TObs, THmm> compiledCalculator = RegularForwardBackwardCompiledCalculatorBase.Instance;
+            ForwardBackwardWorkspace workspace = ForwardBackwardWorkspace.get();
+            double lnProbability = compiledCalculator.computeAll(compile(hmm), obsSeq, workspace);
+            double[] ctFactors = Arrays.copyOf(workspace.getCtFactors(), obsSeq.size());
+            return new ForwardBackwardResult(workspace.getAlpha(), workspace.getBeta(), Math.exp(lnProbability), workspace.getEmissions(), ctFactors);
+        }
+        return calculator.computeAll(hmm, obsSeq);
+    }
+
     /**
      * Here, the xi (and, thus, gamma) values are not divided by the probability
      * of the sequence because this probability might be too small and induce an
@@ -61,18 +147,21 @@ public class RegularBaumWelchScaledLearnerBase<TObs extends Observation,THmm ext
         if (sequence.size() <= 1) {
             throw new IllegalArgumentException("Observation sequence too short");
         }
-        double xi[][][] = new double[sequence.size() - 1][hmm.nbStates()][hmm.nbStates()];
+        int s = hmm.nbStates();
+        double xi[][][] = new double[sequence.size() - 1][s][s];
         double[][] alpha = abp.getItem1();
         double[][] beta = abp.getItem2();
-        Iterator<? extends TObs> seqIterator = sequence.iterator();
-        seqIterator.next();
+        double[][] emissions = getEmissions(hmm, sequence, abp);
+        CompiledRegularHmm<TObs> chmm = compile(hmm);
+        ForwardBackwardWorkspace workspace = ForwardBackwardWorkspace.get();
+        workspace.ensure(sequence.size(), s);
+        double[] weighted = workspace.getWeighted();
         for (int t = 0; t < sequence.size() - 1; t++) {
-            TObs observation = seqIterator.next();
-            for (int i = 0; i < hmm.nbStates(); i++) {
-                for (int j = 0; j < hmm.nbStates(); j++) {
-                    xi[t][i][j] = alpha[t][i] * hmm.getAij(i, j) * hmm.getOpdf(j).probability(observation) * beta[t + 1][j];
-                }
+            double[] bt = emissions[t + 1];
+            for (int j = 0; j < s; j++) {
+                weighted[j] = bt[j] * beta[t + 1][j];
             }
+            chmm.accumulateXi(alpha[t], weighted, 1.0d, xi[t]);
         }
 
         return xi;
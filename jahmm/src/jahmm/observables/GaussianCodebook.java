@@ -0,0 +1,341 @@
+package jahmm.observables;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A set of mono variate Gaussian distributions shared by the
+ * {@link OpdfTiedGaussianMixture tied mixtures} of a semi-continuous Hidden
+ * Markov Model. Every state only keeps its own mixing proportions; the
+ * Gaussians are evaluated by the codebook.
+ * <p>
+ * The codebook caches the densities of the last observation and of the last
+ * sequence of observations it evaluated, such that the Gaussians are evaluated
+ * once per observation instead of once per observation and per state. The
+ * caches are kept per thread. Since the observations are immutable, the
+ * caches are matched by identity: a sequence is only recomputed if it
+ * contains other observations.
+ * <p>
+ * The codebook is re-estimated with the statistics pooled over all the states
+ * that share it: the accumulators of the tied mixtures
+ * {@link #deposit deposit} their statistics when they are finished, and the
+ * pooled statistics are applied by {@link #reestimate reestimate}, which
+ * {@link OpdfBase#finishAll OpdfBase.finishAll} calls once all the
+ * accumulators are finished. Reading or evaluating the codebook never
+ * re-estimates it.
+ *
+ * @author kommusoft
+ */
+public final class GaussianCodebook implements Serializable, OpdfBase.Pooled {
+
+    private static final long serialVersionUID = 1L;
+    private static final Random randomGenerator = new Random();
+
+    private final double[] means;
+    private final double[] variances;
+    private final double[] lnFactors;
+    private final double[] halves;
+    private volatile int generation;
+    private boolean pending;
+    private double[] pendingWeights;
+    private double[] pendingSums;
+    private double[] pendingSquares;
+    private transient ThreadLocal<Cache> caches;
+
+    /**
+     * Creates a new codebook. The mean values of the Gaussians are evenly
+     * distributed between 0 and 1 and each variance is equal to 1.
+     *
+     * @param nbGaussians The number of Gaussians of the codebook.
+     */
+    public GaussianCodebook(int nbGaussians) {
+        if (nbGaussians <= 0) {
+            throw new IllegalArgumentException("Argument must be strictly "
+                    + "positive");
+        }
+        this.means = new double[nbGaussians];
+        this.variances = new double[nbGaussians];
+        for (int m = 0; m < nbGaussians; m++) {
+            this.means[m] = (1. + 2. * m) / (2. * nbGaussians);
+        }
+        Arrays.fill(this.variances, 1.0d);
+        this.lnFactors = new double[nbGaussians];
+        this.halves = new double[nbGaussians];
+        this.update();
+        this.caches = createCaches();
+    }
+
+    /**
+     * Creates a new codebook with the given mean values and variances.
+     *
+     * @param means The mean values of the Gaussians.
+     * @param variances The (strictly positive) variances of the Gaussians.
+     */
+    public GaussianCodebook(double[] means, double[] variances) {
+        if (means.length == 0 || means.length != variances.length) {
+            throw new IllegalArgumentException();
+        }
+        this.means = means.clone();
+        this.variances = variances.clone();
+        this.lnFactors = new double[means.length];
+        this.halves = new double[means.length];
+        this.update();
+        this.caches = createCaches();
+    }
+
+    private static ThreadLocal<Cache> createCaches() {
+        return new ThreadLocal<Cache>() {
+            @Override
+            protected Cache initialValue() {
+                return new Cache();
+            }
+        };
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        this.caches = createCaches();
+    }
+
+    private void update() {
+        for (int m = 0; m < this.means.length; m++) {
+            if (!(this.variances[m] > 0.0d)) {
+                throw new IllegalArgumentException("Variance must be positive");
+            }
+            this.lnFactors[m] = -0.5d * Math.log(2.0d * Math.PI * this.variances[m]);
+            this.halves[m] = -0.5d / this.variances[m];
+        }
+    }
+
+    /**
+     * Returns the number of Gaussians of this codebook.
+     *
+     * @return The number of Gaussians of this codebook.
+     */
+    public int nbGaussians() {
+        return this.means.length;
+    }
+
+    /**
+     * Returns the mean value of each Gaussian of this codebook.
+     *
+     * @return A copy of the means array.
+     */
+    public double[] means() {
+        return this.means.clone();
+    }
+
+    /**
+     * Returns the variance of each Gaussian of this codebook.
+     *
+     * @return A copy of the variances array.
+     */
+    public double[] variances() {
+        return this.variances.clone();
+    }
+
+    /**
+     * Generates a value according to one of the Gaussians of this codebook.
+     *
+     * @param m The index of the Gaussian.
+     * @return A pseudo-random value.
+     */
+    public double generate(int m) {
+        return this.means[m] + Math.sqrt(this.variances[m]) * randomGenerator.nextGaussian();
+    }
+
+    /**
+     * Creates a copy of the current parameters of this codebook. The
+     * statistics deposited since the last re-estimation are not copied. The
+     * copy is not shared with the functions using this codebook.
+     *
+     * @return A copy of this codebook.
+     */
+    @Override
+    public GaussianCodebook clone() {
+        return new GaussianCodebook(this.means, this.variances);
+    }
+
+    /**
+     * Gets the generation of the codebook, increased every time the codebook
+     * is re-estimated.
+     */
+    int generation() {
+        return this.generation;
+    }
+
+    /**
+     * Re-estimates the Gaussians with the statistics deposited since the last
+     * re-estimation, pooled over all the states. Gaussians that received no
+     * weight, or that collapsed onto a single value, keep their parameters.
+     * Nothing happens if no statistics were deposited. The accumulators
+     * created before the re-estimation can no longer be finished.
+     */
+    @Override
+    public synchronized void reestimate() {
+        if (!this.pending) {
+            return;
+        }
+        for (int m = 0; m < this.means.length; m++) {
+            double w = this.pendingWeights[m];
+            if (w > 0.0d) {
+                double shift = this.pendingSums[m] / w;
+                double variance = this.pendingSquares[m] / w - shift * shift;
+                if (variance > 0.0d) {
+                    this.means[m] += shift;
+                    this.variances[m] = variance;
+                }
+            }
+        }
+        this.update();
+        this.pendingWeights = null;
+        this.pendingSums = null;
+        this.pendingSquares = null;
+        this.generation++;
+        this.pending = false;
+    }
+
+    /**
+     * Adds the statistics collected by the accumulator of a tied mixture to
+     * the statistics pooled over the states. The sums are relative to the mean
+     * values of the codebook when the statistics were collected. The codebook
+     * is only re-estimated by {@link #reestimate reestimate}.
+     *
+     * @param generation The generation of the codebook the statistics were
+     * collected with.
+     * @param weights The weighted responsibilities of the Gaussians.
+     * @param sums The weighted sums of the deviations from the means.
+     * @param squares The weighted sums of the squared deviations from the
+     * means.
+     * @throws IllegalStateException If the codebook was re-estimated since the
+     * statistics were collected.
+     */
+    synchronized void deposit(int generation, double[] weights, double[] sums, double[] squares) {
+        if (generation != this.generation) {
+            throw new IllegalStateException("The codebook was re-estimated since the statistics were collected");
+        }
+        int n = this.means.length;
+        if (this.pendingWeights == null) {
+            this.pendingWeights = new double[n];
+            this.pendingSums = new double[n];
+            this.pendingSquares = new double[n];
+        }
+        for (int m = 0; m < n; m++) {
+            this.pendingWeights[m] += weights[m];
+            this.pendingSums[m] += sums[m];
+            this.pendingSquares[m] += squares[m];
+        }
+        this.pending = true;
+    }
+
+    /**
+     * Evaluates the Gaussians for the given value: stores
+     * <code>exp(ln N_m(x) - max)</code> in <code>scaled</code> and returns
+     * <code>max</code>, the largest log-density.
+     */
+    private double evaluate(double x, double[] scaled) {
+        double max = Double.NEGATIVE_INFINITY;
+        for (int m = 0; m < scaled.length; m++) {
+            double d = x - this.means[m];
+            scaled[m] = this.lnFactors[m] + this.halves[m] * d * d;
+            max = Math.max(max, scaled[m]);
+        }
+        for (int m = 0; m < scaled.length; m++) {
+            scaled[m] = Math.exp(scaled[m] - max);
+        }
+        return max;
+    }
+
+    /**
+     * Evaluates the Gaussians for a single observation, or returns the cached
+     * densities if the observation was the last one evaluated by this thread.
+     * The returned cache is overwritten by the next call of the same thread.
+     */
+    Cache evaluate(ObservationReal o) {
+        Cache cache = this.caches.get();
+        if (cache.observation != o || cache.generation != this.generation) {
+            if (cache.scaled.length != this.means.length) {
+                cache.scaled = new double[this.means.length];
+            }
+            cache.max = this.evaluate(o.value, cache.scaled);
+            cache.observation = o;
+            cache.generation = this.generation;
+        }
+        return cache;
+    }
+
+    /**
+     * Evaluates the Gaussians for every observation of a sequence, or returns
+     * the cached densities if the sequence holds the same observations as the
+     * last sequence evaluated by this thread. The returned block is
+     * overwritten by the next call of the same thread.
+     */
+    Block evaluate(List<? extends ObservationReal> oseq) {
+        Block block = this.caches.get().block;
+        int n = oseq.size();
+        if (block.generation == this.generation && block.length == n) {
+            int t = 0x00;
+            for (ObservationReal o : oseq) {
+                if (block.observations[t] != o) {
+                    break;
+                }
+                t++;
+            }
+            if (t == n) {
+                return block;
+            }
+        }
+        block.ensure(n, this.means.length);
+        int t = 0x00;
+        for (ObservationReal o : oseq) {
+            block.observations[t] = o;
+            block.max[t] = this.evaluate(o.value, block.scaled[t]);
+            t++;
+        }
+        block.length = n;
+        block.generation = this.generation;
+        return block;
+    }
+
+    /**
+     * The densities of a single observation.
+     */
+    static final class Cache {
+
+        ObservationReal observation;
+        int generation = -1;
+        double max;
+        double[] scaled = new double[0x00];
+        final Block block = new Block();
+
+    }
+
+    /**
+     * The densities of a sequence of observations:
+     * <code>scaled[t][m] * exp(max[t])</code> is the density of the
+     * <code>t</code>-th observation for the <code>m</code>-th Gaussian.
+     */
+    static final class Block {
+
+        ObservationReal[] observations = new ObservationReal[0x00];
+        int length = -1;
+        int generation = -1;
+        double[] max = new double[0x00];
+        double[][] scaled = new double[0x00][];
+
+        private void ensure(int length, int nbGaussians) {
+            if (length > this.observations.length || (length > 0x00 && this.scaled[0x00].length != nbGaussians)) {
+                int c = Math.max(length, this.observations.length << 0x01);
+                this.observations = new ObservationReal[c];
+                this.max = new double[c];
+                this.scaled = new double[c][nbGaussians];
+            }
+        }
+
+    }
+
+}
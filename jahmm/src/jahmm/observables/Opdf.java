@@ -10,6 +10,7 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.io.Writer;
 import java.util.Collection;
+import java.util.List;
 import jutils.draw.DotDrawer;
 
 /**
@@ -33,6 +34,43 @@ public interface Opdf<O extends Observation> extends Cloneable, Serializable, IN
      */
     public abstract double probability(O o);
 
+    /**
+     * Returns the natural logarithm of the probability (density) of an
+     * observation given a distribution. Implementations evaluate the logarithm
+     * directly where possible, such that densities far in the tails do not
+     * underflow to zero.
+     *
+     * @param o An observation.
+     * @return The natural logarithm of the probability (density) of
+     * <code>o</code> for this function.
+     */
+    public abstract double lnProbability(O o);
+
+    /**
+     * Computes the probabilities (densities) of a sequence of observations.
+     * The constants of the function are evaluated once per call instead of
+     * once per observation.
+     *
+     * @param oseq The sequence of observations.
+     * @param probabilities The array to store the results in:
+     * <code>probabilities[t]</code> is the probability (density) of the
+     * <code>t</code>-th observation. The length of the array must be at least
+     * the size of <code>oseq</code>.
+     */
+    public abstract void probabilities(List<? extends O> oseq, double[] probabilities);
+
+    /**
+     * Computes the natural logarithms of the probabilities (densities) of a
+     * sequence of observations.
+     *
+     * @param oseq The sequence of observations.
+     * @param lnProbabilities The array to store the results in:
+     * <code>lnProbabilities[t]</code> is the natural logarithm of the
+     * probability (density) of the <code>t</code>-th observation. The length
+     * of the array must be at least the size of <code>oseq</code>.
+     */
+    public abstract void lnProbabilities(List<? extends O> oseq, double[] lnProbabilities);
+
     /**
      * Generates a (pseudo) random observation according to this distribution.
      *
@@ -84,6 +122,16 @@ public interface Opdf<O extends Observation> extends Cloneable, Serializable, IN
      */
     abstract void fit(Collection<? extends O> co, double... weights);
 
+    /**
+     * Creates an accumulator that collects weighted observations one at a time
+     * and refits this observation probability (distribution) function when it
+     * is finished. Using an accumulator, a function can be fitted without
+     * keeping the set of observations in memory.
+     *
+     * @return A new accumulator bound to this function.
+     */
+    public abstract OpdfAccumulator<O> createAccumulator();
+
     /**
      *
      * @return @throws java.lang.CloneNotSupportedException
@@ -0,0 +1,47 @@
+package jahmm.observables;
+
+/**
+ * Collects the sufficient statistics of a weighted set of observations in
+ * order to refit an {@link Opdf Opdf}. Observations are added one by one, thus
+ * the set does not need to be kept in memory. Accumulators created by the same
+ * observation probability function can be merged, for instance when the
+ * observations were processed by multiple threads.
+ * <p>
+ * The weights do not have to be normalized: the accumulator divides by the
+ * total weight when fitting the function.
+ *
+ * @author kommusoft
+ * @param <O> The type of observations.
+ */
+public interface OpdfAccumulator<O extends Observation> {
+
+    /**
+     * Adds a weighted observation to the accumulated statistics.
+     *
+     * @param o The observation to add.
+     * @param weight The (positive) weight of the observation.
+     */
+    public abstract void accumulate(O o, double weight);
+
+    /**
+     * Adds the statistics collected by another accumulator to the statistics
+     * of this accumulator.
+     *
+     * @param other An accumulator created by the same kind of observation
+     * probability function with the same structure.
+     * @throws IllegalArgumentException If the given accumulator is not
+     * compatible with this accumulator.
+     */
+    public abstract void merge(OpdfAccumulator<O> other);
+
+    /**
+     * Fits the observation probability function that created this accumulator
+     * to the accumulated statistics. If no (strictly positive) weight was
+     * accumulated, the function is left unchanged. The accumulators of a
+     * model are best finished through
+     * {@link OpdfBase#finishAll OpdfBase.finishAll}, which also re-estimates
+     * the parameters shared by several functions.
+     */
+    public abstract void finish();
+
+}
@@ -3,12 +3,155 @@ package jahmm.observables;
 import jahmm.Hmm;
 import java.io.IOException;
 import java.io.Writer;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import jutils.draw.DotDrawer;
 import jutlis.tuples.Tuple2;
 import jutlis.tuples.Tuple2Base;
 
 public abstract class OpdfBase<O extends Observation> implements Opdf<O> {
 
+    /**
+     * Clones the observation probability functions of a model. The parts that
+     * are shared by several functions, such as the
+     * {@link GaussianCodebook codebook} of tied mixtures, are cloned once,
+     * such that the clones share them in the same way.
+     *
+     * @param <O> The type of observations.
+     * @param opdfs The functions to clone.
+     * @return A list with the clones of the functions, in the same order.
+     * @throws CloneNotSupportedException If a function cannot be cloned.
+     */
+    public static <O extends Observation> List<Opdf<O>> cloneAll(Collection<? extends Opdf<O>> opdfs) throws CloneNotSupportedException {
+        Map<Object, Object> shared = new IdentityHashMap<>();
+        List<Opdf<O>> clones = new ArrayList<>(opdfs.size());
+        for (Opdf<O> opdf : opdfs) {
+            clones.add(clone(opdf, shared));
+        }
+        return clones;
+    }
+
+    /**
+     * Clones an observation probability function as part of the clone of a
+     * model, see {@link #cloneAll cloneAll}.
+     *
+     * @param <O> The type of observations.
+     * @param opdf The function to clone.
+     * @param shared The clones of the shared parts cloned so far, indexed by
+     * the original parts. The same map must be used for all the functions of
+     * the model.
+     * @return A clone of the function.
+     * @throws CloneNotSupportedException If the function cannot be cloned.
+     */
+    public static <O extends Observation> Opdf<O> clone(Opdf<O> opdf, Map<Object, Object> shared) throws CloneNotSupportedException {
+        if (opdf instanceof OpdfBase) {
+            return ((OpdfBase<O>) opdf).clone(shared);
+        }
+        return opdf.clone();
+    }
+
+    /**
+     * Creates an array of a generic type, such as an array of observation
+     * probability functions or of their accumulators, without raw types at
+     * the call site.
+     *
+     * @param <T> The (generic) type of the elements.
+     * @param type The class of the elements.
+     * @param length The length of the array.
+     * @return A new array with the given length.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T[] newArray(Class<?> type, int length) {
+        return (T[]) Array.newInstance(type, length);
+    }
+
+    /**
+     * Finishes the accumulators of the functions of a model, then re-estimates
+     * the parts that are shared by several functions, such as the
+     * {@link GaussianCodebook codebook} of tied mixtures, once with the
+     * statistics pooled over all the accumulators.
+     *
+     * @param accumulators The accumulators to finish.
+     */
+    public static void finishAll(OpdfAccumulator<?>... accumulators) {
+        Set<Pooled> pools = Collections.newSetFromMap(new IdentityHashMap<Pooled, Boolean>());
+        for (OpdfAccumulator<?> accumulator : accumulators) {
+            accumulator.finish();
+            if (accumulator instanceof PooledAccumulator) {
+                pools.add(((PooledAccumulator) accumulator).pool());
+            }
+        }
+        for (Pooled pool : pools) {
+            pool.reestimate();
+        }
+    }
+
+    /**
+     * Returns the natural logarithm of the probability of an observation. This
+     * default implementation takes the logarithm of
+     * {@link #probability probability}.
+     *
+     * @param o An observation.
+     * @return The natural logarithm of the probability of <code>o</code>.
+     */
+    @Override
+    public double lnProbability(O o) {
+        return Math.log(this.probability(o));
+    }
+
+    /**
+     * Computes the probabilities of a sequence of observations. This default
+     * implementation calls {@link #probability probability} for every
+     * observation.
+     *
+     * @param oseq The sequence of observations.
+     * @param probabilities The array to store the results in.
+     */
+    @Override
+    public void probabilities(List<? extends O> oseq, double[] probabilities) {
+        int t = 0x00;
+        for (O o : oseq) {
+            probabilities[t++] = this.probability(o);
+        }
+    }
+
+    /**
+     * Computes the natural logarithms of the probabilities of a sequence of
+     * observations. This default implementation calls
+     * {@link #lnProbability lnProbability} for every observation.
+     *
+     * @param oseq The sequence of observations.
+     * @param lnProbabilities The array to store the results in.
+     */
+    @Override
+    public void lnProbabilities(List<? extends O> oseq, double[] lnProbabilities) {
+        int t = 0x00;
+        for (O o : oseq) {
+            lnProbabilities[t++] = this.lnProbability(o);
+        }
+    }
+
+    /**
+     * Creates an accumulator that collects weighted observations and refits
+     * this function when it is finished. This default implementation buffers
+     * the observations and calls {@link #fit(java.util.Collection, double[]) fit};
+     * subclasses that can summarize the observations in sufficient statistics
+     * should override this method.
+     *
+     * @return A new accumulator bound to this function.
+     */
+    @Override
+    public OpdfAccumulator<O> createAccumulator() {
+        return new BufferedAccumulator();
+    }
+
     @Override
     public void dotDrawNode(DotDrawer<? extends Hmm> drawer, Writer writer, String prefix) throws IOException {
         Tuple2<String, String> shapeTuple = new Tuple2Base<>("shape", "triangle");
@@ -24,4 +167,80 @@ public abstract class OpdfBase<O extends Observation> implements Opdf<O> {
     @Override
     public abstract OpdfBase<O> clone() throws CloneNotSupportedException;
 
+    /**
+     * Clones this function as part of the clone of a model. This default
+     * implementation calls {@link #clone() clone}; functions with parts shared
+     * by several functions clone these parts through <code>shared</code>.
+     *
+     * @param shared The clones of the shared parts, indexed by the original
+     * parts.
+     * @return A clone of this function.
+     * @throws CloneNotSupportedException If this function cannot be cloned.
+     */
+    OpdfBase<O> clone(Map<Object, Object> shared) throws CloneNotSupportedException {
+        return this.clone();
+    }
+
+    private final class BufferedAccumulator implements OpdfAccumulator<O> {
+
+        private final ArrayList<O> observations = new ArrayList<>();
+        private double[] weights = new double[0x10];
+        private double total;
+
+        @Override
+        public void accumulate(O o, double weight) {
+            int n = this.observations.size();
+            if (n >= this.weights.length) {
+                this.weights = Arrays.copyOf(this.weights, n << 0x01);
+            }
+            this.observations.add(o);
+            this.weights[n] = weight;
+            this.total += weight;
+        }
+
+        @Override
+        public void merge(OpdfAccumulator<O> other) {
+            if (!(other instanceof OpdfBase.BufferedAccumulator)) {
+                throw new IllegalArgumentException("Incompatible accumulator");
+            }
+            @SuppressWarnings("unchecked")
+            BufferedAccumulator acc = (BufferedAccumulator) other;
+            for (int i = 0x00; i < acc.observations.size(); i++) {
+                this.accumulate(acc.observations.get(i), acc.weights[i]);
+            }
+        }
+
+        @Override
+        public void finish() {
+            if (this.total > 0.0d) {
+                int n = this.observations.size();
+                double[] normalized = new double[n];
+                for (int i = 0x00; i < n; i++) {
+                    normalized[i] = this.weights[i] / this.total;
+                }
+                fit(this.observations, normalized);
+            }
+        }
+
+    }
+
+    /**
+     * Parameters shared by several functions and re-estimated once with the
+     * statistics deposited by all their accumulators.
+     */
+    interface Pooled {
+
+        void reestimate();
+
+    }
+
+    /**
+     * An accumulator that deposits its statistics in shared parameters when
+     * it is finished, see {@link #finishAll finishAll}.
+     */
+    interface PooledAccumulator {
+
+        Pooled pool();
+
+    }
 }
@@ -0,0 +1,299 @@
+/*
+ * Copyright (c) 2004-2009, Jean-Marc François. All Rights Reserved.
+ * Licensed under the New BSD license.  See the LICENSE file.
+ */
+package jahmm.observables;
+
+import java.text.NumberFormat;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * This class represents a multivariate Gaussian distribution function with a
+ * diagonal covariance matrix: the elements of the vectors are independent.
+ * Evaluating the density and fitting the function cost <code>O(d)</code> per
+ * observation instead of <code>O(d*d)</code> for a
+ * {@link OpdfMultiGaussian OpdfMultiGaussian}.
+ */
+public final class OpdfDiagonalGaussian extends OpdfBase<ObservationVector> implements Opdf<ObservationVector> {
+
+    private static final long serialVersionUID = 1L;
+    private static final Random randomGenerator = new Random();
+
+    private final double[] mean;
+    private final double[] variance;
+    /**
+     * The factors <code>-1/(2*variance[i])</code> of the exponent.
+     */
+    private final double[] halfPrecision;
+    private double lnNormalizer;
+
+    /**
+     * Builds a new diagonal Gaussian probability distribution with zero mean
+     * and unit variances.
+     *
+     * @param dimension The dimension of the vectors.
+     */
+    public OpdfDiagonalGaussian(int dimension) {
+        if (dimension <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.mean = new double[dimension];
+        this.variance = new double[dimension];
+        this.halfPrecision = new double[dimension];
+        Arrays.fill(this.variance, 1.0d);
+        this.update();
+    }
+
+    /**
+     * Builds a new diagonal Gaussian probability distribution with a given
+     * mean and variances.
+     *
+     * @param mean The distribution's mean. This array is copied.
+     * @param variance The (strictly positive) variances of the elements of the
+     * vectors. This array is copied.
+     */
+    public OpdfDiagonalGaussian(double[] mean, double[] variance) {
+        if (mean.length == 0 || mean.length != variance.length) {
+            throw new IllegalArgumentException();
+        }
+        this.mean = mean.clone();
+        this.variance = variance.clone();
+        this.halfPrecision = new double[mean.length];
+        this.update();
+    }
+
+    /**
+     * Recomputes the cached constants after the variances have changed.
+     */
+    private void update() {
+        double lnDet = 0.0d;
+        for (int i = 0; i < this.variance.length; i++) {
+            if (!(this.variance[i] > 0.0d)) {
+                throw new IllegalArgumentException("Variance must be positive");
+            }
+            lnDet += Math.log(this.variance[i]);
+            this.halfPrecision[i] = -0.5d / this.variance[i];
+        }
+        this.lnNormalizer = -0.5d * (this.variance.length * Math.log(2.0d * Math.PI) + lnDet);
+    }
+
+    /**
+     * Returns (a copy of) this distribution's mean vector.
+     *
+     * @return The mean vector.
+     */
+    public double[] mean() {
+        return this.mean.clone();
+    }
+
+    /**
+     * Returns (a copy of) the variances of the elements of the vectors.
+     *
+     * @return The variances, the diagonal of the covariance matrix.
+     */
+    public double[] variance() {
+        return this.variance.clone();
+    }
+
+    /**
+     * Returns the dimension of the vectors handled by this distribution.
+     *
+     * @return The dimension of the vectors handled by this distribution.
+     */
+    public int dimension() {
+        return this.mean.length;
+    }
+
+    @Override
+    public double probability(ObservationVector o) {
+        return Math.exp(this.lnProbability(o));
+    }
+
+    @Override
+    public double lnProbability(ObservationVector o) {
+        if (o.dimension() != this.mean.length) {
+            throw new IllegalArgumentException("Vector has a wrong dimension");
+        }
+        double[] v = o.value;
+        double[] m = this.mean;
+        double[] h = this.halfPrecision;
+        double result = this.lnNormalizer;
+        for (int i = 0; i < m.length; i++) {
+            double d = v[i] - m[i];
+            result += h[i] * d * d;
+        }
+        return result;
+    }
+
+    @Override
+    public void probabilities(List<? extends ObservationVector> oseq, double[] probabilities) {
+        this.lnProbabilities(oseq, probabilities);
+        for (int t = oseq.size() - 0x01; t >= 0x00; t--) {
+            probabilities[t] = Math.exp(probabilities[t]);
+        }
+    }
+
+    @Override
+    public void lnProbabilities(List<? extends ObservationVector> oseq, double[] lnProbabilities) {
+        int t = 0x00;
+        for (ObservationVector o : oseq) {
+            lnProbabilities[t++] = this.lnProbability(o);
+        }
+    }
+
+    @Override
+    public ObservationVector generate() {
+        double[] v = new double[this.mean.length];
+        for (int i = 0; i < v.length; i++) {
+            v[i] = this.mean[i] + Math.sqrt(this.variance[i]) * randomGenerator.nextGaussian();
+        }
+        return new ObservationVector(v);
+    }
+
+    @Override
+    public void fit(ObservationVector... oa) {
+        fit(Arrays.asList(oa));
+    }
+
+    @Override
+    public void fit(Collection<? extends ObservationVector> co) {
+        if (co.isEmpty()) {
+            throw new IllegalArgumentException("Empty observation set");
+        }
+
+        double[] weights = new double[co.size()];
+        Arrays.fill(weights, 1.0d / co.size());
+
+        fit(co, weights);
+    }
+
+    @Override
+    public void fit(ObservationVector[] o, double... weights) {
+        fit(Arrays.asList(o), weights);
+    }
+
+    /**
+     * Fits this function to a weighted set of observations in a single pass
+     * over the observations, using the same incremental update as the
+     * {@link #createAccumulator accumulator}.
+     *
+     * @param co A set of observations compatible with this function.
+     * @param weights The weight associated to each observation.
+     */
+    @Override
+    public void fit(Collection<? extends ObservationVector> co, double... weights) {
+        if (co.isEmpty() || co.size() != weights.length) {
+            throw new IllegalArgumentException();
+        }
+        OpdfAccumulator<ObservationVector> accumulator = this.createAccumulator();
+        int i = 0;
+        for (ObservationVector o : co) {
+            accumulator.accumulate(o, weights[i++]);
+        }
+        accumulator.finish();
+    }
+
+    /**
+     * Creates an accumulator that keeps the total weight, the weighted mean
+     * vector and the weighted sums of squared deviations of the elements of
+     * the observations. Both are updated incrementally to avoid cancellation.
+     *
+     * @return A new accumulator bound to this distribution.
+     */
+    @Override
+    public OpdfAccumulator<ObservationVector> createAccumulator() {
+        return new Accumulator();
+    }
+
+    @Override
+    public OpdfDiagonalGaussian clone() throws CloneNotSupportedException {
+        return new OpdfDiagonalGaussian(this.mean, this.variance);
+    }
+
+    /**
+     *
+     * @return
+     */
+    @Override
+    public String toString() {
+        return toString(NumberFormat.getInstance());
+    }
+
+    @Override
+    public String toString(NumberFormat numberFormat) {
+        StringBuilder sb = new StringBuilder("Diagonal Gaussian distribution --- Mean: [ ");
+        for (double m : this.mean) {
+            sb.append(numberFormat.format(m));
+            sb.append(' ');
+        }
+        sb.append("] Variance: [ ");
+        for (double v : this.variance) {
+            sb.append(numberFormat.format(v));
+            sb.append(' ');
+        }
+        sb.append(']');
+        return sb.toString();
+    }
+
+    private final class Accumulator implements OpdfAccumulator<ObservationVector> {
+
+        private double weight;
+        private final double[] mean = new double[dimension()];
+        private final double[] m2 = new double[dimension()];
+
+        @Override
+        public void accumulate(ObservationVector o, double weight) {
+            if (o.dimension() != this.mean.length) {
+                throw new IllegalArgumentException("Vector has a wrong dimension");
+            }
+            if (weight > 0.0d) {
+                double[] v = o.value;
+                this.weight += weight;
+                double f = weight / this.weight;
+                for (int r = 0; r < v.length; r++) {
+                    double delta = v[r] - this.mean[r];
+                    this.mean[r] += delta * f;
+                    this.m2[r] += weight * delta * (v[r] - this.mean[r]);
+                }
+            }
+        }
+
+        @Override
+        public void merge(OpdfAccumulator<ObservationVector> other) {
+            if (!(other instanceof OpdfDiagonalGaussian.Accumulator) || ((OpdfDiagonalGaussian.Accumulator) other).mean.length != this.mean.length) {
+                throw new IllegalArgumentException("Incompatible accumulator");
+            }
+            OpdfDiagonalGaussian.Accumulator acc = (OpdfDiagonalGaussian.Accumulator) other;
+            if (acc.weight > 0.0d) {
+                double total = this.weight + acc.weight;
+                double f = this.weight * acc.weight / total;
+                for (int r = 0; r < this.mean.length; r++) {
+                    double delta = acc.mean[r] - this.mean[r];
+                    this.m2[r] += acc.m2[r] + delta * delta * f;
+                    this.mean[r] += delta * acc.weight / total;
+                }
+                this.weight = total;
+            }
+        }
+
+        @Override
+        public void finish() {
+            if (this.weight > 0.0d) {
+                double[] variance = new double[this.mean.length];
+                for (int r = 0; r < variance.length; r++) {
+                    variance[r] = this.m2[r] / this.weight;
+                    if (!(variance[r] > 0.0d)) {
+                        throw new IllegalArgumentException("Variance must be positive");
+                    }
+                }
+                System.arraycopy(this.mean, 0, OpdfDiagonalGaussian.this.mean, 0, variance.length);
+                System.arraycopy(variance, 0, OpdfDiagonalGaussian.this.variance, 0, variance.length);
+                update();
+            }
+        }
+
+    }
+}
@@ -0,0 +1,29 @@
+/*
+ * Copyright (c) 2004-2009, Jean-Marc François. All Rights Reserved.
+ * Licensed under the New BSD license.  See the LICENSE file.
+ */
+package jahmm.observables;
+
+/**
+ * This class can build <code>OpdfDiagonalGaussian</code> observation
+ * probability functions.
+ */
+public final class OpdfDiagonalGaussianFactory implements OpdfFactory<OpdfDiagonalGaussian> {
+
+    private final int dimension;
+
+    /**
+     * Generates a new diagonal Gaussian observation probability distribution
+     * function.
+     *
+     * @param dimension The dimension of the vectors generated by this object.
+     */
+    public OpdfDiagonalGaussianFactory(int dimension) {
+        this.dimension = dimension;
+    }
+
+    @Override
+    public OpdfDiagonalGaussian generate() {
+        return new OpdfDiagonalGaussian(dimension);
+    }
+}
@@ -160,6 +160,17 @@ public final class OpdfDiscrete<TDiscrete> extends OpdfBase<ObservationDiscrete<
         distribution.fit(dco, weights);
     }
 
+    /**
+     * Creates an accumulator that maps every value on its index and sums the
+     * weights of the indices.
+     *
+     * @return A new accumulator bound to this distribution.
+     */
+    @Override
+    public OpdfAccumulator<ObservationDiscrete<TDiscrete>> createAccumulator() {
+        return new Accumulator(distribution.createAccumulator());
+    }
+
     @Override
     public OpdfDiscrete<TDiscrete> clone() throws CloneNotSupportedException {
         @SuppressWarnings("unchecked")
@@ -213,4 +224,31 @@ public final class OpdfDiscrete<TDiscrete> extends OpdfBase<ObservationDiscrete<
         }
     }
 
+    private final class Accumulator implements OpdfAccumulator<ObservationDiscrete<TDiscrete>> {
+
+        private final OpdfAccumulator<ObservationInteger> inner;
+
+        private Accumulator(OpdfAccumulator<ObservationInteger> inner) {
+            this.inner = inner;
+        }
+
+        @Override
+        public void accumulate(ObservationDiscrete<TDiscrete> o, double weight) {
+            this.inner.accumulate(toIntegerMap.get(o.value), weight);
+        }
+
+        @Override
+        public void merge(OpdfAccumulator<ObservationDiscrete<TDiscrete>> other) {
+            if (!(other instanceof OpdfDiscrete<?>.Accumulator)) {
+                throw new IllegalArgumentException("Incompatible accumulator");
+            }
+            this.inner.merge(((OpdfDiscrete<?>.Accumulator) other).inner);
+        }
+
+        @Override
+        public void finish() {
+            this.inner.finish();
+        }
+
+    }
 }
@@ -105,6 +105,28 @@ public final class OpdfEnum<TEnum extends Enum<TEnum>> extends OpdfBase<Observat
         return distribution.probability(toIntegerMap.get(o.value));
     }
 
+    @Override
+    public double lnProbability(ObservationEnum<TEnum> o) {
+        return Math.log(distribution.probability(o.value.ordinal()));
+    }
+
+    @Override
+    public void probabilities(List<? extends ObservationEnum<TEnum>> oseq, double[] probabilities) {
+        OpdfInteger d = this.distribution;
+        int t = 0x00;
+        for (ObservationEnum<TEnum> o : oseq) {
+            probabilities[t++] = d.probability(o.value.ordinal());
+        }
+    }
+
+    @Override
+    public void lnProbabilities(List<? extends ObservationEnum<TEnum>> oseq, double[] lnProbabilities) {
+        this.probabilities(oseq, lnProbabilities);
+        for (int t = oseq.size() - 0x01; t >= 0x00; t--) {
+            lnProbabilities[t] = Math.log(lnProbabilities[t]);
+        }
+    }
+
     @Override
     public ObservationEnum<TEnum> generate() {
         return new ObservationEnum<>(values.get(distribution.generate().value));
@@ -141,6 +163,17 @@ public final class OpdfEnum<TEnum extends Enum<TEnum>> extends OpdfBase<Observat
         distribution.fit(dco, weights);
     }
 
+    /**
+     * Creates an accumulator that maps every value on its index and sums the
+     * weights of the indices.
+     *
+     * @return A new accumulator bound to this distribution.
+     */
+    @Override
+    public OpdfAccumulator<ObservationEnum<TEnum>> createAccumulator() {
+        return new Accumulator(distribution.createAccumulator());
+    }
+
     @Override
     public OpdfEnum<TEnum> clone() throws CloneNotSupportedException {
         return new OpdfEnum<>(this.values, this.distribution.clone(), this.toIntegerMap);
@@ -189,4 +222,32 @@ public final class OpdfEnum<TEnum extends Enum<TEnum>> extends OpdfBase<Observat
             drawer.nodeStatement(writer, prefix + vals, labelTuple);
         }
     }
+
+    private final class Accumulator implements OpdfAccumulator<ObservationEnum<TEnum>> {
+
+        private final OpdfAccumulator<ObservationInteger> inner;
+
+        private Accumulator(OpdfAccumulator<ObservationInteger> inner) {
+            this.inner = inner;
+        }
+
+        @Override
+        public void accumulate(ObservationEnum<TEnum> o, double weight) {
+            this.inner.accumulate(toIntegerMap.get(o.value), weight);
+        }
+
+        @Override
+        public void merge(OpdfAccumulator<ObservationEnum<TEnum>> other) {
+            if (!(other instanceof OpdfEnum<?>.Accumulator)) {
+                throw new IllegalArgumentException("Incompatible accumulator");
+            }
+            this.inner.merge(((OpdfEnum<?>.Accumulator) other).inner);
+        }
+
+        @Override
+        public void finish() {
+            this.inner.finish();
+        }
+
+    }
 }
@@ -8,6 +8,7 @@ import jahmm.distributions.GaussianDistribution;
 import java.text.NumberFormat;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 
 /**
  * This class represents a (mono variate) Gaussian distribution function.
@@ -71,6 +72,37 @@ public class OpdfGaussian extends OpdfBase<ObservationReal> implements Opdf<Obse
         return distribution.probability(o.value);
     }
 
+    @Override
+    public double lnProbability(ObservationReal o) {
+        return distribution.lnProbability(o.value);
+    }
+
+    @Override
+    public void probabilities(List<? extends ObservationReal> oseq, double[] probabilities) {
+        double mean = distribution.mean();
+        double variance = distribution.variance();
+        double factor = 1.0d / Math.sqrt(2.0d * Math.PI * variance);
+        double half = -0.5d / variance;
+        int t = 0x00;
+        for (ObservationReal o : oseq) {
+            double d = o.value - mean;
+            probabilities[t++] = factor * Math.exp(half * d * d);
+        }
+    }
+
+    @Override
+    public void lnProbabilities(List<? extends ObservationReal> oseq, double[] lnProbabilities) {
+        double mean = distribution.mean();
+        double variance = distribution.variance();
+        double lnFactor = -0.5d * Math.log(2.0d * Math.PI * variance);
+        double half = -0.5d / variance;
+        int t = 0x00;
+        for (ObservationReal o : oseq) {
+            double d = o.value - mean;
+            lnProbabilities[t++] = lnFactor + half * d * d;
+        }
+    }
+
     @Override
     public ObservationReal generate() {
         return new ObservationReal(distribution.generate());
@@ -120,6 +152,18 @@ public class OpdfGaussian extends OpdfBase<ObservationReal> implements Opdf<Obse
         this.distribution.setVariance(variance);
     }
 
+    /**
+     * Creates an accumulator that keeps the total weight, the weighted mean and
+     * the weighted sum of squared deviations of the observations. The mean and
+     * the sum of squares are updated incrementally to avoid cancellation.
+     *
+     * @return A new accumulator bound to this distribution.
+     */
+    @Override
+    public OpdfAccumulator<ObservationReal> createAccumulator() {
+        return new Accumulator();
+    }
+
     @Override
     public OpdfGaussian clone() throws CloneNotSupportedException {
         return new OpdfGaussian(this.distribution.clone());
@@ -138,4 +182,45 @@ public class OpdfGaussian extends OpdfBase<ObservationReal> implements Opdf<Obse
     public String toString(NumberFormat numberFormat) {
         return String.format("Gaussian distribution --- Mean: %s Variance %s", numberFormat.format(distribution.mean()), numberFormat.format(distribution.variance()));
     }
+
+    private final class Accumulator implements OpdfAccumulator<ObservationReal> {
+
+        private double weight;
+        private double mean;
+        private double m2;
+
+        @Override
+        public void accumulate(ObservationReal o, double weight) {
+            if (weight > 0.0d) {
+                this.weight += weight;
+                double delta = o.value - this.mean;
+                this.mean += delta * weight / this.weight;
+                this.m2 += weight * delta * (o.value - this.mean);
+            }
+        }
+
+        @Override
+        public void merge(OpdfAccumulator<ObservationReal> other) {
+            if (!(other instanceof OpdfGaussian.Accumulator)) {
+                throw new IllegalArgumentException("Incompatible accumulator");
+            }
+            OpdfGaussian.Accumulator acc = (OpdfGaussian.Accumulator) other;
+            if (acc.weight > 0.0d) {
+                double total = this.weight + acc.weight;
+                double delta = acc.mean - this.mean;
+                this.mean += delta * acc.weight / total;
+                this.m2 += acc.m2 + delta * delta * this.weight * acc.weight / total;
+                this.weight = total;
+            }
+        }
+
+        @Override
+        public void finish() {
+            if (this.weight > 0.0d) {
+                distribution.setMean(this.mean);
+                distribution.setVariance(this.m2 / this.weight);
+            }
+        }
+
+    }
 }
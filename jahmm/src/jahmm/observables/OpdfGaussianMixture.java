@@ -9,6 +9,7 @@ import jahmm.distributions.GaussianMixtureDistribution;
 import java.text.NumberFormat;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 
 /**
  * This class implements a mixture of mono variate Gaussian distributions.
@@ -19,6 +20,11 @@ import java.util.Collection;
 public final class OpdfGaussianMixture extends OpdfBase<ObservationReal> implements Opdf<ObservationReal> {
 
     private static final long serialVersionUID = 1L;
+    /**
+     * The smallest re-estimated variance, relative to the second moment it is
+     * computed from, that is not the rounding error of a collapsed Gaussian.
+     */
+    static final double MIN_RELATIVE_VARIANCE = 1.E-9;
 
     private GaussianMixtureDistribution distribution;
 
@@ -57,6 +63,69 @@ public final class OpdfGaussianMixture extends OpdfBase<ObservationReal> impleme
         return distribution.probability(o.value);
     }
 
+    @Override
+    public double lnProbability(ObservationReal o) {
+        return distribution.lnProbability(o.value);
+    }
+
+    @Override
+    public void probabilities(List<? extends ObservationReal> oseq, double[] probabilities) {
+        GaussianDistribution[] distributions = distribution.distributions();
+        double[] proportions = distribution.proportions();
+        int k = distributions.length;
+        double[] means = new double[k];
+        double[] factors = new double[k];
+        double[] halves = new double[k];
+        for (int i = 0; i < k; i++) {
+            double variance = distributions[i].variance();
+            means[i] = distributions[i].mean();
+            factors[i] = proportions[i] / Math.sqrt(2.0d * Math.PI * variance);
+            halves[i] = -0.5d / variance;
+        }
+        int t = 0x00;
+        for (ObservationReal o : oseq) {
+            double x = o.value;
+            double sum = 0.0d;
+            for (int i = 0; i < k; i++) {
+                double d = x - means[i];
+                sum += factors[i] * Math.exp(halves[i] * d * d);
+            }
+            probabilities[t++] = sum;
+        }
+    }
+
+    @Override
+    public void lnProbabilities(List<? extends ObservationReal> oseq, double[] lnProbabilities) {
+        GaussianDistribution[] distributions = distribution.distributions();
+        double[] proportions = distribution.proportions();
+        int k = distributions.length;
+        double[] means = new double[k];
+        double[] lnFactors = new double[k];
+        double[] halves = new double[k];
+        double[] terms = new double[k];
+        for (int i = 0; i < k; i++) {
+            double variance = distributions[i].variance();
+            means[i] = distributions[i].mean();
+            lnFactors[i] = Math.log(proportions[i]) - 0.5d * Math.log(2.0d * Math.PI * variance);
+            halves[i] = -0.5d / variance;
+        }
+        int t = 0x00;
+        for (ObservationReal o : oseq) {
+            double x = o.value;
+            double max = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < k; i++) {
+                double d = x - means[i];
+                terms[i] = lnFactors[i] + halves[i] * d * d;
+                max = Math.max(max, terms[i]);
+            }
+            double sum = 0.0d;
+            for (int i = 0; i < k && max > Double.NEGATIVE_INFINITY; i++) {
+                sum += Math.exp(terms[i] - max);
+            }
+            lnProbabilities[t++] = max + Math.log(sum);
+        }
+    }
+
     @Override
     public ObservationReal generate() {
         return new ObservationReal(distribution.generate());
@@ -159,7 +228,10 @@ public final class OpdfGaussianMixture extends OpdfBase<ObservationReal> impleme
      * of observations. This method performs one iteration of an
      * expectation-maximisation algorithm. Equations (53) and (54) of Rabiner's
      * <i>A Tutorial on Hidden Markov Models and Selected Applications in Speech
-     * Recognition</i> explain how the weights can be used.
+     * Recognition</i> explain how the weights can be used. The responsibilities
+     * and the weighted moments are computed in a single pass over the
+     * observations, by the same {@link #createAccumulator accumulator} as the
+     * one used by the Baum-Welch learners.
      *
      * @param co A set of observations compatible with this function.
      * @param weights The weights associated to the observations.
@@ -169,109 +241,28 @@ public final class OpdfGaussianMixture extends OpdfBase<ObservationReal> impleme
         if (co.isEmpty() || co.size() != weights.length) {
             throw new IllegalArgumentException();
         }
-
-        ObservationReal[] o = co.toArray(new ObservationReal[co.size()]);
-
-        double[][] delta = getDelta(o);
-        double[] newMixingProportions
-                = computeNewMixingProportions(delta, o, weights);
-        double[] newMeans = computeNewMeans(delta, o, weights);
-        double[] newVariances = computeNewVariances(delta, o, weights);
-
-        distribution = new GaussianMixtureDistribution(newMeans, newVariances, newMixingProportions);
-    }
-
-    /* 
-     * Computes the relative weight of each observation for each distribution.
-     */
-    private double[][] getDelta(ObservationReal... o) {
-        double[][] delta = new double[distribution.nbGaussians()][o.length];
-
-        for (int i = 0; i < distribution.nbGaussians(); i++) {
-            double[] proportions = distribution.proportions();
-            GaussianDistribution[] distributions
-                    = distribution.distributions();
-
-            for (int t = 0; t < o.length; t++) {
-                delta[i][t] = proportions[i]
-                        * distributions[i].probability(o[t].value) / probability(o[t]);
-            }
+        OpdfAccumulator<ObservationReal> accumulator = this.createAccumulator();
+        int t = 0;
+        for (ObservationReal o : co) {
+            accumulator.accumulate(o, weights[t++]);
         }
-
-        return delta;
+        accumulator.finish();
     }
 
-    /*
-     * Estimates new mixing proportions given delta.
-     */
-    private double[] computeNewMixingProportions(double[][] delta,
-            ObservationReal[] o, double[] weights) {
-        double[] num = new double[distribution.nbGaussians()];
-        double sum = 0.0;
-
-        for (int i = 0; i < distribution.nbGaussians(); i++) {
-            for (int t = 0; t < weights.length; t++) {
-                num[i] += weights[t] * delta[i][t];
-                sum += weights[t] * delta[i][t];
-            }
-        }
-
-        double[] newMixingProportions = new double[distribution.nbGaussians()];
-        for (int i = 0; i < distribution.nbGaussians(); i++) {
-            newMixingProportions[i] = num[i] / sum;
-        }
-
-        return newMixingProportions;
-    }
-
-    /*
-     * Estimates new mean values of each Gaussian given delta.
-     */
-    private double[] computeNewMeans(double[][] delta, ObservationReal[] o,
-            double[] weights) {
-        double[] num = new double[distribution.nbGaussians()];
-        double[] sum = new double[distribution.nbGaussians()];
-
-        for (int i = 0; i < distribution.nbGaussians(); i++) {
-            for (int t = 0; t < o.length; t++) {
-                num[i] += weights[t] * delta[i][t] * o[t].value;
-                sum[i] += weights[t] * delta[i][t];
-            }
-        }
-
-        double[] newMeans = new double[distribution.nbGaussians()];
-        for (int i = 0; i < distribution.nbGaussians(); i++) {
-            newMeans[i] = num[i] / sum[i];
-        }
-
-        return newMeans;
-    }
-
-    /*
-     * Estimates new variance values of each Gaussian given delta.
+    /**
+     * Creates an accumulator that performs the expectation step of the
+     * expectation-maximisation algorithm one observation at a time. For every
+     * Gaussian, the accumulator keeps the weighted responsibility and the
+     * weighted first and second moments of the deviations from the current
+     * mean. Finishing the accumulator performs the maximisation step, the new
+     * variances being computed around the new means. Gaussians that received
+     * no weight, or that collapsed onto a single value, keep their parameters.
+     *
+     * @return A new accumulator bound to this distribution.
      */
-    private double[] computeNewVariances(double[][] delta, ObservationReal[] o,
-            double[] weights) {
-        double[] num = new double[distribution.nbGaussians()];
-        double[] sum = new double[distribution.nbGaussians()];
-
-        for (int i = 0; i < distribution.nbGaussians(); i++) {
-            GaussianDistribution[] distributions = distribution.distributions();
-
-            for (int t = 0; t < o.length; t++) {
-                num[i] += weights[t] * delta[i][t]
-                        * (o[t].value - distributions[i].mean())
-                        * (o[t].value - distributions[i].mean());
-                sum[i] += weights[t] * delta[i][t];
-            }
-        }
-
-        double[] newVariances = new double[distribution.nbGaussians()];
-        for (int i = 0; i < distribution.nbGaussians(); i++) {
-            newVariances[i] = num[i] / sum[i];
-        }
-
-        return newVariances;
+    @Override
+    public OpdfAccumulator<ObservationReal> createAccumulator() {
+        return new Accumulator();
     }
 
     @Override
@@ -302,4 +293,95 @@ public final class OpdfGaussianMixture extends OpdfBase<ObservationReal> impleme
 
         return sb.toString();
     }
+
+    private final class Accumulator implements OpdfAccumulator<ObservationReal> {
+
+        private final GaussianMixtureDistribution current = distribution;
+        private final double[] means = means();
+        private final double[] lnFactors = new double[means.length];
+        private final double[] halves = new double[means.length];
+        private final double[] terms = new double[means.length];
+        private final double[] responsibility = new double[means.length];
+        private final double[] sum = new double[means.length];
+        private final double[] squares = new double[means.length];
+
+        Accumulator() {
+            double[] proportions = this.current.proportions();
+            double[] variances = variances();
+            for (int i = 0; i < this.means.length; i++) {
+                this.lnFactors[i] = Math.log(proportions[i]) - 0.5d * Math.log(2.0d * Math.PI * variances[i]);
+                this.halves[i] = -0.5d / variances[i];
+            }
+        }
+
+        @Override
+        public void accumulate(ObservationReal o, double weight) {
+            int n = this.means.length;
+            double x = o.value;
+            double max = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < n; i++) {
+                double d = x - this.means[i];
+                this.terms[i] = this.lnFactors[i] + this.halves[i] * d * d;
+                max = Math.max(max, this.terms[i]);
+            }
+            if (max == Double.NEGATIVE_INFINITY) {
+                return;
+            }
+            double total = 0.0d;
+            for (int i = 0; i < n; i++) {
+                this.terms[i] = Math.exp(this.terms[i] - max);
+                total += this.terms[i];
+            }
+            double f = weight / total;
+            for (int i = 0; i < n; i++) {
+                double wd = f * this.terms[i];
+                double d = x - this.means[i];
+                this.responsibility[i] += wd;
+                this.sum[i] += wd * d;
+                this.squares[i] += wd * d * d;
+            }
+        }
+
+        @Override
+        public void merge(OpdfAccumulator<ObservationReal> other) {
+            if (!(other instanceof OpdfGaussianMixture.Accumulator) || ((OpdfGaussianMixture.Accumulator) other).current != this.current) {
+                throw new IllegalArgumentException("Incompatible accumulator");
+            }
+            OpdfGaussianMixture.Accumulator acc = (OpdfGaussianMixture.Accumulator) other;
+            for (int i = 0; i < this.responsibility.length; i++) {
+                this.responsibility[i] += acc.responsibility[i];
+                this.sum[i] += acc.sum[i];
+                this.squares[i] += acc.squares[i];
+            }
+        }
+
+        @Override
+        public void finish() {
+            int n = this.responsibility.length;
+            double total = 0.0d;
+            for (int i = 0; i < n; i++) {
+                total += this.responsibility[i];
+            }
+            if (total > 0.0d) {
+                double[] newMixingProportions = new double[n];
+                double[] newMeans = new double[n];
+                double[] newVariances = variances();
+                for (int i = 0; i < n; i++) {
+                    double r = this.responsibility[i];
+                    newMixingProportions[i] = r / total;
+                    newMeans[i] = this.means[i];
+                    if (r > 0.0d) {
+                        double shift = this.sum[i] / r;
+                        double variance = this.squares[i] / r - shift * shift;
+                        if (variance > MIN_RELATIVE_VARIANCE * this.squares[i] / r) {
+                            newMeans[i] += shift;
+                            newVariances[i] = variance;
+                        }
+                    }
+                }
+                distribution = new GaussianMixtureDistribution(newMeans, newVariances, newMixingProportions);
+            }
+        }
+
+    }
 }
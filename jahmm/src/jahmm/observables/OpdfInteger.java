@@ -7,6 +7,7 @@ package jahmm.observables;
 import java.text.NumberFormat;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 import jutlis.lists.ListArray;
 
 /**
@@ -80,6 +81,42 @@ public final class OpdfInteger extends OpdfBase<ObservationInteger> implements O
         return probabilities[o.value];
     }
 
+    /**
+     * Returns the probability of the given value without wrapping it in an
+     * observation.
+     */
+    double probability(int value) {
+        if (value > probabilities.length - 1) {
+            throw new IllegalArgumentException("Wrong observation value");
+        }
+        return probabilities[value];
+    }
+
+    @Override
+    public double lnProbability(ObservationInteger o) {
+        return Math.log(this.probability(o));
+    }
+
+    @Override
+    public void probabilities(List<? extends ObservationInteger> oseq, double[] probabilities) {
+        double[] p = this.probabilities;
+        int t = 0x00;
+        for (ObservationInteger o : oseq) {
+            if (o.value > p.length - 1) {
+                throw new IllegalArgumentException("Wrong observation value");
+            }
+            probabilities[t++] = p[o.value];
+        }
+    }
+
+    @Override
+    public void lnProbabilities(List<? extends ObservationInteger> oseq, double[] lnProbabilities) {
+        this.probabilities(oseq, lnProbabilities);
+        for (int t = oseq.size() - 0x01; t >= 0x00; t--) {
+            lnProbabilities[t] = Math.log(lnProbabilities[t]);
+        }
+    }
+
     @Override
     public ObservationInteger generate() {
         double rand = Math.random();
@@ -136,6 +173,16 @@ public final class OpdfInteger extends OpdfBase<ObservationInteger> implements O
         }
     }
 
+    /**
+     * Creates an accumulator that sums the weights of every integer value.
+     *
+     * @return A new accumulator bound to this distribution.
+     */
+    @Override
+    public OpdfAccumulator<ObservationInteger> createAccumulator() {
+        return new Accumulator();
+    }
+
     @Override
     public OpdfInteger clone() throws CloneNotSupportedException {
         return new OpdfInteger(this.probabilities);
@@ -159,4 +206,39 @@ public final class OpdfInteger extends OpdfBase<ObservationInteger> implements O
         }
         return sb.toString();
     }
+
+    private final class Accumulator implements OpdfAccumulator<ObservationInteger> {
+
+        private final double[] counts = new double[probabilities.length];
+
+        @Override
+        public void accumulate(ObservationInteger o, double weight) {
+            this.counts[o.value] += weight;
+        }
+
+        @Override
+        public void merge(OpdfAccumulator<ObservationInteger> other) {
+            if (!(other instanceof OpdfInteger.Accumulator) || ((OpdfInteger.Accumulator) other).counts.length != this.counts.length) {
+                throw new IllegalArgumentException("Incompatible accumulator");
+            }
+            double[] oc = ((OpdfInteger.Accumulator) other).counts;
+            for (int i = 0; i < this.counts.length; i++) {
+                this.counts[i] += oc[i];
+            }
+        }
+
+        @Override
+        public void finish() {
+            double total = 0.0d;
+            for (double count : this.counts) {
+                total += count;
+            }
+            if (total > 0.0d) {
+                for (int i = 0; i < probabilities.length; i++) {
+                    probabilities[i] = this.counts[i] / total;
+                }
+            }
+        }
+
+    }
 }
@@ -8,6 +8,7 @@ import jahmm.distributions.MultiGaussianDistribution;
 import java.text.NumberFormat;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 import java.util.logging.Logger;
 
 /**
@@ -86,6 +87,23 @@ public final class OpdfMultiGaussian extends OpdfBase<ObservationVector> impleme
         return distribution.probability(o.value);
     }
 
+    @Override
+    public double lnProbability(ObservationVector o) {
+        if (o.dimension() != distribution.dimension()) {
+            throw new IllegalArgumentException("Vector has a wrong dimension");
+        }
+
+        return distribution.lnProbability(o.value);
+    }
+
+    @Override
+    public void probabilities(List<? extends ObservationVector> oseq, double[] probabilities) {
+        this.lnProbabilities(oseq, probabilities);
+        for (int t = oseq.size() - 0x01; t >= 0x00; t--) {
+            probabilities[t] = Math.exp(probabilities[t]);
+        }
+    }
+
     @Override
     public ObservationVector generate() {
         return new ObservationVector(distribution.generate());
@@ -130,19 +148,23 @@ public final class OpdfMultiGaussian extends OpdfBase<ObservationVector> impleme
         }
 
         // Compute covariance
-        double[][] covariance = new double[dimension()][dimension()];
+        int d = dimension();
+        double[][] covariance = new double[d][d];
+        double[] mean = this.distribution.mean();
+        double[] omm = new double[d];
         int i = 0;
         for (ObservationVector o : co) {
             double[] obs = o.value;
-            double[] omm = new double[obs.length];
 
-            for (int j = 0; j < obs.length; j++) {
-                omm[j] = obs[j] - this.distribution.mean(j);
+            for (int j = 0; j < d; j++) {
+                omm[j] = obs[j] - mean[j];
             }
 
-            for (int r = 0; r < dimension(); r++) {
-                for (int c = 0; c < dimension(); c++) {
-                    covariance[r][c] += omm[r] * omm[c] * weights[i];
+            for (int r = 0; r < d; r++) {
+                double wr = omm[r] * weights[i];
+                double[] row = covariance[r];
+                for (int c = 0; c < d; c++) {
+                    row[c] += wr * omm[c];
                 }
             }
 
@@ -152,6 +174,18 @@ public final class OpdfMultiGaussian extends OpdfBase<ObservationVector> impleme
         distribution.setCovariance(covariance);
     }
 
+    /**
+     * Creates an accumulator that keeps the total weight, the weighted mean
+     * vector and the weighted scatter matrix of the observations. Both are
+     * updated incrementally to avoid cancellation.
+     *
+     * @return A new accumulator bound to this distribution.
+     */
+    @Override
+    public OpdfAccumulator<ObservationVector> createAccumulator() {
+        return new Accumulator();
+    }
+
     @Override
     public OpdfMultiGaussian clone() throws CloneNotSupportedException {
         return new OpdfMultiGaussian(this.distribution.clone());
@@ -177,4 +211,75 @@ public final class OpdfMultiGaussian extends OpdfBase<ObservationVector> impleme
         sb.append(']');
         return sb.toString();
     }
+
+    private final class Accumulator implements OpdfAccumulator<ObservationVector> {
+
+        private double weight;
+        private final double[] mean = new double[dimension()];
+        private final double[][] m2 = new double[dimension()][dimension()];
+        private final double[] delta = new double[dimension()];
+
+        @Override
+        public void accumulate(ObservationVector o, double weight) {
+            if (o.dimension() != this.mean.length) {
+                throw new IllegalArgumentException("Vector has a wrong dimension");
+            }
+            if (weight > 0.0d) {
+                int d = this.mean.length;
+                double[] v = o.value;
+                this.weight += weight;
+                double f = weight / this.weight;
+                for (int r = 0; r < d; r++) {
+                    this.delta[r] = v[r] - this.mean[r];
+                    this.mean[r] += this.delta[r] * f;
+                }
+                for (int r = 0; r < d; r++) {
+                    double wr = weight * this.delta[r];
+                    double[] row = this.m2[r];
+                    for (int c = 0; c < d; c++) {
+                        row[c] += wr * (v[c] - this.mean[c]);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void merge(OpdfAccumulator<ObservationVector> other) {
+            if (!(other instanceof OpdfMultiGaussian.Accumulator) || ((OpdfMultiGaussian.Accumulator) other).mean.length != this.mean.length) {
+                throw new IllegalArgumentException("Incompatible accumulator");
+            }
+            OpdfMultiGaussian.Accumulator acc = (OpdfMultiGaussian.Accumulator) other;
+            if (acc.weight > 0.0d) {
+                int d = this.mean.length;
+                double total = this.weight + acc.weight;
+                double f = this.weight * acc.weight / total;
+                for (int r = 0; r < d; r++) {
+                    this.delta[r] = acc.mean[r] - this.mean[r];
+                }
+                for (int r = 0; r < d; r++) {
+                    for (int c = 0; c < d; c++) {
+                        this.m2[r][c] += acc.m2[r][c] + this.delta[r] * this.delta[c] * f;
+                    }
+                    this.mean[r] += this.delta[r] * acc.weight / total;
+                }
+                this.weight = total;
+            }
+        }
+
+        @Override
+        public void finish() {
+            if (this.weight > 0.0d) {
+                int d = this.mean.length;
+                double[][] covariance = new double[d][d];
+                for (int r = 0; r < d; r++) {
+                    for (int c = 0; c < d; c++) {
+                        covariance[r][c] = this.m2[r][c] / this.weight;
+                    }
+                }
+                distribution.setMean(this.mean.clone());
+                distribution.setCovariance(covariance);
+            }
+        }
+
+    }
 }
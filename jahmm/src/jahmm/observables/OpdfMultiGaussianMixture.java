@@ -0,0 +1,463 @@
+package jahmm.observables;
+
+import jahmm.distributions.MultiGaussianDistribution;
+import java.text.NumberFormat;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * This class implements a mixture of multivariate Gaussian distributions.
+ *
+ * @author kommusoft
+ */
+public final class OpdfMultiGaussianMixture extends OpdfBase<ObservationVector> implements Opdf<ObservationVector> {
+
+    private static final long serialVersionUID = 1L;
+    private static final Random randomGenerator = new Random();
+    private static final ThreadLocal<double[]> BUFFER = new ThreadLocal<double[]>() {
+        @Override
+        protected double[] initialValue() {
+            return new double[0x10];
+        }
+    };
+
+    private MultiGaussianDistribution[] distributions;
+    private double[] proportions;
+
+    /**
+     * Creates a multivariate Gaussian mixture distribution. The elements of
+     * the mean vectors of the distributions are evenly distributed between 0
+     * and 1 and each covariance matrix is the identity.
+     *
+     * @param nbGaussians The number of Gaussian distributions that compose this
+     * mixture.
+     * @param dimension The dimension of the vectors.
+     */
+    public OpdfMultiGaussianMixture(int nbGaussians, int dimension) {
+        if (nbGaussians <= 0 || dimension <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.distributions = new MultiGaussianDistribution[nbGaussians];
+        this.proportions = new double[nbGaussians];
+        for (int m = 0; m < nbGaussians; m++) {
+            this.distributions[m] = new MultiGaussianDistribution(dimension);
+            double[] mean = new double[dimension];
+            Arrays.fill(mean, (1. + 2. * m) / (2. * nbGaussians));
+            this.distributions[m].setMean(mean);
+        }
+        Arrays.fill(this.proportions, 1. / nbGaussians);
+    }
+
+    /**
+     * Creates a multivariate Gaussian mixture distribution. The mean and
+     * covariance of each distribution composing the mixture are given as
+     * arguments.
+     *
+     * @param means The mean vectors of the Gaussian distributions.
+     * @param covariances The covariance matrices of the Gaussian distributions.
+     * @param proportions The mixing proportions. This array does not have to be
+     * normalized, but each element must be positive and the sum of its elements
+     * must be strictly positive.
+     */
+    public OpdfMultiGaussianMixture(double[][] means, double[][][] covariances, double... proportions) {
+        if (means.length == 0 || means.length != covariances.length
+                || means.length != proportions.length) {
+            throw new IllegalArgumentException();
+        }
+        this.distributions = new MultiGaussianDistribution[means.length];
+        for (int m = 0; m < means.length; m++) {
+            this.distributions[m] = new MultiGaussianDistribution(means[m], covariances[m]);
+            if (this.distributions[m].dimension() != this.distributions[0].dimension()) {
+                throw new IllegalArgumentException("The distributions have different dimensions");
+            }
+        }
+        this.proportions = normalize(proportions);
+    }
+
+    private OpdfMultiGaussianMixture(MultiGaussianDistribution[] distributions, double[] proportions) {
+        this.distributions = distributions;
+        this.proportions = proportions;
+    }
+
+    private static double[] normalize(double[] proportions) {
+        double sum = 0.;
+        for (double p : proportions) {
+            if (p < 0.) {
+                throw new IllegalArgumentException();
+            }
+            sum += p;
+        }
+        if (!(sum > 0.)) {
+            throw new IllegalArgumentException();
+        }
+        double[] result = new double[proportions.length];
+        for (int m = 0; m < proportions.length; m++) {
+            result[m] = proportions[m] / sum;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of distributions composing this mixture.
+     *
+     * @return The number of distributions composing this mixture.
+     */
+    public int nbGaussians() {
+        return this.distributions.length;
+    }
+
+    /**
+     * Returns the dimension of the vectors handled by this distribution.
+     *
+     * @return The dimension of the vectors handled by this distribution.
+     */
+    public int dimension() {
+        return this.distributions[0].dimension();
+    }
+
+    /**
+     * Returns the mixing proportions of each Gaussian distribution.
+     *
+     * @return A (copy of) array giving the distributions' proportion.
+     */
+    public double[] proportions() {
+        return this.proportions.clone();
+    }
+
+    /**
+     * Returns the mean vector of each distribution composing this mixture.
+     *
+     * @return A copy of the mean vectors.
+     */
+    public double[][] means() {
+        double[][] means = new double[this.distributions.length][];
+        for (int m = 0; m < means.length; m++) {
+            means[m] = this.distributions[m].mean();
+        }
+        return means;
+    }
+
+    /**
+     * Returns the covariance matrix of each distribution composing this
+     * mixture.
+     *
+     * @return A copy of the covariance matrices.
+     */
+    public double[][][] covariances() {
+        double[][][] covariances = new double[this.distributions.length][][];
+        for (int m = 0; m < covariances.length; m++) {
+            covariances[m] = this.distributions[m].covariance();
+        }
+        return covariances;
+    }
+
+    @Override
+    public double probability(ObservationVector o) {
+        return Math.exp(this.lnProbability(o));
+    }
+
+    @Override
+    public double lnProbability(ObservationVector o) {
+        MultiGaussianDistribution[] d = this.distributions;
+        double[] terms = BUFFER.get();
+        if (terms.length < d.length) {
+            terms = new double[Math.max(d.length, terms.length << 0x01)];
+            BUFFER.set(terms);
+        }
+        double max = Double.NEGATIVE_INFINITY;
+        for (int m = 0; m < d.length; m++) {
+            terms[m] = Math.log(this.proportions[m]) + d[m].lnProbability(o.value);
+            max = Math.max(max, terms[m]);
+        }
+        if (max == Double.NEGATIVE_INFINITY) {
+            return max;
+        }
+        double sum = 0.0d;
+        for (int m = 0; m < d.length; m++) {
+            sum += Math.exp(terms[m] - max);
+        }
+        return max + Math.log(sum);
+    }
+
+    @Override
+    public void probabilities(List<? extends ObservationVector> oseq, double[] probabilities) {
+        this.lnProbabilities(oseq, probabilities);
+        for (int t = oseq.size() - 0x01; t >= 0x00; t--) {
+            probabilities[t] = Math.exp(probabilities[t]);
+        }
+    }
+
+    @Override
+    public void lnProbabilities(List<? extends ObservationVector> oseq, double[] lnProbabilities) {
+        MultiGaussianDistribution[] d = this.distributions;
+        double[] lnProportions = new double[d.length];
+        double[] terms = new double[d.length];
+        for (int m = 0; m < d.length; m++) {
+            lnProportions[m] = Math.log(this.proportions[m]);
+        }
+        int t = 0x00;
+        for (ObservationVector o : oseq) {
+            double max = Double.NEGATIVE_INFINITY;
+            for (int m = 0; m < d.length; m++) {
+                terms[m] = lnProportions[m] + d[m].lnProbability(o.value);
+                max = Math.max(max, terms[m]);
+            }
+            double sum = 0.0d;
+            for (int m = 0; m < d.length && max > Double.NEGATIVE_INFINITY; m++) {
+                sum += Math.exp(terms[m] - max);
+            }
+            lnProbabilities[t++] = max + Math.log(sum);
+        }
+    }
+
+    @Override
+    public ObservationVector generate() {
+        double r = randomGenerator.nextDouble();
+        int m = 0;
+        while (m < this.proportions.length - 1 && (r -= this.proportions[m]) >= 0.0d) {
+            m++;
+        }
+        return new ObservationVector(this.distributions[m].generate());
+    }
+
+    @Override
+    public void fit(ObservationVector... oa) {
+        fit(Arrays.asList(oa));
+    }
+
+    @Override
+    public void fit(Collection<? extends ObservationVector> co) {
+        double[] weights = new double[co.size()];
+        Arrays.fill(weights, 1. / co.size());
+
+        fit(co, weights);
+    }
+
+    @Override
+    public void fit(ObservationVector[] o, double... weights) {
+        fit(Arrays.asList(o), weights);
+    }
+
+    /**
+     * Fits this observation distribution function to a (non empty) weighted set
+     * of observations. This method performs one iteration of an
+     * expectation-maximisation algorithm. The responsibilities and the weighted
+     * first and second moments are computed in a single pass over the
+     * observations, by the same {@link #createAccumulator accumulator} as the
+     * one used by the Baum-Welch learners.
+     *
+     * @param co A set of observations compatible with this function.
+     * @param weights The weights associated to the observations.
+     */
+    @Override
+    public void fit(Collection<? extends ObservationVector> co, double... weights) {
+        if (co.isEmpty() || co.size() != weights.length) {
+            throw new IllegalArgumentException();
+        }
+        OpdfAccumulator<ObservationVector> accumulator = this.createAccumulator();
+        int t = 0;
+        for (ObservationVector o : co) {
+            accumulator.accumulate(o, weights[t++]);
+        }
+        accumulator.finish();
+    }
+
+    /**
+     * Creates an accumulator that performs the expectation step of the
+     * expectation-maximisation algorithm one observation at a time. For every
+     * Gaussian, the accumulator keeps the weighted responsibility and the
+     * weighted first and second moments of the deviations from the current
+     * mean. Finishing the accumulator performs the maximisation step, the new
+     * covariances being computed around the new means. Gaussians that received
+     * no weight, or whose new covariance matrix is not positive definite, keep
+     * their parameters.
+     *
+     * @return A new accumulator bound to this distribution.
+     */
+    @Override
+    public OpdfAccumulator<ObservationVector> createAccumulator() {
+        return new Accumulator();
+    }
+
+    @Override
+    public OpdfMultiGaussianMixture clone() throws CloneNotSupportedException {
+        MultiGaussianDistribution[] d = new MultiGaussianDistribution[this.distributions.length];
+        for (int m = 0; m < d.length; m++) {
+            d[m] = this.distributions[m].clone();
+        }
+        return new OpdfMultiGaussianMixture(d, this.proportions.clone());
+    }
+
+    /**
+     *
+     * @return
+     */
+    @Override
+    public String toString() {
+        return toString(NumberFormat.getInstance());
+    }
+
+    @Override
+    public String toString(NumberFormat numberFormat) {
+        StringBuilder sb = new StringBuilder("Multi-variate Gaussian mixture distribution --- ");
+
+        for (int m = 0; m < this.distributions.length; m++) {
+            sb.append(String.format("Gaussian %s:\n\tMixing Prop = %s\n\tMean = [ ", (m + 1), numberFormat.format(this.proportions[m])));
+            for (double v : this.distributions[m].mean()) {
+                sb.append(numberFormat.format(v));
+                sb.append(' ');
+            }
+            sb.append("]\n\tCovariance = [ ");
+            for (double[] row : this.distributions[m].covariance()) {
+                sb.append("[ ");
+                for (double v : row) {
+                    sb.append(numberFormat.format(v));
+                    sb.append(' ');
+                }
+                sb.append("] ");
+            }
+            sb.append("]\n");
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Tests if the covariance matrix of a re-estimated distribution is
+     * positive definite, its determinant being compared to the product of the
+     * second moments it is computed from such that the rounding error of a
+     * collapsed Gaussian is rejected as well.
+     */
+    private static boolean isPositiveDefinite(MultiGaussianDistribution distribution, double[][] squares, double r) {
+        double scale = 1.0d;
+        for (int i = 0; i < squares.length; i++) {
+            scale *= squares[i][i] / r;
+        }
+        try {
+            return distribution.covarianceDet() > OpdfGaussianMixture.MIN_RELATIVE_VARIANCE * scale;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private final class Accumulator implements OpdfAccumulator<ObservationVector> {
+
+        private final MultiGaussianDistribution[] current = distributions;
+        private final double[][] means = means();
+        private final double[] lnProportions = new double[current.length];
+        private final double[] terms = new double[current.length];
+        private final double[] deviation = new double[dimension()];
+        private final double[] responsibility = new double[current.length];
+        private final double[][] sum = new double[current.length][dimension()];
+        private final double[][][] squares = new double[current.length][dimension()][dimension()];
+
+        Accumulator() {
+            for (int m = 0; m < this.current.length; m++) {
+                this.lnProportions[m] = Math.log(proportions[m]);
+            }
+        }
+
+        @Override
+        public void accumulate(ObservationVector o, double weight) {
+            int n = this.current.length;
+            double[] x = o.value;
+            double max = Double.NEGATIVE_INFINITY;
+            for (int m = 0; m < n; m++) {
+                this.terms[m] = this.lnProportions[m] + this.current[m].lnProbability(x);
+                max = Math.max(max, this.terms[m]);
+            }
+            if (max == Double.NEGATIVE_INFINITY) {
+                return;
+            }
+            double total = 0.0d;
+            for (int m = 0; m < n; m++) {
+                this.terms[m] = Math.exp(this.terms[m] - max);
+                total += this.terms[m];
+            }
+            double f = weight / total;
+            double[] d = this.deviation;
+            for (int m = 0; m < n; m++) {
+                double wd = f * this.terms[m];
+                if (wd == 0.0d) {
+                    continue;
+                }
+                double[] mean = this.means[m];
+                double[] s = this.sum[m];
+                double[][] q = this.squares[m];
+                this.responsibility[m] += wd;
+                for (int r = 0; r < d.length; r++) {
+                    d[r] = x[r] - mean[r];
+                    s[r] += wd * d[r];
+                }
+                for (int r = 0; r < d.length; r++) {
+                    double wr = wd * d[r];
+                    double[] row = q[r];
+                    for (int c = r; c < d.length; c++) {
+                        row[c] += wr * d[c];
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void merge(OpdfAccumulator<ObservationVector> other) {
+            if (!(other instanceof OpdfMultiGaussianMixture.Accumulator) || ((OpdfMultiGaussianMixture.Accumulator) other).current != this.current) {
+                throw new IllegalArgumentException("Incompatible accumulator");
+            }
+            OpdfMultiGaussianMixture.Accumulator acc = (OpdfMultiGaussianMixture.Accumulator) other;
+            for (int m = 0; m < this.responsibility.length; m++) {
+                this.responsibility[m] += acc.responsibility[m];
+                for (int r = 0; r < this.deviation.length; r++) {
+                    this.sum[m][r] += acc.sum[m][r];
+                    for (int c = r; c < this.deviation.length; c++) {
+                        this.squares[m][r][c] += acc.squares[m][r][c];
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void finish() {
+            int n = this.responsibility.length;
+            int dim = this.deviation.length;
+            double total = 0.0d;
+            for (int m = 0; m < n; m++) {
+                total += this.responsibility[m];
+            }
+            if (total > 0.0d) {
+                MultiGaussianDistribution[] newDistributions = new MultiGaussianDistribution[n];
+                double[] newProportions = new double[n];
+                for (int m = 0; m < n; m++) {
+                    double r = this.responsibility[m];
+                    newProportions[m] = r / total;
+                    if (r > 0.0d) {
+                        double[] shift = new double[dim];
+                        double[] mean = new double[dim];
+                        for (int i = 0; i < dim; i++) {
+                            shift[i] = this.sum[m][i] / r;
+                            mean[i] = this.means[m][i] + shift[i];
+                        }
+                        double[][] covariance = new double[dim][dim];
+                        for (int i = 0; i < dim; i++) {
+                            for (int j = i; j < dim; j++) {
+                                covariance[i][j] = this.squares[m][i][j] / r - shift[i] * shift[j];
+                                covariance[j][i] = covariance[i][j];
+                            }
+                        }
+                        newDistributions[m] = new MultiGaussianDistribution(mean, covariance);
+                        if (!isPositiveDefinite(newDistributions[m], this.squares[m], r)) {
+                            newDistributions[m] = this.current[m];
+                        }
+                    } else {
+                        newDistributions[m] = this.current[m];
+                    }
+                }
+                distributions = newDistributions;
+                proportions = newProportions;
+            }
+        }
+
+    }
+}
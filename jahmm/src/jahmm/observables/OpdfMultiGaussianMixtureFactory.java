@@ -0,0 +1,29 @@
+package jahmm.observables;
+
+/**
+ * Implements a factory of multivariate Gaussian mixtures distributions.
+ *
+ * @author kommusoft
+ */
+public final class OpdfMultiGaussianMixtureFactory implements OpdfFactory<OpdfMultiGaussianMixture> {
+
+    private final int gaussiansNb;
+    private final int dimension;
+
+    /**
+     * Creates a new factory of multivariate Gaussian mixtures.
+     *
+     * @param gaussiansNb The number of Gaussian distributions involved in the
+     * generated distributions.
+     * @param dimension The dimension of the vectors.
+     */
+    public OpdfMultiGaussianMixtureFactory(int gaussiansNb, int dimension) {
+        this.gaussiansNb = gaussiansNb;
+        this.dimension = dimension;
+    }
+
+    @Override
+    public OpdfMultiGaussianMixture generate() {
+        return new OpdfMultiGaussianMixture(gaussiansNb, dimension);
+    }
+}
@@ -0,0 +1,323 @@
+package jahmm.observables;
+
+import java.text.NumberFormat;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * This class implements a tied (semi-continuous) mixture of mono variate
+ * Gaussian distributions: the Gaussians are shared by all the states in a
+ * {@link GaussianCodebook GaussianCodebook}, and every state only keeps its
+ * mixing proportions. Since the codebook caches the densities of the last
+ * observations, the emission probabilities of the <code>N</code> states cost
+ * <code>M</code> Gaussian evaluations and <code>N*M</code> multiply-adds per
+ * observation, instead of <code>N*M</code> Gaussian evaluations with
+ * {@link OpdfGaussianMixture OpdfGaussianMixture}.
+ * <p>
+ * Finishing an accumulator of this function re-estimates its mixing
+ * proportions and deposits its statistics in the shared codebook. The
+ * codebook is re-estimated once all the states are finished, with the
+ * statistics pooled over the states, by
+ * {@link OpdfBase#finishAll OpdfBase.finishAll}, as the learners do.
+ * {@link #fit(java.util.Collection, double...) Fitting} a single function
+ * re-estimates the codebook with the observations of that function only.
+ * <p>
+ * Cloning this function does not clone the codebook; cloning a model clones
+ * the codebook once for all its states, see
+ * {@link OpdfBase#cloneAll OpdfBase.cloneAll}.
+ *
+ * @author kommusoft
+ */
+public final class OpdfTiedGaussianMixture extends OpdfBase<ObservationReal> implements Opdf<ObservationReal> {
+
+    private static final long serialVersionUID = 1L;
+    private static final Random randomGenerator = new Random();
+
+    private final GaussianCodebook codebook;
+    private final double[] proportions;
+
+    /**
+     * Creates a tied mixture with equal mixing proportions.
+     *
+     * @param codebook The codebook shared by the states.
+     */
+    public OpdfTiedGaussianMixture(GaussianCodebook codebook) {
+        this.codebook = codebook;
+        this.proportions = new double[codebook.nbGaussians()];
+        Arrays.fill(this.proportions, 1.0d / this.proportions.length);
+    }
+
+    /**
+     * Creates a tied mixture with the given mixing proportions.
+     *
+     * @param codebook The codebook shared by the states.
+     * @param proportions The mixing proportions. This array does not have to be
+     * normalized, but each element must be positive and the sum of its elements
+     * must be strictly positive.
+     */
+    public OpdfTiedGaussianMixture(GaussianCodebook codebook, double... proportions) {
+        if (proportions.length != codebook.nbGaussians()) {
+            throw new IllegalArgumentException();
+        }
+        double sum = 0.0d;
+        for (double p : proportions) {
+            if (p < 0.0d) {
+                throw new IllegalArgumentException();
+            }
+            sum += p;
+        }
+        if (!(sum > 0.0d)) {
+            throw new IllegalArgumentException();
+        }
+        this.codebook = codebook;
+        this.proportions = new double[proportions.length];
+        for (int m = 0; m < proportions.length; m++) {
+            this.proportions[m] = proportions[m] / sum;
+        }
+    }
+
+    /**
+     * Returns the codebook shared by the states.
+     *
+     * @return The codebook of this mixture.
+     */
+    public GaussianCodebook codebook() {
+        return this.codebook;
+    }
+
+    /**
+     * Returns the number of distributions composing this mixture.
+     *
+     * @return The number of distributions composing this mixture.
+     */
+    public int nbGaussians() {
+        return this.proportions.length;
+    }
+
+    /**
+     * Returns the mixing proportions of each Gaussian distribution.
+     *
+     * @return A (copy of) array giving the distributions' proportion.
+     */
+    public double[] proportions() {
+        return this.proportions.clone();
+    }
+
+    private double weighted(double[] scaled) {
+        double[] w = this.proportions;
+        double sum = 0.0d;
+        for (int m = 0; m < w.length; m++) {
+            sum += w[m] * scaled[m];
+        }
+        return sum;
+    }
+
+    @Override
+    public double probability(ObservationReal o) {
+        GaussianCodebook.Cache cache = this.codebook.evaluate(o);
+        return this.weighted(cache.scaled) * Math.exp(cache.max);
+    }
+
+    @Override
+    public double lnProbability(ObservationReal o) {
+        GaussianCodebook.Cache cache = this.codebook.evaluate(o);
+        return cache.max + Math.log(this.weighted(cache.scaled));
+    }
+
+    @Override
+    public void probabilities(List<? extends ObservationReal> oseq, double[] probabilities) {
+        GaussianCodebook.Block block = this.codebook.evaluate(oseq);
+        for (int t = 0x00; t < block.length; t++) {
+            probabilities[t] = this.weighted(block.scaled[t]) * Math.exp(block.max[t]);
+        }
+    }
+
+    @Override
+    public void lnProbabilities(List<? extends ObservationReal> oseq, double[] lnProbabilities) {
+        GaussianCodebook.Block block = this.codebook.evaluate(oseq);
+        for (int t = 0x00; t < block.length; t++) {
+            lnProbabilities[t] = block.max[t] + Math.log(this.weighted(block.scaled[t]));
+        }
+    }
+
+    @Override
+    public ObservationReal generate() {
+        double r = randomGenerator.nextDouble();
+        int m = 0;
+        while (m < this.proportions.length - 1 && (r -= this.proportions[m]) >= 0.0d) {
+            m++;
+        }
+        return new ObservationReal(this.codebook.generate(m));
+    }
+
+    @Override
+    public void fit(ObservationReal... oa) {
+        fit(Arrays.asList(oa));
+    }
+
+    @Override
+    public void fit(Collection<? extends ObservationReal> co) {
+        double[] weights = new double[co.size()];
+        Arrays.fill(weights, 1. / co.size());
+
+        fit(co, weights);
+    }
+
+    @Override
+    public void fit(ObservationReal[] o, double... weights) {
+        fit(Arrays.asList(o), weights);
+    }
+
+    /**
+     * Fits this observation distribution function to a (non empty) weighted set
+     * of observations. This method performs one iteration of an
+     * expectation-maximisation algorithm: the mixing proportions and the
+     * codebook are re-estimated with the given observations. Since the
+     * codebook is shared, this changes the other states as well; to pool the
+     * observations of several states, finish their accumulators together
+     * with {@link OpdfBase#finishAll OpdfBase.finishAll}.
+     *
+     * @param co A set of observations compatible with this function.
+     * @param weights The weights associated to the observations.
+     */
+    @Override
+    public void fit(Collection<? extends ObservationReal> co, double... weights) {
+        if (co.isEmpty() || co.size() != weights.length) {
+            throw new IllegalArgumentException();
+        }
+        OpdfAccumulator<ObservationReal> accumulator = this.createAccumulator();
+        int t = 0;
+        for (ObservationReal o : co) {
+            accumulator.accumulate(o, weights[t++]);
+        }
+        OpdfBase.finishAll(accumulator);
+    }
+
+    /**
+     * Creates an accumulator that performs the expectation step of the
+     * expectation-maximisation algorithm one observation at a time. For every
+     * Gaussian, the accumulator keeps the weighted responsibility, the weighted
+     * sum of the deviations from the mean of the codebook and the weighted sum
+     * of the squared deviations. Finishing the accumulator updates the mixing
+     * proportions and {@link GaussianCodebook#deposit deposits} the sums in the
+     * codebook, which pools the statistics of all its states until it is
+     * {@link GaussianCodebook#reestimate re-estimated}.
+     *
+     * @return A new accumulator bound to this distribution.
+     */
+    @Override
+    public OpdfAccumulator<ObservationReal> createAccumulator() {
+        return new Accumulator();
+    }
+
+    @Override
+    public OpdfTiedGaussianMixture clone() throws CloneNotSupportedException {
+        return new OpdfTiedGaussianMixture(this.codebook, this.proportions);
+    }
+
+    @Override
+    OpdfTiedGaussianMixture clone(Map<Object, Object> shared) throws CloneNotSupportedException {
+        GaussianCodebook clone = (GaussianCodebook) shared.get(this.codebook);
+        if (clone == null) {
+            clone = this.codebook.clone();
+            shared.put(this.codebook, clone);
+        }
+        return new OpdfTiedGaussianMixture(clone, this.proportions);
+    }
+
+    /**
+     *
+     * @return
+     */
+    @Override
+    public String toString() {
+        return toString(NumberFormat.getInstance());
+    }
+
+    @Override
+    public String toString(NumberFormat numberFormat) {
+        StringBuilder sb = new StringBuilder("Tied Gaussian mixture distribution --- ");
+
+        double[] means = this.codebook.means();
+        double[] variances = this.codebook.variances();
+
+        for (int i = 0; i < this.proportions.length; i++) {
+            sb.append(String.format("Gaussian %s:\n\tMixing Prop = %s\n\tMean = %s\n\tVariance = %s\n", (i + 1), numberFormat.format(this.proportions[i]), numberFormat.format(means[i]), numberFormat.format(variances[i])));
+        }
+
+        return sb.toString();
+    }
+
+    private final class Accumulator implements OpdfAccumulator<ObservationReal>, OpdfBase.PooledAccumulator {
+
+        private final int generation = codebook.generation();
+        private final double[] means = codebook.means();
+        private final double[] responsibility = new double[proportions.length];
+        private final double[] sum = new double[proportions.length];
+        private final double[] squares = new double[proportions.length];
+        private final double[] posterior = new double[proportions.length];
+
+        @Override
+        public void accumulate(ObservationReal o, double weight) {
+            if (!(weight > 0.0d)) {
+                return;
+            }
+            double[] scaled = codebook.evaluate(o).scaled;
+            double total = 0.0d;
+            for (int m = 0; m < this.posterior.length; m++) {
+                this.posterior[m] = proportions[m] * scaled[m];
+                total += this.posterior[m];
+            }
+            if (total > 0.0d) {
+                double f = weight / total;
+                for (int m = 0; m < this.posterior.length; m++) {
+                    double wd = f * this.posterior[m];
+                    double d = o.value - this.means[m];
+                    this.responsibility[m] += wd;
+                    this.sum[m] += wd * d;
+                    this.squares[m] += wd * d * d;
+                }
+            }
+        }
+
+        @Override
+        public void merge(OpdfAccumulator<ObservationReal> other) {
+            if (!(other instanceof OpdfTiedGaussianMixture.Accumulator) || ((OpdfTiedGaussianMixture.Accumulator) other).owner() != OpdfTiedGaussianMixture.this || ((OpdfTiedGaussianMixture.Accumulator) other).generation != this.generation) {
+                throw new IllegalArgumentException("Incompatible accumulator");
+            }
+            OpdfTiedGaussianMixture.Accumulator acc = (OpdfTiedGaussianMixture.Accumulator) other;
+            for (int m = 0; m < this.responsibility.length; m++) {
+                this.responsibility[m] += acc.responsibility[m];
+                this.sum[m] += acc.sum[m];
+                this.squares[m] += acc.squares[m];
+            }
+        }
+
+        @Override
+        public void finish() {
+            double total = 0.0d;
+            for (double r : this.responsibility) {
+                total += r;
+            }
+            if (total > 0.0d) {
+                codebook.deposit(this.generation, this.responsibility, this.sum, this.squares);
+                for (int m = 0; m < this.responsibility.length; m++) {
+                    proportions[m] = this.responsibility[m] / total;
+                }
+            }
+        }
+
+        @Override
+        public GaussianCodebook pool() {
+            return codebook;
+        }
+
+        private OpdfTiedGaussianMixture owner() {
+            return OpdfTiedGaussianMixture.this;
+        }
+
+    }
+}
@@ -0,0 +1,44 @@
+package jahmm.observables;
+
+/**
+ * Implements a factory of tied Gaussian mixtures: all the generated
+ * distributions share the same {@link GaussianCodebook codebook}.
+ *
+ * @author kommusoft
+ */
+public final class OpdfTiedGaussianMixtureFactory implements OpdfFactory<OpdfTiedGaussianMixture> {
+
+    private final GaussianCodebook codebook;
+
+    /**
+     * Creates a new factory of tied Gaussian mixtures.
+     *
+     * @param codebook The codebook shared by the generated distributions.
+     */
+    public OpdfTiedGaussianMixtureFactory(GaussianCodebook codebook) {
+        this.codebook = codebook;
+    }
+
+    /**
+     * Creates a new factory of tied Gaussian mixtures with a new codebook.
+     *
+     * @param nbGaussians The number of Gaussians of the codebook.
+     */
+    public OpdfTiedGaussianMixtureFactory(int nbGaussians) {
+        this(new GaussianCodebook(nbGaussians));
+    }
+
+    /**
+     * Returns the codebook shared by the generated distributions.
+     *
+     * @return The codebook of this factory.
+     */
+    public GaussianCodebook codebook() {
+        return this.codebook;
+    }
+
+    @Override
+    public OpdfTiedGaussianMixture generate() {
+        return new OpdfTiedGaussianMixture(this.codebook);
+    }
+}
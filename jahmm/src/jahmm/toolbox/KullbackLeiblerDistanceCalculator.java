@@ -72,8 +72,8 @@ public class KullbackLeiblerDistanceCalculator<TObs extends Observation, TInt ex
         double distance = 0.0d;
         for (int i = 0; i < nbSequences; i++) {
             List<TInt> oseq = hmm1.getMarkovGenerator().interactionSequence(sequencesLength);
-            double da = hmm1.probability(oseq);
-            double db = hmm2.probability(oseq);
+            double da = hmm1.lnProbability(oseq);
+            double db = hmm2.lnProbability(oseq);
             distance += da - db;
         }
         return distance / (nbSequences * sequencesLength);
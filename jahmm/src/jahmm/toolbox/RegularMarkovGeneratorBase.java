@@ -5,7 +5,9 @@
 package jahmm.toolbox;
 
 import jahmm.RegularHmm;
+import jahmm.calculators.SparseTransitionMatrix;
 import jahmm.observables.Observation;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Logger;
 
@@ -68,4 +70,37 @@ public class RegularMarkovGeneratorBase<TObs extends Observation, THmm extends R
         stateNb = hmm.nbStates() - 1;
         return o;
     }
+
+    /**
+     * Generates a new (pseudo) random observation sequence and start a new one.
+     * If the sequence is at least as long as the number of states and the
+     * transition matrix of the Hidden Markov Model is sparse, the matrix is
+     * compiled once for the whole sequence, such that sampling the next state
+     * only visits the non-zero transitions leaving the current state. Shorter
+     * sequences would not amortise the scan of the matrix and are sampled from
+     * the model directly.
+     *
+     * @param length The length of the sequence.
+     * @return An observation sequence.
+     */
+    @Override
+    public List<TObs> interactionSequence(int length) {
+        if (length <= 0) {
+            throw new IllegalArgumentException("Positive length required");
+        }
+        SparseTransitionMatrix sparse = null;
+        if (length >= hmm.nbStates()) {
+            sparse = SparseTransitionMatrix.compileIfSparse(hmm);
+        }
+        if (sparse == null) {
+            return super.interactionSequence(length);
+        }
+        ArrayList<TObs> sequence = new ArrayList<>(length);
+        while (length-- > 0) {
+            sequence.add(hmm.getOpdf(stateNb).generate());
+            stateNb = sparse.nextState(stateNb, Math.random());
+        }
+        newSequence();
+        return sequence;
+    }
 }
@@ -54,6 +54,26 @@ public class BasicIntegerTest
         assertEquals(1.8697705349794245E-5, RegularForwardBackwardCalculatorBase.Instance.computeProbability(hmm, sequence), DELTA);
     }
 
+    /**
+     * Tests if the batch and logarithmic evaluations of an integer function
+     * match the scalar probability.
+     */
+    public void testBatchProbabilities() {
+        OpdfInteger opdf = new OpdfInteger(.1, .2, .3, .4);
+        List<ObservationInteger> obs = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            obs.add(new ObservationInteger(i));
+        }
+        double[] probabilities = new double[obs.size()];
+        double[] lnProbabilities = new double[obs.size()];
+        opdf.probabilities(obs, probabilities);
+        opdf.lnProbabilities(obs, lnProbabilities);
+        for (int i = 0; i < obs.size(); i++) {
+            assertEquals(opdf.probability(obs.get(i)), probabilities[i], DELTA);
+            assertEquals(Math.log(opdf.probability(obs.get(i))), lnProbabilities[i], DELTA);
+        }
+    }
+
     /**
      *
      */
@@ -5,11 +5,27 @@
 package jahmm;
 
 import jahmm.distributions.GaussianDistribution;
+import jahmm.distributions.MultiGaussianDistribution;
 import jahmm.distributions.RandomDistribution;
+import jahmm.learn.KMeansLearner;
+import jahmm.learn.RegularBaumWelchScaledLearnerBase;
+import jahmm.observables.GaussianCodebook;
+import jahmm.observables.Observation;
 import jahmm.observables.ObservationReal;
 import jahmm.observables.ObservationVector;
+import jahmm.observables.Opdf;
+import jahmm.observables.OpdfAccumulator;
+import jahmm.observables.OpdfBase;
+import jahmm.observables.OpdfDiagonalGaussian;
+import jahmm.observables.OpdfGaussian;
 import jahmm.observables.OpdfGaussianMixture;
 import jahmm.observables.OpdfMultiGaussian;
+import jahmm.observables.OpdfMultiGaussianMixture;
+import jahmm.observables.OpdfTiedGaussianMixture;
+import jahmm.observables.OpdfTiedGaussianMixtureFactory;
+import jahmm.toolbox.RegularMarkovGeneratorBase;
+import java.util.ArrayList;
+import java.util.List;
 import junit.framework.TestCase;
 
 /**
@@ -159,4 +175,360 @@ public class GaussianTest
                     equalsArrays(omg1.covariance()[i], omg2.covariance()[i]));
         }
     }
+
+    /**
+     * Tests if fitting through two merged accumulators gives the same
+     * distribution as fitting the observations directly.
+     */
+    public void testAccumulatorFit() {
+        double[] mean = {2., 4.};
+        double[][] covariance = {{3., 2.}, {2., 4.}};
+        OpdfMultiGaussian omg1 = new OpdfMultiGaussian(mean, covariance);
+
+        ObservationVector[] obs = new ObservationVector[nbObservations];
+        for (int i = 0; i < obs.length; i++) {
+            obs[i] = omg1.generate();
+        }
+
+        OpdfMultiGaussian fitted = new OpdfMultiGaussian(2);
+        fitted.fit(obs);
+
+        OpdfMultiGaussian accumulated = new OpdfMultiGaussian(2);
+        OpdfAccumulator<ObservationVector> acc1 = accumulated.createAccumulator();
+        OpdfAccumulator<ObservationVector> acc2 = accumulated.createAccumulator();
+        for (int i = 0; i < obs.length; i++) {
+            (i < obs.length / 3 ? acc1 : acc2).accumulate(obs[i], 1.);
+        }
+        acc1.merge(acc2);
+        acc1.finish();
+
+        assertTrue("Different mean arrays",
+                equalsArrays(fitted.mean(), accumulated.mean(), 1.E-9));
+        for (int i = 0; i < 2; i++) {
+            assertTrue("Different covariance arrays",
+                    equalsArrays(fitted.covariance()[i],
+                            accumulated.covariance()[i], 1.E-9));
+        }
+    }
+
+    /**
+     * Tests if the cached precision form matches the closed-form density of a
+     * bivariate Gaussian, and if it is refreshed when the covariance changes.
+     */
+    public void testMultiGaussianDensity() {
+        MultiGaussianDistribution mgd = new MultiGaussianDistribution(new double[]{2., 4.}, new double[][]{{3., 2.}, {2., 4.}});
+        double[] v = {1., 5.};
+        assertEquals(bivariateDensity(2., 4., 3., 2., 4., v), mgd.probability(v), 1.E-12);
+        assertEquals(8., mgd.covarianceDet(), 1.E-12);
+        mgd.setCovariance(new double[][]{{2., -1.}, {-1., 5.}});
+        assertEquals(bivariateDensity(2., 4., 2., -1., 5., v), mgd.probability(v), 1.E-12);
+        assertEquals(Math.log(bivariateDensity(2., 4., 2., -1., 5., v)), mgd.lnProbability(v), 1.E-12);
+        mgd.setCovariance(0, 0, 4.);
+        assertEquals(bivariateDensity(2., 4., 4., -1., 5., v), mgd.probability(v), 1.E-12);
+    }
+
+    /**
+     * Tests if a diagonal Gaussian is the product of univariate Gaussians, and
+     * if its single-pass fit recovers the generating distribution.
+     */
+    public void testDiagonalGaussian() {
+        double[] mean = {2., -4., 1.};
+        double[] variance = {3., .5, 2.};
+        OpdfDiagonalGaussian odg1 = new OpdfDiagonalGaussian(mean, variance);
+
+        assertEquals(3, odg1.dimension());
+
+        ObservationVector o = new ObservationVector(new double[]{1., -3., 2.5});
+        double expected = 1.;
+        for (int i = 0; i < mean.length; i++) {
+            expected *= new GaussianDistribution(mean[i], variance[i]).probability(o.value(i));
+        }
+        assertEquals(expected, odg1.probability(o), 1.E-12 * expected);
+
+        ObservationVector[] obs = new ObservationVector[100_000];
+        for (int i = 0; i < obs.length; i++) {
+            obs[i] = odg1.generate();
+        }
+
+        OpdfDiagonalGaussian odg2 = new OpdfDiagonalGaussian(3);
+        odg2.fit(obs);
+
+        assertTrue("Different mean arrays", equalsArrays(mean, odg2.mean()));
+        assertTrue("Different variance arrays", equalsArrays(variance, odg2.variance()));
+
+        checkBatchProbabilities(odg1);
+    }
+
+    /**
+     * Tests if a multivariate Gaussian mixture is the weighted sum of its
+     * components.
+     */
+    public void testMultiGaussianMixture() {
+        double[][] means = {{0., 0.}, {4., -2.}};
+        double[][][] covariances = {{{1., .5}, {.5, 2.}}, {{3., -1.}, {-1., 1.}}};
+        OpdfMultiGaussianMixture omgm = new OpdfMultiGaussianMixture(means, covariances, 1., 3.);
+
+        assertEquals(2, omgm.dimension());
+        assertEquals(2, omgm.nbGaussians());
+
+        MultiGaussianDistribution mgd0 = new MultiGaussianDistribution(means[0], covariances[0]);
+        MultiGaussianDistribution mgd1 = new MultiGaussianDistribution(means[1], covariances[1]);
+        for (int i = 0; i < 100; i++) {
+            ObservationVector o = omgm.generate();
+            double expected = .25 * mgd0.probability(o.values()) + .75 * mgd1.probability(o.values());
+            assertEquals(expected, omgm.probability(o), 1.E-12 * expected);
+        }
+        checkBatchProbabilities(omgm);
+    }
+
+    /**
+     * Tests if the single-pass fit of a mono dimensional vector mixture gives
+     * the same distribution as the scalar mixture, and if the fit of a
+     * bivariate mixture recovers the generating distribution.
+     */
+    public void testMultiGaussianMixtureFit() {
+        OpdfGaussianMixture generator = new OpdfGaussianMixture(new double[]{0., 4.}, new double[]{1., 2.}, 1., 2.);
+        ObservationReal[] reals = new ObservationReal[nbObservations];
+        ObservationVector[] vectors = new ObservationVector[nbObservations];
+        for (int i = 0; i < nbObservations; i++) {
+            reals[i] = generator.generate();
+            vectors[i] = new ObservationVector(new double[]{reals[i].value});
+        }
+        OpdfGaussianMixture gm = new OpdfGaussianMixture(2);
+        OpdfMultiGaussianMixture omgm = new OpdfMultiGaussianMixture(2, 1);
+        for (int i = 0; i < 5; i++) {
+            gm.fit(reals);
+            omgm.fit(vectors);
+        }
+        assertTrue("Different proportions", equalsArrays(gm.proportions(), omgm.proportions(), 1.E-9));
+        for (int m = 0; m < 2; m++) {
+            assertEquals(gm.means()[m], omgm.means()[m][0], 1.E-9);
+            assertEquals(gm.variances()[m], omgm.covariances()[m][0][0], 1.E-9);
+        }
+
+        double[][] means = {{0., 0.}, {6., -4.}};
+        double[][][] covariances = {{{1., .5}, {.5, 2.}}, {{3., -1.}, {-1., 1.}}};
+        OpdfMultiGaussianMixture omgm1 = new OpdfMultiGaussianMixture(means, covariances, 1., 2.);
+        for (int i = 0; i < nbObservations; i++) {
+            vectors[i] = omgm1.generate();
+        }
+        OpdfMultiGaussianMixture omgm2 = new OpdfMultiGaussianMixture(new double[][]{{1., 1.}, {4., -2.}}, new double[][][]{{{1., 0.}, {0., 1.}}, {{1., 0.}, {0., 1.}}}, 1., 1.);
+        for (int i = 0; i < 20; i++) {
+            omgm2.fit(vectors);
+        }
+        assertTrue("Different proportions", equalsArrays(new double[]{1. / 3., 2. / 3.}, omgm2.proportions()));
+        for (int m = 0; m < 2; m++) {
+            assertTrue("Different mean arrays", equalsArrays(means[m], omgm2.means()[m], DELTA * 3.));
+            for (int r = 0; r < 2; r++) {
+                assertTrue("Different covariance arrays", equalsArrays(covariances[m][r], omgm2.covariances()[m][r], DELTA * 6.));
+            }
+        }
+    }
+
+    /**
+     * Tests if a mixture fitted to observations that do not span the space
+     * keeps the parameters of its Gaussians instead of a singular covariance.
+     */
+    public void testDegenerateMixtureFit() {
+        ObservationReal[] reals = new ObservationReal[nbObservations];
+        ObservationVector[] vectors = new ObservationVector[nbObservations];
+        for (int i = 0; i < nbObservations; i++) {
+            reals[i] = new ObservationReal(1.);
+            vectors[i] = new ObservationVector(new double[]{i, 2. * i});
+        }
+        OpdfGaussianMixture gm = new OpdfGaussianMixture(2);
+        double[] variances = gm.variances();
+        gm.fit(reals);
+        assertTrue("Different variance arrays", equalsArrays(variances, gm.variances()));
+        assertFalse(Double.isNaN(gm.lnProbability(reals[0])));
+
+        OpdfMultiGaussianMixture omgm = new OpdfMultiGaussianMixture(2, 2);
+        double[][][] covariances = omgm.covariances();
+        omgm.fit(vectors);
+        for (int m = 0; m < 2; m++) {
+            for (int r = 0; r < 2; r++) {
+                assertTrue("Different covariance arrays", equalsArrays(covariances[m][r], omgm.covariances()[m][r]));
+            }
+        }
+        assertFalse(Double.isNaN(omgm.lnProbability(vectors[1])));
+    }
+
+    /**
+     * Tests if tied mixtures sharing a codebook evaluate the same densities as
+     * independent mixtures, whatever the order in which the states evaluate
+     * the observations.
+     */
+    public void testTiedGaussianMixture() {
+        double[] means = {-1., 2.};
+        double[] variances = {.5, 3.};
+        GaussianCodebook codebook = new GaussianCodebook(means, variances);
+        OpdfTiedGaussianMixture tied1 = new OpdfTiedGaussianMixture(codebook, .3, .7);
+        OpdfTiedGaussianMixture tied2 = new OpdfTiedGaussianMixture(codebook, .8, .2);
+        OpdfGaussianMixture mixture1 = new OpdfGaussianMixture(means, variances, .3, .7);
+        OpdfGaussianMixture mixture2 = new OpdfGaussianMixture(means, variances, .8, .2);
+
+        List<ObservationReal> obs = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            ObservationReal o = mixture1.generate();
+            obs.add(o);
+            assertEquals(mixture1.probability(o), tied1.probability(o), 1.E-12);
+            assertEquals(mixture2.probability(o), tied2.probability(o), 1.E-12);
+            assertEquals(mixture1.lnProbability(o), tied1.lnProbability(o), 1.E-9);
+        }
+
+        double[] expected = new double[obs.size()];
+        double[] actual = new double[obs.size()];
+        tied1.probabilities(obs, actual);
+        mixture1.probabilities(obs, expected);
+        for (int t = 0; t < obs.size(); t++) {
+            assertEquals(expected[t], actual[t], 1.E-12);
+        }
+        tied2.probabilities(obs, actual);
+        mixture2.probabilities(obs, expected);
+        for (int t = 0; t < obs.size(); t++) {
+            assertEquals(expected[t], actual[t], 1.E-12);
+        }
+        checkBatchProbabilities(tied1);
+    }
+
+    /**
+     * Tests if the codebook is re-estimated with the statistics pooled over
+     * the states: fitting two states with identical proportions on two sets
+     * of observations gives the same codebook as fitting one state on both
+     * sets. Reading the codebook between the accumulators does not
+     * re-estimate it.
+     */
+    public void testTiedGaussianMixtureFit() {
+        double[] means = {-1., 2.};
+        double[] variances = {.5, 3.};
+        OpdfGaussianMixture generator = new OpdfGaussianMixture(means, variances, .4, .6);
+        List<ObservationReal> obs1 = new ArrayList<>();
+        List<ObservationReal> obs2 = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            obs1.add(generator.generate());
+            obs2.add(generator.generate());
+        }
+
+        GaussianCodebook pooled = new GaussianCodebook(new double[]{0., 1.}, new double[]{1., 1.});
+        OpdfTiedGaussianMixture tied1 = new OpdfTiedGaussianMixture(pooled, .5, .5);
+        OpdfTiedGaussianMixture tied2 = new OpdfTiedGaussianMixture(pooled, .5, .5);
+        OpdfAccumulator<ObservationReal> acc1 = tied1.createAccumulator();
+        for (int i = 0; i < obs1.size(); i++) {
+            acc1.accumulate(obs1.get(i), 1.);
+        }
+        acc1.finish();
+        assertTrue("Codebook re-estimated by a read", equalsArrays(new double[]{0., 1.}, pooled.means()));
+        OpdfAccumulator<ObservationReal> acc2 = tied2.createAccumulator();
+        for (int i = 0; i < obs2.size(); i++) {
+            acc2.accumulate(obs2.get(i), 1.);
+        }
+        OpdfBase.finishAll(acc2);
+
+        GaussianCodebook single = new GaussianCodebook(new double[]{0., 1.}, new double[]{1., 1.});
+        OpdfTiedGaussianMixture tied = new OpdfTiedGaussianMixture(single, .5, .5);
+        List<ObservationReal> obs = new ArrayList<>(obs1);
+        obs.addAll(obs2);
+        tied.fit(obs);
+
+        assertTrue("Different mean arrays", equalsArrays(single.means(), pooled.means(), 1.E-9));
+        assertTrue("Different variance arrays", equalsArrays(single.variances(), pooled.variances(), 1.E-9));
+    }
+
+    /**
+     * Tests if the Baum-Welch algorithm does not decrease the likelihood of a
+     * semi-continuous Hidden Markov Model, and if it leaves the input model
+     * unchanged.
+     */
+    public void testTiedGaussianMixtureBaumWelch() {
+        RegularHmmBase<ObservationReal> hmm = new RegularHmmBase<>(2, new OpdfTiedGaussianMixtureFactory(new GaussianCodebook(new double[]{0., 5.}, new double[]{1., 2.})));
+        hmm.setOpdf(0, new OpdfTiedGaussianMixture(((OpdfTiedGaussianMixture) hmm.getOpdf(0)).codebook(), .9, .1));
+        hmm.setAij(0, 0, .8);
+        hmm.setAij(0, 1, .2);
+        RegularMarkovGeneratorBase<ObservationReal, RegularHmmBase<ObservationReal>> mg = new RegularMarkovGeneratorBase<>(hmm);
+        List<List<ObservationReal>> sequences = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            sequences.add(mg.observationSequence(100));
+        }
+
+        RegularHmmBase<ObservationReal> learnt = new RegularHmmBase<>(2, new OpdfTiedGaussianMixtureFactory(new GaussianCodebook(new double[]{1., 4.}, new double[]{1., 1.})));
+        learnt.setOpdf(0, new OpdfTiedGaussianMixture(((OpdfTiedGaussianMixture) learnt.getOpdf(0)).codebook(), .6, .4));
+        RegularBaumWelchScaledLearnerBase<ObservationReal, RegularHmmBase<ObservationReal>> bwl = new RegularBaumWelchScaledLearnerBase<>();
+        double previous = lnLikelihood(learnt, sequences);
+        for (int i = 0; i < 5; i++) {
+            RegularHmmBase<ObservationReal> next = bwl.iterate(learnt, sequences);
+            assertEquals("Input model modified", previous, lnLikelihood(learnt, sequences), 1.E-9);
+            double current = lnLikelihood(next, sequences);
+            assertTrue("Decreasing likelihood", current >= previous - 1.E-6);
+            assertSame("States no longer tied", ((OpdfTiedGaussianMixture) next.getOpdf(0)).codebook(), ((OpdfTiedGaussianMixture) next.getOpdf(1)).codebook());
+            assertNotSame("Codebook shared with the input model", ((OpdfTiedGaussianMixture) learnt.getOpdf(0)).codebook(), ((OpdfTiedGaussianMixture) next.getOpdf(0)).codebook());
+            learnt = next;
+            previous = current;
+        }
+    }
+
+    /**
+     * Tests if the K-Means learner fits the codebook of tied mixtures once
+     * with the clusters of all the states.
+     */
+    public void testTiedGaussianMixtureKMeans() throws CloneNotSupportedException {
+        OpdfGaussianMixture generator = new OpdfGaussianMixture(new double[]{-2., 3.}, new double[]{.5, 1.}, .5, .5);
+        List<List<ObservationReal>> sequences = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            List<ObservationReal> sequence = new ArrayList<>();
+            for (int t = 0; t < 50; t++) {
+                sequence.add(generator.generate());
+            }
+            sequences.add(sequence);
+        }
+        GaussianCodebook codebook = new GaussianCodebook(new double[]{0., 1.}, new double[]{1., 1.});
+        KMeansLearner<ObservationReal> kml = new KMeansLearner<>(2, new OpdfTiedGaussianMixtureFactory(codebook), sequences);
+        RegularHmmBase<ObservationReal> hmm = kml.iterate();
+        assertSame("States no longer tied", ((OpdfTiedGaussianMixture) hmm.getOpdf(0)).codebook(), ((OpdfTiedGaussianMixture) hmm.getOpdf(1)).codebook());
+        assertFalse("Codebook not re-estimated", equalsArrays(new double[]{0., 1.}, codebook.means()));
+        for (List<ObservationReal> sequence : sequences) {
+            assertFalse(Double.isNaN(hmm.lnProbability(sequence)));
+        }
+    }
+
+    private static double lnLikelihood(RegularHmmBase<ObservationReal> hmm, List<List<ObservationReal>> sequences) {
+        double result = 0.;
+        for (List<ObservationReal> sequence : sequences) {
+            result += hmm.lnProbability(sequence);
+        }
+        return result;
+    }
+
+    private static double bivariateDensity(double m0, double m1, double s00, double s01, double s11, double[] v) {
+        double det = s00 * s11 - s01 * s01;
+        double d0 = v[0] - m0, d1 = v[1] - m1;
+        double quadratic = (s11 * d0 * d0 - 2. * s01 * d0 * d1 + s00 * d1 * d1) / det;
+        return Math.exp(-.5 * quadratic) / (2. * Math.PI * Math.sqrt(det));
+    }
+
+    /**
+     * Tests if the batch and logarithmic evaluations of the Gaussian functions
+     * match the scalar probability.
+     */
+    public void testBatchProbabilities() {
+        checkBatchProbabilities(new OpdfGaussian(1., 2.));
+        checkBatchProbabilities(new OpdfGaussianMixture(new double[]{-1., 2.}, new double[]{.5, 3.}, .3, .7));
+        checkBatchProbabilities(new OpdfMultiGaussian(new double[]{2., 4.}, new double[][]{{3., 2.}, {2., 4.}}));
+    }
+
+    private static <O extends Observation> void checkBatchProbabilities(Opdf<O> opdf) {
+        List<O> obs = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            obs.add(opdf.generate());
+        }
+        double[] probabilities = new double[obs.size()];
+        double[] lnProbabilities = new double[obs.size()];
+        opdf.probabilities(obs, probabilities);
+        opdf.lnProbabilities(obs, lnProbabilities);
+        for (int t = 0; t < obs.size(); t++) {
+            double expected = opdf.probability(obs.get(t));
+            assertEquals(expected, probabilities[t], 1.E-12 * expected);
+            assertEquals(Math.log(expected), opdf.lnProbability(obs.get(t)), 1.E-9);
+            assertEquals(Math.log(expected), lnProbabilities[t], 1.E-9);
+        }
+    }
 }
@@ -12,6 +12,8 @@ import jahmm.io.HmmWriter;
 import jahmm.io.ObservationIntegerReader;
 import jahmm.io.ObservationSequencesReader;
 import jahmm.io.ObservationVectorReader;
+import jahmm.io.OpdfDiagonalGaussianReader;
+import jahmm.io.OpdfDiagonalGaussianWriter;
 import jahmm.io.OpdfGaussianMixtureReader;
 import jahmm.io.OpdfGaussianMixtureWriter;
 import jahmm.io.OpdfGaussianReader;
@@ -101,6 +103,12 @@ public class IOTest
     protected final String multiGaussianOPDFString
             = "MultiGaussianOPDF [ [ 5. 5. ] [ [ 1.2 .3 ] [ .3 4. ] ] ]";
 
+    /**
+     *
+     */
+    protected final String diagonalGaussianOPDFString
+            = "DiagonalGaussianOPDF [ [ 5. 5. ] [ 1.2 4. ] ]";
+
     /**
      *
      */
@@ -137,6 +145,8 @@ public class IOTest
                 new OpdfGaussianMixtureWriter());
         opdfCheck(multiGaussianOPDFString, new OpdfMultiGaussianReader(),
                 new OpdfMultiGaussianWriter());
+        opdfCheck(diagonalGaussianOPDFString, new OpdfDiagonalGaussianReader(),
+                new OpdfDiagonalGaussianWriter());
     }
 
     private <O extends Observation, D extends Opdf<O>> void
@@ -2,6 +2,8 @@ package jahmm;
 
 import jahmm.calculators.ComputationType;
 import jahmm.calculators.InputForwardBackwardCalculatorBase;
+import jahmm.calculators.InputForwardBackwardScaledCalculatorBase;
+import jahmm.calculators.InputViterbiCalculatorBase;
 import jahmm.jadetree.foo.FooEnum;
 import jahmm.jadetree.foo.TrisEnum;
 import jahmm.observables.InputObservationTuple;
@@ -644,13 +646,59 @@ public class InputHmmBaseTest {
      */
     @Test
     public void testLnProbability() {
+        for (int l = 0x01; l <= ihmm_sequence.size(); l++) {
+            List<InputObservationTuple<Integer, ObservationInteger>> lst = ihmm_sequence.subList(0x00, l);
+            double pa = InputForwardBackwardCalculatorBase.Instance.computeProbability(ihmm, lst);
+            AssertExtensions.assertEquals(Math.log(pa), ihmm.lnProbability(lst));
+            AssertExtensions.assertEquals(pa, InputForwardBackwardScaledCalculatorBase.Instance.computeProbability(ihmm, EnumSet.of(ComputationType.BETA), lst));
+        }
+    }
+
+    /**
+     * Test if the input indices are resolved once per interaction and if the
+     * emissions computed with the resolved indices match the opdfs.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testComputeInputIndices() {
+        InputForwardBackwardCalculatorBase<ObservationInteger, Integer, InputHmmBase<ObservationInteger, Integer>> calc = InputForwardBackwardScaledCalculatorBase.Instance;
+        int[] inputs = calc.computeInputIndices(ihmm, ihmm_sequence);
+        double[][] emissions = calc.computeEmissions(ihmm, ihmm_sequence);
+        for (int t = 0x00; t < ihmm_sequence.size(); t++) {
+            InputObservationTuple<Integer, ObservationInteger> ot = ihmm_sequence.get(t);
+            Assert.assertEquals(ihmm.getInputIndex(ot.getInput()), inputs[t]);
+            for (int i = 0x00; i < ihmm.nbStates(); i++) {
+                AssertExtensions.assertEquals(ihmm.getOpdf(i, ot.getInput()).probability(ot.getObservation()), emissions[t][i]);
+            }
+        }
     }
 
     /**
-     * Test of mostLikelyStateSequence method, of class InputHmmBase.
+     * Test of mostLikelyStateSequence method, of class InputHmmBase, and if
+     * the decoder is not affected by merging inputs afterwards.
      */
     @Test
     public void testMostLikelyStateSequence() {
+        InputViterbiCalculatorBase<ObservationInteger, Integer> vc = new InputViterbiCalculatorBase<>(ihmm);
+        for (int l = 0x01; l <= ihmm_sequence.size(); l++) {
+            List<InputObservationTuple<Integer, ObservationInteger>> lst = ihmm_sequence.subList(0x00, l);
+            int[] sseq = new int[l];
+            double best = 0.0d;
+            int nseq = (int) Math.pow(0x03, l);
+            for (int c = 0x00; c < nseq; c++) {
+                for (int t = 0x00, r = c; t < l; t++, r /= 0x03) {
+                    sseq[t] = r % 0x03;
+                }
+                best = Math.max(best, ihmm.probability(lst, sseq));
+            }
+            int[] actual = ihmm.mostLikelyStateSequence(lst);
+            AssertExtensions.assertEquals(best, ihmm.probability(lst, actual));
+            AssertExtensions.assertEquals(Math.log(best), vc.lnProbability(lst));
+            AssertExtensions.assertEquals(Math.log(best), (double) vc.computeStateSequence(lst).getItem2());
+        }
+        double expected = vc.lnProbability(ihmm_sequence);
+        ihmm.mergeInput(0x03, 0x00, 0x01);
+        AssertExtensions.assertEquals(expected, vc.lnProbability(ihmm_sequence));
     }
 
     /**
@@ -1219,6 +1267,34 @@ public class InputHmmBaseTest {
         }
     }
 
+    /**
+     * Test of transposedA method, of class InputHmmBase. The cached tensor and
+     * collapsed matrix must reflect modifications made by setAixj.
+     */
+    @Test
+    public void testTransposedA() {
+        for (int t = 0x00; t < TestParameters.NUMBER_OF_TESTS; t++) {
+            int m = ProbabilityUtils.nextInt(TestParameters.TEST_SIZE_SMALL) + 0x01;
+            TrisEnum[] ti = new TrisEnum[]{TrisEnum.Odin, TrisEnum.Dva};
+            int n = ti.length;
+            InputHmmBase<ObservationEnum<TrisEnum>, TrisEnum> hmm = generateRandomIHmm1(m, ti, n);
+            for (int r = 0x00; r < 0x02; r++) {
+                double[] at = hmm.transposedA();
+                double[][] cola = hmm.collapsedA();
+                Assert.assertEquals(n * m * m, at.length);
+                for (int i = 0x00; i < m; i++) {
+                    for (int j = 0x00; j < m; j++) {
+                        AssertExtensions.assertEquals(hmm.getAij(i, j), cola[i][j]);
+                        for (int k = 0x00; k < n; k++) {
+                            AssertExtensions.assertEquals(hmm.getAixj(i, k, j), at[(k * m + j) * m + i]);
+                        }
+                    }
+                }
+                hmm.setAixj(ProbabilityUtils.nextInt(m), ProbabilityUtils.nextInt(n), ProbabilityUtils.nextInt(m), ProbabilityUtils.nextDouble());
+            }
+        }
+    }
+
     private InputHmmBase<ObservationEnum<TrisEnum>, TrisEnum> generateRandomIHmm1(int m, TrisEnum[] ti, int n) {
         InputHmmBase<ObservationEnum<TrisEnum>, TrisEnum> hmm = new InputHmmBase<>(m, new OpdfEnumFactory<>(TrisEnum.class
         ), ti);
@@ -0,0 +1,78 @@
+package jahmm.calculators;
+
+import jutils.probability.ProbabilityUtils;
+import jutils.testing.AssertExtensions;
+import org.junit.Assert;
+import org.junit.Test;
+import utils.TestParameters;
+
+/**
+ *
+ * @author kommusoft
+ */
+public class DenseKernelsTest {
+
+    public DenseKernelsTest() {
+    }
+
+    private static double[] createRandomArray(int length) {
+        double[] values = new double[length];
+        for (int i = 0x00; i < length; i++) {
+            values[i] = ProbabilityUtils.nextDouble();
+        }
+        return values;
+    }
+
+    /**
+     * Test if the unrolled kernels compute the same results as the scalar
+     * kernels, for numbers of states that are and are not a multiple of the
+     * unrolling factor.
+     */
+    @Test
+    public void testUnrolledSameAsScalar() {
+        DenseKernels expected = ScalarDenseKernels.Instance;
+        DenseKernels actual = UnrolledDenseKernels.Instance;
+        AssertExtensions.pushEpsilon(1e-12);
+        for (int t = 0x00; t < TestParameters.NUMBER_OF_TESTS; t++) {
+            for (int n = 0x01; n < 0x0b; n++) {
+                double[] a = createRandomArray(n * n);
+                double[] prev = createRandomArray(n);
+                double[] emission = createRandomArray(n);
+                double[] e = new double[n], r = new double[n];
+                double[] ew = new double[n], rw = new double[n];
+                expected.forward(a, n, prev, emission, e);
+                actual.forward(a, n, prev, emission, r);
+                for (int i = 0x00; i < n; i++) {
+                    AssertExtensions.assertEquals(e[i], r[i]);
+                }
+                expected.backward(a, n, prev, emission, ew, e);
+                actual.backward(a, n, prev, emission, rw, r);
+                for (int i = 0x00; i < n; i++) {
+                    AssertExtensions.assertEquals(e[i], r[i]);
+                    AssertExtensions.assertEquals(ew[i], rw[i]);
+                }
+                double[][] en = new double[n][n], rn = new double[n][n];
+                expected.accumulateXi(a, n, prev, emission, 0.5d, en);
+                actual.accumulateXi(a, n, prev, emission, 0.5d, rn);
+                for (int i = 0x00; i < n; i++) {
+                    for (int j = 0x00; j < n; j++) {
+                        AssertExtensions.assertEquals(en[i][j], rn[i][j]);
+                    }
+                }
+                for (int k = 0x00; k < a.length; k++) {
+                    a[k] = Math.log(ProbabilityUtils.nextInt(0x03) * 0.25d);
+                }
+                for (int i = 0x00; i < n; i++) {
+                    prev[i] = ProbabilityUtils.nextInt(0x02);
+                }
+                int[] ep = new int[n], rp = new int[n];
+                expected.maxPlus(a, n, prev, e, ep);
+                actual.maxPlus(a, n, prev, r, rp);
+                Assert.assertArrayEquals(e, r, 0.0d);
+                Assert.assertArrayEquals(ep, rp);
+            }
+        }
+        AssertExtensions.popEpsilon();
+    }
+
+}
@@ -0,0 +1,246 @@
+package jahmm.calculators;
+
+import jahmm.RegularHmmBase;
+import jahmm.observables.ObservationEnum;
+import jahmm.observables.Opdf;
+import jahmm.observables.OpdfEnum;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import jutils.probability.ProbabilityUtils;
+import jutils.testing.AssertExtensions;
+import jutlis.lists.ListArray;
+import jutlis.tuples.Tuple2;
+import jutlis.tuples.Tuple3;
+import org.junit.Assert;
+import org.junit.Test;
+import utils.TestParameters;
+
+/**
+ *
+ * @author kommusoft
+ */
+public class ForwardBackwardCompiledCalculatorTest {
+
+    public ForwardBackwardCompiledCalculatorTest() {
+    }
+
+    /**
+     * Test of computeAll method, of class
+     * RegularForwardBackwardCompiledCalculatorBase. Based on the Umbrella world
+     * of Russell & Norvig 2010 Chapter 15 pp. 566
+     */
+    @Test
+    public void testComputeAll() {
+        double[][] trans = {{0.7d, 0.3d}, {0.3d, 0.7d}};
+        double[][] exhaust = {{0.9d, 0.1d}, {0.2d, 0.8d}};
+        Opdf<ObservationEnum<Events>> state0 = new OpdfEnum<>(Events.class, exhaust[0x00]);
+        Opdf<ObservationEnum<Events>> state1 = new OpdfEnum<>(Events.class, exhaust[0x01]);
+        double[] pi = {0.5d, 0.5d};
+        @SuppressWarnings("unchecked")
+        RegularHmmBase<ObservationEnum<Events>> hmm = new RegularHmmBase<>(pi, trans, state0, state1);
+        @SuppressWarnings("unchecked")
+        List<ObservationEnum<Events>> sequence = new ListArray<>(new ObservationEnum<>(Events.Umbrella), new ObservationEnum<>(Events.Umbrella), new ObservationEnum<>(Events.NoUmbrella), new ObservationEnum<>(Events.Umbrella), new ObservationEnum<>(Events.Umbrella));
+        Tuple3<double[][], double[][], Double> abp = RegularForwardBackwardCompiledCalculatorBase.Instance.computeAll(hmm, sequence);
+        double[][] a = abp.getItem1();
+        double[][] b = abp.getItem2();
+        double[] expecteda = {0.8182, 0.8834, 0.1907, 0.7308, 0.8673};
+        double[] expectedb = {0.5923, 0.3763, 0.6533, 0.6273};
+        AssertExtensions.pushEpsilon(0.0001);
+        for (int t = 0x00; t < expecteda.length; t++) {
+            AssertExtensions.assertEquals(expecteda[t], a[t][0x00]);
+            AssertExtensions.assertEquals(1.0d - expecteda[t], a[t][0x01]);
+        }
+        AssertExtensions.setEpsilon(0.001);
+        for (int t = 0x00; t < expectedb.length; t++) {
+            AssertExtensions.assertEquals(b[t][0x00] * (1.0d - expectedb[t]), b[t][0x01] * expectedb[t]);
+        }
+        AssertExtensions.assertEquals(b[expectedb.length][0x00], b[expectedb.length][0x01]);
+        AssertExtensions.popEpsilon();
+    }
+
+    /**
+     * Test if the compiled calculator produces the same values as the scaled
+     * calculator.
+     */
+    @Test
+    public void testSameAsScaled() {
+        double[][] trans = {{0.0d, 0.0d, 0.0d}, {0.0d, 0.0d, 0.0d}, {0.0d, 0.0d, 0.0d}};
+        double[][] exhaust = {{0.0d, 0.0d, 0.0d}, {0.0d, 0.0d, 0.0d}, {0.0d, 0.0d, 0.0d}};
+        double[] pi = {0.0d, 0.0d, 0.0d};
+        ArrayList<ObservationEnum<Tris>> tris = new ArrayList<>(0x40);
+        for (int i = 0x00; i < 0x40; i++) {
+            tris.add(null);
+        }
+        Tris[] trisvals = Tris.values();
+        for (int t = 0x00; t < TestParameters.NUMBER_OF_TESTS; t++) {
+            for (int i = 0x00; i < 0x03; i++) {
+                ProbabilityUtils.fillRandomScale(trans[i]);
+                ProbabilityUtils.fillRandomScale(exhaust[i]);
+            }
+            for (int i = 0x00; i < 0x40; i++) {
+                tris.set(i, new ObservationEnum<>(trisvals[ProbabilityUtils.nextInt(0x03)]));
+            }
+            ProbabilityUtils.fillRandomScale(pi);
+            Opdf<ObservationEnum<Tris>> state0 = new OpdfEnum<>(Tris.class, exhaust[0x00]);
+            Opdf<ObservationEnum<Tris>> state1 = new OpdfEnum<>(Tris.class, exhaust[0x01]);
+            Opdf<ObservationEnum<Tris>> state2 = new OpdfEnum<>(Tris.class, exhaust[0x02]);
+            @SuppressWarnings("unchecked")
+            RegularHmmBase<ObservationEnum<Tris>> hmm = new RegularHmmBase<>(pi, trans, state0, state1, state2);
+            Tuple3<double[][], double[][], Double> expected = RegularForwardBackwardScaledCalculatorBase.Instance.computeAll(hmm, tris);
+            Tuple3<double[][], double[][], Double> actual = RegularForwardBackwardCompiledCalculatorBase.Instance.computeAll(hmm, tris);
+            double expectedp = expected.getItem3();
+            double actualp = actual.getItem3();
+            AssertExtensions.assertEquals(expectedp, actualp);
+            for (int k = 0x00; k < 0x40; k++) {
+                for (int i = 0x00; i < 0x03; i++) {
+                    AssertExtensions.assertEquals(expected.getItem1()[k][i], actual.getItem1()[k][i]);
+                    AssertExtensions.assertEquals(expected.getItem2()[k][i], actual.getItem2()[k][i]);
+                }
+            }
+            expectedp = RegularForwardBackwardCalculatorBase.Instance.computeProbability(hmm, EnumSet.of(ComputationType.BETA), tris);
+            AssertExtensions.assertEquals(expectedp, RegularForwardBackwardCompiledCalculatorBase.Instance.computeProbability(hmm, tris));
+        }
+    }
+
+    /**
+     * Test if the emission matrix shared by the result of computeAll matches
+     * the probabilities of the opdfs.
+     */
+    @Test
+    public void testComputeEmissions() {
+        double[][] trans = {{0.7d, 0.3d}, {0.3d, 0.7d}};
+        double[][] exhaust = {{0.9d, 0.1d}, {0.2d, 0.8d}};
+        Opdf<ObservationEnum<Events>> state0 = new OpdfEnum<>(Events.class, exhaust[0x00]);
+        Opdf<ObservationEnum<Events>> state1 = new OpdfEnum<>(Events.class, exhaust[0x01]);
+        double[] pi = {0.5d, 0.5d};
+        @SuppressWarnings("unchecked")
+        RegularHmmBase<ObservationEnum<Events>> hmm = new RegularHmmBase<>(pi, trans, state0, state1);
+        @SuppressWarnings("unchecked")
+        List<ObservationEnum<Events>> sequence = new ListArray<>(new ObservationEnum<>(Events.Umbrella), new ObservationEnum<>(Events.NoUmbrella), new ObservationEnum<>(Events.Umbrella));
+        ForwardBackwardResult scaled = (ForwardBackwardResult) RegularForwardBackwardScaledCalculatorBase.Instance.computeAll(hmm, sequence);
+        ForwardBackwardResult compiled = (ForwardBackwardResult) RegularForwardBackwardCompiledCalculatorBase.Instance.computeAll(hmm, sequence);
+        AssertExtensions.pushEpsilon(1e-12);
+        for (int t = 0x00; t < sequence.size(); t++) {
+            for (int i = 0x00; i < 0x02; i++) {
+                double expected = hmm.getOpdf(i).probability(sequence.get(t));
+                AssertExtensions.assertEquals(expected, scaled.getEmissions()[t][i]);
+                AssertExtensions.assertEquals(expected, compiled.getEmissions()[t][i]);
+            }
+        }
+        AssertExtensions.popEpsilon();
+    }
+
+    /**
+     * Test if reusing a workspace for sequences of decreasing length gives the
+     * same results as computeAll and the Viterbi decoder without workspace,
+     * and if the workspace does not grow for the shorter sequences.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testWorkspace() {
+        double[][] trans = new double[0x03][0x03];
+        double[][] exhaust = new double[0x03][0x03];
+        double[] pi = new double[0x03];
+        for (int i = 0x00; i < 0x03; i++) {
+            ProbabilityUtils.fillRandomScale(trans[i]);
+            ProbabilityUtils.fillRandomScale(exhaust[i]);
+        }
+        ProbabilityUtils.fillRandomScale(pi);
+        Opdf<ObservationEnum<Tris>> state0 = new OpdfEnum<>(Tris.class, exhaust[0x00]);
+        Opdf<ObservationEnum<Tris>> state1 = new OpdfEnum<>(Tris.class, exhaust[0x01]);
+        Opdf<ObservationEnum<Tris>> state2 = new OpdfEnum<>(Tris.class, exhaust[0x02]);
+        RegularHmmBase<ObservationEnum<Tris>> hmm = new RegularHmmBase<>(pi, trans, state0, state1, state2);
+        CompiledRegularHmm<ObservationEnum<Tris>> chmm = new CompiledRegularHmm<>(hmm);
+        RegularForwardBackwardCompiledCalculatorBase<ObservationEnum<Tris>, RegularHmmBase<ObservationEnum<Tris>>> calculator = RegularForwardBackwardCompiledCalculatorBase.Instance;
+        RegularViterbiLogCalculatorBase<ObservationEnum<Tris>> decoder = new RegularViterbiLogCalculatorBase<>(hmm);
+        ForwardBackwardWorkspace workspace = new ForwardBackwardWorkspace();
+        Tris[] trisvals = Tris.values();
+        double[][] alpha = null;
+        AssertExtensions.pushEpsilon(1e-9);
+        for (int length = 0x40; length > 0x00; length -= 0x09) {
+            ArrayList<ObservationEnum<Tris>> tris = new ArrayList<>(length);
+            for (int i = 0x00; i < length; i++) {
+                tris.add(new ObservationEnum<>(trisvals[ProbabilityUtils.nextInt(0x03)]));
+            }
+            ForwardBackwardResult expected = (ForwardBackwardResult) calculator.computeAll(hmm, tris);
+            double lnProbability = calculator.computeAll(chmm, tris, workspace);
+            AssertExtensions.assertEquals(expected.getLnProbability(), lnProbability);
+            AssertExtensions.assertEquals(expected.getLnProbability(), calculator.computeLnProbability(chmm, tris));
+            Assert.assertEquals(length, workspace.getLength());
+            if (alpha != null) {
+                Assert.assertSame(alpha, workspace.getAlpha());
+            }
+            alpha = workspace.getAlpha();
+            for (int t = 0x00; t < length; t++) {
+                for (int i = 0x00; i < 0x03; i++) {
+                    AssertExtensions.assertEquals(expected.getItem1()[t][i], workspace.getAlpha()[t][i]);
+                    AssertExtensions.assertEquals(expected.getItem2()[t][i], workspace.getBeta()[t][i]);
+                }
+            }
+            Tuple2<int[], Double> decoded = decoder.computeStateSequence(tris);
+            AssertExtensions.assertEquals((double) decoded.getItem2(), decoder.computeStateSequence(tris, workspace));
+            Assert.assertArrayEquals(decoded.getItem1(), Arrays.copyOf(workspace.getStateSequence(), length));
+            RegularViterbiCalculatorBase viterbi = new RegularViterbiCalculatorBase(tris, hmm, workspace);
+            Assert.assertArrayEquals(decoded.getItem1(), viterbi.stateSequence());
+        }
+        AssertExtensions.popEpsilon();
+    }
+
+    /**
+     * Test if decoding through a workspace only allocates the arrays of the
+     * Viterbi algorithm.
+     */
+    @Test
+    public void testViterbiWorkspace() {
+        ForwardBackwardWorkspace workspace = new ForwardBackwardWorkspace();
+        workspace.ensureViterbi(0x20, 0x03);
+        Assert.assertEquals(0x20, workspace.getLength());
+        Assert.assertTrue(workspace.getPsy().length >= 0x20);
+        Assert.assertTrue(workspace.getStateSequence().length >= 0x20);
+        Assert.assertEquals(0x00, workspace.getAlpha().length);
+        Assert.assertEquals(0x00, workspace.getBeta().length);
+        Assert.assertEquals(0x00, workspace.getEmissions().length);
+        workspace.ensure(0x10, 0x03);
+        Assert.assertTrue(workspace.getAlpha().length >= 0x10);
+        Assert.assertTrue(workspace.getPsy().length >= 0x20);
+    }
+
+    /**
+     * Test if computing the beta values of an empty sequence is rejected.
+     */
+    @Test
+    public void testComputeBetaEmpty() {
+        Opdf<ObservationEnum<Events>> state0 = new OpdfEnum<>(Events.class, 0.9d, 0.1d);
+        Opdf<ObservationEnum<Events>> state1 = new OpdfEnum<>(Events.class, 0.2d, 0.8d);
+        @SuppressWarnings("unchecked")
+        RegularHmmBase<ObservationEnum<Events>> hmm = new RegularHmmBase<>(new double[]{0.5d, 0.5d}, new double[][]{{0.7d, 0.3d}, {0.3d, 0.7d}}, state0, state1);
+        CompiledRegularHmm<ObservationEnum<Events>> chmm = new CompiledRegularHmm<>(hmm);
+        RegularForwardBackwardCompiledCalculatorBase<ObservationEnum<Events>, RegularHmmBase<ObservationEnum<Events>>> calculator = RegularForwardBackwardCompiledCalculatorBase.Instance;
+        try {
+            calculator.computeBeta(chmm, new ArrayList<ObservationEnum<Events>>(), (double[]) null);
+            Assert.fail("Should throw an exception.");
+        } catch (IllegalArgumentException t) {
+        }
+        try {
+            calculator.computeBeta(chmm, new double[0x00][], (double[]) null);
+            Assert.fail("Should throw an exception.");
+        } catch (IllegalArgumentException t) {
+        }
+    }
+
+    public enum Events {
+
+        Umbrella,
+        NoUmbrella
+    }
+
+    public enum Tris {
+
+        One,
+        Two,
+        Three
+    }
+
+}
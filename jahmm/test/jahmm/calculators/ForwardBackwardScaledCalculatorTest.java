@@ -6,10 +6,13 @@ import jahmm.observables.Opdf;
 import jahmm.observables.OpdfEnum;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import jutils.probability.ProbabilityUtils;
 import jutils.testing.AssertExtensions;
 import jutlis.lists.ListArray;
+import jutlis.tuples.Tuple2;
 import jutlis.tuples.Tuple3;
+import org.junit.Assert;
 import org.junit.Test;
 import utils.TestParameters;
 
@@ -86,6 +89,80 @@ public class ForwardBackwardScaledCalculatorTest {
             double expected = RegularForwardBackwardCalculatorBase.Instance.computeProbability(hmm, tris);
             double actual = RegularForwardBackwardScaledCalculatorBase.Instance.computeProbability(hmm, tris);
             AssertExtensions.assertEquals(expected, actual);
+            AssertExtensions.assertEquals(Math.log(expected), RegularForwardBackwardScaledCalculatorBase.Instance.computeLnProbability(hmm, tris));
+            AssertExtensions.assertEquals(Math.log(expected), hmm.lnProbability(tris));
+        }
+    }
+
+    /**
+     * Test if the log-probability of a long sequence does not underflow.
+     */
+    @Test
+    public void testLnProbabilityLongSequence() {
+        double[][] trans = {{0.7d, 0.3d}, {0.3d, 0.7d}};
+        double[][] exhaust = {{0.9d, 0.1d}, {0.2d, 0.8d}};
+        Opdf<ObservationEnum<Events>> state0 = new OpdfEnum<>(Events.class, exhaust[0x00]);
+        Opdf<ObservationEnum<Events>> state1 = new OpdfEnum<>(Events.class, exhaust[0x01]);
+        double[] pi = {0.5d, 0.5d};
+        @SuppressWarnings("unchecked")
+        RegularHmmBase<ObservationEnum<Events>> hmm = new RegularHmmBase<>(pi, trans, state0, state1);
+        ArrayList<ObservationEnum<Events>> sequence = new ArrayList<>(0x1000);
+        for (int i = 0x00; i < 0x1000; i++) {
+            sequence.add(new ObservationEnum<>(Events.NoUmbrella));
+        }
+        double actual = hmm.lnProbability(sequence);
+        Assert.assertTrue(actual < -745.0d);
+        Assert.assertFalse(Double.isInfinite(actual));
+        AssertExtensions.assertEquals(0.0d, RegularForwardBackwardScaledCalculatorBase.Instance.computeProbability(hmm, sequence));
+        AssertExtensions.assertEquals(actual, RegularForwardBackwardCompiledCalculatorBase.Instance.computeLnProbability(hmm, sequence));
+    }
+
+    /**
+     * Test if the blocked parallel forward pass computes the same
+     * log-probability and boundary alpha values as the sequential pass.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testAlphaBlocks() {
+        double[][] trans = new double[0x03][0x03];
+        double[][] exhaust = new double[0x03][0x03];
+        double[] pi = new double[0x03];
+        Tris[] trisvals = Tris.values();
+        ForkJoinPool pool = new ForkJoinPool(0x04);
+        AssertExtensions.pushEpsilon(1e-9);
+        try {
+            for (int t = 0x00; t < TestParameters.NUMBER_OF_TESTS; t++) {
+                for (int i = 0x00; i < 0x03; i++) {
+                    ProbabilityUtils.fillRandomScale(trans[i]);
+                    ProbabilityUtils.fillRandomScale(exhaust[i]);
+                }
+                ProbabilityUtils.fillRandomScale(pi);
+                Opdf<ObservationEnum<Tris>> state0 = new OpdfEnum<>(Tris.class, exhaust[0x00]);
+                Opdf<ObservationEnum<Tris>> state1 = new OpdfEnum<>(Tris.class, exhaust[0x01]);
+                Opdf<ObservationEnum<Tris>> state2 = new OpdfEnum<>(Tris.class, exhaust[0x02]);
+                RegularHmmBase<ObservationEnum<Tris>> hmm = new RegularHmmBase<>(pi, trans, state0, state1, state2);
+                ArrayList<ObservationEnum<Tris>> tris = new ArrayList<>(0x401);
+                for (int i = 0x00; i < 0x401; i++) {
+                    tris.add(new ObservationEnum<>(trisvals[ProbabilityUtils.nextInt(0x03)]));
+                }
+                RegularForwardBackwardScaledCalculatorBase<ObservationEnum<Tris>, RegularHmmBase<ObservationEnum<Tris>>> calculator = RegularForwardBackwardScaledCalculatorBase.Instance;
+                Tuple3<double[][], double[][], Double> abp = calculator.computeAll(hmm, tris);
+                Tuple2<double[][], Double> blocks = calculator.computeAlphaBlocks(hmm, tris, pool, 0x20);
+                double expected = calculator.computeLnProbability(hmm, tris);
+                AssertExtensions.assertEquals(expected, (double) blocks.getItem2());
+                AssertExtensions.assertEquals(expected, calculator.computeLnProbability(hmm, tris, pool));
+                double[][] alphas = blocks.getItem1();
+                Assert.assertEquals(0x21, alphas.length);
+                for (int b = 0x00; b < alphas.length; b++) {
+                    double[] alpha = abp.getItem1()[b * 0x20];
+                    for (int i = 0x00; i < 0x03; i++) {
+                        AssertExtensions.assertEquals(alpha[i], alphas[b][i]);
+                    }
+                }
+            }
+        } finally {
+            AssertExtensions.popEpsilon();
+            pool.shutdown();
         }
     }
 
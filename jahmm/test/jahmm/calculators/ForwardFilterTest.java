@@ -0,0 +1,274 @@
+package jahmm.calculators;
+
+import jahmm.InputHmmBase;
+import jahmm.RegularHmmBase;
+import jahmm.observables.InputObservationTuple;
+import jahmm.observables.ObservationEnum;
+import jahmm.observables.ObservationInteger;
+import jahmm.observables.Opdf;
+import jahmm.observables.OpdfEnum;
+import jahmm.observables.OpdfIntegerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import jutils.probability.ProbabilityUtils;
+import jutils.testing.AssertExtensions;
+import jutlis.tuples.Tuple3;
+import org.junit.Assert;
+import org.junit.Test;
+import utils.TestParameters;
+
+/**
+ *
+ * @author kommusoft
+ */
+public class ForwardFilterTest {
+
+    public ForwardFilterTest() {
+    }
+
+    /**
+     * Test if the regular filter produces the normalized alpha values of
+     * the Umbrella world of Russell & Norvig 2010 Chapter 15 pp. 566.
+     */
+    @Test
+    public void testUmbrella() {
+        double[][] trans = {{0.7d, 0.3d}, {0.3d, 0.7d}};
+        double[][] exhaust = {{0.9d, 0.1d}, {0.2d, 0.8d}};
+        Opdf<ObservationEnum<Events>> state0 = new OpdfEnum<>(Events.class, exhaust[0x00]);
+        Opdf<ObservationEnum<Events>> state1 = new OpdfEnum<>(Events.class, exhaust[0x01]);
+        double[] pi = {0.5d, 0.5d};
+        @SuppressWarnings("unchecked")
+        RegularHmmBase<ObservationEnum<Events>> hmm = new RegularHmmBase<>(pi, trans, state0, state1);
+        Events[] sequence = {Events.Umbrella, Events.Umbrella, Events.NoUmbrella, Events.Umbrella, Events.Umbrella};
+        double[] expected = {0.8182, 0.8834, 0.1907, 0.7308, 0.8673};
+        RegularForwardFilter<ObservationEnum<Events>> filter = new RegularForwardFilter<>(hmm);
+        AssertExtensions.pushEpsilon(0.0001);
+        for (int t = 0x00; t < expected.length; t++) {
+            filter.push(new ObservationEnum<>(sequence[t]));
+            Assert.assertEquals(t + 0x01, filter.getLength());
+            AssertExtensions.assertEquals(expected[t], filter.getProbability(0x00));
+            AssertExtensions.assertEquals(1.0d - expected[t], filter.getDistribution()[0x01]);
+        }
+        AssertExtensions.popEpsilon();
+    }
+
+    /**
+     * Test if the regular filter produces the same log-likelihoods and
+     * distributions as the scaled calculator for every prefix of a sequence,
+     * and if restoring a snapshot resumes the filter at the snapshot.
+     */
+    @Test
+    public void testSameAsScaled() {
+        double[][] trans = new double[0x03][0x03];
+        double[][] exhaust = new double[0x03][0x03];
+        double[] pi = new double[0x03];
+        Tris[] trisvals = Tris.values();
+        AssertExtensions.pushEpsilon(1e-9);
+        for (int t = 0x00; t < TestParameters.NUMBER_OF_TESTS; t++) {
+            for (int i = 0x00; i < 0x03; i++) {
+                ProbabilityUtils.fillRandomScale(trans[i]);
+                ProbabilityUtils.fillRandomScale(exhaust[i]);
+            }
+            ProbabilityUtils.fillRandomScale(pi);
+            Opdf<ObservationEnum<Tris>> state0 = new OpdfEnum<>(Tris.class, exhaust[0x00]);
+            Opdf<ObservationEnum<Tris>> state1 = new OpdfEnum<>(Tris.class, exhaust[0x01]);
+            Opdf<ObservationEnum<Tris>> state2 = new OpdfEnum<>(Tris.class, exhaust[0x02]);
+            @SuppressWarnings("unchecked")
+            RegularHmmBase<ObservationEnum<Tris>> hmm = new RegularHmmBase<>(pi, trans, state0, state1, state2);
+            ArrayList<ObservationEnum<Tris>> tris = new ArrayList<>(0x20);
+            for (int i = 0x00; i < 0x20; i++) {
+                tris.add(new ObservationEnum<>(trisvals[ProbabilityUtils.nextInt(0x03)]));
+            }
+            Tuple3<double[][], double[][], Double> expected = RegularForwardBackwardScaledCalculatorBase.Instance.computeAll(hmm, tris);
+            RegularForwardFilter<ObservationEnum<Tris>> filter = new RegularForwardFilter<>(hmm);
+            ForwardFilterState state = null;
+            for (int k = 0x00; k < tris.size(); k++) {
+                double lnProbability = filter.push(tris.get(k));
+                AssertExtensions.assertEquals(RegularForwardBackwardScaledCalculatorBase.Instance.computeLnProbability(hmm, tris.subList(0x00, k + 0x01)), lnProbability);
+                for (int i = 0x00; i < 0x03; i++) {
+                    AssertExtensions.assertEquals(expected.getItem1()[k][i], filter.getProbability(i));
+                }
+                if (k == 0x0f) {
+                    state = filter.snapshot();
+                }
+            }
+            AssertExtensions.assertEquals(Math.log(expected.getItem3()), filter.getLnProbability());
+            double[] last = filter.getDistribution();
+            filter.restore(state);
+            Assert.assertEquals(0x10, filter.getLength());
+            for (int k = 0x10; k < tris.size(); k++) {
+                filter.push(tris.get(k));
+            }
+            AssertExtensions.assertEquals(Math.log(expected.getItem3()), filter.getLnProbability());
+            Assert.assertArrayEquals(last, filter.getDistribution(), 0.0d);
+            filter.reset();
+            Assert.assertEquals(0x00, filter.getLength());
+            AssertExtensions.assertEquals(Math.log(hmm.probability(tris.subList(0x00, 0x01))), filter.push(tris.get(0x00)));
+        }
+        AssertExtensions.popEpsilon();
+    }
+
+    /**
+     * Test if the fixed-lag smoother produces the same smoothed distributions
+     * as the scaled calculator run on every prefix of a sequence.
+     */
+    @Test
+    public void testFixedLagSmoother() {
+        double[][] trans = new double[0x03][0x03];
+        double[][] exhaust = new double[0x03][0x03];
+        double[] pi = new double[0x03];
+        double[] posterior = new double[0x03];
+        double[] gamma = new double[0x03];
+        Tris[] trisvals = Tris.values();
+        AssertExtensions.pushEpsilon(1e-9);
+        for (int t = 0x00; t < TestParameters.NUMBER_OF_TESTS; t++) {
+            for (int i = 0x00; i < 0x03; i++) {
+                ProbabilityUtils.fillRandomScale(trans[i]);
+                ProbabilityUtils.fillRandomScale(exhaust[i]);
+            }
+            ProbabilityUtils.fillRandomScale(pi);
+            Opdf<ObservationEnum<Tris>> state0 = new OpdfEnum<>(Tris.class, exhaust[0x00]);
+            Opdf<ObservationEnum<Tris>> state1 = new OpdfEnum<>(Tris.class, exhaust[0x01]);
+            Opdf<ObservationEnum<Tris>> state2 = new OpdfEnum<>(Tris.class, exhaust[0x02]);
+            @SuppressWarnings("unchecked")
+            RegularHmmBase<ObservationEnum<Tris>> hmm = new RegularHmmBase<>(pi, trans, state0, state1, state2);
+            ArrayList<ObservationEnum<Tris>> tris = new ArrayList<>(0x20);
+            for (int i = 0x00; i < 0x20; i++) {
+                tris.add(new ObservationEnum<>(trisvals[ProbabilityUtils.nextInt(0x03)]));
+            }
+            int lag = 0x04;
+            RegularFixedLagSmoother<ObservationEnum<Tris>> smoother = new RegularFixedLagSmoother<>(hmm, lag);
+            Tuple3<double[][], double[][], Double> expected = null;
+            for (int k = 0x00; k < tris.size(); k++) {
+                boolean smoothed = smoother.push(tris.get(k), posterior);
+                Assert.assertEquals(k >= lag, smoothed);
+                expected = RegularForwardBackwardScaledCalculatorBase.Instance.computeAll(hmm, tris.subList(0x00, k + 0x01));
+                AssertExtensions.assertEquals(Math.log(expected.getItem3()), smoother.getLnProbability());
+                if (smoothed) {
+                    gamma(expected, k - lag, gamma);
+                    for (int i = 0x00; i < 0x03; i++) {
+                        AssertExtensions.assertEquals(gamma[i], posterior[i]);
+                    }
+                }
+            }
+            for (int d = 0x00; d <= lag; d++) {
+                smoother.smooth(d, posterior);
+                gamma(expected, tris.size() - 0x01 - d, gamma);
+                for (int i = 0x00; i < 0x03; i++) {
+                    AssertExtensions.assertEquals(gamma[i], posterior[i]);
+                }
+            }
+        }
+        AssertExtensions.popEpsilon();
+    }
+
+    private static void gamma(Tuple3<double[][], double[][], Double> alphaBeta, int t, double[] gamma) {
+        double sum = 0.0d;
+        for (int i = 0x00; i < gamma.length; i++) {
+            gamma[i] = alphaBeta.getItem1()[t][i] * alphaBeta.getItem2()[t][i];
+            sum += gamma[i];
+        }
+        for (int i = 0x00; i < gamma.length; i++) {
+            gamma[i] /= sum;
+        }
+    }
+
+    /**
+     * Test if the input filter produces the same log-likelihoods as the
+     * scaled input calculator for every prefix of a sequence.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testInputSameAsScaled() {
+        ObservationInteger[] values = new ObservationInteger[0x04];
+        for (int i = 0x00; i < values.length; i++) {
+            values[i] = new ObservationInteger(i);
+        }
+        double[] weights = new double[values.length];
+        double[] row = new double[0x03];
+        AssertExtensions.pushEpsilon(1e-9);
+        for (int t = 0x00; t < TestParameters.NUMBER_OF_TESTS; t++) {
+            InputHmmBase<ObservationInteger, Integer> hmm = new InputHmmBase<>(0x03, new OpdfIntegerFactory(values.length), 0x00, 0x01);
+            for (int i = 0x00; i < 0x03; i++) {
+                for (int x = 0x00; x < 0x02; x++) {
+                    ProbabilityUtils.fillRandomScale(row);
+                    for (int j = 0x00; j < 0x03; j++) {
+                        hmm.setAixj(i, x, j, row[j]);
+                    }
+                    ProbabilityUtils.fillRandomScale(weights);
+                    hmm.getOpdf(i, x).fit(values, weights);
+                }
+            }
+            List<InputObservationTuple<Integer, ObservationInteger>> sequence = new ArrayList<>(0x20);
+            for (int i = 0x00; i < 0x20; i++) {
+                sequence.add(new InputObservationTuple<>(ProbabilityUtils.nextInt(0x02), values[ProbabilityUtils.nextInt(values.length)]));
+            }
+            InputForwardFilter<ObservationInteger, Integer> filter = new InputForwardFilter<>(hmm);
+            for (int k = 0x00; k < sequence.size(); k++) {
+                InputObservationTuple<Integer, ObservationInteger> interaction = sequence.get(k);
+                double lnProbability = filter.push(interaction.getInput(), interaction.getObservation());
+                AssertExtensions.assertEquals(InputForwardBackwardScaledCalculatorBase.Instance.computeLnProbability(hmm, sequence.subList(0x00, k + 0x01)), lnProbability);
+                double sum = 0.0d;
+                for (double p : filter.getDistribution()) {
+                    sum += p;
+                }
+                AssertExtensions.assertEquals(1.0d, sum);
+            }
+        }
+        AssertExtensions.popEpsilon();
+    }
+
+    /**
+     * Test if the input filter is not affected by fitting the observation
+     * probability functions of the model after the filter was created.
+     *
+     * @throws CloneNotSupportedException
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testInputSnapshot() throws CloneNotSupportedException {
+        ObservationInteger[] values = new ObservationInteger[0x04];
+        for (int i = 0x00; i < values.length; i++) {
+            values[i] = new ObservationInteger(i);
+        }
+        double[] weights = new double[values.length];
+        AssertExtensions.pushEpsilon(1e-9);
+        InputHmmBase<ObservationInteger, Integer> hmm = new InputHmmBase<>(0x03, new OpdfIntegerFactory(values.length), 0x00, 0x01);
+        for (int i = 0x00; i < 0x03; i++) {
+            for (int x = 0x00; x < 0x02; x++) {
+                ProbabilityUtils.fillRandomScale(weights);
+                hmm.getOpdf(i, x).fit(values, weights);
+            }
+        }
+        InputHmmBase<ObservationInteger, Integer> original = hmm.clone();
+        InputForwardFilter<ObservationInteger, Integer> filter = new InputForwardFilter<>(hmm);
+        for (int i = 0x00; i < 0x03; i++) {
+            for (int x = 0x00; x < 0x02; x++) {
+                hmm.getOpdf(i, x).fit(values[i]);
+            }
+        }
+        List<InputObservationTuple<Integer, ObservationInteger>> sequence = new ArrayList<>(0x10);
+        double lnProbability = 0.0d;
+        for (int i = 0x00; i < 0x10; i++) {
+            InputObservationTuple<Integer, ObservationInteger> interaction = new InputObservationTuple<>(ProbabilityUtils.nextInt(0x02), values[ProbabilityUtils.nextInt(values.length)]);
+            sequence.add(interaction);
+            lnProbability = filter.push(interaction.getInput(), interaction.getObservation());
+        }
+        AssertExtensions.assertEquals(InputForwardBackwardScaledCalculatorBase.Instance.computeLnProbability(original, sequence), lnProbability);
+        AssertExtensions.popEpsilon();
+    }
+
+    public enum Events {
+
+        Umbrella,
+        NoUmbrella
+    }
+
+    public enum Tris {
+
+        One,
+        Two,
+        Three
+    }
+
+}
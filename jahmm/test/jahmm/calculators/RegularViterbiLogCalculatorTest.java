@@ -0,0 +1,167 @@
+package jahmm.calculators;
+
+import jahmm.RegularHmmBase;
+import jahmm.observables.ObservationEnum;
+import jahmm.observables.Opdf;
+import jahmm.observables.OpdfEnum;
+import java.util.ArrayList;
+import jutils.probability.ProbabilityUtils;
+import jutils.testing.AssertExtensions;
+import jutlis.tuples.Tuple2;
+import org.junit.Assert;
+import org.junit.Test;
+import utils.TestParameters;
+
+/**
+ *
+ * @author kommusoft
+ */
+public class RegularViterbiLogCalculatorTest {
+
+    public RegularViterbiLogCalculatorTest() {
+    }
+
+    @SuppressWarnings("unchecked")
+    private static RegularHmmBase<ObservationEnum<Tris>> createRandomHmm() {
+        double[][] trans = new double[0x03][0x03];
+        double[][] exhaust = new double[0x03][0x03];
+        double[] pi = new double[0x03];
+        for (int i = 0x00; i < 0x03; i++) {
+            ProbabilityUtils.fillRandomScale(trans[i]);
+            ProbabilityUtils.fillRandomScale(exhaust[i]);
+        }
+        ProbabilityUtils.fillRandomScale(pi);
+        Opdf<ObservationEnum<Tris>> state0 = new OpdfEnum<>(Tris.class, exhaust[0x00]);
+        Opdf<ObservationEnum<Tris>> state1 = new OpdfEnum<>(Tris.class, exhaust[0x01]);
+        Opdf<ObservationEnum<Tris>> state2 = new OpdfEnum<>(Tris.class, exhaust[0x02]);
+        return new RegularHmmBase<>(pi, trans, state0, state1, state2);
+    }
+
+    private static ArrayList<ObservationEnum<Tris>> createRandomSequence(int length) {
+        Tris[] trisvals = Tris.values();
+        ArrayList<ObservationEnum<Tris>> tris = new ArrayList<>(length);
+        for (int i = 0x00; i < length; i++) {
+            tris.add(new ObservationEnum<>(trisvals[ProbabilityUtils.nextInt(0x03)]));
+        }
+        return tris;
+    }
+
+    /**
+     * Test if the log-space decoder finds the same state sequence and
+     * probability as the RegularViterbiCalculatorBase.
+     */
+    @Test
+    public void testSameAsViterbi() {
+        AssertExtensions.pushEpsilon(1e-9);
+        for (int t = 0x00; t < TestParameters.NUMBER_OF_TESTS; t++) {
+            RegularHmmBase<ObservationEnum<Tris>> hmm = createRandomHmm();
+            ArrayList<ObservationEnum<Tris>> tris = createRandomSequence(0x40);
+            RegularViterbiCalculatorBase expected = new RegularViterbiCalculatorBase(tris, hmm);
+            Tuple2<int[], Double> actual = new RegularViterbiLogCalculatorBase<>(hmm).computeStateSequence(tris);
+            AssertExtensions.assertEquals(expected.lnProbability(), (double) actual.getItem2());
+            Assert.assertArrayEquals(expected.stateSequence(), actual.getItem1());
+        }
+        AssertExtensions.popEpsilon();
+    }
+
+    /**
+     * Test if a beam never finds a more likely state sequence than the exact
+     * decoder, and if the returned probability matches the returned state
+     * sequence.
+     */
+    @Test
+    public void testBeam() {
+        AssertExtensions.pushEpsilon(1e-9);
+        for (int t = 0x00; t < TestParameters.NUMBER_OF_TESTS; t++) {
+            RegularHmmBase<ObservationEnum<Tris>> hmm = createRandomHmm();
+            ArrayList<ObservationEnum<Tris>> tris = createRandomSequence(0x40);
+            RegularViterbiLogCalculatorBase<ObservationEnum<Tris>> decoder = new RegularViterbiLogCalculatorBase<>(hmm);
+            double exact = decoder.computeStateSequence(tris).getItem2();
+            decoder.setBeamWidth(0x01);
+            Tuple2<int[], Double> greedy = decoder.computeStateSequence(tris);
+            Assert.assertTrue(greedy.getItem2() <= exact + 1e-9);
+            AssertExtensions.assertEquals(Math.log(hmm.probability(tris, greedy.getItem1())), (double) greedy.getItem2());
+            decoder.setBeamWidth(0x03);
+            decoder.setBeamThreshold(0.0d);
+            AssertExtensions.assertEquals((double) greedy.getItem2(), (double) decoder.computeStateSequence(tris).getItem2());
+        }
+        AssertExtensions.popEpsilon();
+    }
+
+    private static int[] decode(RegularOnlineViterbiCalculatorBase<ObservationEnum<Tris>> online, ArrayList<ObservationEnum<Tris>> tris) {
+        int[] result = new int[tris.size()];
+        int k = 0x00;
+        for (ObservationEnum<Tris> o : tris) {
+            for (int s : online.push(o)) {
+                result[k++] = s;
+            }
+            Assert.assertEquals(k, online.getDecided());
+        }
+        for (int s : online.flush()) {
+            result[k++] = s;
+        }
+        Assert.assertEquals(tris.size(), k);
+        return result;
+    }
+
+    /**
+     * Test if the streaming decoder without maximum lag emits a most likely
+     * state sequence; different sequences with the same probability can be
+     * emitted since the partial log-probabilities are normalized.
+     */
+    @Test
+    public void testOnlineSameAsViterbi() {
+        AssertExtensions.pushEpsilon(1e-9);
+        for (int t = 0x00; t < TestParameters.NUMBER_OF_TESTS; t++) {
+            RegularHmmBase<ObservationEnum<Tris>> hmm = createRandomHmm();
+            ArrayList<ObservationEnum<Tris>> tris = createRandomSequence(0x100);
+            double expected = new RegularViterbiLogCalculatorBase<>(hmm).computeStateSequence(tris).getItem2();
+            RegularOnlineViterbiCalculatorBase<ObservationEnum<Tris>> online = new RegularOnlineViterbiCalculatorBase<>(hmm);
+            int[] actual = decode(online, tris);
+            AssertExtensions.assertEquals(expected, Math.log(hmm.probability(tris, actual)));
+            Assert.assertEquals(0x00, online.getLength());
+            Assert.assertArrayEquals(actual, decode(online, tris));
+        }
+        AssertExtensions.popEpsilon();
+    }
+
+    /**
+     * Test if the streaming decoder with a maximum lag keeps the number of
+     * undecided time steps bounded, and if the emitted state sequence is a
+     * path of which the probability is the reported one.
+     */
+    @Test
+    public void testOnlineMaximumLag() {
+        AssertExtensions.pushEpsilon(1e-9);
+        for (int t = 0x00; t < TestParameters.NUMBER_OF_TESTS; t++) {
+            RegularHmmBase<ObservationEnum<Tris>> hmm = createRandomHmm();
+            ArrayList<ObservationEnum<Tris>> tris = createRandomSequence(0x100);
+            double exact = new RegularViterbiLogCalculatorBase<>(hmm).computeStateSequence(tris).getItem2();
+            RegularOnlineViterbiCalculatorBase<ObservationEnum<Tris>> online = new RegularOnlineViterbiCalculatorBase<>(hmm, 0x02);
+            int[] result = new int[tris.size()];
+            int k = 0x00;
+            for (ObservationEnum<Tris> o : tris) {
+                for (int s : online.push(o)) {
+                    result[k++] = s;
+                }
+                Assert.assertTrue(online.getLength() - online.getDecided() <= 0x02);
+            }
+            double lnProbability = online.getLnProbability();
+            for (int s : online.flush()) {
+                result[k++] = s;
+            }
+            Assert.assertEquals(tris.size(), k);
+            Assert.assertTrue(lnProbability <= exact + 1e-9);
+            AssertExtensions.assertEquals(Math.log(hmm.probability(tris, result)), lnProbability);
+        }
+        AssertExtensions.popEpsilon();
+    }
+
+    public enum Tris {
+
+        One,
+        Two,
+        Three
+    }
+
+}
@@ -0,0 +1,179 @@
+package jahmm.calculators;
+
+import jahmm.RegularHmmBase;
+import jahmm.learn.RegularBaumWelchFusedLearnerBase;
+import jahmm.learn.RegularBaumWelchScaledLearnerBase;
+import jahmm.observables.ObservationEnum;
+import jahmm.observables.Opdf;
+import jahmm.observables.OpdfEnum;
+import jahmm.toolbox.RegularMarkovGeneratorBase;
+import java.util.ArrayList;
+import java.util.List;
+import jutils.probability.ProbabilityUtils;
+import jutils.testing.AssertExtensions;
+import jutlis.tuples.Tuple2;
+import jutlis.tuples.Tuple3;
+import org.junit.Assert;
+import org.junit.Test;
+import utils.TestParameters;
+
+/**
+ *
+ * @author kommusoft
+ */
+public class SparseTransitionMatrixTest {
+
+    private static final int NB_STATES = 0x08;
+
+    public SparseTransitionMatrixTest() {
+    }
+
+    /**
+     * Creates a random left-to-right Hidden Markov Model where every state can
+     * only stay or move to the next state.
+     */
+    @SuppressWarnings("unchecked")
+    private static RegularHmmBase<ObservationEnum<Tris>> createLeftToRightHmm() {
+        double[][] trans = new double[NB_STATES][NB_STATES];
+        double[] pi = new double[NB_STATES];
+        List<Opdf<ObservationEnum<Tris>>> opdfs = new ArrayList<>();
+        for (int i = 0x00; i < NB_STATES; i++) {
+            if (i < NB_STATES - 1) {
+                double stay = 0.1d + 0.8d * ProbabilityUtils.nextDouble();
+                trans[i][i] = stay;
+                trans[i][i + 1] = 1.0d - stay;
+            } else {
+                trans[i][i] = 1.0d;
+            }
+            double[] exhaust = new double[0x03];
+            ProbabilityUtils.fillRandomScale(exhaust);
+            opdfs.add(new OpdfEnum<>(Tris.class, exhaust));
+        }
+        ProbabilityUtils.fillRandomScale(pi);
+        return new RegularHmmBase<>(pi, trans, opdfs);
+    }
+
+    /**
+     * Copies the given Hidden Markov Model, including its opdfs.
+     */
+    private static RegularHmmBase<ObservationEnum<Tris>> copy(RegularHmmBase<ObservationEnum<Tris>> hmm) throws CloneNotSupportedException {
+        double[][] trans = new double[NB_STATES][NB_STATES];
+        List<Opdf<ObservationEnum<Tris>>> opdfs = new ArrayList<>();
+        for (int i = 0x00; i < NB_STATES; i++) {
+            for (int j = 0x00; j < NB_STATES; j++) {
+                trans[i][j] = hmm.getAij(i, j);
+            }
+            opdfs.add(hmm.getOpdf(i).clone());
+        }
+        return new RegularHmmBase<>(hmm.getPis(), trans, opdfs);
+    }
+
+    private static ArrayList<ObservationEnum<Tris>> createRandomSequence(int length) {
+        Tris[] trisvals = Tris.values();
+        ArrayList<ObservationEnum<Tris>> tris = new ArrayList<>(length);
+        for (int i = 0x00; i < length; i++) {
+            tris.add(new ObservationEnum<>(trisvals[ProbabilityUtils.nextInt(0x03)]));
+        }
+        return tris;
+    }
+
+    /**
+     * Test if the sparse kernels compute the same forward-backward and Viterbi
+     * results as the dense calculators.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSameAsDense() {
+        AssertExtensions.pushEpsilon(1e-9);
+        for (int t = 0x00; t < TestParameters.NUMBER_OF_TESTS; t++) {
+            RegularHmmBase<ObservationEnum<Tris>> hmm = createLeftToRightHmm();
+            ArrayList<ObservationEnum<Tris>> tris = createRandomSequence(0x40);
+            Assert.assertTrue(new CompiledRegularHmm<>(hmm).isSparse());
+            Tuple3<double[][], double[][], Double> expected = RegularForwardBackwardScaledCalculatorBase.Instance.computeAll(hmm, tris);
+            Tuple3<double[][], double[][], Double> actual = RegularForwardBackwardCompiledCalculatorBase.Instance.computeAll(hmm, tris);
+            for (int s = 0x00; s < tris.size(); s++) {
+                for (int i = 0x00; i < NB_STATES; i++) {
+                    AssertExtensions.assertEquals(expected.getItem1()[s][i], actual.getItem1()[s][i]);
+                    double beta = expected.getItem2()[s][i];
+                    Assert.assertEquals(beta, actual.getItem2()[s][i], 1e-9 * Math.abs(beta));
+                }
+            }
+            AssertExtensions.assertEquals(RegularForwardBackwardScaledCalculatorBase.Instance.computeLnProbability(hmm, tris), RegularForwardBackwardCompiledCalculatorBase.Instance.computeLnProbability(hmm, tris));
+            RegularViterbiCalculatorBase viterbi = new RegularViterbiCalculatorBase(tris, hmm);
+            Tuple2<int[], Double> decoded = new RegularViterbiLogCalculatorBase<>(hmm).computeStateSequence(tris);
+            AssertExtensions.assertEquals(viterbi.lnProbability(), (double) decoded.getItem2());
+            Assert.assertArrayEquals(viterbi.stateSequence(), decoded.getItem1());
+        }
+        AssertExtensions.popEpsilon();
+    }
+
+    /**
+     * Test if a banded matrix stores the entire band, gives the same results
+     * as the dense calculators and rejects transitions outside the band.
+     */
+    @Test
+    public void testBanded() {
+        RegularHmmBase<ObservationEnum<Tris>> hmm = createLeftToRightHmm();
+        SparseTransitionMatrix banded = new SparseTransitionMatrix(hmm, 0x01, 0x01);
+        Assert.assertEquals(0x03 * NB_STATES - 0x02, banded.nbNonZeros());
+        Assert.assertEquals(0x02 * NB_STATES - 0x01, new SparseTransitionMatrix(hmm).nbNonZeros());
+        for (int i = 0x00; i < NB_STATES; i++) {
+            for (int j = 0x00; j < NB_STATES; j++) {
+                Assert.assertEquals(hmm.getAij(i, j), banded.getAij(i, j), 0.0d);
+            }
+        }
+        ArrayList<ObservationEnum<Tris>> tris = createRandomSequence(0x40);
+        AssertExtensions.pushEpsilon(1e-9);
+        AssertExtensions.assertEquals(RegularForwardBackwardScaledCalculatorBase.Instance.computeLnProbability(hmm, tris), RegularForwardBackwardCompiledCalculatorBase.Instance.computeLnProbability(new CompiledRegularHmm<>(hmm, banded), tris));
+        Tuple2<int[], Double> expected = new RegularViterbiLogCalculatorBase<>(hmm, null).computeStateSequence(tris);
+        Tuple2<int[], Double> actual = new RegularViterbiLogCalculatorBase<>(hmm, banded).computeStateSequence(tris);
+        AssertExtensions.assertEquals((double) expected.getItem2(), (double) actual.getItem2());
+        Assert.assertArrayEquals(expected.getItem1(), actual.getItem1());
+        AssertExtensions.popEpsilon();
+        hmm.setAij(0x00, 0x03, 0.5d);
+        try {
+            new SparseTransitionMatrix(hmm, 0x00, 0x01);
+            Assert.fail("Transition outside the band accepted");
+        } catch (IllegalArgumentException ex) {
+        }
+    }
+
+    /**
+     * Test if sequences generated with a sparse model can be learned by the
+     * fused learner, if the learned model matches the one of the scaled
+     * learner and if structural zeros remain zero.
+     */
+    @Test
+    public void testStructuralZeros() throws CloneNotSupportedException {
+        RegularHmmBase<ObservationEnum<Tris>> hmm = createLeftToRightHmm();
+        hmm.setPi(0x00, 1.0d);
+        for (int i = 0x01; i < NB_STATES; i++) {
+            hmm.setPi(i, 0.0d);
+        }
+        RegularMarkovGeneratorBase<ObservationEnum<Tris>, RegularHmmBase<ObservationEnum<Tris>>> mg = new RegularMarkovGeneratorBase<>(hmm);
+        List<List<ObservationEnum<Tris>>> sequences = new ArrayList<>();
+        for (int i = 0x00; i < 0x20; i++) {
+            sequences.add(mg.observationSequence(0x40));
+        }
+        RegularBaumWelchScaledLearnerBase<ObservationEnum<Tris>, RegularHmmBase<ObservationEnum<Tris>>> bwsl = new RegularBaumWelchScaledLearnerBase<>();
+        RegularBaumWelchFusedLearnerBase<ObservationEnum<Tris>, RegularHmmBase<ObservationEnum<Tris>>> bwfl = new RegularBaumWelchFusedLearnerBase<>();
+        RegularHmmBase<ObservationEnum<Tris>> expected = bwsl.iterate(copy(hmm), sequences);
+        RegularHmmBase<ObservationEnum<Tris>> actual = bwfl.iterate(copy(hmm), sequences);
+        for (int i = 0x00; i < NB_STATES; i++) {
+            for (int j = 0x00; j < NB_STATES; j++) {
+                Assert.assertEquals(expected.getAij(i, j), actual.getAij(i, j), 1e-9);
+                if (hmm.getAij(i, j) == 0.0d) {
+                    Assert.assertEquals(0.0d, actual.getAij(i, j), 0.0d);
+                }
+            }
+        }
+    }
+
+    public enum Tris {
+
+        One,
+        Two,
+        Three
+    }
+
+}
@@ -13,6 +13,7 @@ import jahmm.toolbox.KullbackLeiblerDistanceCalculator;
 import jahmm.toolbox.RegularMarkovGeneratorBase;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import junit.framework.TestCase;
 import org.junit.Test;
 
@@ -72,4 +73,24 @@ public class InputBaumWelchLearnerBaseTest extends TestCase {
         assertEquals(0., klc.distance(bwHmm, hmm), DELTA);
     }
 
+    /**
+     * Test if the parallel expectation step results in the same model as the
+     * sequential one.
+     */
+    @Test
+    public void testParallelBaumWelch() {
+        InputBaumWelchScaledLearnerBase<ObservationInteger, Integer,InputHmmBase<ObservationInteger, Integer>> ibwsl = new InputBaumWelchScaledLearnerBase<>();
+        InputHmmBase<ObservationInteger, Integer> expected = ibwsl.learn(ihmm, isequences);
+        ForkJoinPool pool = new ForkJoinPool(0x03);
+        try {
+            ibwsl.setExecutor(pool);
+            InputHmmBase<ObservationInteger, Integer> actual = ibwsl.learn(ihmm, isequences);
+            for (List<InputObservationTuple<Integer, ObservationInteger>> sequence : isequences) {
+                assertEquals(expected.lnProbability(sequence), actual.lnProbability(sequence), 1.E-6);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
 }
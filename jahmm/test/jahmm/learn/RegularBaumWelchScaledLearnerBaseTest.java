@@ -8,6 +8,8 @@ import jahmm.toolbox.KullbackLeiblerDistanceCalculator;
 import jahmm.toolbox.RegularMarkovGeneratorBase;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 import junit.framework.TestCase;
 
 /**
@@ -54,4 +56,147 @@ public class RegularBaumWelchScaledLearnerBaseTest extends TestCase {
         assertEquals(0., klc.distance(bwHmm, hmm), DELTA);
     }
 
+    /**
+     * Asserts that two models learned from the sequences have the same
+     * initial and transition probabilities and give the same likelihood to
+     * every sequence.
+     */
+    private void assertSameModel(RegularHmmBase<ObservationInteger> expected, RegularHmmBase<ObservationInteger> actual) {
+        for (int i = 0; i < hmm.nbStates(); i++) {
+            assertEquals(expected.getPi(i), actual.getPi(i), 1.E-9);
+            for (int j = 0; j < hmm.nbStates(); j++) {
+                assertEquals(expected.getAij(i, j), actual.getAij(i, j), 1.E-9);
+            }
+        }
+        for (List<ObservationInteger> sequence : sequences) {
+            assertEquals(expected.lnProbability(sequence), actual.lnProbability(sequence), 1.E-6);
+        }
+    }
+
+    /**
+     * Test if the parallel expectation step results in the same model as the
+     * sequential one.
+     */
+    public void testParallelBaumWelch() {
+        RegularBaumWelchScaledLearnerBase<ObservationInteger,RegularHmmBase<ObservationInteger>> bwsl = new RegularBaumWelchScaledLearnerBase<>();
+        RegularHmmBase<ObservationInteger> expected = bwsl.learn(hmm, sequences);
+        ForkJoinPool pool = new ForkJoinPool(0x04);
+        try {
+            bwsl.setExecutor(pool);
+            assertEquals(0x04, bwsl.getParallelism());
+            RegularHmmBase<ObservationInteger> actual = bwsl.learn(hmm, sequences);
+            assertSameModel(expected, actual);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Test if the fused learner results in the same model as the scaled
+     * learner.
+     */
+    public void testFusedBaumWelch() {
+        RegularBaumWelchScaledLearnerBase<ObservationInteger,RegularHmmBase<ObservationInteger>> bwsl = new RegularBaumWelchScaledLearnerBase<>();
+        RegularHmmBase<ObservationInteger> expected = bwsl.learn(hmm, sequences);
+        RegularBaumWelchFusedLearnerBase<ObservationInteger,RegularHmmBase<ObservationInteger>> bwfl = new RegularBaumWelchFusedLearnerBase<>();
+        RegularHmmBase<ObservationInteger> actual = bwfl.learn(hmm, sequences);
+        assertSameModel(expected, actual);
+    }
+
+    /**
+     * Test if the checkpointed learner results in the same model as the scaled
+     * learner, both with the default and with a small checkpoint interval.
+     */
+    public void testCheckpointedBaumWelch() {
+        RegularBaumWelchScaledLearnerBase<ObservationInteger,RegularHmmBase<ObservationInteger>> bwsl = new RegularBaumWelchScaledLearnerBase<>();
+        RegularHmmBase<ObservationInteger> expected = bwsl.learn(hmm, sequences);
+        RegularBaumWelchCheckpointedLearnerBase<ObservationInteger,RegularHmmBase<ObservationInteger>> bwcl = new RegularBaumWelchCheckpointedLearnerBase<>();
+        for (int interval : new int[] {0, 3}) {
+            bwcl.setCheckpointInterval(interval);
+            RegularHmmBase<ObservationInteger> actual = bwcl.learn(hmm, sequences);
+            assertSameModel(expected, actual);
+        }
+    }
+
+    /**
+     * Test if the learning stops once the log-likelihood converges and if the
+     * listeners receive the log-likelihood of every iteration.
+     */
+    public void testConvergence() {
+        RegularHmmBase<ObservationInteger> initial = hmm;
+        double expected = 0.0d;
+        for (List<ObservationInteger> sequence : sequences) {
+            expected += initial.lnProbability(sequence);
+        }
+        RegularBaumWelchScaledLearnerBase<ObservationInteger,RegularHmmBase<ObservationInteger>> bwsl = new RegularBaumWelchScaledLearnerBase<>();
+        bwsl.setConvergenceThreshold(1.E-6);
+        final List<BaumWelchIterationEvent> events = new ArrayList<>();
+        bwsl.addListener(new BaumWelchListener() {
+            @Override
+            public void iterationCompleted(BaumWelchIterationEvent event) {
+                events.add(event);
+            }
+        });
+        bwsl.learn(initial, 0x100, sequences);
+        assertTrue(events.size() > 0x01);
+        assertTrue(events.size() < 0x100);
+        assertEquals(expected, events.get(0x00).getLnLikelihood(), 1.E-6);
+        assertTrue(Double.isNaN(events.get(0x00).getRelativeImprovement()));
+        for (int i = 0x01; i < events.size(); i++) {
+            BaumWelchIterationEvent event = events.get(i);
+            assertEquals(i, event.getIteration());
+            assertTrue(event.getLnLikelihood() >= events.get(i - 0x01).getLnLikelihood() - 1.E-6);
+            assertEquals(sequences.size(), event.getNbSequences());
+            assertTrue(event.getSequencesPerSecond() > 0.0d);
+        }
+        assertTrue(events.get(events.size() - 0x01).getRelativeImprovement() < 1.E-6);
+    }
+
+    /**
+     *
+     */
+    public void testConvergenceZeroLikelihood() {
+        RegularHmmBase<ObservationInteger> certain = new RegularHmmBase<>(1, new OpdfIntegerFactory(1));
+        List<List<ObservationInteger>> zeros = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            List<ObservationInteger> sequence = new ArrayList<>();
+            for (int t = 0; t < 10; t++) {
+                sequence.add(new ObservationInteger(0));
+            }
+            zeros.add(sequence);
+        }
+        RegularBaumWelchScaledLearnerBase<ObservationInteger,RegularHmmBase<ObservationInteger>> bwsl = new RegularBaumWelchScaledLearnerBase<>();
+        bwsl.setConvergenceThreshold(1.E-6);
+        final List<BaumWelchIterationEvent> events = new ArrayList<>();
+        bwsl.addListener(new BaumWelchListener() {
+            @Override
+            public void iterationCompleted(BaumWelchIterationEvent event) {
+                events.add(event);
+            }
+        });
+        bwsl.learn(certain, 0x100, zeros);
+        assertEquals(0x02, events.size());
+        assertEquals(0.0d, events.get(0x01).getLnLikelihood(), 0.0d);
+        assertEquals(0.0d, events.get(0x01).getRelativeImprovement(), 0.0d);
+    }
+
+    /**
+     *
+     */
+    public void testTimeBudget() {
+        RegularBaumWelchScaledLearnerBase<ObservationInteger,RegularHmmBase<ObservationInteger>> bwsl = new RegularBaumWelchScaledLearnerBase<>();
+        bwsl.setTimeBudget(0x01, TimeUnit.NANOSECONDS);
+        assertEquals(0x01, bwsl.getTimeBudget(TimeUnit.NANOSECONDS));
+        final List<BaumWelchIterationEvent> events = new ArrayList<>();
+        bwsl.addListener(new BaumWelchListener() {
+            @Override
+            public void iterationCompleted(BaumWelchIterationEvent event) {
+                events.add(event);
+            }
+        });
+        bwsl.learn(hmm, 0x100, sequences);
+        assertEquals(0x01, events.size());
+        assertTrue(events.get(0x00).getTotalNanos() >= 0x01);
+    }
+
 }